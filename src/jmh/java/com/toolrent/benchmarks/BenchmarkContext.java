@@ -0,0 +1,51 @@
+package com.toolrent.benchmarks;
+
+import com.toolrent.ToolrentApplication;
+import com.toolrent.services.LoanService;
+import com.toolrent.services.ReportService;
+import com.toolrent.services.ToolGroupService;
+import com.toolrent.services.ToolUnitService;
+import com.toolrent.support.OfflineSecurityConfig;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+
+/* Aplicación completa sobre H2 en memoria, sembrada una vez por fork con `loans` préstamos
+   (-p loans=10000,100000,1000000). Los benchmarks llaman a los servicios como lo haría un controlador.
+   Seguridad sin Keycloak (OfflineSecurityConfig): el contexto levanta sin alcanzar el issuer. */
+@State(Scope.Benchmark)
+public class BenchmarkContext {
+
+    @Param({"10000"})
+    public int loans;
+
+    private ConfigurableApplicationContext context;
+    private DatasetSeeder.Fixtures fixtures;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(ToolrentApplication.class, OfflineSecurityConfig.class)
+                .profiles("test", "jmh")
+                .run();
+        fixtures = new DatasetSeeder(context).seed(loans);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    public LoanService loanService() { return context.getBean(LoanService.class); }
+    public ToolUnitService toolUnitService() { return context.getBean(ToolUnitService.class); }
+    public ToolGroupService toolGroupService() { return context.getBean(ToolGroupService.class); }
+    public ReportService reportService() { return context.getBean(ReportService.class); }
+
+    // Cliente y grupo propios de los benchmarks de escritura, sin deudas ni préstamos sembrados
+    public Long benchCustomerId() { return fixtures.customerId(); }
+    public Long benchToolGroupId() { return fixtures.toolGroupId(); }
+    public List<Long> benchUnitIds() { return fixtures.unitIds(); }
+    // Grupos distintos para un carro de préstamos del cliente de benchmark
+    public List<Long> benchCartToolGroupIds() { return fixtures.cartToolGroupIds(); }
+}
@@ -0,0 +1,252 @@
+package com.toolrent.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.toolrent.ToolrentApplication;
+import com.toolrent.config.IdGeneratorMigration;
+import com.toolrent.dto.CursorPageDTO;
+import com.toolrent.entities.ToolGroupEntity;
+import com.toolrent.entities.ToolStatus;
+import com.toolrent.entities.ToolUnitEntity;
+import com.toolrent.services.PageCursor;
+import com.toolrent.services.ToolGroupService;
+import com.toolrent.services.ToolUnitService;
+import com.toolrent.support.OfflineSecurityConfig;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* Listados del catálogo (GET /tools, GET /tools/units y GET /tools/available): consulta + JSON, como
+   responde el controlador con open-in-view. "entities" reproduce la respuesta anterior (entidades,
+   con las unidades de cada grupo en una consulta aparte) y "summaries" la actual (DTO por constructor).
+   Catálogo propio sembrado por JDBC (-p groups=5000 -p unitsPerGroup=100 → 500.000 unidades);
+   los bytes por página y del catálogo completo se imprimen al preparar el estado. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class CatalogBenchmark {
+
+    private static final int BATCH = 5000;
+
+    private static final String ENTITY_GROUP_PAGE =
+            "SELECT g FROM ToolGroupEntity g JOIN FETCH g.tariff WHERE g.id > :lastId ORDER BY g.id";
+    private static final String ENTITY_GROUP_UNITS =
+            "SELECT DISTINCT g FROM ToolGroupEntity g LEFT JOIN FETCH g.units WHERE g IN :groups";
+    private static final String ENTITY_ALL_GROUPS = "SELECT g FROM ToolGroupEntity g";
+    private static final String ENTITY_UNIT_PAGE =
+            "SELECT u FROM ToolUnitEntity u JOIN FETCH u.toolGroup g WHERE u.id > :lastId ORDER BY u.id";
+
+    @Param({"5000"})
+    public int groups;
+
+    @Param({"100"})
+    public int unitsPerGroup;
+
+    @Param({"50"})
+    public int pageSize;
+
+    private ConfigurableApplicationContext context;
+    private ObjectMapper objectMapper;
+    private TransactionTemplate readOnly;
+    private EntityManager entityManager;
+    private ToolGroupService toolGroupService;
+    private ToolUnitService toolUnitService;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(ToolrentApplication.class, OfflineSecurityConfig.class)
+                .profiles("test", "jmh")
+                .run();
+        objectMapper = context.getBean(ObjectMapper.class);
+        readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(
+                context.getBean(EntityManagerFactory.class));
+        toolGroupService = context.getBean(ToolGroupService.class);
+        toolUnitService = context.getBean(ToolUnitService.class);
+
+        seed();
+        report();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    /* ---------- GET /tools ---------- */
+
+    @Benchmark
+    public byte[] toolGroupsEntities() {
+        return readOnly.execute(s -> json(entityGroupPage(0L)));
+    }
+
+    @Benchmark
+    public byte[] toolGroupsSummaries() {
+        return readOnly.execute(s -> json(toolGroupService.getToolGroupsPage(null, pageSize)));
+    }
+
+    /* ---------- GET /tools/units ---------- */
+
+    @Benchmark
+    public byte[] unitsEntities() {
+        return readOnly.execute(s -> json(entityUnitPage(0L)));
+    }
+
+    @Benchmark
+    public byte[] unitsSummaries() {
+        return readOnly.execute(s -> json(toolUnitService.findUnitsPage(null, pageSize)));
+    }
+
+    /* ---------- GET /tools/available ---------- */
+
+    // Respuesta anterior: todos los grupos y las unidades de cada uno (una consulta por grupo) filtradas en Java
+    @Benchmark
+    public byte[] availableEntities() {
+        return readOnly.execute(s -> json(entityAvailable()));
+    }
+
+    @Benchmark
+    public byte[] availableSummaries() {
+        return readOnly.execute(s -> json(toolGroupService.getToolGroupsWithAvailableUnits()));
+    }
+
+    /* ---------- Respuesta anterior ---------- */
+
+    private List<ToolGroupEntity> entityAvailable() {
+        return entityManager.createQuery(ENTITY_ALL_GROUPS, ToolGroupEntity.class).getResultList().stream()
+                .filter(g -> g.getUnits().stream().anyMatch(u -> u.getStatus() == ToolStatus.AVAILABLE))
+                .toList();
+    }
+
+    private CursorPageDTO<ToolGroupEntity> entityGroupPage(Long lastId) {
+        List<ToolGroupEntity> rows = entityManager.createQuery(ENTITY_GROUP_PAGE, ToolGroupEntity.class)
+                .setParameter("lastId", lastId)
+                .setMaxResults(pageSize + 1)
+                .getResultList();
+        // Lo que hacía @BatchSize en la colección: las unidades de toda la página en una consulta
+        if (!rows.isEmpty()) {
+            entityManager.createQuery(ENTITY_GROUP_UNITS, ToolGroupEntity.class)
+                    .setParameter("groups", rows)
+                    .getResultList();
+        }
+        return PageCursor.toPage(rows, pageSize, g -> PageCursor.encode(g.getId()));
+    }
+
+    private CursorPageDTO<ToolUnitEntity> entityUnitPage(Long lastId) {
+        List<ToolUnitEntity> rows = entityManager.createQuery(ENTITY_UNIT_PAGE, ToolUnitEntity.class)
+                .setParameter("lastId", lastId)
+                .setMaxResults(pageSize + 1)
+                .getResultList();
+        return PageCursor.toPage(rows, pageSize, u -> PageCursor.encode(u.getId()));
+    }
+
+    private byte[] json(Object page) {
+        try {
+            return objectMapper.writeValueAsBytes(page);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /* ---------- Tamaño de las respuestas ---------- */
+
+    private void report() {
+        int groupsBefore = readOnly.execute(s -> json(entityGroupPage(0L)).length);
+        int groupsAfter = readOnly.execute(s -> json(toolGroupService.getToolGroupsPage(null, pageSize)).length);
+        int unitsBefore = readOnly.execute(s -> json(entityUnitPage(0L)).length);
+        int unitsAfter = readOnly.execute(s -> json(toolUnitService.findUnitsPage(null, pageSize)).length);
+        int availableBefore = readOnly.execute(s -> json(entityAvailable()).length);
+        int availableAfter = readOnly.execute(s -> json(toolGroupService.getToolGroupsWithAvailableUnits()).length);
+
+        // Catálogo completo de grupos, página a página, con una transacción por página
+        long[] walkBefore = new long[1];
+        long walkAfter = 0;
+        Long lastId = 0L;
+        while (lastId != null) {
+            Long after = lastId;
+            lastId = readOnly.execute(s -> {
+                CursorPageDTO<ToolGroupEntity> page = entityGroupPage(after);
+                walkBefore[0] += json(page).length;
+                return page.nextCursor() == null ? null : PageCursor.decode(page.nextCursor()).id();
+            });
+        }
+        String cursor = null;
+        do {
+            String current = cursor;
+            CursorPageDTO<?> page = readOnly.execute(s -> toolGroupService.getToolGroupsPage(current, pageSize));
+            walkAfter += json(page).length;
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        System.out.printf("Catálogo: %d grupos, %d unidades; páginas de %d%n",
+                groups, (long) groups * unitsPerGroup, pageSize);
+        System.out.printf("  GET /tools        página: %,d → %,d bytes; catálogo completo: %,d → %,d bytes%n",
+                groupsBefore, groupsAfter, walkBefore[0], walkAfter);
+        System.out.printf("  GET /tools/units  página: %,d → %,d bytes%n", unitsBefore, unitsAfter);
+        System.out.printf("  GET /tools/available: %,d → %,d bytes%n", availableBefore, availableAfter);
+    }
+
+    /* ---------- Semilla ---------- */
+
+    // Tarifa e id iguales al grupo; una de cada diez unidades prestada
+    private void seed() {
+        long started = System.currentTimeMillis();
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        TransactionTemplate tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        for (int from = 1; from <= groups; from += BATCH) {
+            int start = from;
+            int end = Math.min(groups, from + BATCH - 1);
+            tx.executeWithoutResult(s -> {
+                List<Object[]> tariffs = new ArrayList<>();
+                List<Object[]> toolGroups = new ArrayList<>();
+                List<Object[]> stock = new ArrayList<>();
+                long loanedPerGroup = (unitsPerGroup + 9) / 10;
+                for (long g = start; g <= end; g++) {
+                    tariffs.add(new Object[]{g, 1000.0 + g % 50 * 100, 2500.0});
+                    toolGroups.add(new Object[]{g, "Herramienta " + g, "Categoría " + g % 8,
+                            20000.0 + g % 100 * 1000, g});
+                    stock.add(new Object[]{g, 0, unitsPerGroup - loanedPerGroup, loanedPerGroup, 0L, 0L, 0L});
+                }
+                jdbc.batchUpdate("INSERT INTO tariffs (id, daily_rental_rate, daily_fine_rate) VALUES (?, ?, ?)",
+                        tariffs);
+                jdbc.batchUpdate("INSERT INTO tool_groups (id, name, category, replacement_value, tariff_id) " +
+                        "VALUES (?, ?, ?, ?, ?)", toolGroups);
+                jdbc.batchUpdate("INSERT INTO tool_group_stock_stripes (tool_group_id, stripe, available, loaned, " +
+                        "in_repair, retired, revision) VALUES (?, ?, ?, ?, ?, ?, ?)", stock);
+            });
+        }
+
+        long units = (long) groups * unitsPerGroup;
+        for (long from = 1; from <= units; from += BATCH) {
+            long start = from;
+            long end = Math.min(units, from + BATCH - 1);
+            tx.executeWithoutResult(s -> {
+                List<Object[]> rows = new ArrayList<>(BATCH);
+                for (long id = start; id <= end; id++) {
+                    long groupId = (id - 1) / unitsPerGroup + 1;
+                    String status = (id - 1) % unitsPerGroup % 10 == 0 ? "LOANED" : "AVAILABLE";
+                    rows.add(new Object[]{id, groupId, status});
+                }
+                jdbc.batchUpdate("INSERT INTO tool_units (id, tool_group_id, status) VALUES (?, ?, ?)", rows);
+            });
+        }
+        context.getBean(IdGeneratorMigration.class).synchronizeAll();
+
+        System.out.printf("Semilla del catálogo: %d grupos, %d unidades en %d ms%n",
+                groups, units, System.currentTimeMillis() - started);
+    }
+}
@@ -0,0 +1,166 @@
+package com.toolrent.benchmarks;
+
+import com.toolrent.config.IdGeneratorMigration;
+import com.toolrent.entities.CustomerEntity;
+import com.toolrent.entities.ToolGroupEntity;
+import com.toolrent.entities.ToolUnitEntity;
+import com.toolrent.repositories.CustomerRepository;
+import com.toolrent.services.CustomerBalanceService;
+import com.toolrent.services.CustomerService;
+import com.toolrent.services.LoanRollupService;
+import com.toolrent.services.ToolGroupService;
+import com.toolrent.services.ToolStockService;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/* Datos de prueba reproducibles (semilla fija) para una escala de préstamos dada.
+   Grupos, unidades y clientes van por los servicios; los préstamos, que son el volumen,
+   se insertan por JDBC en lotes y luego se reconcilian stock, saldos y rollups. */
+class DatasetSeeder {
+
+    private static final int GROUPS = 50;
+    private static final int BATCH = 5000;
+    private static final double ACTIVE_SHARE = 0.05; // préstamos sin devolver
+    private static final double OVERDUE_SHARE = 0.2; // de los activos, vencidos
+    private static final double DEBT_SHARE = 0.02; // devueltos con multa impaga
+    private static final double DAILY_RENTAL = 1000.0;
+    private static final double DAILY_FINE = 2500.0; // la que asigna registerToolGroup
+
+    private static final int CART_SIZE = 5; // máximo de préstamos activos por cliente
+
+    record Fixtures(Long customerId, Long toolGroupId, List<Long> unitIds, List<Long> cartToolGroupIds) {}
+
+    private final ConfigurableApplicationContext context;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Random random = new Random(42);
+
+    DatasetSeeder(ConfigurableApplicationContext context) {
+        this.context = context;
+        this.jdbcTemplate = context.getBean(JdbcTemplate.class);
+        this.transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    Fixtures seed(int loans) {
+        long started = System.currentTimeMillis();
+        int active = (int) (loans * ACTIVE_SHARE);
+        int unitsPerGroup = active / GROUPS + 20;
+        int customers = Math.max(500, loans / 20);
+
+        ToolGroupService toolGroupService = context.getBean(ToolGroupService.class);
+        List<Long> unitIds = new ArrayList<>();
+        for (int g = 0; g < GROUPS; g++) {
+            ToolGroupEntity group = toolGroupService.registerToolGroup("Herramienta " + g, "Categoría " + (g % 8),
+                    20000.0 + g * 1000, DAILY_RENTAL, unitsPerGroup);
+            group.getUnits().stream().map(ToolUnitEntity::getId).forEach(unitIds::add);
+        }
+
+        List<Long> customerIds = seedCustomers(customers);
+        seedLoans(loans, active, customerIds, unitIds);
+
+        // Contadores, saldos y rollups como si los préstamos hubieran pasado por los servicios
+        context.getBean(IdGeneratorMigration.class).synchronizeAll();
+        context.getBean(ToolStockService.class).reconcile();
+        context.getBean(CustomerBalanceService.class).reconcile();
+        context.getBean(LoanRollupService.class).backfill(LocalDate.now().minusDays(366), LocalDate.now().minusDays(1));
+
+        CustomerEntity benchCustomer = context.getBean(CustomerService.class)
+                .registerCustomer("Cliente benchmark", "bench-0", "900000000", "bench@toolrent.com");
+        ToolGroupEntity benchGroup = toolGroupService.registerToolGroup("Herramienta benchmark", "Benchmark",
+                50000.0, DAILY_RENTAL, 200);
+        List<Long> cartGroupIds = new ArrayList<>();
+        for (int i = 0; i < CART_SIZE; i++) {
+            cartGroupIds.add(toolGroupService.registerToolGroup("Carro benchmark " + i, "Benchmark",
+                    50000.0, DAILY_RENTAL, 20).getId());
+        }
+
+        System.out.printf("Semilla: %d préstamos, %d clientes, %d unidades en %d ms%n",
+                loans, customers, unitIds.size(), System.currentTimeMillis() - started);
+        return new Fixtures(benchCustomer.getId(), benchGroup.getId(),
+                benchGroup.getUnits().stream().map(ToolUnitEntity::getId).toList(), cartGroupIds);
+    }
+
+    private List<Long> seedCustomers(int count) {
+        CustomerRepository customerRepository = context.getBean(CustomerRepository.class);
+        List<Long> ids = new ArrayList<>(count);
+        for (int from = 0; from < count; from += BATCH) {
+            int start = from;
+            int end = Math.min(count, from + BATCH);
+            ids.addAll(transactionTemplate.execute(s -> {
+                List<CustomerEntity> batch = new ArrayList<>();
+                for (int i = start; i < end; i++) {
+                    CustomerEntity c = new CustomerEntity();
+                    c.setName("Cliente " + i);
+                    c.setRut("rut-" + i);
+                    c.setPhone("9" + i);
+                    c.setEmail("c" + i + "@toolrent.com");
+                    batch.add(c);
+                }
+                return customerRepository.saveAll(batch).stream().map(CustomerEntity::getId).toList();
+            }));
+        }
+        return ids;
+    }
+
+    // Los activos toman cada uno una unidad distinta (queda LOANED); los devueltos, cualquiera
+    private void seedLoans(int loans, int active, List<Long> customerIds, List<Long> unitIds) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> rows = new ArrayList<>(BATCH);
+        List<Object[]> loanedUnits = new ArrayList<>(BATCH);
+        for (int i = 0; i < loans; i++) {
+            long id = i + 1L;
+            boolean isActive = i < active;
+            Long unitId = isActive ? unitIds.get(i) : unitIds.get(random.nextInt(unitIds.size()));
+            Long customerId = customerIds.get(isActive ? i % customerIds.size() : random.nextInt(customerIds.size()));
+
+            LocalDateTime loanDate;
+            LocalDateTime dueDate;
+            LocalDateTime returnDate = null;
+            double fine = 0.0;
+            boolean overdue = false;
+            if (isActive) {
+                loanDate = now.minusDays(1 + random.nextInt(10)).minusMinutes(random.nextInt(1440));
+                overdue = random.nextDouble() < OVERDUE_SHARE;
+                dueDate = overdue ? now.minusDays(1 + random.nextInt(5)) : now.plusDays(1 + random.nextInt(14));
+                loanedUnits.add(new Object[]{unitId});
+            } else {
+                loanDate = now.minusDays(11 + random.nextInt(355)).minusMinutes(random.nextInt(1440));
+                dueDate = loanDate.plusDays(1 + random.nextInt(14));
+                returnDate = loanDate.plusDays(1 + random.nextInt(20));
+                if (returnDate.isAfter(dueDate) && random.nextDouble() < DEBT_SHARE) {
+                    fine = ChronoUnit.DAYS.between(dueDate, returnDate) * DAILY_FINE;
+                }
+            }
+            double totalCost = Math.max(1, ChronoUnit.DAYS.between(loanDate, dueDate)) * DAILY_RENTAL;
+            rows.add(new Object[]{id, customerId, unitId, Timestamp.valueOf(loanDate), Timestamp.valueOf(dueDate),
+                    returnDate == null ? null : Timestamp.valueOf(returnDate), totalCost, fine, 0.0, overdue, 0.0});
+
+            if (rows.size() == BATCH || i == loans - 1) {
+                flush(rows, loanedUnits);
+            }
+        }
+    }
+
+    private void flush(List<Object[]> rows, List<Object[]> loanedUnits) {
+        transactionTemplate.executeWithoutResult(s -> {
+            jdbcTemplate.batchUpdate("INSERT INTO loans (id, customer_id, tool_unit_id, loan_date, due_date, " +
+                    "return_date, total_cost, fine_amount, damage_charge, overdue, accrued_fine) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+            if (!loanedUnits.isEmpty()) {
+                jdbcTemplate.batchUpdate("UPDATE tool_units SET status = 'LOANED' WHERE id = ?", loanedUnits);
+            }
+        });
+        rows.clear();
+        loanedUnits.clear();
+    }
+}
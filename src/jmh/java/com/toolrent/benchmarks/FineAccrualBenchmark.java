@@ -0,0 +1,109 @@
+package com.toolrent.benchmarks;
+
+import com.toolrent.ToolrentApplication;
+import com.toolrent.config.IdGeneratorMigration;
+import com.toolrent.dto.FineAccrualRunDTO;
+import com.toolrent.entities.ToolGroupEntity;
+import com.toolrent.entities.ToolUnitEntity;
+import com.toolrent.services.CustomerService;
+import com.toolrent.services.FineAccrualService;
+import com.toolrent.services.ToolGroupService;
+import com.toolrent.support.OfflineSecurityConfig;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/* Cálculo nocturno de multas en curso (FineAccrualService.run) sobre préstamos activos propios,
+   sembrados por JDBC (-p activeLoans=1000000). La mitad están vencidos, con 1 a 30 días de atraso.
+   Cada invocación es una ejecución completa con restart: particiones nuevas y todos los tramos. */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@State(Scope.Benchmark)
+public class FineAccrualBenchmark {
+
+    private static final int GROUPS = 50;
+    private static final int CUSTOMERS = 500;
+    private static final int BATCH = 5000;
+    private static final double OVERDUE_SHARE = 0.5;
+
+    @Param({"1000000"})
+    public int activeLoans;
+
+    private ConfigurableApplicationContext context;
+    private FineAccrualService fineAccrualService;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(ToolrentApplication.class, OfflineSecurityConfig.class)
+                .profiles("test", "jmh")
+                .run();
+        fineAccrualService = context.getBean(FineAccrualService.class);
+        seed();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public FineAccrualRunDTO accrue() {
+        FineAccrualRunDTO run = fineAccrualService.run(true);
+        if (!run.completed()) {
+            throw new IllegalStateException("Cálculo de multas incompleto: " + run);
+        }
+        return run;
+    }
+
+    // Los activos comparten unidades: el proceso solo mira loans y la tarifa del grupo
+    private void seed() {
+        long started = System.currentTimeMillis();
+        ToolGroupService toolGroupService = context.getBean(ToolGroupService.class);
+        List<Long> unitIds = new ArrayList<>();
+        for (int g = 0; g < GROUPS; g++) {
+            ToolGroupEntity group = toolGroupService.registerToolGroup("Herramienta " + g, "Categoría " + (g % 8),
+                    20000.0 + g * 1000, 1000.0, 2);
+            group.getUnits().stream().map(ToolUnitEntity::getId).forEach(unitIds::add);
+        }
+        CustomerService customerService = context.getBean(CustomerService.class);
+        List<Long> customerIds = new ArrayList<>();
+        for (int i = 0; i < CUSTOMERS; i++) {
+            customerIds.add(customerService.registerCustomer("Cliente " + i, "rut-" + i, "9" + i,
+                    "c" + i + "@toolrent.com").getId());
+        }
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        Random random = new Random(42);
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> rows = new ArrayList<>(BATCH);
+        for (int i = 0; i < activeLoans; i++) {
+            boolean overdue = random.nextDouble() < OVERDUE_SHARE;
+            LocalDateTime dueDate = overdue ? now.minusDays(1 + random.nextInt(30)) : now.plusDays(1 + random.nextInt(14));
+            rows.add(new Object[]{i + 1L, customerIds.get(i % CUSTOMERS), unitIds.get(i % unitIds.size()),
+                    Timestamp.valueOf(dueDate.minusDays(7)), Timestamp.valueOf(dueDate), 7000.0, overdue});
+            if (rows.size() == BATCH || i == activeLoans - 1) {
+                transactionTemplate.executeWithoutResult(s -> jdbcTemplate.batchUpdate(
+                        "INSERT INTO loans (id, customer_id, tool_unit_id, loan_date, due_date, return_date, total_cost, " +
+                        "fine_amount, damage_charge, overdue, accrued_fine) VALUES (?, ?, ?, ?, ?, NULL, ?, 0, 0, ?, 0)", rows));
+                rows.clear();
+            }
+        }
+        context.getBean(IdGeneratorMigration.class).synchronizeAll();
+
+        System.out.printf("Semilla: %d préstamos activos en %d ms%n", activeLoans, System.currentTimeMillis() - started);
+    }
+}
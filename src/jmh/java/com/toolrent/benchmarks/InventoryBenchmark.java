@@ -0,0 +1,50 @@
+package com.toolrent.benchmarks;
+
+import com.toolrent.entities.ToolGroupEntity;
+import com.toolrent.entities.ToolStatus;
+import com.toolrent.entities.ToolUnitEntity;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* Cambios de inventario: estado de una unidad (con kárdex y contadores de stock) y alta de grupos
+   con `stock` unidades (-p stock=5000 para el alta masiva). */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class InventoryBenchmark {
+
+    @Param({"10"})
+    public int stock;
+
+    private List<Long> unitIds;
+    private boolean[] inRepair;
+    private int next;
+    private int groups;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkContext ctx) {
+        unitIds = ctx.benchUnitIds();
+        inRepair = new boolean[unitIds.size()];
+    }
+
+    // Recorre las unidades del grupo de benchmark alternando AVAILABLE ↔ IN_REPAIR
+    @Benchmark
+    public ToolUnitEntity changeStatus(BenchmarkContext ctx) {
+        int i = next;
+        next = (next + 1) % unitIds.size();
+        inRepair[i] = !inRepair[i];
+        return ctx.toolUnitService().changeStatus(unitIds.get(i),
+                inRepair[i] ? ToolStatus.IN_REPAIR : ToolStatus.AVAILABLE);
+    }
+
+    @Benchmark
+    public ToolGroupEntity registerToolGroup(BenchmarkContext ctx) {
+        return ctx.toolGroupService().registerToolGroup("Grupo benchmark " + groups++, "Benchmark",
+                30000.0, 1500.0, stock);
+    }
+}
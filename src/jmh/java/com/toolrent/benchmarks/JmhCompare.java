@@ -0,0 +1,57 @@
+package com.toolrent.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/* Compara dos resultados JMH en JSON (-rf json) y falla si algún benchmark empeora más del umbral.
+   Uso: java -cp <classpath de test> com.toolrent.benchmarks.JmhCompare base.json actual.json [umbral %, 10 por defecto]
+   Los benchmarks se miden en tiempo promedio: un score mayor es una regresión. */
+public class JmhCompare {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Uso: JmhCompare <base.json> <actual.json> [umbral %]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+        Map<String, Double> base = read(new File(args[0]));
+        Map<String, Double> current = read(new File(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String, Double> entry : current.entrySet()) {
+            Double before = base.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-70s %12.3f  (nuevo)%n", entry.getKey(), entry.getValue());
+                continue;
+            }
+            double delta = (entry.getValue() - before) / before * 100;
+            boolean regression = delta > threshold;
+            if (regression) regressions++;
+            System.out.printf("%-70s %12.3f → %12.3f  %+7.1f%%%s%n", entry.getKey(), before, entry.getValue(),
+                    delta, regression ? "  REGRESIÓN" : "");
+        }
+
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) empeoraron más de %.1f%%%n", regressions, threshold);
+            System.exit(1);
+        }
+    }
+
+    // Clave: benchmark + parámetros (p. ej. ReportBenchmark.topTools loans=100000)
+    private static Map<String, Double> read(File file) throws IOException {
+        Map<String, Double> scores = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(run.path("benchmark").asText()
+                    .replace("com.toolrent.benchmarks.", ""));
+            run.path("params").fields().forEachRemaining(p ->
+                    key.append(' ').append(p.getKey()).append('=').append(p.getValue().asText()));
+            scores.put(key.toString(), run.path("primaryMetric").path("score").asDouble());
+        }
+        return scores;
+    }
+}
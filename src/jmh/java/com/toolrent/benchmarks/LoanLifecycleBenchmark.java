@@ -0,0 +1,87 @@
+package com.toolrent.benchmarks;
+
+import com.toolrent.dto.LoanReturnRequestDTO;
+import com.toolrent.dto.LoanReturnResultDTO;
+import com.toolrent.entities.LoanEntity;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* Préstamo y devolución de una unidad del grupo de benchmark, y de un carro de 5 herramientas
+   (registerLoans / returnLoans), sobre la escala sembrada.
+   Cada medición deja el inventario como estaba: el préstamo se devuelve (o se crea) fuera del tiempo medido. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class LoanLifecycleBenchmark {
+
+    private LoanEntity loan;
+    private List<LoanEntity> cart;
+
+    @Benchmark
+    public LoanEntity registerLoan(BenchmarkContext ctx) {
+        loan = ctx.loanService().registerLoan(ctx.benchToolGroupId(), ctx.benchCustomerId(),
+                LocalDateTime.now().plusDays(3));
+        return loan;
+    }
+
+    @Benchmark
+    public List<LoanEntity> registerCart(BenchmarkContext ctx) {
+        cart = ctx.loanService().registerLoans(ctx.benchCartToolGroupIds(), ctx.benchCustomerId(),
+                LocalDateTime.now().plusDays(3));
+        return cart;
+    }
+
+    @TearDown(Level.Invocation)
+    public void returnRegistered(BenchmarkContext ctx) {
+        if (loan != null && loan.getReturnDate() == null) {
+            ctx.loanService().returnLoan(loan.getId(), 0.0, false);
+        }
+        loan = null;
+        if (cart != null) {
+            ctx.loanService().returnLoans(returnRequests(cart));
+        }
+        cart = null;
+    }
+
+    @Benchmark
+    public void returnLoan(ReturnState state, BenchmarkContext ctx) {
+        ctx.loanService().returnLoan(state.loanId, 0.0, false);
+    }
+
+    @Benchmark
+    public List<LoanReturnResultDTO> returnCart(CartState state, BenchmarkContext ctx) {
+        return ctx.loanService().returnLoans(state.requests);
+    }
+
+    private static List<LoanReturnRequestDTO> returnRequests(List<LoanEntity> loans) {
+        return loans.stream().map(l -> new LoanReturnRequestDTO(l.getId(), 0.0, false)).toList();
+    }
+
+    @State(Scope.Thread)
+    public static class CartState {
+        List<LoanReturnRequestDTO> requests;
+
+        @Setup(Level.Invocation)
+        public void registerCart(BenchmarkContext ctx) {
+            requests = returnRequests(ctx.loanService().registerLoans(ctx.benchCartToolGroupIds(),
+                    ctx.benchCustomerId(), LocalDateTime.now().plusDays(3)));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ReturnState {
+        Long loanId;
+
+        @Setup(Level.Invocation)
+        public void registerLoan(BenchmarkContext ctx) {
+            loanId = ctx.loanService().registerLoan(ctx.benchToolGroupId(), ctx.benchCustomerId(),
+                    LocalDateTime.now().plusDays(3)).getId();
+        }
+    }
+}
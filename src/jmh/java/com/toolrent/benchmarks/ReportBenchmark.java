@@ -0,0 +1,42 @@
+package com.toolrent.benchmarks;
+
+import com.toolrent.dto.CustomerDebtDTO;
+import com.toolrent.dto.LoanActiveDTO;
+import com.toolrent.dto.ToolLoanCountDTO;
+import com.toolrent.entities.CustomerEntity;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* Reportes de solo lectura sobre la escala sembrada (mismos rangos que usa el frontend por defecto). */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ReportBenchmark {
+
+    @Benchmark
+    public List<LoanActiveDTO> activeLoans(BenchmarkContext ctx) {
+        LocalDateTime now = LocalDateTime.now();
+        return ctx.reportService().getActiveLoans(now.minusMonths(1), now);
+    }
+
+    @Benchmark
+    public List<CustomerEntity> overdueCustomers(BenchmarkContext ctx) {
+        return ctx.reportService().getOverdueCustomers();
+    }
+
+    @Benchmark
+    public List<ToolLoanCountDTO> topTools(BenchmarkContext ctx) {
+        LocalDateTime now = LocalDateTime.now();
+        return ctx.reportService().getTopTools(now.minusMonths(1), now, 10);
+    }
+
+    @Benchmark
+    public List<CustomerDebtDTO> customersWithDebt(BenchmarkContext ctx) {
+        return ctx.reportService().getCustomersWithDebt(LocalDateTime.now());
+    }
+}
@@ -0,0 +1,25 @@
+package com.toolrent.config;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/* Id asignado antes del INSERT desde un bloque de id_generators, como @TableGenerator, pero el bloque
+   lo reserva IdBlockAllocator con su propio pool: pedirlo nunca espera una conexión del pool principal.
+   Con ids asignados antes del INSERT, Hibernate agrupa las inserciones en lotes JDBC. */
+@IdGeneratorType(BlockIdGenerator.class)
+@Retention(RUNTIME)
+@Target({FIELD, METHOD})
+public @interface BlockId {
+
+    // Fila de id_generators (sequence_name); por convención, el nombre de la tabla
+    String value();
+
+    // Ids por reserva: uno de cada blockSize INSERT pasa por id_generators
+    int blockSize() default 500;
+}
@@ -0,0 +1,41 @@
+package com.toolrent.config;
+
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+
+import java.lang.reflect.Member;
+
+/* Generador de @BlockId: entrega ids del bloque en memoria y pide otro a IdBlockAllocator al agotarlo.
+   Mientras un hilo reserva, los demás de la misma entidad esperan el bloque, pero ninguno retiene
+   la conexión que la reserva necesita: esa sale del pool de IdBlockAllocator. */
+public class BlockIdGenerator implements IdentifierGenerator {
+
+    private final String sequence;
+    private final int blockSize;
+    private final IdBlockAllocator allocator;
+
+    private long next;
+    private long limit;
+
+    public BlockIdGenerator(BlockId config, Member member, CustomIdGeneratorCreationContext context) {
+        this.sequence = config.value();
+        this.blockSize = config.blockSize();
+        this.allocator = (IdBlockAllocator) context.getServiceRegistry().requireService(ConfigurationService.class)
+                .getSettings().get(IdBlockAllocator.SETTING);
+    }
+
+    @Override
+    public synchronized Object generate(SharedSessionContractImplementor session, Object object) {
+        if (next == limit) {
+            if (allocator == null) {
+                throw new IllegalStateException("Sin IdBlockAllocator para los ids de " + sequence
+                        + ": falta IdBlockConfig en el contexto");
+            }
+            next = allocator.reserve(sequence, blockSize);
+            limit = next + blockSize;
+        }
+        return next++;
+    }
+}
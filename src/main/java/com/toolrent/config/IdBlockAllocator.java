@@ -0,0 +1,61 @@
+package com.toolrent.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/* Reserva bloques de ids en id_generators (ver @BlockId) con un pool propio y chico.
+   El generador de tabla de Hibernate pide cada bloque por una segunda conexión del pool principal;
+   si todas las tiene tomadas el camino de préstamo, que espera su id, nadie avanza. Aquí la reserva
+   es una transacción corta (UPDATE + SELECT de una fila) en conexiones que solo usa ella. */
+public class IdBlockAllocator implements AutoCloseable {
+
+    // Clave con la que IdBlockConfig lo entrega a Hibernate (la lee BlockIdGenerator)
+    public static final String SETTING = "toolrent.id-block-allocator";
+
+    private final HikariDataSource pool;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public IdBlockAllocator(HikariDataSource pool) {
+        this.pool = pool;
+        this.jdbcTemplate = new JdbcTemplate(pool);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(pool));
+    }
+
+    // Primer id de [primero, primero + size), que ningún otro hilo ni nodo recibe
+    public long reserve(String sequence, int size) {
+        Long first = transactionTemplate.execute(s -> take(sequence, size));
+        if (first != null) return first;
+
+        // Sin fila: IdGeneratorMigration la crea al arrancar; esto cubre contextos sin ella (pruebas)
+        try {
+            jdbcTemplate.update("INSERT INTO id_generators (sequence_name, next_val) VALUES (?, 1)", sequence);
+        } catch (DuplicateKeyException e) {
+            // Otro hilo o nodo la creó primero
+        }
+        first = transactionTemplate.execute(s -> take(sequence, size));
+        if (first == null) {
+            throw new IllegalStateException("No se pudo reservar ids de " + sequence);
+        }
+        return first;
+    }
+
+    // next_val es el próximo id libre; el UPDATE bloquea la fila hasta confirmar
+    private Long take(String sequence, int size) {
+        if (jdbcTemplate.update("UPDATE id_generators SET next_val = next_val + ? WHERE sequence_name = ?",
+                size, sequence) == 0) {
+            return null;
+        }
+        Long next = jdbcTemplate.queryForObject(
+                "SELECT next_val FROM id_generators WHERE sequence_name = ?", Long.class, sequence);
+        return next - size;
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+}
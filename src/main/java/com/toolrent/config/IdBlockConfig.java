@@ -0,0 +1,29 @@
+package com.toolrent.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/* Pool de IdBlockAllocator: misma base que spring.datasource (el primario si hay réplica),
+   con toolrent.ids.pool-size conexiones. No es un DataSource del contexto, así no reemplaza al principal. */
+@Configuration
+public class IdBlockConfig {
+
+    @Bean
+    IdBlockAllocator idBlockAllocator(DataSourceProperties properties,
+                                      @Value("${toolrent.ids.pool-size:2}") int poolSize) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        pool.setPoolName("ids");
+        pool.setMaximumPoolSize(poolSize);
+        pool.setMinimumIdle(1);
+        return new IdBlockAllocator(pool);
+    }
+
+    @Bean
+    HibernatePropertiesCustomizer idBlockAllocatorSetting(IdBlockAllocator allocator) {
+        return properties -> properties.put(IdBlockAllocator.SETTING, allocator);
+    }
+}
@@ -0,0 +1,61 @@
+package com.toolrent.config;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/* Los ids se generan desde id_generators: las tablas de referencia con @TableGenerator (bloques de 50)
+   y loans y kardex_movements con @BlockId (bloques de 500, reservados por IdBlockAllocator). Las tablas
+   venían de IDENTITY, así que al arrancar se adelanta cada contador por sobre el máximo id existente;
+   nunca se retrocede, por lo que es seguro correrlo en cada inicio y en varios nodos. */
+@Component
+@DependsOn("entityManagerFactory")
+public class IdGeneratorMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(IdGeneratorMigration.class);
+
+    // Mismos valores que pkColumnValue o @BlockId en cada entidad (coinciden con el nombre de la tabla)
+    static final List<String> TABLES = List.of(
+            "customers", "tariffs", "tool_groups", "tool_units", "loans", "kardex_movements");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdGeneratorMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void synchronizeAll() {
+        TABLES.forEach(this::synchronize);
+    }
+
+    void synchronize(String table) {
+        Long next = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) + 1 FROM " + table, Long.class);
+
+        int updated = jdbcTemplate.update(
+                "UPDATE id_generators SET next_val = ? WHERE sequence_name = ? AND next_val < ?",
+                next, table, next);
+        if (updated > 0) {
+            log.info("Contador de ids de {} adelantado a {}", table, next);
+            return;
+        }
+
+        Integer rows = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM id_generators WHERE sequence_name = ?", Integer.class, table);
+        if (rows != null && rows > 0) return;
+
+        try {
+            jdbcTemplate.update("INSERT INTO id_generators (sequence_name, next_val) VALUES (?, ?)", table, next);
+            log.info("Contador de ids de {} inicializado en {}", table, next);
+        } catch (DuplicateKeyException e) {
+            // Otro nodo lo insertó primero; basta con asegurar que no quedó por debajo
+            synchronize(table);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.toolrent.config;
+
+import com.toolrent.services.KardexWriter;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/* Métricas que no vienen con Actuator: @Timed en servicios, sentencias SQL por petición
+   y estado de la cola del kardex. Latencia HTTP, pool Hikari y estadísticas de Hibernate
+   (consultas, caché de segundo nivel) las registra Spring Boot; ver application.properties. */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+
+    @Bean
+    HibernatePropertiesCustomizer sqlStatementCounter() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new SqlStatementCounter());
+    }
+
+    // Sentencias SQL por petición, por endpoint (patrón de la ruta, no la URL con ids)
+    @Bean
+    OncePerRequestFilter sqlStatementsPerRequestFilter(MeterRegistry registry) {
+        return new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                            FilterChain chain) throws ServletException, IOException {
+                SqlStatementCounter.reset();
+                try {
+                    chain.doFilter(request, response);
+                } finally {
+                    Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                    if (pattern != null) {
+                        DistributionSummary.builder("toolrent.http.sql.statements")
+                                .description("Sentencias SQL ejecutadas por petición")
+                                .tag("method", request.getMethod())
+                                .tag("uri", pattern.toString())
+                                .register(registry)
+                                .record(SqlStatementCounter.count());
+                    }
+                }
+            }
+        };
+    }
+
+    @Bean
+    MeterBinder kardexWriterMetrics(KardexWriter kardexWriter) {
+        return registry -> {
+            Gauge.builder("toolrent.kardex.queue.pending", kardexWriter, w -> w.getStats().pending())
+                    .description("Movimientos de kardex en cola sin insertar (write-behind)")
+                    .register(registry);
+            FunctionCounter.builder("toolrent.kardex.sync.fallbacks", kardexWriter, w -> w.getStats().syncFallbacks())
+                    .description("Movimientos insertados en la petición por cola llena")
+                    .register(registry);
+            FunctionCounter.builder("toolrent.kardex.dead.lettered", kardexWriter, w -> w.getStats().deadLettered())
+                    .description("Movimientos movidos a kardex-dead-letter.log tras agotar los reintentos")
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,154 @@
+package com.toolrent.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+/* Réplica de lectura (toolrent.replica.enabled=true): dos pools, primario (spring.datasource)
+   y réplica (toolrent.replica.datasource), detrás de un DataSource que elige por conexión (ReplicaRouting).
+   - La conexión se pide al ejecutar la primera sentencia (LazyConnectionDataSourceProxy), cuando
+     la transacción ya quedó marcada como de solo lectura, y Hibernate la suelta al terminar cada
+     transacción: con open-in-view la sesión dura toda la petición, y sin esto la conexión de una
+     lectura en la réplica se reutilizaría para la escritura siguiente.
+   - Lecturas propias: una petición de escritura deja una cookie por read-your-writes-ms; mientras
+     dure, las páginas que siguen leen del primario. */
+@Configuration
+@ConditionalOnProperty(prefix = "toolrent.replica", name = "enabled", havingValue = "true")
+public class ReadReplicaConfig {
+
+    static final String PRIMARY_UNTIL_COOKIE = "toolrent-primary-until";
+
+    private static final Set<String> READ_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource primaryPool(DataSourceProperties properties) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        pool.setPoolName("primary");
+        return pool;
+    }
+
+    // Propiedades de Hikari (jdbc-url, username, maximum-pool-size, read-only...)
+    @Bean
+    @ConfigurationProperties("toolrent.replica.datasource")
+    HikariDataSource replicaPool() {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName("replica");
+        return pool;
+    }
+
+    @Bean
+    ReplicaRouting replicaRouting() {
+        return new ReplicaRouting();
+    }
+
+    @Bean
+    @Primary
+    DataSource dataSource(@Qualifier("primaryPool") DataSource primaryPool,
+                          @Qualifier("replicaPool") DataSource replicaPool,
+                          ReplicaRouting routing) {
+        AbstractRoutingDataSource router = new AbstractRoutingDataSource() {
+            @Override
+            protected Object determineCurrentLookupKey() {
+                return routing.useReplica() ? "replica" : "primary";
+            }
+        };
+        router.setTargetDataSources(Map.of("primary", primaryPool, "replica", replicaPool));
+        router.setDefaultTargetDataSource(primaryPool);
+        router.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(router);
+    }
+
+    @Bean
+    HibernatePropertiesCustomizer releaseConnectionAfterTransaction() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+
+    @Bean
+    ReplicaLagMonitor replicaLagMonitor(@Qualifier("primaryPool") DataSource primaryPool,
+                                        @Qualifier("replicaPool") DataSource replicaPool,
+                                        ReplicaRouting routing,
+                                        @Value("${toolrent.replica.max-lag-ms:5000}") long maxLagMs) {
+        return new ReplicaLagMonitor(new JdbcTemplate(primaryPool), new JdbcTemplate(replicaPool), routing, maxLagMs);
+    }
+
+    @Bean
+    MeterBinder replicaMetrics(ReplicaLagMonitor monitor, ReplicaRouting routing) {
+        return registry -> {
+            Gauge.builder("toolrent.replica.lag", monitor, ReplicaLagMonitor::lagMs)
+                    .description("Atraso de la réplica medido por latido, en ms (-1 sin latido)")
+                    .baseUnit("milliseconds")
+                    .register(registry);
+            Gauge.builder("toolrent.replica.fallback", routing, r -> r.isLagging() ? 1 : 0)
+                    .description("1 si las lecturas de solo lectura están yendo al primario por atraso")
+                    .register(registry);
+        };
+    }
+
+    // Escrituras y páginas mostradas justo después de una escritura leen del primario
+    @Bean
+    OncePerRequestFilter readYourWritesFilter(@Value("${toolrent.replica.read-your-writes-ms:5000}") long windowMs) {
+        return new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                            FilterChain chain) throws ServletException, IOException {
+                long now = System.currentTimeMillis();
+                boolean write = !READ_METHODS.contains(request.getMethod());
+                if (write) {
+                    Cookie cookie = new Cookie(PRIMARY_UNTIL_COOKIE, Long.toString(now + windowMs));
+                    cookie.setPath("/");
+                    cookie.setHttpOnly(true);
+                    cookie.setMaxAge((int) Math.max(1, (windowMs + 999) / 1000));
+                    response.addCookie(cookie);
+                }
+                if (!write && primaryUntil(request) <= now) {
+                    chain.doFilter(request, response);
+                    return;
+                }
+                try (ReplicaRouting.Scope ignored = ReplicaRouting.forcePrimary()) {
+                    chain.doFilter(request, response);
+                }
+            }
+        };
+    }
+
+    private static long primaryUntil(HttpServletRequest request) {
+        if (request.getCookies() == null) return 0;
+        for (Cookie cookie : request.getCookies()) {
+            if (PRIMARY_UNTIL_COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+}
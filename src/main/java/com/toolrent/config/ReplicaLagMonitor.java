@@ -0,0 +1,84 @@
+package com.toolrent.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.List;
+
+/* Atraso de la réplica por latido: en cada pasada lee el último latido que llegó a la réplica
+   y escribe uno nuevo en el primario (tabla replica_heartbeat). Atraso = ahora - latido leído,
+   así que incluye el intervalo entre pasadas: max-lag-ms debe superar lag-check-ms.
+   Con varios nodos todos escriben la misma fila; vale el latido más nuevo (relojes con NTP).
+   Réplica sin responder o sin latido → atrasada: las lecturas vuelven al primario. */
+public class ReplicaLagMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    static final String HEARTBEAT = "primary";
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final ReplicaRouting routing;
+    private final long maxLagMs;
+
+    // -1 mientras no haya latido en la réplica
+    private volatile long lagMs = -1;
+
+    public ReplicaLagMonitor(JdbcTemplate primary, JdbcTemplate replica, ReplicaRouting routing, long maxLagMs) {
+        this.primary = primary;
+        this.replica = replica;
+        this.routing = routing;
+        this.maxLagMs = maxLagMs;
+    }
+
+    @Scheduled(fixedDelayString = "${toolrent.replica.lag-check-ms:1000}")
+    public void check() {
+        long now = System.currentTimeMillis();
+        Long seen = readReplica();
+        lagMs = seen == null ? -1 : Math.max(0, now - seen);
+
+        boolean lagging = seen == null || now - seen > maxLagMs;
+        if (lagging && !routing.isLagging()) {
+            log.warn("Réplica atrasada ({}): las lecturas vuelven al primario",
+                    seen == null ? "sin latido" : lagMs + " ms");
+        } else if (!lagging && routing.isLagging()) {
+            log.info("Réplica al día ({} ms): las lecturas de solo lectura van a la réplica", lagMs);
+        }
+        routing.setLagging(lagging);
+
+        beat(now);
+    }
+
+    public long lagMs() {
+        return lagMs;
+    }
+
+    private Long readReplica() {
+        try {
+            List<Long> beats = replica.queryForList(
+                    "SELECT beat_millis FROM replica_heartbeat WHERE name = ?", Long.class, HEARTBEAT);
+            return beats.isEmpty() ? null : beats.get(0);
+        } catch (DataAccessException e) {
+            log.debug("Réplica sin responder: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void beat(long now) {
+        try {
+            int updated = primary.update(
+                    "UPDATE replica_heartbeat SET beat_millis = ? WHERE name = ?", now, HEARTBEAT);
+            if (updated == 0) {
+                primary.update("INSERT INTO replica_heartbeat (name, beat_millis) VALUES (?, ?)", HEARTBEAT, now);
+            }
+        } catch (DuplicateKeyException e) {
+            // Otro nodo la insertó primero; su latido sirve igual
+        } catch (DataAccessException e) {
+            log.warn("No se pudo escribir el latido de réplica: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.toolrent.config;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/* Decide a qué pool va cada conexión cuando la réplica de lectura está activa (ReadReplicaConfig).
+   Va a la réplica solo el trabajo dentro de @Transactional(readOnly = true) —incluidas las lecturas
+   de los repositorios de Spring Data fuera de una transacción de servicio— y solo si:
+   - la réplica está al día (ReplicaLagMonitor; hasta la primera medición se asume atrasada);
+   - el hilo no pidió leer del primario (forcePrimary: página mostrada justo después de escribir). */
+public class ReplicaRouting {
+
+    private static final ThreadLocal<Boolean> PRIMARY = new ThreadLocal<>();
+
+    private volatile boolean lagging = true;
+
+    // Lecturas del hilo al primario hasta cerrar el alcance; se puede anidar
+    public static Scope forcePrimary() {
+        Boolean previous = PRIMARY.get();
+        PRIMARY.set(Boolean.TRUE);
+        return previous == null ? PRIMARY::remove : () -> PRIMARY.set(previous);
+    }
+
+    public static boolean primaryRequested() {
+        return PRIMARY.get() != null;
+    }
+
+    public boolean useReplica() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && !lagging && !primaryRequested();
+    }
+
+    public boolean isLagging() {
+        return lagging;
+    }
+
+    void setLagging(boolean lagging) {
+        this.lagging = lagging;
+    }
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -46,6 +46,11 @@ public class SecurityConfig {
                                 "/login/oauth2/code/keycloak",
                                 "/error"               // SpringBoot devuelve 401/403 aquí
                         ).permitAll()
+                        // Salud sin token (sondas); el scrape de Prometheus con token de la cuenta de
+                        // servicio (rol METRICS en Keycloak); el resto de Actuator solo ADMIN
+                        .requestMatchers("/actuator/health/**").permitAll()
+                        .requestMatchers("/actuator/prometheus").hasAnyRole("ADMIN", "METRICS")
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .requestMatchers("/users/**").hasRole("ADMIN")
                         .requestMatchers("/tools/**").hasAnyRole("ADMIN", "EMPLOYEE")
                         .requestMatchers("/customers/**").hasAnyRole("ADMIN", "EMPLOYEE")
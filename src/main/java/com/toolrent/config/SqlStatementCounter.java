@@ -0,0 +1,25 @@
+package com.toolrent.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/* Cuenta las sentencias SQL que Hibernate prepara en el hilo actual.
+   El contador es por hilo: cada petición HTTP lo reinicia (ver MetricsConfig) y las pruebas
+   pueden leerlo alrededor de una llamada. No modifica el SQL. */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+
+    public static void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    public static long count() {
+        return COUNT.get()[0];
+    }
+}
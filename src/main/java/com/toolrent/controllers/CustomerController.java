@@ -1,8 +1,12 @@
 package com.toolrent.controllers;
 
+import com.toolrent.dto.CursorPageDTO;
+import com.toolrent.dto.LoanEligibilityDTO;
 import com.toolrent.entities.CustomerEntity;
 import com.toolrent.entities.CustomerStatus;
+import com.toolrent.services.CustomerBalanceService;
 import com.toolrent.services.CustomerService;
+import com.toolrent.services.LoanEligibilityService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -20,9 +24,15 @@ import java.util.List;
 public class CustomerController {
 
     private final CustomerService customerService;
+    private final LoanEligibilityService loanEligibilityService;
+    private final CustomerBalanceService customerBalanceService;
 
-    public CustomerController(CustomerService customerService) {
+    public CustomerController(CustomerService customerService,
+                              LoanEligibilityService loanEligibilityService,
+                              CustomerBalanceService customerBalanceService) {
         this.customerService = customerService;
+        this.loanEligibilityService = loanEligibilityService;
+        this.customerBalanceService = customerBalanceService;
     }
 
     @PostMapping
@@ -57,13 +67,16 @@ public class CustomerController {
 
     @GetMapping
     @PreAuthorize("hasAnyRole('ADMIN')")
-    @Operation(summary = "Listar todos los clientes", description = "Retorna todos los clientes para reportes o consulta.")
+    @Operation(summary = "Listar todos los clientes", description = "Retorna los clientes paginados por cursor. " +
+            "Usar nextCursor para pedir la página siguiente.")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Lista de clientes"),
+            @ApiResponse(responseCode = "200", description = "Página de clientes"),
             @ApiResponse(responseCode = "403", description = "No autorizado")
     })
-    public ResponseEntity<Iterable<CustomerEntity>> getAllCustomers() {
-        return ResponseEntity.ok(customerService.getAllCustomers());
+    public ResponseEntity<CursorPageDTO<CustomerEntity>> getAllCustomers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(customerService.getCustomersPage(cursor, size));
     }
 
     @GetMapping("/active")
@@ -72,4 +85,32 @@ public class CustomerController {
     public ResponseEntity<List<CustomerEntity>> getActiveCustomers() {
         return ResponseEntity.ok(customerService.getCustomersByStatus(CustomerStatus.ACTIVE));
     }
+
+    @GetMapping("/{id}/eligibility")
+    @PreAuthorize("hasAnyRole('ADMIN', 'EMPLOYEE')")
+    @Operation(summary = "Consultar si el cliente puede pedir préstamos", description = "Evalúa todas las " +
+            "reglas de préstamo y retorna cada una de las que el cliente incumple.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Resultado de la evaluación"),
+            @ApiResponse(responseCode = "403", description = "No autorizado")
+    })
+    public ResponseEntity<LoanEligibilityDTO> getEligibility(
+            @PathVariable Long id,
+            @RequestParam(required = false) List<Long> toolGroupIds) {
+        customerService.findById(id);
+        return ResponseEntity.ok(loanEligibilityService.evaluate(id,
+                toolGroupIds == null ? List.of() : toolGroupIds));
+    }
+
+    @PostMapping("/balances/reconcile")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Reconciliar saldos de clientes", description = "Recalcula los saldos desde los " +
+            "préstamos y corrige los que no coincidan. Retorna la cantidad de clientes corregidos.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Saldos reconciliados"),
+            @ApiResponse(responseCode = "403", description = "No autorizado")
+    })
+    public ResponseEntity<Integer> reconcileBalances() {
+        return ResponseEntity.ok(customerBalanceService.reconcile());
+    }
 }
@@ -1,18 +1,27 @@
 package com.toolrent.controllers;
 
+import com.toolrent.dto.CursorPageDTO;
+import com.toolrent.dto.KardexWriterStatsDTO;
 import com.toolrent.entities.KardexMovementEntity;
+import com.toolrent.services.ExportService;
 import com.toolrent.services.KardexMovementService;
+import com.toolrent.services.KardexWriter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -23,20 +32,29 @@ import java.util.List;
 public class KardexMovementController {
 
     private final KardexMovementService kardexMovementService;
+    private final KardexWriter kardexWriter;
+    private final ExportService exportService;
 
-    public KardexMovementController(KardexMovementService kardexMovementService) {
+    public KardexMovementController(KardexMovementService kardexMovementService,
+                                    KardexWriter kardexWriter,
+                                    ExportService exportService) {
         this.kardexMovementService = kardexMovementService;
+        this.kardexWriter = kardexWriter;
+        this.exportService = exportService;
     }
 
     @GetMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'EMPLOYEE')")
-    @Operation(summary = "Listar movimientos del Kardex", description = "Retorna todos los movimientos para reportes.")
+    @Operation(summary = "Listar movimientos del Kardex", description = "Retorna los movimientos paginados por cursor, " +
+            "del más reciente al más antiguo. Usar nextCursor para pedir la página siguiente.")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Lista de movimientos"),
+            @ApiResponse(responseCode = "200", description = "Página de movimientos"),
             @ApiResponse(responseCode = "403", description = "No autorizado")
     })
-    public ResponseEntity<List<KardexMovementEntity>> getAllMovements() {
-        return ResponseEntity.ok(kardexMovementService.getAllMovements());
+    public ResponseEntity<CursorPageDTO<KardexMovementEntity>> getAllMovements(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(kardexMovementService.getMovementsPage(cursor, size));
     }
 
     /* RF5.2 – historial por herramienta */
@@ -52,10 +70,44 @@ public class KardexMovementController {
     @GetMapping("/by-range")
     @PreAuthorize("hasAnyRole('ADMIN','EMPLOYEE')")
     @Operation(summary = "Movimientos por rango ")
-    public ResponseEntity<List<KardexMovementEntity>> getByRange(
+    public ResponseEntity<CursorPageDTO<KardexMovementEntity>> getByRange(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
-        return ResponseEntity.ok(kardexMovementService.findByDateRange(from.atStartOfDay(), to.plusDays(1).atStartOfDay()));
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(kardexMovementService.findByDateRangePage(
+                from.atStartOfDay(), to.plusDays(1).atStartOfDay(), cursor, size));
+    }
+
+    /* Exportación para auditoría: se escribe a medida que se leen las filas */
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Exportar Kardex por rango",
+            description = "Exporta los movimientos del rango en formato ndjson (por defecto) o csv, en streaming.")
+    public ResponseEntity<StreamingResponseBody> exportByRange(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String format,
+            HttpServletRequest request) {
+        ExportService.Format fmt = ExportService.Format.parse(format);
+        // Plazo largo solo para esta respuesta en streaming
+        WebAsyncUtils.getAsyncManager(request).getAsyncWebRequest().setTimeout(exportService.timeoutMs());
+        StreamingResponseBody body = out -> exportService.exportKardex(
+                from.atStartOfDay(), to.plusDays(1).atStartOfDay(), fmt, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"kardex_" + from + "_" + to + "." + fmt.extension() + "\"")
+                .contentType(MediaType.parseMediaType(fmt.contentType()))
+                .body(body);
+    }
+
+    /* Estado del buffer de escritura del kardex */
+    @GetMapping("/writer-stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Estadísticas de escritura del Kardex",
+            description = "Movimientos pendientes en cola, lotes insertados y latencia de inserción.")
+    public ResponseEntity<KardexWriterStatsDTO> getWriterStats() {
+        return ResponseEntity.ok(kardexWriter.getStats());
     }
 
 }
@@ -1,15 +1,28 @@
 package com.toolrent.controllers;
 
+import com.toolrent.dto.CursorPageDTO;
 import com.toolrent.dto.LoanActiveDTO;
+import com.toolrent.dto.LoanReturnRequestDTO;
+import com.toolrent.dto.LoanReturnResultDTO;
+import com.toolrent.dto.OverdueSweepDTO;
 import com.toolrent.entities.LoanEntity;
+import com.toolrent.services.ExportService;
 import com.toolrent.services.LoanService;
+import com.toolrent.services.OverdueSweeper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -19,9 +32,13 @@ import java.util.List;
 public class LoanController {
 
     private final LoanService loanService;
+    private final ExportService exportService;
+    private final OverdueSweeper overdueSweeper;
 
-    public LoanController(LoanService loanService) {
+    public LoanController(LoanService loanService, ExportService exportService, OverdueSweeper overdueSweeper) {
         this.loanService = loanService;
+        this.exportService = exportService;
+        this.overdueSweeper = overdueSweeper;
     }
 
     @PostMapping
@@ -39,6 +56,21 @@ public class LoanController {
         return ResponseEntity.ok(loan);
     }
 
+    @PostMapping("/batch")
+    @PreAuthorize("hasAnyRole('ADMIN', 'EMPLOYEE')")
+    @Operation(summary = "Registrar varios préstamos a la vez", description = "Presta una unidad de cada " +
+            "herramienta indicada al mismo cliente. Si alguna falla no se registra ninguna.")
+    @ApiResponse(responseCode = "200", description = "Préstamos registrados")
+    @ApiResponse(responseCode = "400", description = "Cliente no elegible o sin unidades disponibles")
+    public ResponseEntity<List<LoanEntity>> registerLoans(
+            @RequestParam List<Long> toolGroupIds,
+            @RequestParam Long customerId,
+            @RequestParam String dueDate) {
+
+        LocalDateTime due = LocalDateTime.parse(dueDate.replace(" ", "T"));
+        return ResponseEntity.ok(loanService.registerLoans(toolGroupIds, customerId, due));
+    }
+
     @PutMapping("/{id}/return")
     @PreAuthorize("hasAnyRole('ADMIN', 'EMPLOYEE')")
     @Operation(summary = "Registrar devolución de préstamo", description = "Devolución de una herramienta")
@@ -51,11 +83,21 @@ public class LoanController {
         return ResponseEntity.ok("Devolución registrada");
     }
 
+    @PutMapping("/batch/return")
+    @PreAuthorize("hasAnyRole('ADMIN', 'EMPLOYEE')")
+    @Operation(summary = "Registrar devolución de varios préstamos", description = "Devolución masiva " +
+            "(buzón, contratistas). Retorna el resultado de cada préstamo.")
+    public ResponseEntity<List<LoanReturnResultDTO>> returnLoans(@RequestBody List<LoanReturnRequestDTO> returns) {
+        return ResponseEntity.ok(loanService.returnLoans(returns));
+    }
+
     @GetMapping("/active")
     @PreAuthorize("hasAnyRole('ADMIN','EMPLOYEE')")
     @Operation(summary = "Muestra los préstamos activos", description = "Muestra todos los Loans en estado LOAN")
-    public ResponseEntity<List<LoanActiveDTO>> getActiveLoans() {
-        return ResponseEntity.ok(loanService.getActiveLoans());
+    public ResponseEntity<CursorPageDTO<LoanActiveDTO>> getActiveLoans(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(loanService.getActiveLoansPage(cursor, size));
     }
 
     @PutMapping("/{id}/pay-debts")
@@ -88,8 +130,31 @@ public class LoanController {
     @PreAuthorize("hasAnyRole('ADMIN','EMPLOYEE')")
     @Operation(summary = "Mostrar préstamos con deudas", description = "Préstamos devueltos que aún tienen " +
             "multas o daños sin pagar.")
-    public ResponseEntity<List<LoanActiveDTO>> getReturnedWithDebts() {
-        return ResponseEntity.ok(loanService.getReturnedWithDebts());
+    public ResponseEntity<CursorPageDTO<LoanActiveDTO>> getReturnedWithDebts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(loanService.getReturnedWithDebtsPage(cursor, size));
+    }
+
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Exportar historial de préstamos", description = "Exporta los préstamos con fecha de " +
+            "préstamo en el rango, en formato ndjson (por defecto) o csv, en streaming.")
+    public ResponseEntity<StreamingResponseBody> exportHistory(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String format,
+            HttpServletRequest request) {
+        ExportService.Format fmt = ExportService.Format.parse(format);
+        // Plazo largo solo para esta respuesta en streaming
+        WebAsyncUtils.getAsyncManager(request).getAsyncWebRequest().setTimeout(exportService.timeoutMs());
+        StreamingResponseBody body = out -> exportService.exportLoans(
+                from.atStartOfDay(), to.plusDays(1).atStartOfDay(), fmt, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"loans_" + from + "_" + to + "." + fmt.extension() + "\"")
+                .contentType(MediaType.parseMediaType(fmt.contentType()))
+                .body(body);
     }
 
     @ExceptionHandler(RuntimeException.class)
@@ -97,4 +162,13 @@ public class LoanController {
     public ResponseEntity<String> handleRuntimeException(RuntimeException ex) {
         return ResponseEntity.badRequest().body(ex.getMessage());
     }
-}
\ No newline at end of file
+
+    @PostMapping("/overdue/sweep")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Barrer préstamos vencidos", description = "Marca los préstamos vencidos, restringe " +
+            "a sus clientes y levanta las restricciones automáticas ya saldadas. Solo barre el nodo líder.")
+    @ApiResponse(responseCode = "200", description = "Resultado del barrido")
+    public ResponseEntity<OverdueSweepDTO> sweepOverdue() {
+        return ResponseEntity.ok(overdueSweeper.sweep(true));
+    }
+}
@@ -1,8 +1,13 @@
 package com.toolrent.controllers;
 
+import com.toolrent.dto.AccruingFinesDTO;
 import com.toolrent.dto.CustomerDebtDTO;
+import com.toolrent.dto.FineAccrualRunDTO;
 import com.toolrent.dto.LoanActiveDTO;
+import com.toolrent.dto.ToolLoanCountDTO;
 import com.toolrent.entities.CustomerEntity;
+import com.toolrent.services.FineAccrualService;
+import com.toolrent.services.LoanRollupService;
 import com.toolrent.services.ReportService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -13,9 +18,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
 
 @RestController
 @RequestMapping("/reports")
@@ -23,9 +28,14 @@ import java.util.Map;
 public class ReportController {
 
     private final ReportService reportService;
+    private final LoanRollupService loanRollupService;
+    private final FineAccrualService fineAccrualService;
 
-    public ReportController(ReportService reportService) {
+    public ReportController(ReportService reportService, LoanRollupService loanRollupService,
+                            FineAccrualService fineAccrualService) {
         this.reportService = reportService;
+        this.loanRollupService = loanRollupService;
+        this.fineAccrualService = fineAccrualService;
     }
 
     @GetMapping("/active-loans")
@@ -41,15 +51,27 @@ public class ReportController {
     }
 
     @GetMapping("/top-tools")
-    @Operation(summary = "Listar ranking de Herramientas", description = "Ranking de herramientas más prestadas.")
-    public ResponseEntity<List<Map<String, Object>>> getTopTools(
+    @Operation(summary = "Listar ranking de Herramientas", description = "Ranking de herramientas más prestadas. " +
+            "Con limit se retornan solo las primeras K.")
+    public ResponseEntity<List<ToolLoanCountDTO>> getTopTools(
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Integer limit) {
 
         if (from == null) from = LocalDateTime.now().minusMonths(1);
         if (to == null)   to = LocalDateTime.now();
 
-        return ResponseEntity.ok(reportService.getTopTools(from, to));
+        return ResponseEntity.ok(reportService.getTopTools(from, to, limit));
+    }
+
+    @PostMapping("/top-tools/backfill")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Recalcular rollups del ranking", description = "Recalcula los préstamos por grupo y día " +
+            "desde la tabla de préstamos para el rango de días indicado (hasta ayer). Retorna los días procesados.")
+    public ResponseEntity<Integer> backfillTopTools(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(loanRollupService.backfill(from, to));
     }
 
     @GetMapping("/overdue-customers")
@@ -73,4 +95,20 @@ public class ReportController {
     public ResponseEntity<List<CustomerDebtDTO>> getCustomersWithDebt() {
         return ResponseEntity.ok(reportService.getCustomersWithDebt(LocalDateTime.now()));
     }
-}
\ No newline at end of file
+
+    @GetMapping("/accruing-fines")
+    @PreAuthorize("hasAnyRole('ADMIN','EMPLOYEE')")
+    @Operation(summary = "Multas en curso", description = "Total de multas que acumulan los préstamos activos " +
+            "vencidos, según el último cálculo nocturno.")
+    public ResponseEntity<AccruingFinesDTO> getAccruingFines() {
+        return ResponseEntity.ok(fineAccrualService.getAccruingFines());
+    }
+
+    @PostMapping("/accruing-fines/run")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Calcular multas en curso", description = "Ejecuta el cálculo nocturno de multas en curso. " +
+            "Retoma el avance del día salvo que restart sea true.")
+    public ResponseEntity<FineAccrualRunDTO> runFineAccrual(@RequestParam(defaultValue = "false") boolean restart) {
+        return ResponseEntity.ok(fineAccrualService.run(restart));
+    }
+}
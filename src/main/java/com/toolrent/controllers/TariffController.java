@@ -2,14 +2,18 @@ package com.toolrent.controllers;
 
 import com.toolrent.entities.TariffEntity;
 import com.toolrent.repositories.TariffRepository;
+import com.toolrent.services.ResourceVersions;
 import com.toolrent.services.TariffService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -18,12 +22,18 @@ import java.util.List;
 @Tag(name = "Tarifa Controller", description = "Endpoints para tarifas del sistema")
 public class TariffController {
 
+    // El front sondea el listado: puede guardar la respuesta, pero la revalida siempre con su ETag
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
     private final TariffService tariffService;
     private final TariffRepository tariffRepository;
+    private final ResourceVersions resourceVersions;
 
-    public TariffController(TariffService tariffService, TariffRepository tariffRepository) {
+    public TariffController(TariffService tariffService, TariffRepository tariffRepository,
+                            ResourceVersions resourceVersions) {
         this.tariffService = tariffService;
         this.tariffRepository = tariffRepository;
+        this.resourceVersions = resourceVersions;
     }
 
     @PutMapping
@@ -58,10 +68,14 @@ public class TariffController {
     @Operation(summary = "Listar todas las tarifas")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Tarifas encontradas"),
+            @ApiResponse(responseCode = "304", description = "Sin cambios desde el ETag de If-None-Match"),
             @ApiResponse(responseCode = "404", description = "Tarifas no encontradas")
     })
-    public ResponseEntity<List<TariffEntity>> getAllTariffs() {
-        return ResponseEntity.ok(tariffService.getAllTariffs());
+    public ResponseEntity<List<TariffEntity>> getAllTariffs(WebRequest request) {
+        if (request.checkNotModified(resourceVersions.etag(ResourceVersions.Resource.TARIFFS))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(REVALIDATE).build();
+        }
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(tariffService.getAllTariffs());
     }
 
 }
\ No newline at end of file
@@ -1,15 +1,25 @@
 package com.toolrent.controllers;
 
+import com.toolrent.dto.CursorPageDTO;
+import com.toolrent.dto.ToolGroupAvailabilityDTO;
+import com.toolrent.dto.ToolGroupStockDTO;
+import com.toolrent.dto.ToolGroupSummaryDTO;
+import com.toolrent.dto.ToolUnitSummaryDTO;
 import com.toolrent.entities.ToolGroupEntity;
 import com.toolrent.entities.ToolStatus;
 import com.toolrent.entities.ToolUnitEntity;
+import com.toolrent.services.ResourceVersions;
 import com.toolrent.services.ToolGroupService;
+import com.toolrent.services.ToolStockService;
 import com.toolrent.services.ToolUnitService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -18,13 +28,22 @@ import java.util.List;
 @Tag(name = "Tool Group Controller", description = "Gestión de grupos y unidades de herramientas")
 public class ToolGroupController {
 
+    // El front sondea estos listados: puede guardar la respuesta, pero la revalida siempre con su ETag
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
     private final ToolGroupService toolGroupService;
     private final ToolUnitService toolUnitService;
+    private final ToolStockService toolStockService;
+    private final ResourceVersions resourceVersions;
 
     public ToolGroupController(ToolGroupService toolGroupService,
-                               ToolUnitService toolUnitService) {
+                               ToolUnitService toolUnitService,
+                               ToolStockService toolStockService,
+                               ResourceVersions resourceVersions) {
         this.toolGroupService = toolGroupService;
         this.toolUnitService = toolUnitService;
+        this.toolStockService = toolStockService;
+        this.resourceVersions = resourceVersions;
     }
 
     @PostMapping
@@ -43,16 +62,27 @@ public class ToolGroupController {
 
     @GetMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'EMPLOYEE')")
-    @Operation(summary = "Listar todos los grupos")
-    public ResponseEntity<Iterable<ToolGroupEntity>> getAllToolGroups() {
-        return ResponseEntity.ok(toolGroupService.getAllToolGroups());
+    @Operation(summary = "Listar todos los grupos",
+            description = "Con If-None-Match vigente responde 304 sin consultar la BD.")
+    public ResponseEntity<CursorPageDTO<ToolGroupSummaryDTO>> getAllToolGroups(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            WebRequest request) {
+        if (request.checkNotModified(resourceVersions.etag(ResourceVersions.Resource.TOOLS))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(REVALIDATE).build();
+        }
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(toolGroupService.getToolGroupsPage(cursor, size));
     }
 
     @GetMapping("/available")
     @PreAuthorize("hasAnyRole('ADMIN', 'EMPLOYEE')")
-    @Operation(summary = "Listar grupos con unidades disponibles")
-    public ResponseEntity<List<ToolGroupEntity>> getAvailableToolGroups() {
-        return ResponseEntity.ok(toolGroupService.getToolGroupsWithAvailableUnits());
+    @Operation(summary = "Listar grupos con unidades disponibles",
+            description = "Con If-None-Match vigente responde 304 sin consultar la BD.")
+    public ResponseEntity<List<ToolGroupAvailabilityDTO>> getAvailableToolGroups(WebRequest request) {
+        if (request.checkNotModified(resourceVersions.etag(ResourceVersions.Resource.AVAILABLE_TOOLS))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(REVALIDATE).build();
+        }
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(toolGroupService.getToolGroupsWithAvailableUnits());
     }
 
 
@@ -64,18 +94,17 @@ public class ToolGroupController {
             @RequestParam Double dailyRentalRate,
             @RequestParam Double dailyFineRate) {
 
-        ToolGroupEntity group = toolGroupService.findById(id);
-        group.getTariff().setDailyRentalRate(dailyRentalRate);
-        group.getTariff().setDailyFineRate(dailyFineRate);
-        return ResponseEntity.ok(toolGroupService.save(group));
+        return ResponseEntity.ok(toolGroupService.updateTariff(id, dailyRentalRate, dailyFineRate));
     }
 
     /* ---------- Listar todas las unidades con detalles ---------- */
     @GetMapping("/units")
     @PreAuthorize("hasAnyRole('ADMIN')")
     @Operation(summary = "Obtener todas las herramientas de forma unitaria")
-    public ResponseEntity<List<ToolUnitEntity>> getAllUnitsWithDetails() {
-        return ResponseEntity.ok(toolUnitService.findAllUnitsWithDetails());
+    public ResponseEntity<CursorPageDTO<ToolUnitSummaryDTO>> getAllUnitsWithDetails(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(toolUnitService.findUnitsPage(cursor, size));
     }
 
 
@@ -99,6 +128,21 @@ public class ToolGroupController {
     }
 
 
+    @GetMapping("/stock")
+    @PreAuthorize("hasAnyRole('ADMIN', 'EMPLOYEE')")
+    @Operation(summary = "Stock por estado de todos los grupos")
+    public ResponseEntity<List<ToolGroupStockDTO>> getAllStock() {
+        return ResponseEntity.ok(toolStockService.getAllStock());
+    }
+
+    @PostMapping("/stock/reconcile")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Reconciliar contadores de stock con las unidades", description = "Retorna la cantidad de grupos corregidos.")
+    public ResponseEntity<Integer> reconcileStock() {
+        return ResponseEntity.ok(toolStockService.reconcile());
+    }
+
+
     @PutMapping("/units/{unitId}/repair-resolution")
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(summary = "Resolver reparación: disponible o retirada")
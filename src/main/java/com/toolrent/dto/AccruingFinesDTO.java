@@ -0,0 +1,13 @@
+package com.toolrent.dto;
+
+import java.time.LocalDateTime;
+
+public record AccruingFinesDTO(
+        Long loans, // préstamos activos vencidos con multa en curso
+        Double accruedFines, // suma de las multas en curso
+        LocalDateTime asOf // instante del último cálculo completo; null si nunca terminó
+) {
+    public AccruingFinesDTO(Long loans, Double accruedFines) {
+        this(loans, accruedFines, null);
+    }
+}
@@ -0,0 +1,9 @@
+package com.toolrent.dto;
+
+// Contadores que cambian con el catálogo; de aquí salen los ETag (ver ResourceVersions)
+public record CatalogVersionDTO(
+        Long groups,
+        Long stockRevisions,
+        Long tariffsVersion,
+        Long referenceVersion
+) {}
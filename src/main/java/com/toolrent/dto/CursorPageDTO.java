@@ -0,0 +1,9 @@
+package com.toolrent.dto;
+
+import java.util.List;
+
+public record CursorPageDTO<T>(
+        List<T> items,
+        String nextCursor, // null → no hay más páginas
+        int size
+) {}
@@ -0,0 +1,13 @@
+package com.toolrent.dto;
+
+import java.time.LocalDateTime;
+
+public record CustomerBalanceDTO(
+        Long customerId,
+        Double unpaidFines,
+        Double unpaidDamage,
+        Long unpaidFineLoans,
+        Long unpaidDamageLoans,
+        Long activeLoans,
+        LocalDateTime oldestDueDate
+) {}
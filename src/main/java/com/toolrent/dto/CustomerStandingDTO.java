@@ -0,0 +1,9 @@
+package com.toolrent.dto;
+
+public record CustomerStandingDTO(
+        Long overdueLoans, // préstamos vencidos sin devolver
+        Long unpaidFineLoans, // devueltos con multa impaga
+        Long unpaidDamageLoans, // devueltos con daño impago
+        Long activeLoans, // préstamos sin devolver
+        Long activeSameToolLoans // activos de los grupos solicitados
+) {}
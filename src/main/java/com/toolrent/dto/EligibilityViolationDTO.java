@@ -0,0 +1,6 @@
+package com.toolrent.dto;
+
+public record EligibilityViolationDTO(
+        String rule,
+        String message
+) {}
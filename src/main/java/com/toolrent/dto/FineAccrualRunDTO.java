@@ -0,0 +1,11 @@
+package com.toolrent.dto;
+
+import java.time.LocalDateTime;
+
+public record FineAccrualRunDTO(
+        boolean leader, // false si otro nodo tiene la concesión y este no calculó
+        LocalDateTime asOf, // instante al que se calcularon las multas
+        int partitions,
+        long loans, // préstamos procesados en esta ejecución
+        boolean completed // todas las particiones terminaron
+) {}
@@ -0,0 +1,16 @@
+package com.toolrent.dto;
+
+import com.toolrent.entities.MovementType;
+
+import java.time.LocalDateTime;
+
+public record KardexExportRowDTO(
+        Long id,
+        LocalDateTime movementDate,
+        MovementType movementType,
+        Long toolUnitId,
+        String toolGroupName,
+        Long customerId,
+        String customerName,
+        String details
+) {}
@@ -0,0 +1,15 @@
+package com.toolrent.dto;
+
+public record KardexWriterStatsDTO(
+        boolean writeBehind,
+        int pending,
+        int capacity,
+        long flushedMovements,
+        long flushes,
+        long failedFlushes,
+        long syncFallbacks,
+        long deadLettered,
+        long lastFlushMillis,
+        long maxFlushMillis,
+        double avgFlushMillis
+) {}
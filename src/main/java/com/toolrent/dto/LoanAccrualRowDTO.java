@@ -0,0 +1,10 @@
+package com.toolrent.dto;
+
+import java.time.LocalDateTime;
+
+// Lo mínimo de un préstamo vencido para calcular su multa en curso
+public record LoanAccrualRowDTO(
+        Long id,
+        LocalDateTime dueDate,
+        Long toolGroupId
+) {}
@@ -0,0 +1,9 @@
+package com.toolrent.dto;
+
+import java.util.List;
+
+public record LoanEligibilityDTO(
+        Long customerId,
+        boolean eligible,
+        List<EligibilityViolationDTO> violations // todas las reglas incumplidas
+) {}
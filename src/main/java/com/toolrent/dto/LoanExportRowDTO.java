@@ -0,0 +1,17 @@
+package com.toolrent.dto;
+
+import java.time.LocalDateTime;
+
+public record LoanExportRowDTO(
+        Long id,
+        Long customerId,
+        String customerName,
+        Long toolUnitId,
+        String toolGroupName,
+        LocalDateTime loanDate,
+        LocalDateTime dueDate,
+        LocalDateTime returnDate,
+        Double totalCost,
+        Double fineAmount,
+        Double damageCharge
+) {}
@@ -0,0 +1,6 @@
+package com.toolrent.dto;
+
+public record LoanIdRangeDTO(
+        Long minId,
+        Long maxId
+) {}
@@ -0,0 +1,7 @@
+package com.toolrent.dto;
+
+public record LoanReturnRequestDTO(
+        Long loanId,
+        Double damageCharge, // opcional, daño leve
+        Boolean irreparable // opcional, da de baja la unidad
+) {}
@@ -0,0 +1,9 @@
+package com.toolrent.dto;
+
+public record LoanReturnResultDTO(
+        Long loanId,
+        boolean returned,
+        Double fineAmount,
+        Double damageCharge,
+        String message
+) {}
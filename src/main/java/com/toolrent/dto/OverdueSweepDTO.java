@@ -0,0 +1,8 @@
+package com.toolrent.dto;
+
+public record OverdueSweepDTO(
+        boolean leader, // false si otro nodo tiene la concesión y este no barrió
+        int overdueLoans, // préstamos marcados como vencidos
+        int restrictedCustomers, // clientes pasados a RESTRICTED
+        int liftedCustomers // restricciones automáticas levantadas
+) {}
@@ -0,0 +1,11 @@
+package com.toolrent.dto;
+
+public record ToolGroupAvailabilityDTO(
+        Long id,
+        String name,
+        String category,
+        Double replacementValue,
+        Double dailyRentalRate,
+        Double dailyFineRate,
+        Long availableUnits
+) {}
@@ -0,0 +1,6 @@
+package com.toolrent.dto;
+
+public record ToolGroupFineRateDTO(
+        Long toolGroupId,
+        Double dailyFineRate
+) {}
@@ -0,0 +1,9 @@
+package com.toolrent.dto;
+
+public record ToolGroupStockDTO(
+        Long toolGroupId,
+        Long available,
+        Long loaned,
+        Long inRepair,
+        Long retired
+) {}
@@ -0,0 +1,15 @@
+package com.toolrent.dto;
+
+// Fila del listado de grupos: datos del grupo, su tarifa y unidades por estado (tool_group_stock_stripes)
+public record ToolGroupSummaryDTO(
+        Long id,
+        String name,
+        String category,
+        Double replacementValue,
+        Double dailyRentalRate,
+        Double dailyFineRate,
+        Long available,
+        Long loaned,
+        Long inRepair,
+        Long retired
+) {}
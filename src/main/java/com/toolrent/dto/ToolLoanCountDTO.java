@@ -0,0 +1,7 @@
+package com.toolrent.dto;
+
+public record ToolLoanCountDTO(
+        Long toolGroupId,
+        String toolGroupName,
+        Long total
+) {}
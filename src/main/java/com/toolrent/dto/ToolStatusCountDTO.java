@@ -0,0 +1,9 @@
+package com.toolrent.dto;
+
+import com.toolrent.entities.ToolStatus;
+
+public record ToolStatusCountDTO(
+        Long toolGroupId,
+        ToolStatus status,
+        Long units
+) {}
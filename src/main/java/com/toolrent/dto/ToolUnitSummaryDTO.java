@@ -0,0 +1,16 @@
+package com.toolrent.dto;
+
+import com.toolrent.entities.ToolStatus;
+
+// Fila del listado de unidades: mismo JSON que antes ({id, toolGroup: {id, name}, status}), sin entidades
+public record ToolUnitSummaryDTO(
+        Long id,
+        ToolGroupRef toolGroup,
+        ToolStatus status
+) {
+    public ToolUnitSummaryDTO(Long id, ToolStatus status, Long toolGroupId, String toolGroupName) {
+        this(id, new ToolGroupRef(toolGroupId, toolGroupName), status);
+    }
+
+    public record ToolGroupRef(Long id, String name) {}
+}
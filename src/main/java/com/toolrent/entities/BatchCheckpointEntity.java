@@ -0,0 +1,42 @@
+package com.toolrent.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/* Avance de una partición de un proceso por lotes; se guarda junto con cada tramo
+   para retomar desde el último id confirmado si el proceso se corta */
+@Entity
+@Table(name = "batch_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchCheckpointEntity {
+    @Id
+    @Column(length = 64)
+    private String name; // proceso:partición
+
+    @Column(nullable = false)
+    private LocalDate runDate;
+
+    @Column(nullable = false)
+    private LocalDateTime asOf; // instante de cálculo, el mismo al retomar
+
+    @Column(nullable = false)
+    private Long lastId; // último id procesado (exclusivo para el siguiente tramo)
+
+    @Column(nullable = false)
+    private Long endId; // fin de la partición (inclusivo)
+
+    @Column(nullable = false)
+    private Long processed = 0L;
+
+    @Column(nullable = false)
+    private Boolean done = false;
+
+    private LocalDateTime updatedAt;
+}
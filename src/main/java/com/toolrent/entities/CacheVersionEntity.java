@@ -0,0 +1,21 @@
+package com.toolrent.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/* Sello de versión por caché en memoria; cada nodo lo consulta para saber si otro invalidó */
+@Entity
+@Table(name = "cache_versions")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheVersionEntity {
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(nullable = false)
+    private Long version;
+}
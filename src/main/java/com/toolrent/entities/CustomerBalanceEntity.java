@@ -0,0 +1,47 @@
+package com.toolrent.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/* Saldo de cada cliente (deudas de préstamos devueltos y préstamos activos); se actualiza
+   en la misma transacción que el préstamo (ver CustomerBalanceService) */
+@Entity
+@Table(name = "customer_balances", indexes = {
+        @Index(name = "idx_customer_balances_debt", columnList = "total_debt"),
+        @Index(name = "idx_customer_balances_due", columnList = "oldest_due_date")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerBalanceEntity {
+    @Id
+    private Long customerId;
+
+    @Column(nullable = false)
+    private Double unpaidFines = 0.0; // multas impagas de préstamos devueltos
+
+    @Column(nullable = false)
+    private Double unpaidDamage = 0.0; // daños impagos de préstamos devueltos
+
+    @Column(nullable = false)
+    private Double totalDebt = 0.0; // multas + daños
+
+    @Column(nullable = false)
+    private Long unpaidFineLoans = 0L;
+
+    @Column(nullable = false)
+    private Long unpaidDamageLoans = 0L;
+
+    @Column(nullable = false)
+    private Long activeLoans = 0L;
+
+    private LocalDateTime oldestDueDate; // vencimiento más antiguo sin devolver; vencido si es anterior a ahora
+
+    public CustomerBalanceEntity(Long customerId) {
+        this.customerId = customerId;
+    }
+}
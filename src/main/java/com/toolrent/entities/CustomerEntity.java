@@ -4,15 +4,23 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
-@Table(name = "customers")
+@Table(name = "customers", indexes = {
+        @Index(name = "idx_customers_auto_restricted", columnList = "restricted_by_system")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "customers")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class CustomerEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "customers_id")
+    @TableGenerator(name = "customers_id", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "customers", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -30,4 +38,7 @@ public class CustomerEntity {
     @Enumerated(EnumType.STRING)  // Almacena enum como string
     @Column(nullable = false)
     private CustomerStatus status = CustomerStatus.ACTIVE; //Default
+
+    @Column(nullable = false)
+    private Boolean restrictedBySystem = false; // RESTRICTED puesto por el barrido de vencidos (no a mano)
 }
\ No newline at end of file
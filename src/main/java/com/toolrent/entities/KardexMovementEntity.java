@@ -1,5 +1,6 @@
 package com.toolrent.entities;
 
+import com.toolrent.config.BlockId;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -8,13 +9,14 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "kardex_movements")
+@Table(name = "kardex_movements", indexes = @Index(name = "idx_kardex_date_id", columnList = "movement_date, id"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class KardexMovementEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Se inserta junto a cada préstamo y devolución: mismo motivo que en LoanEntity
+    @BlockId("kardex_movements")
     private Long id;
 
     @ManyToOne
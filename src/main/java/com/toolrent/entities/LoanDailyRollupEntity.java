@@ -0,0 +1,36 @@
+package com.toolrent.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/* Préstamos por grupo y día (fecha de préstamo) de días ya cerrados; se recalcula
+   desde loans al cerrar el día (ver LoanRollupService) */
+@Entity
+@Table(name = "loan_daily_rollups")
+@IdClass(LoanDailyRollupEntity.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanDailyRollupEntity {
+    @Id
+    private LocalDate rollupDate;
+
+    @Id
+    private Long toolGroupId;
+
+    @Column(nullable = false)
+    private Long loans = 0L;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private LocalDate rollupDate;
+        private Long toolGroupId;
+    }
+}
@@ -1,5 +1,6 @@
 package com.toolrent.entities;
 
+import com.toolrent.config.BlockId;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -8,13 +9,19 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "loans")
+@Table(name = "loans", indexes = {
+        @Index(name = "idx_loans_return_due", columnList = "return_date, due_date, id"),
+        @Index(name = "idx_loans_due_return", columnList = "due_date, return_date"),
+        @Index(name = "idx_loans_loan_date", columnList = "loan_date"),
+        @Index(name = "idx_loans_overdue", columnList = "overdue, return_date, due_date")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class LoanEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // No @TableGenerator: en el camino de préstamo, pedir el bloque por el pool principal lo agotaba
+    @BlockId("loans")
     private Long id;
 
     @ManyToOne
@@ -37,4 +44,8 @@ public class LoanEntity {
 
     private Double fineAmount = 0.0; // Multa por retraso
     private Double damageCharge = 0.0; // Cargo por daño
+    private Double accruedFine = 0.0; // Multa en curso de un activo vencido (proceso nocturno); 0 al devolver
+
+    @Column(nullable = false)
+    private Boolean overdue = false; // Marcado por el barrido de vencidos; vuelve a false al devolver
 }
\ No newline at end of file
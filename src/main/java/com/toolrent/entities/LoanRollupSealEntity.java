@@ -0,0 +1,24 @@
+package com.toolrent.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/* Día cerrado en loan_daily_rollups; se escribe junto con sus filas. Un día sin préstamos no deja
+   rollups, así que solo este registro distingue "cerrado en cero" de "cierre pendiente" */
+@Entity
+@Table(name = "loan_rollup_seals")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanRollupSealEntity {
+    @Id
+    private LocalDate rollupDate;
+
+    @Column(nullable = false)
+    private LocalDateTime sealedAt;
+}
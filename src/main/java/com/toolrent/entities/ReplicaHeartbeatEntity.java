@@ -0,0 +1,21 @@
+package com.toolrent.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/* Latido que se escribe en el primario; la antigüedad del que se lee en la réplica es su atraso */
+@Entity
+@Table(name = "replica_heartbeat")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplicaHeartbeatEntity {
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(name = "beat_millis", nullable = false)
+    private Long beatMillis;
+}
@@ -0,0 +1,26 @@
+package com.toolrent.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/* Concesión por tarea programada: solo el nodo dueño con la concesión vigente la ejecuta */
+@Entity
+@Table(name = "scheduler_leases")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SchedulerLeaseEntity {
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(length = 64)
+    private String owner; // nodo que la tiene; null si nunca se tomó
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -2,19 +2,25 @@ package com.toolrent.entities;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
 @Table(name = "tool_groups")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "tool_groups")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class ToolGroupEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "tool_groups_id")
+    @TableGenerator(name = "tool_groups_id", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "tool_groups", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -26,10 +32,11 @@ public class ToolGroupEntity {
     @Column(nullable = false)
     private Double replacementValue;
 
-    @OneToOne(cascade = CascadeType.ALL)
+    @OneToOne(cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @JoinColumn(name = "tariff_id", nullable = false)
     private TariffEntity tariff;
 
+    // Los listados no la recorren: GET /tools lee ToolGroupSummaryDTO y las unidades van por GET /tools/units
     @OneToMany(mappedBy = "toolGroup", cascade = CascadeType.ALL, orphanRemoval = true)
     @Builder.Default
     private List<ToolUnitEntity> units = new ArrayList<>();
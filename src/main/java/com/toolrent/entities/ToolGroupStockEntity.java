@@ -0,0 +1,49 @@
+package com.toolrent.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/* Contadores de unidades por estado de cada grupo, repartidos en franjas (stripe): el stock del grupo
+   es la suma de sus filas. Cada cambio de estado suma su delta en una franja al azar dentro de la misma
+   transacción, así dos préstamos del mismo grupo rara vez esperan por la misma fila (ver ToolStockService) */
+@Entity
+@Table(name = "tool_group_stock_stripes")
+@IdClass(ToolGroupStockEntity.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ToolGroupStockEntity {
+    @Id
+    private Long toolGroupId;
+
+    @Id
+    private Integer stripe;
+
+    @Column(nullable = false)
+    private Long available = 0L;
+
+    @Column(nullable = false)
+    private Long loaned = 0L;
+
+    @Column(nullable = false)
+    private Long inRepair = 0L;
+
+    @Column(nullable = false)
+    private Long retired = 0L;
+
+    // Sube con cada cambio de la fila; la suma de todas identifica el estado del inventario (ETag del catálogo)
+    @Column(nullable = false)
+    private Long revision = 0L;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long toolGroupId;
+        private Integer stripe;
+    }
+}
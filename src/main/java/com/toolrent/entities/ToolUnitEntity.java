@@ -10,14 +10,16 @@ import java.util.List;
 
 @ToString(exclude = "toolGroup")
 @Entity
-@Table(name = "tool_units")
+@Table(name = "tool_units", indexes = @Index(name = "idx_tool_units_group_status", columnList = "tool_group_id, status"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class ToolUnitEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "tool_units_id")
+    @TableGenerator(name = "tool_units_id", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "tool_units", allocationSize = 50)
     private Long id;
 
     @ManyToOne
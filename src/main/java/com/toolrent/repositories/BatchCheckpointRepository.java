@@ -0,0 +1,20 @@
+package com.toolrent.repositories;
+
+import com.toolrent.entities.BatchCheckpointEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface BatchCheckpointRepository extends JpaRepository<BatchCheckpointEntity, String> {
+
+    @Query("SELECT c FROM BatchCheckpointEntity c WHERE c.name LIKE CONCAT(:job, ':%') ORDER BY c.name")
+    List<BatchCheckpointEntity> findByJob(@Param("job") String job);
+
+    // Limpia el contexto: las particiones leídas antes del borrado no deben confundirse con las nuevas del mismo nombre
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM BatchCheckpointEntity c WHERE c.name LIKE CONCAT(:job, ':%')")
+    int deleteByJob(@Param("job") String job);
+}
@@ -0,0 +1,19 @@
+package com.toolrent.repositories;
+
+import com.toolrent.entities.CacheVersionEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface CacheVersionRepository extends JpaRepository<CacheVersionEntity, String> {
+
+    @Query("SELECT c.version FROM CacheVersionEntity c WHERE c.name = :name")
+    Optional<Long> findVersion(@Param("name") String name);
+
+    @Modifying
+    @Query("UPDATE CacheVersionEntity c SET c.version = c.version + 1 WHERE c.name = :name")
+    int increment(@Param("name") String name);
+}
@@ -0,0 +1,79 @@
+package com.toolrent.repositories;
+
+import com.toolrent.dto.CustomerBalanceDTO;
+import com.toolrent.dto.CustomerDebtDTO;
+import com.toolrent.entities.CustomerBalanceEntity;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface CustomerBalanceRepository extends JpaRepository<CustomerBalanceEntity, Long> {
+
+    // Suma los deltas sobre el saldo del cliente; retorna 0 si el cliente aún no tiene fila
+    @Modifying
+    @Query("UPDATE CustomerBalanceEntity b SET " +
+            "b.unpaidFines = b.unpaidFines + :fines, " +
+            "b.unpaidDamage = b.unpaidDamage + :damage, " +
+            "b.totalDebt = b.totalDebt + :fines + :damage, " +
+            "b.unpaidFineLoans = b.unpaidFineLoans + :fineLoans, " +
+            "b.unpaidDamageLoans = b.unpaidDamageLoans + :damageLoans, " +
+            "b.activeLoans = b.activeLoans + :activeLoans " +
+            "WHERE b.customerId = :customerId")
+    int addDeltas(@Param("customerId") Long customerId,
+                  @Param("fines") double fines,
+                  @Param("damage") double damage,
+                  @Param("fineLoans") long fineLoans,
+                  @Param("damageLoans") long damageLoans,
+                  @Param("activeLoans") long activeLoans);
+
+    // Préstamos nuevos: suman activos y pueden adelantar el vencimiento más antiguo.
+    // Retorna 0 si el cliente aún no tiene fila o si con ellos pasaría el máximo de activos.
+    @Modifying
+    @Query("UPDATE CustomerBalanceEntity b SET " +
+            "b.activeLoans = b.activeLoans + :loans, " +
+            "b.oldestDueDate = CASE WHEN b.oldestDueDate IS NULL OR b.oldestDueDate > :dueDate " +
+            "THEN :dueDate ELSE b.oldestDueDate END " +
+            "WHERE b.customerId = :customerId AND b.activeLoans + :loans <= :maxActive")
+    int addActiveLoans(@Param("customerId") Long customerId,
+                       @Param("loans") long loans,
+                       @Param("maxActive") long maxActive,
+                       @Param("dueDate") LocalDateTime dueDate);
+
+    @Modifying
+    @Query("UPDATE CustomerBalanceEntity b SET b.oldestDueDate = :dueDate WHERE b.customerId = :customerId")
+    int setOldestDueDate(@Param("customerId") Long customerId,
+                         @Param("dueDate") LocalDateTime dueDate);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM CustomerBalanceEntity b WHERE b.customerId = :customerId")
+    Optional<CustomerBalanceEntity> findForUpdate(@Param("customerId") Long customerId);
+
+    @Query("SELECT new com.toolrent.dto.CustomerBalanceDTO(b.customerId, b.unpaidFines, b.unpaidDamage, " +
+            "b.unpaidFineLoans, b.unpaidDamageLoans, b.activeLoans, b.oldestDueDate) " +
+            "FROM CustomerBalanceEntity b WHERE b.customerId BETWEEN :fromId AND :toId")
+    List<CustomerBalanceDTO> findBalances(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    // Clientes con deudas o atrasos, desde los saldos (índices por deuda y vencimiento)
+    @Query("""
+        SELECT new com.toolrent.dto.CustomerDebtDTO(
+               c.id,
+               c.name,
+               c.rut,
+               c.email,
+               b.totalDebt,
+               CASE WHEN b.oldestDueDate < :now THEN TRUE ELSE FALSE END,
+               CASE WHEN b.oldestDueDate < :now THEN b.oldestDueDate ELSE NULL END)
+        FROM CustomerBalanceEntity b
+        JOIN CustomerEntity c ON c.id = b.customerId
+        WHERE b.totalDebt > 0 OR b.oldestDueDate < :now
+        ORDER BY b.totalDebt DESC
+    """)
+    List<CustomerDebtDTO> findCustomersWithDebt(@Param("now") LocalDateTime now);
+}
@@ -1,19 +1,27 @@
 package com.toolrent.repositories;
 
-import com.toolrent.dto.CustomerDebtDTO;
 import com.toolrent.entities.CustomerEntity;
 import com.toolrent.entities.CustomerStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CustomerRepository extends JpaRepository<CustomerEntity, Long> {
+    // Caché de consultas: se invalida sola al escribir en customers (en este nodo)
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "customers_by_email")})
     Optional<CustomerEntity> findByEmail(String mail);
 
     // Clientes con atrasos
@@ -21,31 +29,56 @@ public interface CustomerRepository extends JpaRepository<CustomerEntity, Long>
             "WHERE l.returnDate IS NULL AND l.dueDate < :now")
     List<CustomerEntity> findCustomersWithOverdueLoans(@Param("now") LocalDateTime now);
 
-    // Clientes con deudas
-    @Query("""
-    SELECT new com.toolrent.dto.CustomerDebtDTO(
-           c.id,
-           c.name,
-           c.rut,
-           c.email,
-           CAST(COALESCE(SUM(l.fineAmount + l.damageCharge), 0) AS double),
-           CASE WHEN COUNT(l2) > 0 THEN TRUE ELSE FALSE END,
-           MIN(l2.dueDate)
-    )
-    FROM CustomerEntity c
-    LEFT JOIN LoanEntity l ON l.customer.id = c.id
-       AND l.returnDate IS NOT NULL
-       AND (l.fineAmount > 0 OR l.damageCharge > 0)
-    LEFT JOIN LoanEntity l2 ON l2.customer.id = c.id
-       AND l2.returnDate IS NULL
-       AND l2.dueDate < :now
-    GROUP BY c.id, c.name, c.rut, c.email
-    HAVING (COALESCE(SUM(l.fineAmount + l.damageCharge), 0) > 0
-            OR COUNT(l2) > 0)
-    ORDER BY COALESCE(SUM(l.fineAmount + l.damageCharge), 0) DESC
-""")
-    List<CustomerDebtDTO> findCustomersWithDebt(@Param("now") LocalDateTime now);
-
     // Encontrar por estado
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "customers_by_status")})
     List<CustomerEntity> findByStatus(CustomerStatus status);
+
+    // Ids por tramos ordenados (reconciliación de saldos)
+    @Query("SELECT c.id FROM CustomerEntity c WHERE c.id > :lastId ORDER BY c.id")
+    List<Long> findIdsAfter(@Param("lastId") Long lastId, Pageable pageable);
+
+    // Página por cursor ordenada por id
+    @Query("SELECT c FROM CustomerEntity c WHERE c.id > :lastId ORDER BY c.id")
+    List<CustomerEntity> findPageAfter(@Param("lastId") Long lastId, Pageable pageable);
+
+    /* Barrido de vencidos: restricción automática y su levantamiento */
+
+    // Solo clientes activos: una restricción manual no se marca como automática
+    @Modifying
+    @Query("UPDATE CustomerEntity c SET c.status = com.toolrent.entities.CustomerStatus.RESTRICTED, " +
+            "c.restrictedBySystem = true " +
+            "WHERE c.id IN :ids AND c.status = com.toolrent.entities.CustomerStatus.ACTIVE")
+    int restrictAutomatically(@Param("ids") Collection<Long> ids);
+
+    // Restringidos por el barrido que ya no tienen vencidos ni deudas impagas, por cursor de id
+    @Query("""
+        SELECT c.id FROM CustomerEntity c, CustomerBalanceEntity b
+        WHERE b.customerId = c.id
+          AND c.restrictedBySystem = true
+          AND c.id > :lastId
+          AND b.unpaidFineLoans = 0
+          AND b.unpaidDamageLoans = 0
+          AND (b.oldestDueDate IS NULL OR b.oldestDueDate >= :now)
+        ORDER BY c.id
+    """)
+    List<Long> findLiftableIds(@Param("now") LocalDateTime now,
+                               @Param("lastId") Long lastId,
+                               Pageable pageable);
+
+    // Repite la condición del saldo: un préstamo pudo vencer o cobrarse entre la lectura y el UPDATE
+    @Modifying
+    @Query("""
+        UPDATE CustomerEntity c
+        SET c.status = com.toolrent.entities.CustomerStatus.ACTIVE, c.restrictedBySystem = false
+        WHERE c.id IN :ids
+          AND c.restrictedBySystem = true
+          AND EXISTS (SELECT b.customerId FROM CustomerBalanceEntity b
+                      WHERE b.customerId = c.id
+                        AND b.unpaidFineLoans = 0
+                        AND b.unpaidDamageLoans = 0
+                        AND (b.oldestDueDate IS NULL OR b.oldestDueDate >= :now))
+    """)
+    int liftAutomaticRestriction(@Param("ids") Collection<Long> ids,
+                                 @Param("now") LocalDateTime now);
 }
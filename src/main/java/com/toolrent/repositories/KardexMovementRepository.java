@@ -1,13 +1,19 @@
 package com.toolrent.repositories;
 
+import com.toolrent.dto.KardexExportRowDTO;
 import com.toolrent.entities.KardexMovementEntity;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface KardexMovementRepository extends JpaRepository<KardexMovementEntity, Long> {
@@ -36,4 +42,48 @@ public interface KardexMovementRepository extends JpaRepository<KardexMovementEn
             "ORDER BY km.movementDate DESC")
     List<KardexMovementEntity> findByDateRange(@Param("from") LocalDateTime from,
                                                @Param("to") LocalDateTime to);
+
+    /* Páginas por cursor: orden (movementDate DESC, id DESC), parten después de (lastDate, lastId) */
+    @Query("SELECT km FROM KardexMovementEntity km " +
+            "JOIN FETCH km.toolUnit tu " +
+            "JOIN FETCH tu.toolGroup tg " +
+            "JOIN FETCH km.customer c " +
+            "WHERE km.movementDate < :lastDate OR (km.movementDate = :lastDate AND km.id < :lastId) " +
+            "ORDER BY km.movementDate DESC, km.id DESC")
+    List<KardexMovementEntity> findPageWithDetails(@Param("lastDate") LocalDateTime lastDate,
+                                                   @Param("lastId") Long lastId,
+                                                   Pageable pageable);
+
+    @Query("SELECT km FROM KardexMovementEntity km " +
+            "JOIN FETCH km.toolUnit tu " +
+            "JOIN FETCH tu.toolGroup tg " +
+            "JOIN FETCH km.customer c " +
+            "WHERE km.movementDate BETWEEN :from AND :to " +
+            "AND (km.movementDate < :lastDate OR (km.movementDate = :lastDate AND km.id < :lastId)) " +
+            "ORDER BY km.movementDate DESC, km.id DESC")
+    List<KardexMovementEntity> findPageByDateRange(@Param("from") LocalDateTime from,
+                                                   @Param("to") LocalDateTime to,
+                                                   @Param("lastDate") LocalDateTime lastDate,
+                                                   @Param("lastId") Long lastId,
+                                                   Pageable pageable);
+
+    /* ---------- Exportación ---------- */
+
+    // Proyección plana recorrida con cursor de solo avance: no carga entidades en el contexto.
+    // Fetch size 1000: con useCursorFetch (URL de MySQL) el driver trae las filas de a 1000 desde un
+    // cursor del servidor; sin eso traería el resultado completo a memoria antes de la primera fila
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new com.toolrent.dto.KardexExportRowDTO(" +
+            "km.id, km.movementDate, km.movementType, tu.id, tg.name, c.id, c.name, km.details) " +
+            "FROM KardexMovementEntity km " +
+            "JOIN km.toolUnit tu " +
+            "JOIN tu.toolGroup tg " +
+            "JOIN km.customer c " +
+            "WHERE km.movementDate >= :from AND km.movementDate < :to " +
+            "ORDER BY km.movementDate, km.id")
+    Stream<KardexExportRowDTO> streamForExport(@Param("from") LocalDateTime from,
+                                               @Param("to") LocalDateTime to);
 }
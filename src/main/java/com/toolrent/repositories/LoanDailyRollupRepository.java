@@ -0,0 +1,26 @@
+package com.toolrent.repositories;
+
+import com.toolrent.dto.ToolLoanCountDTO;
+import com.toolrent.entities.LoanDailyRollupEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface LoanDailyRollupRepository extends JpaRepository<LoanDailyRollupEntity, LoanDailyRollupEntity.Key> {
+
+    @Modifying
+    @Query("DELETE FROM LoanDailyRollupEntity r WHERE r.rollupDate = :rollupDate")
+    int deleteByRollupDate(@Param("rollupDate") LocalDate rollupDate);
+
+    // Total por grupo en días completos [fromDate, toDate]
+    @Query("SELECT new com.toolrent.dto.ToolLoanCountDTO(g.id, g.name, SUM(r.loans)) " +
+            "FROM LoanDailyRollupEntity r JOIN ToolGroupEntity g ON g.id = r.toolGroupId " +
+            "WHERE r.rollupDate BETWEEN :fromDate AND :toDate " +
+            "GROUP BY g.id, g.name")
+    List<ToolLoanCountDTO> sumByToolGroup(@Param("fromDate") LocalDate fromDate,
+                                          @Param("toDate") LocalDate toDate);
+}
@@ -1,16 +1,29 @@
 package com.toolrent.repositories;
 
+import com.toolrent.dto.AccruingFinesDTO;
+import com.toolrent.dto.CustomerBalanceDTO;
+import com.toolrent.dto.CustomerStandingDTO;
+import com.toolrent.dto.LoanAccrualRowDTO;
 import com.toolrent.dto.LoanActiveDTO;
+import com.toolrent.dto.LoanExportRowDTO;
+import com.toolrent.dto.LoanIdRangeDTO;
+import com.toolrent.dto.ToolLoanCountDTO;
 import com.toolrent.entities.LoanEntity;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface LoanRepository extends JpaRepository<LoanEntity, Long> {
@@ -37,20 +50,31 @@ public interface LoanRepository extends JpaRepository<LoanEntity, Long> {
     List<LoanActiveDTO> findActiveLoansInRange(@Param("from") LocalDateTime from,
                                                @Param("to") LocalDateTime to);
 
-    // Ranking de grupos más prestados en un rango de fechas (nativo)
-    @Query(value = """
-        SELECT tg.id   AS toolGroupId,
-               tg.name AS toolGroupName,
-               COUNT(l.id) AS total
-        FROM loans l
-        JOIN tool_units tu ON l.tool_unit_id = tu.id
-        JOIN tool_groups tg ON tu.tool_group_id = tg.id
-        WHERE l.loan_date BETWEEN :from AND :to
+    /* Ranking de grupos: conteo en vivo para los tramos de día que no cubren los rollups */
+
+    // [from, to] incluyendo el extremo final, como el ranking original
+    @Query("""
+        SELECT new com.toolrent.dto.ToolLoanCountDTO(tg.id, tg.name, COUNT(l.id))
+        FROM LoanEntity l
+        JOIN l.toolUnit tu
+        JOIN tu.toolGroup tg
+        WHERE l.loanDate >= :from AND l.loanDate <= :to
+        GROUP BY tg.id, tg.name
+    """)
+    List<ToolLoanCountDTO> countByToolGroupBetween(@Param("from") LocalDateTime from,
+                                                   @Param("to") LocalDateTime to);
+
+    // [from, before) sin el extremo final: un día completo o el tramo inicial hasta la medianoche
+    @Query("""
+        SELECT new com.toolrent.dto.ToolLoanCountDTO(tg.id, tg.name, COUNT(l.id))
+        FROM LoanEntity l
+        JOIN l.toolUnit tu
+        JOIN tu.toolGroup tg
+        WHERE l.loanDate >= :from AND l.loanDate < :before
         GROUP BY tg.id, tg.name
-        ORDER BY total DESC
-    """, nativeQuery = true)
-    List<Map<String, Object>> countLoansByToolGroupInRange(@Param("from") LocalDateTime from,
-                                                           @Param("to") LocalDateTime to);
+    """)
+    List<ToolLoanCountDTO> countByToolGroupBefore(@Param("from") LocalDateTime from,
+                                                  @Param("before") LocalDateTime before);
 
     // Préstamos devueltos CON deudas (multa o daño)
     @Query("""
@@ -105,15 +129,216 @@ public interface LoanRepository extends JpaRepository<LoanEntity, Long> {
 """)
     Optional<LoanEntity> findTopByToolUnitIdAndReturnDateIsNotNullOrderByReturnDateDesc(@Param("unitId") Long unitId);
 
+    // Préstamos con unidad, grupo y cliente en una sola consulta (devolución masiva); la tarifa sale de TariffCache
+    @Query("""
+        SELECT l
+        FROM LoanEntity l
+        JOIN FETCH l.toolUnit tu
+        JOIN FETCH tu.toolGroup tg
+        JOIN FETCH l.customer
+        WHERE l.id IN :ids
+    """)
+    List<LoanEntity> findAllWithDetailsByIdIn(@Param("ids") Collection<Long> ids);
+
     /* ---------- Métodos de validación de negocio ---------- */
 
-    boolean existsByCustomerIdAndReturnDateIsNullAndDueDateBefore(Long customerId, LocalDateTime now);
+    // Situación del cliente para las reglas de préstamo, en un solo viaje a la BD
+    @Query("""
+        SELECT new com.toolrent.dto.CustomerStandingDTO(
+               CAST(COALESCE(SUM(CASE WHEN l.returnDate IS NULL AND l.dueDate < :now THEN 1 ELSE 0 END), 0) AS long),
+               CAST(COALESCE(SUM(CASE WHEN l.returnDate IS NOT NULL AND l.fineAmount > 0 THEN 1 ELSE 0 END), 0) AS long),
+               CAST(COALESCE(SUM(CASE WHEN l.returnDate IS NOT NULL AND l.damageCharge > 0 THEN 1 ELSE 0 END), 0) AS long),
+               CAST(COALESCE(SUM(CASE WHEN l.returnDate IS NULL THEN 1 ELSE 0 END), 0) AS long),
+               CAST(COALESCE(SUM(CASE WHEN l.returnDate IS NULL AND tu.toolGroup.id IN :toolGroupIds
+                                      THEN 1 ELSE 0 END), 0) AS long))
+        FROM LoanEntity l
+        JOIN l.toolUnit tu
+        WHERE l.customer.id = :customerId
+    """)
+    CustomerStandingDTO findCustomerStanding(@Param("customerId") Long customerId,
+                                             @Param("toolGroupIds") Collection<Long> toolGroupIds,
+                                             @Param("now") LocalDateTime now);
+
+    /* ---------- Saldos de clientes ---------- */
+
+    // Saldos recalculados desde loans de un tramo de clientes, los que tienen préstamos (reconciliación)
+    @Query("""
+        SELECT new com.toolrent.dto.CustomerBalanceDTO(
+               l.customer.id,
+               CAST(COALESCE(SUM(CASE WHEN l.returnDate IS NOT NULL THEN COALESCE(l.fineAmount, 0.0) ELSE 0.0 END), 0.0) AS double),
+               CAST(COALESCE(SUM(CASE WHEN l.returnDate IS NOT NULL THEN COALESCE(l.damageCharge, 0.0) ELSE 0.0 END), 0.0) AS double),
+               CAST(COALESCE(SUM(CASE WHEN l.returnDate IS NOT NULL AND l.fineAmount > 0 THEN 1 ELSE 0 END), 0) AS long),
+               CAST(COALESCE(SUM(CASE WHEN l.returnDate IS NOT NULL AND l.damageCharge > 0 THEN 1 ELSE 0 END), 0) AS long),
+               CAST(COALESCE(SUM(CASE WHEN l.returnDate IS NULL THEN 1 ELSE 0 END), 0) AS long),
+               MIN(CASE WHEN l.returnDate IS NULL THEN l.dueDate END))
+        FROM LoanEntity l
+        WHERE l.customer.id BETWEEN :fromId AND :toId
+        GROUP BY l.customer.id
+    """)
+    List<CustomerBalanceDTO> computeBalances(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    // Saldo de un cliente recalculado desde loans; vacío si no tiene préstamos
+    @Query("""
+        SELECT new com.toolrent.dto.CustomerBalanceDTO(
+               l.customer.id,
+               CAST(COALESCE(SUM(CASE WHEN l.returnDate IS NOT NULL THEN COALESCE(l.fineAmount, 0.0) ELSE 0.0 END), 0.0) AS double),
+               CAST(COALESCE(SUM(CASE WHEN l.returnDate IS NOT NULL THEN COALESCE(l.damageCharge, 0.0) ELSE 0.0 END), 0.0) AS double),
+               CAST(COALESCE(SUM(CASE WHEN l.returnDate IS NOT NULL AND l.fineAmount > 0 THEN 1 ELSE 0 END), 0) AS long),
+               CAST(COALESCE(SUM(CASE WHEN l.returnDate IS NOT NULL AND l.damageCharge > 0 THEN 1 ELSE 0 END), 0) AS long),
+               CAST(COALESCE(SUM(CASE WHEN l.returnDate IS NULL THEN 1 ELSE 0 END), 0) AS long),
+               MIN(CASE WHEN l.returnDate IS NULL THEN l.dueDate END))
+        FROM LoanEntity l
+        WHERE l.customer.id = :customerId
+        GROUP BY l.customer.id
+    """)
+    Optional<CustomerBalanceDTO> computeBalance(@Param("customerId") Long customerId);
+
+    // null si no hay préstamos; punto de partida del primer cierre de rollups
+    @Query("SELECT MIN(l.loanDate) FROM LoanEntity l")
+    LocalDateTime findFirstLoanDate();
+
+    @Query("SELECT MIN(l.dueDate) FROM LoanEntity l WHERE l.customer.id = :customerId AND l.returnDate IS NULL")
+    LocalDateTime findOldestActiveDueDate(@Param("customerId") Long customerId);
+
+    // Préstamos activos del cliente en los grupos indicados (regla de misma herramienta)
+    @Query("""
+        SELECT COUNT(l) FROM LoanEntity l
+        WHERE l.customer.id = :customerId
+          AND l.returnDate IS NULL
+          AND l.toolUnit.toolGroup.id IN :toolGroupIds
+    """)
+    long countActiveInToolGroups(@Param("customerId") Long customerId,
+                                 @Param("toolGroupIds") Collection<Long> toolGroupIds);
+
+    /* ---------- Barrido de vencidos (índice idx_loans_overdue) ---------- */
+
+    // Activos que vencieron y aún no están marcados, los más antiguos primero
+    @Query("""
+        SELECT l.id FROM LoanEntity l
+        WHERE l.overdue = false AND l.returnDate IS NULL AND l.dueDate < :now
+        ORDER BY l.dueDate
+    """)
+    List<Long> findNewlyOverdueIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE LoanEntity l SET l.overdue = true WHERE l.id IN :ids AND l.returnDate IS NULL")
+    int markOverdue(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT DISTINCT l.customer.id FROM LoanEntity l WHERE l.id IN :ids")
+    List<Long> findCustomerIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Próximos vencimientos de activos sin marcar, para la cola del barrido
+    @Query("""
+        SELECT l.dueDate FROM LoanEntity l
+        WHERE l.overdue = false AND l.returnDate IS NULL AND l.dueDate >= :now
+        ORDER BY l.dueDate
+    """)
+    List<LocalDateTime> findNextDueDates(@Param("now") LocalDateTime now, Pageable pageable);
+
+    /* ---------- Multas en curso (proceso nocturno) ---------- */
+
+    @Query("SELECT new com.toolrent.dto.LoanIdRangeDTO(MIN(l.id), MAX(l.id)) FROM LoanEntity l WHERE l.returnDate IS NULL")
+    LoanIdRangeDTO findActiveIdRange();
+
+    // Tramo de una partición (lastId, endId] recorrido por clave primaria
+    @Query("""
+        SELECT new com.toolrent.dto.LoanAccrualRowDTO(l.id, l.dueDate, l.toolUnit.toolGroup.id)
+        FROM LoanEntity l
+        WHERE l.id > :lastId AND l.id <= :endId
+          AND l.returnDate IS NULL
+          AND l.dueDate < :asOf
+        ORDER BY l.id
+    """)
+    List<LoanAccrualRowDTO> findOverdueForAccrual(@Param("asOf") LocalDateTime asOf,
+                                                  @Param("lastId") Long lastId,
+                                                  @Param("endId") Long endId,
+                                                  Pageable pageable);
+
+    // Un préstamo devuelto entre la lectura y el UPDATE ya no acumula
+    @Modifying
+    @Query("UPDATE LoanEntity l SET l.accruedFine = :fine WHERE l.id IN :ids AND l.returnDate IS NULL")
+    int setAccruedFine(@Param("ids") Collection<Long> ids, @Param("fine") Double fine);
+
+    @Query("""
+        SELECT new com.toolrent.dto.AccruingFinesDTO(COUNT(l), COALESCE(SUM(l.accruedFine), 0.0))
+        FROM LoanEntity l
+        WHERE l.returnDate IS NULL AND l.accruedFine > 0
+    """)
+    AccruingFinesDTO sumAccruingFines();
+
+    /* ---------- Páginas por cursor ---------- */
 
-    boolean existsByCustomerIdAndFineAmountGreaterThanAndReturnDateIsNotNull(Long customerId, double amount);
+    // Activos: orden (dueDate ASC, id ASC), parten después de (lastDate, lastId)
+    @Query("""
+        SELECT new com.toolrent.dto.LoanActiveDTO(
+               l.id,
+               c.name,
+               tg.name,
+               l.loanDate,
+               l.dueDate,
+               l.returnDate,
+               l.fineAmount,
+               l.damageCharge)
+        FROM LoanEntity l
+        JOIN l.customer c
+        JOIN l.toolUnit tu
+        JOIN tu.toolGroup tg
+        WHERE l.returnDate IS NULL
+          AND l.loanDate BETWEEN :from AND :to
+          AND (l.dueDate > :lastDate OR (l.dueDate = :lastDate AND l.id > :lastId))
+        ORDER BY l.dueDate ASC, l.id ASC
+    """)
+    List<LoanActiveDTO> findActiveLoansPage(@Param("from") LocalDateTime from,
+                                            @Param("to") LocalDateTime to,
+                                            @Param("lastDate") LocalDateTime lastDate,
+                                            @Param("lastId") Long lastId,
+                                            Pageable pageable);
 
-    boolean existsByCustomerIdAndDamageChargeGreaterThanAndReturnDateIsNotNull(Long customerId, double amount);
+    // Devueltos con deudas: orden (returnDate DESC, id DESC)
+    @Query("""
+        SELECT new com.toolrent.dto.LoanActiveDTO(
+               l.id,
+               c.name,
+               tg.name,
+               l.loanDate,
+               l.dueDate,
+               l.returnDate,
+               l.fineAmount,
+               l.damageCharge)
+        FROM LoanEntity l
+        JOIN l.customer c
+        JOIN l.toolUnit tu
+        JOIN tu.toolGroup tg
+        WHERE l.returnDate IS NOT NULL
+          AND (l.fineAmount > 0 OR l.damageCharge > 0)
+          AND (l.returnDate < :lastDate OR (l.returnDate = :lastDate AND l.id < :lastId))
+        ORDER BY l.returnDate DESC, l.id DESC
+    """)
+    List<LoanActiveDTO> findReturnedWithDebtsPage(@Param("lastDate") LocalDateTime lastDate,
+                                                  @Param("lastId") Long lastId,
+                                                  Pageable pageable);
 
-    long countByCustomerIdAndReturnDateIsNull(Long customerId);
+    /* ---------- Exportación ---------- */
 
-    boolean existsByCustomerIdAndToolUnitToolGroupIdAndReturnDateIsNull(Long customerId, Long toolGroupId);
-}
\ No newline at end of file
+    // Historial de préstamos por fecha de préstamo, recorrido con cursor de solo avance.
+    // Fetch size 1000: con useCursorFetch (URL de MySQL) el driver trae las filas de a 1000 desde un
+    // cursor del servidor; sin eso traería el resultado completo a memoria antes de la primera fila
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+        SELECT new com.toolrent.dto.LoanExportRowDTO(
+               l.id, c.id, c.name, tu.id, tg.name,
+               l.loanDate, l.dueDate, l.returnDate,
+               l.totalCost, l.fineAmount, l.damageCharge)
+        FROM LoanEntity l
+        JOIN l.customer c
+        JOIN l.toolUnit tu
+        JOIN tu.toolGroup tg
+        WHERE l.loanDate >= :from AND l.loanDate < :to
+        ORDER BY l.loanDate, l.id
+    """)
+    Stream<LoanExportRowDTO> streamForExport(@Param("from") LocalDateTime from,
+                                             @Param("to") LocalDateTime to);
+}
@@ -0,0 +1,21 @@
+package com.toolrent.repositories;
+
+import com.toolrent.entities.LoanRollupSealEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface LoanRollupSealRepository extends JpaRepository<LoanRollupSealEntity, LocalDate> {
+
+    // null si nunca se cerró un día
+    @Query("SELECT MAX(s.rollupDate) FROM LoanRollupSealEntity s")
+    LocalDate findLastSealed();
+
+    @Query("SELECT s.rollupDate FROM LoanRollupSealEntity s " +
+            "WHERE s.rollupDate BETWEEN :fromDate AND :toDate ORDER BY s.rollupDate")
+    List<LocalDate> findSealedBetween(@Param("fromDate") LocalDate fromDate,
+                                      @Param("toDate") LocalDate toDate);
+}
@@ -0,0 +1,27 @@
+package com.toolrent.repositories;
+
+import com.toolrent.entities.SchedulerLeaseEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface SchedulerLeaseRepository extends JpaRepository<SchedulerLeaseEntity, String> {
+
+    // Toma o renueva la concesión si es propia o ya venció; retorna 1 si quedó para owner
+    @Modifying
+    @Query("UPDATE SchedulerLeaseEntity l SET l.owner = :owner, l.expiresAt = :until " +
+            "WHERE l.name = :name AND (l.owner = :owner OR l.owner IS NULL OR l.expiresAt < :now)")
+    int tryAcquire(@Param("name") String name,
+                   @Param("owner") String owner,
+                   @Param("now") LocalDateTime now,
+                   @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Query("UPDATE SchedulerLeaseEntity l SET l.expiresAt = :now WHERE l.name = :name AND l.owner = :owner")
+    int release(@Param("name") String name,
+                @Param("owner") String owner,
+                @Param("now") LocalDateTime now);
+}
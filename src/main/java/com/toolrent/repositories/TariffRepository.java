@@ -1,9 +1,22 @@
 package com.toolrent.repositories;
 
+import com.toolrent.dto.ToolGroupFineRateDTO;
 import com.toolrent.entities.TariffEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface TariffRepository extends JpaRepository<TariffEntity, Long> {
+
+    @Query("SELECT g.tariff FROM ToolGroupEntity g WHERE g.id = :toolGroupId")
+    Optional<TariffEntity> findByToolGroupId(@Param("toolGroupId") Long toolGroupId);
+
+    // Multa diaria de todos los grupos en una sola lectura
+    @Query("SELECT new com.toolrent.dto.ToolGroupFineRateDTO(g.id, t.dailyFineRate) FROM ToolGroupEntity g JOIN g.tariff t")
+    List<ToolGroupFineRateDTO> findAllFineRates();
 }
@@ -1,8 +1,47 @@
 package com.toolrent.repositories;
 
+import com.toolrent.dto.ToolGroupAvailabilityDTO;
+import com.toolrent.dto.ToolGroupSummaryDTO;
 import com.toolrent.entities.ToolGroupEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
 
 public interface ToolGroupRepository extends JpaRepository<ToolGroupEntity, Long> {
-}
 
+    @Query("SELECT g.id FROM ToolGroupEntity g ORDER BY g.id")
+    List<Long> findAllIds();
+
+    // Grupos con stock disponible: franjas de tool_group_stock_stripes sumadas por grupo, sin cargar unidades
+    @Query("""
+        SELECT new com.toolrent.dto.ToolGroupAvailabilityDTO(
+               g.id, g.name, g.category, g.replacementValue,
+               t.dailyRentalRate, t.dailyFineRate, SUM(s.available))
+        FROM ToolGroupEntity g
+        JOIN g.tariff t
+        JOIN ToolGroupStockEntity s ON s.toolGroupId = g.id
+        GROUP BY g.id, g.name, g.category, g.replacementValue, t.dailyRentalRate, t.dailyFineRate
+        HAVING SUM(s.available) > 0
+        ORDER BY g.name, g.id
+    """)
+    List<ToolGroupAvailabilityDTO> findWithAvailableUnits();
+
+    // Página por cursor ordenada por id: grupo, tarifa y contadores de stock en una consulta, sin unidades
+    @Query("""
+        SELECT new com.toolrent.dto.ToolGroupSummaryDTO(
+               g.id, g.name, g.category, g.replacementValue,
+               t.dailyRentalRate, t.dailyFineRate,
+               COALESCE(SUM(s.available), 0L), COALESCE(SUM(s.loaned), 0L),
+               COALESCE(SUM(s.inRepair), 0L), COALESCE(SUM(s.retired), 0L))
+        FROM ToolGroupEntity g
+        JOIN g.tariff t
+        LEFT JOIN ToolGroupStockEntity s ON s.toolGroupId = g.id
+        WHERE g.id > :lastId
+        GROUP BY g.id, g.name, g.category, g.replacementValue, t.dailyRentalRate, t.dailyFineRate
+        ORDER BY g.id
+    """)
+    List<ToolGroupSummaryDTO> findSummaryPageAfter(@Param("lastId") Long lastId, Pageable pageable);
+}
@@ -0,0 +1,64 @@
+package com.toolrent.repositories;
+
+import com.toolrent.dto.CatalogVersionDTO;
+import com.toolrent.dto.ToolGroupStockDTO;
+import com.toolrent.entities.ToolGroupStockEntity;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface ToolGroupStockRepository extends JpaRepository<ToolGroupStockEntity, ToolGroupStockEntity.Key> {
+
+    // Suma los deltas sobre una franja del grupo; retorna 0 si esa franja aún no tiene fila
+    @Modifying
+    @Query("UPDATE ToolGroupStockEntity s SET " +
+            "s.available = s.available + :available, " +
+            "s.loaned = s.loaned + :loaned, " +
+            "s.inRepair = s.inRepair + :inRepair, " +
+            "s.retired = s.retired + :retired, " +
+            "s.revision = s.revision + 1 " +
+            "WHERE s.toolGroupId = :toolGroupId AND s.stripe = :stripe")
+    int addDeltas(@Param("toolGroupId") Long toolGroupId,
+                  @Param("stripe") int stripe,
+                  @Param("available") long available,
+                  @Param("loaned") long loaned,
+                  @Param("inRepair") long inRepair,
+                  @Param("retired") long retired);
+
+    // Franja en cero; falla por clave duplicada si ya existe (nunca pisa contadores, a diferencia de save)
+    @Modifying
+    @Query(value = "INSERT INTO tool_group_stock_stripes " +
+            "(tool_group_id, stripe, available, loaned, in_repair, retired, revision) " +
+            "VALUES (:toolGroupId, :stripe, 0, 0, 0, 0, 0)", nativeQuery = true)
+    int insertEmptyStripe(@Param("toolGroupId") Long toolGroupId, @Param("stripe") int stripe);
+
+    @Query("SELECT s.stripe FROM ToolGroupStockEntity s WHERE s.toolGroupId = :toolGroupId")
+    List<Integer> findStripes(@Param("toolGroupId") Long toolGroupId);
+
+    // Todas las franjas del grupo, siempre en el mismo orden para no cruzar bloqueos
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM ToolGroupStockEntity s WHERE s.toolGroupId = :toolGroupId ORDER BY s.stripe")
+    List<ToolGroupStockEntity> findForUpdate(@Param("toolGroupId") Long toolGroupId);
+
+    // null si el grupo no tiene filas
+    @Query("SELECT SUM(s.available) FROM ToolGroupStockEntity s WHERE s.toolGroupId = :toolGroupId")
+    Long sumAvailable(@Param("toolGroupId") Long toolGroupId);
+
+    @Query("SELECT new com.toolrent.dto.ToolGroupStockDTO(s.toolGroupId, SUM(s.available), SUM(s.loaned), " +
+            "SUM(s.inRepair), SUM(s.retired)) " +
+            "FROM ToolGroupStockEntity s GROUP BY s.toolGroupId ORDER BY s.toolGroupId")
+    List<ToolGroupStockDTO> findAllStock();
+
+    // Estado del catálogo en una sola consulta: grupos, cambios de stock y sellos de tarifas y datos de referencia
+    @Query("SELECT new com.toolrent.dto.CatalogVersionDTO(COUNT(DISTINCT s.toolGroupId), COALESCE(SUM(s.revision), 0L), " +
+            "(SELECT COALESCE(MAX(c.version), 0L) FROM CacheVersionEntity c WHERE c.name = :tariffs), " +
+            "(SELECT COALESCE(MAX(c.version), 0L) FROM CacheVersionEntity c WHERE c.name = :reference)) " +
+            "FROM ToolGroupStockEntity s")
+    CatalogVersionDTO findCatalogVersion(@Param("tariffs") String tariffsKey,
+                                         @Param("reference") String referenceKey);
+}
@@ -1,9 +1,14 @@
 package com.toolrent.repositories;
 
+import com.toolrent.dto.ToolStatusCountDTO;
+import com.toolrent.dto.ToolUnitSummaryDTO;
 import com.toolrent.entities.ToolStatus;
 import com.toolrent.entities.ToolUnitEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 //import java.util.List;
 import java.util.List;
@@ -15,5 +20,40 @@ public interface ToolUnitRepository extends JpaRepository<ToolUnitEntity, Long>
     @Query("SELECT u FROM ToolUnitEntity u JOIN FETCH u.toolGroup g")
     List<ToolUnitEntity> findAllWithToolGroup();
 
+    // Sin JOIN al grupo (findById lo trae unido): en la consulta el grupo queda para una carga
+    // aparte, que sale de la región tool_groups de la caché de segundo nivel cuando está caliente
+    @Query("SELECT u FROM ToolUnitEntity u WHERE u.id = :id")
+    Optional<ToolUnitEntity> findByIdWithCachedGroup(@Param("id") Long id);
+
     long countByToolGroupIdAndStatus(Long toolGroupId, ToolStatus status);
+
+    // Candidatas para reservar: solo ids, sin cargar entidades
+    @Query("SELECT u.id FROM ToolUnitEntity u " +
+            "WHERE u.toolGroup.id = :toolGroupId AND u.status = :status " +
+            "ORDER BY u.id")
+    List<Long> findIdsByToolGroupIdAndStatus(@Param("toolGroupId") Long toolGroupId,
+                                             @Param("status") ToolStatus status,
+                                             Pageable pageable);
+
+    // Cambio de estado condicional: retorna 0 si otra transacción ya la tomó
+    @Modifying
+    @Query("UPDATE ToolUnitEntity u SET u.status = :newStatus " +
+            "WHERE u.id = :id AND u.status = :expected")
+    int compareAndSetStatus(@Param("id") Long id,
+                            @Param("expected") ToolStatus expected,
+                            @Param("newStatus") ToolStatus newStatus);
+
+    // Conteo real por grupo y estado (reconciliación de tool_group_stock_stripes)
+    @Query("SELECT new com.toolrent.dto.ToolStatusCountDTO(u.toolGroup.id, u.status, COUNT(u)) " +
+            "FROM ToolUnitEntity u GROUP BY u.toolGroup.id, u.status")
+    List<ToolStatusCountDTO> countGroupedByToolGroupAndStatus();
+
+    @Query("SELECT new com.toolrent.dto.ToolStatusCountDTO(u.toolGroup.id, u.status, COUNT(u)) " +
+            "FROM ToolUnitEntity u WHERE u.toolGroup.id = :toolGroupId GROUP BY u.toolGroup.id, u.status")
+    List<ToolStatusCountDTO> countByStatusForToolGroup(@Param("toolGroupId") Long toolGroupId);
+
+    // Página por cursor ordenada por id, con el nombre de su grupo
+    @Query("SELECT new com.toolrent.dto.ToolUnitSummaryDTO(u.id, u.status, g.id, g.name) " +
+            "FROM ToolUnitEntity u JOIN u.toolGroup g WHERE u.id > :lastId ORDER BY u.id")
+    List<ToolUnitSummaryDTO> findSummaryPage(@Param("lastId") Long lastId, Pageable pageable);
 }
@@ -0,0 +1,78 @@
+package com.toolrent.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/* Métricas de negocio (Micrometer, expuestas en /actuator/prometheus).
+   Los medidores se registran una vez; los servicios solo incrementan o registran tiempos. */
+@Component
+public class BusinessMetrics {
+
+    private final Map<EligibilityRule, Counter> rejections = new EnumMap<>(EligibilityRule.class);
+    private final Counter claimConflicts;
+    private final Counter claimRetries;
+    private final Counter claimExhausted;
+    private final Timer kardexSyncInsert;
+    private final Timer kardexBatchInsert;
+
+    public BusinessMetrics(MeterRegistry registry) {
+        for (EligibilityRule rule : EligibilityRule.values()) {
+            rejections.put(rule, Counter.builder("toolrent.eligibility.rejections")
+                    .description("Préstamos rechazados por regla de elegibilidad")
+                    .tag("rule", rule.name())
+                    .register(registry));
+        }
+        claimConflicts = Counter.builder("toolrent.units.claim.conflicts")
+                .description("Unidades candidatas que otro préstamo tomó primero")
+                .register(registry);
+        claimRetries = Counter.builder("toolrent.units.claim.retries")
+                .description("Reintentos de reserva con una ventana de candidatas más amplia")
+                .register(registry);
+        claimExhausted = Counter.builder("toolrent.units.claim.exhausted")
+                .description("Reservas sin unidad disponible en el grupo")
+                .register(registry);
+        kardexSyncInsert = kardexTimer(registry, "sync");
+        kardexBatchInsert = kardexTimer(registry, "batch");
+    }
+
+    private static Timer kardexTimer(MeterRegistry registry, String mode) {
+        return Timer.builder("toolrent.kardex.insert")
+                .description("Inserción de movimientos de kardex (en la petición o por lotes en segundo plano)")
+                .tag("mode", mode)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /* ---------- Elegibilidad ---------- */
+
+    public void eligibilityRejected(Collection<EligibilityRule> rules) {
+        rules.forEach(rule -> rejections.get(rule).increment());
+    }
+
+    /* ---------- Reserva de unidades ---------- */
+
+    public void unitClaimConflict() {
+        claimConflicts.increment();
+    }
+
+    public void unitClaimRetry() {
+        claimRetries.increment();
+    }
+
+    public void unitClaimExhausted() {
+        claimExhausted.increment();
+    }
+
+    /* ---------- Kardex ---------- */
+
+    public void kardexInserted(boolean batch, long nanos) {
+        (batch ? kardexBatchInsert : kardexSyncInsert).record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
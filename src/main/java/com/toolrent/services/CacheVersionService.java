@@ -0,0 +1,42 @@
+package com.toolrent.services;
+
+import com.toolrent.entities.CacheVersionEntity;
+import com.toolrent.repositories.CacheVersionRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+public class CacheVersionService {
+
+    private final CacheVersionRepository cacheVersionRepository;
+
+    public CacheVersionService(CacheVersionRepository cacheVersionRepository) {
+        this.cacheVersionRepository = cacheVersionRepository;
+    }
+
+    // Crea el sello si no existe; se llama al arrancar, fuera de cualquier transacción de negocio
+    public void register(String name) {
+        if (cacheVersionRepository.existsById(name)) return;
+        try {
+            cacheVersionRepository.saveAndFlush(new CacheVersionEntity(name, 0L));
+        } catch (DataIntegrityViolationException e) {
+            // Otro nodo lo creó al mismo tiempo
+        }
+    }
+
+    public long current(String name) {
+        return cacheVersionRepository.findVersion(name).orElse(0L);
+    }
+
+    // Se suma a la transacción del cambio: los demás nodos ven el nuevo sello recién al confirmar.
+    // Retorna el sello nuevo, tal como lo ve esta transacción.
+    @Transactional
+    public long bump(String name) {
+        if (cacheVersionRepository.increment(name) == 0) {
+            cacheVersionRepository.save(new CacheVersionEntity(name, 1L));
+            return 1L;
+        }
+        return current(name);
+    }
+}
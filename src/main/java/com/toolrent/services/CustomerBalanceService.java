@@ -0,0 +1,252 @@
+package com.toolrent.services;
+
+import com.toolrent.dto.CustomerBalanceDTO;
+import com.toolrent.dto.CustomerDebtDTO;
+import com.toolrent.dto.CustomerStandingDTO;
+import com.toolrent.entities.CustomerBalanceEntity;
+import com.toolrent.entities.LoanEntity;
+import com.toolrent.repositories.CustomerBalanceRepository;
+import com.toolrent.repositories.CustomerRepository;
+import com.toolrent.repositories.LoanRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/* Saldo por cliente desde customer_balances (multas y daños impagos, préstamos activos,
+   vencimiento más antiguo). Cada cambio de un préstamo suma su delta en la misma
+   transacción; la reconciliación recalcula desde loans y corrige desvíos, por tramos de clientes.
+   La periódica (y la del arranque) corre en un solo nodo: el que tiene la concesión, que dura más
+   que el intervalo y se renueva en cada corrida. La de POST /customers/balances/reconcile no la pide. */
+@Service
+public class CustomerBalanceService {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerBalanceService.class);
+
+    static final String LEASE = "customer-balance-reconcile";
+
+    // Tolerancia al comparar montos acumulados en double
+    private static final double EPSILON = 0.005;
+
+    private final CustomerBalanceRepository customerBalanceRepository;
+    private final LoanRepository loanRepository;
+    private final CustomerRepository customerRepository;
+    private final LeaseService leaseService;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final Duration leaseTtl;
+
+    public CustomerBalanceService(CustomerBalanceRepository customerBalanceRepository,
+                                  LoanRepository loanRepository,
+                                  CustomerRepository customerRepository,
+                                  LeaseService leaseService,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${toolrent.balance.chunk-size:1000}") int chunkSize,
+                                  @Value("${toolrent.balance.lease-ms:4500000}") long leaseMs) {
+        this.customerBalanceRepository = customerBalanceRepository;
+        this.loanRepository = loanRepository;
+        this.customerRepository = customerRepository;
+        this.leaseService = leaseService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.leaseTtl = Duration.ofMillis(leaseMs);
+    }
+
+    // Lo que del préstamo afecta al saldo, tomado antes y después de cada cambio
+    public record LoanState(boolean returned, double fineAmount, double damageCharge) {
+        public static LoanState of(LoanEntity loan) {
+            return new LoanState(loan.getReturnDate() != null,
+                    loan.getFineAmount() == null ? 0.0 : loan.getFineAmount(),
+                    loan.getDamageCharge() == null ? 0.0 : loan.getDamageCharge());
+        }
+
+        // Las deudas solo cuentan una vez devuelto el préstamo
+        double unpaidFine() { return returned ? fineAmount : 0.0; }
+        double unpaidDamage() { return returned ? damageCharge : 0.0; }
+        long fineLoan() { return returned && fineAmount > 0 ? 1 : 0; }
+        long damageLoan() { return returned && damageCharge > 0 ? 1 : 0; }
+        long active() { return returned ? 0 : 1; }
+    }
+
+    /* ---------- Escritura (dentro de la transacción del préstamo) ---------- */
+
+    // Fila inicial de un cliente recién registrado
+    @Transactional
+    public void initialize(Long customerId) {
+        customerBalanceRepository.save(new CustomerBalanceEntity(customerId));
+    }
+
+    // Préstamos nuevos del cliente con el mismo vencimiento. El máximo de activos se comprueba en
+    // el mismo UPDATE: dos carros concurrentes que leyeron el saldo bajo el límite no pueden pasarlo.
+    @Transactional
+    public void loansOpened(Long customerId, int loans, LocalDateTime dueDate) {
+        if (customerBalanceRepository.addActiveLoans(
+                customerId, loans, LoanEligibilityService.MAX_ACTIVE_LOANS, dueDate) == 1) {
+            return;
+        }
+        if (customerBalanceRepository.existsById(customerId)) {
+            throw new RuntimeException(EligibilityRule.MAX_ACTIVE_LOANS.getMessage());
+        }
+        log.debug("Cliente {} sin fila en customer_balances", customerId);
+    }
+
+    // Devolución, daño, pago o cargo de reposición sobre un préstamo ya modificado
+    @Transactional
+    public void loanChanged(LoanEntity loan, LoanState before) {
+        Long customerId = loan.getCustomer().getId();
+        LoanState after = LoanState.of(loan);
+        double fines = after.unpaidFine() - before.unpaidFine();
+        double damage = after.unpaidDamage() - before.unpaidDamage();
+        long fineLoans = after.fineLoan() - before.fineLoan();
+        long damageLoans = after.damageLoan() - before.damageLoan();
+        long active = after.active() - before.active();
+        if (fines == 0 && damage == 0 && fineLoans == 0 && damageLoans == 0 && active == 0) return;
+
+        int updated = customerBalanceRepository.addDeltas(customerId, fines, damage, fineLoans, damageLoans, active);
+        if (updated == 0) {
+            // Cliente anterior a la tabla de saldos: lo crea la próxima reconciliación
+            log.debug("Cliente {} sin fila en customer_balances", customerId);
+            return;
+        }
+        if (active < 0) {
+            // Se cerró un préstamo activo: el vencimiento más antiguo puede haber cambiado
+            customerBalanceRepository.setOldestDueDate(customerId, loanRepository.findOldestActiveDueDate(customerId));
+        }
+    }
+
+    /* ---------- Lectura ---------- */
+
+    // Situación para las reglas de préstamo desde el saldo; vacío si el cliente aún no tiene fila
+    public Optional<CustomerStandingDTO> findStanding(Long customerId, Collection<Long> toolGroupIds,
+                                                     LocalDateTime now) {
+        return customerBalanceRepository.findById(customerId).map(b -> new CustomerStandingDTO(
+                b.getOldestDueDate() != null && b.getOldestDueDate().isBefore(now) ? 1L : 0L,
+                b.getUnpaidFineLoans(),
+                b.getUnpaidDamageLoans(),
+                b.getActiveLoans(),
+                toolGroupIds.isEmpty() || b.getActiveLoans() == 0
+                        ? 0L
+                        : loanRepository.countActiveInToolGroups(customerId, toolGroupIds)));
+    }
+
+    public List<CustomerDebtDTO> getCustomersWithDebt(LocalDateTime now) {
+        return customerBalanceRepository.findCustomersWithDebt(now);
+    }
+
+    /* ---------- Reconciliación ---------- */
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        leaseService.register(LEASE);
+        reconcileScheduled();
+    }
+
+    // Solo el nodo con la concesión; los demás no leen nada
+    @Scheduled(initialDelayString = "${toolrent.balance.reconcile-ms:3600000}",
+            fixedDelayString = "${toolrent.balance.reconcile-ms:3600000}")
+    public void reconcileScheduled() {
+        if (!leaseService.tryAcquire(LEASE, leaseTtl)) {
+            log.debug("Concesión {} de otro nodo: no se reconcilian saldos", LEASE);
+            return;
+        }
+        reconcile();
+    }
+
+    // Retorna la cantidad de clientes corregidos; cada desvío queda en el log
+    public int reconcile() {
+        int repaired = 0;
+        long lastId = 0L;
+        List<Long> ids;
+        do {
+            ids = customerRepository.findIdsAfter(lastId, PageRequest.of(0, chunkSize));
+            if (ids.isEmpty()) break;
+            repaired += reconcileChunk(ids);
+            lastId = ids.get(ids.size() - 1);
+        } while (ids.size() == chunkSize);
+
+        if (repaired > 0) {
+            log.warn("Saldos reconciliados: {} cliente(s) con desvío corregidos", repaired);
+        }
+        return repaired;
+    }
+
+    // Un tramo de ids consecutivos: saldos contados y guardados solo de esos clientes
+    private int reconcileChunk(List<Long> ids) {
+        Long fromId = ids.get(0);
+        Long toId = ids.get(ids.size() - 1);
+        Map<Long, CustomerBalanceDTO> actual = new HashMap<>();
+        for (Long id : ids) {
+            actual.put(id, empty(id));
+        }
+        loanRepository.computeBalances(fromId, toId).forEach(b -> actual.put(b.customerId(), b));
+
+        Map<Long, CustomerBalanceDTO> stored = new HashMap<>();
+        customerBalanceRepository.findBalances(fromId, toId).forEach(b -> stored.put(b.customerId(), b));
+
+        // Primera pasada sin bloqueos; solo los clientes con diferencias se recalculan con la fila bloqueada
+        int repaired = 0;
+        for (Long customerId : ids) {
+            if (!sameBalance(actual.get(customerId), stored.get(customerId))
+                    && Boolean.TRUE.equals(transactionTemplate.execute(s -> repair(customerId)))) {
+                repaired++;
+            }
+        }
+        return repaired;
+    }
+
+    // Con la fila bloqueada ningún cambio de préstamo del cliente puede sumar su delta a medias
+    private boolean repair(Long customerId) {
+        Optional<CustomerBalanceEntity> locked = customerBalanceRepository.findForUpdate(customerId);
+        CustomerBalanceEntity row = locked.orElseGet(() -> new CustomerBalanceEntity(customerId));
+        CustomerBalanceDTO counted = loanRepository.computeBalance(customerId).orElseGet(() -> empty(customerId));
+        CustomerBalanceDTO current = toDto(row);
+        if (locked.isPresent() && sameBalance(counted, current)) {
+            return false;
+        }
+        log.warn("Saldo del cliente {} no coincide con sus préstamos: {} → {}", customerId, current, counted);
+        row.setUnpaidFines(counted.unpaidFines());
+        row.setUnpaidDamage(counted.unpaidDamage());
+        row.setTotalDebt(counted.unpaidFines() + counted.unpaidDamage());
+        row.setUnpaidFineLoans(counted.unpaidFineLoans());
+        row.setUnpaidDamageLoans(counted.unpaidDamageLoans());
+        row.setActiveLoans(counted.activeLoans());
+        row.setOldestDueDate(counted.oldestDueDate());
+        customerBalanceRepository.save(row);
+        return true;
+    }
+
+    private static boolean sameBalance(CustomerBalanceDTO a, CustomerBalanceDTO b) {
+        if (a == null || b == null) return a == b;
+        return Math.abs(a.unpaidFines() - b.unpaidFines()) < EPSILON
+                && Math.abs(a.unpaidDamage() - b.unpaidDamage()) < EPSILON
+                && a.unpaidFineLoans().equals(b.unpaidFineLoans())
+                && a.unpaidDamageLoans().equals(b.unpaidDamageLoans())
+                && a.activeLoans().equals(b.activeLoans())
+                && Objects.equals(a.oldestDueDate(), b.oldestDueDate());
+    }
+
+    private static CustomerBalanceDTO toDto(CustomerBalanceEntity b) {
+        return new CustomerBalanceDTO(b.getCustomerId(), b.getUnpaidFines(), b.getUnpaidDamage(),
+                b.getUnpaidFineLoans(), b.getUnpaidDamageLoans(), b.getActiveLoans(), b.getOldestDueDate());
+    }
+
+    private static CustomerBalanceDTO empty(Long customerId) {
+        return new CustomerBalanceDTO(customerId, 0.0, 0.0, 0L, 0L, 0L, null);
+    }
+}
@@ -1,22 +1,51 @@
 package com.toolrent.services;
 
+import com.toolrent.dto.CursorPageDTO;
 import com.toolrent.entities.CustomerEntity;
 import com.toolrent.entities.CustomerStatus;
 import com.toolrent.repositories.CustomerRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 public class CustomerService {
 
+    private static final String SYSTEM_EMAIL = "system@toolrent.com";
+
     private final CustomerRepository customerRepository;
+    private final CustomerBalanceService customerBalanceService;
+    private final ReferenceDataCache referenceDataCache;
+    // Transacción propia para crear el cliente "Sistema": un choque con otra instancia no
+    // deja marcada para rollback la transacción de quien lo pidió
+    private final TransactionTemplate requiresNew;
+
+    // Cliente "Sistema" de los movimientos internos del kardex: se resuelve una vez y queda en
+    // memoria solo su id; cada llamada entrega una referencia de la sesión actual, nunca una entidad vieja
+    private final ReentrantLock systemCustomerLock = new ReentrantLock();
+    private volatile Long systemCustomerId;
 
-    public CustomerService(CustomerRepository customerRepository) {
+    public CustomerService(CustomerRepository customerRepository,
+                           CustomerBalanceService customerBalanceService,
+                           ReferenceDataCache referenceDataCache,
+                           PlatformTransactionManager transactionManager) {
         this.customerRepository = customerRepository;
+        this.customerBalanceService = customerBalanceService;
+        this.referenceDataCache = referenceDataCache;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
     }
 
     /* Registrar cliente */
+    @Transactional
     public CustomerEntity registerCustomer(String name, String rut, String phone, String email) {
         /* En CustomerService.registerCustomer(...) */
         if (name == null || name.isBlank() ||
@@ -30,7 +59,10 @@ public class CustomerService {
         customer.setRut(rut);
         customer.setPhone(phone);
         customer.setEmail(email);
-        return customerRepository.save(customer);
+        CustomerEntity saved = customerRepository.save(customer);
+        customerBalanceService.initialize(saved.getId());
+        referenceDataCache.customersChanged(); // otros nodos pueden tener en caché "no existe" para este correo
+        return saved;
     }
 
     /* Cambiar estado del cliente */
@@ -38,28 +70,76 @@ public class CustomerService {
         CustomerEntity customer = customerRepository.findById(id).orElseThrow(() -> new RuntimeException("Customer " +
                 "not found"));
         customer.setStatus(newStatus);
+        // Un cambio manual prevalece: el barrido no levanta una restricción puesta a mano
+        customer.setRestrictedBySystem(false);
         customerRepository.save(customer);
+        referenceDataCache.customersChanged();
     }
 
+    public CustomerEntity findById(Long id) {
+        return customerRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Customer not found"));
+    }
+
+    @Transactional(readOnly = true)
     public Iterable<CustomerEntity> getAllCustomers() {
         return customerRepository.findAll();
     }
 
+    // Clientes paginados por cursor (orden por id)
+    @Transactional(readOnly = true)
+    public CursorPageDTO<CustomerEntity> getCustomersPage(String cursor, Integer size) {
+        int pageSize = PageCursor.clampSize(size);
+        PageCursor after = PageCursor.ascending(cursor);
+        List<CustomerEntity> rows = customerRepository.findPageAfter(after.id(), PageCursor.limit(pageSize));
+        return PageCursor.toPage(rows, pageSize, c -> PageCursor.encode(c.getId()));
+    }
+
+    @Transactional(readOnly = true)
     public List<CustomerEntity> getCustomersByStatus(CustomerStatus status) {
         return customerRepository.findByStatus(status);
     }
 
+    @EventListener(ApplicationReadyEvent.class)
+    public void resolveSystemCustomer() {
+        getSystemCustomer();
+    }
+
     public CustomerEntity getSystemCustomer() {
+        Long id = systemCustomerId;
+        if (id == null) {
+            systemCustomerLock.lock();
+            try {
+                if (systemCustomerId == null) {
+                    systemCustomerId = findOrCreateSystemCustomerId();
+                }
+                id = systemCustomerId;
+            } finally {
+                systemCustomerLock.unlock();
+            }
+        }
+        return customerRepository.getReferenceById(id);
+    }
 
-        return customerRepository.findByEmail("system@toolrent.com")
+    private Long findOrCreateSystemCustomerId() {
+        return customerRepository.findByEmail(SYSTEM_EMAIL)
+                .map(CustomerEntity::getId)
                 .orElseGet(() -> {
-                    CustomerEntity sys = new CustomerEntity();
-                    sys.setName("Sistema");
-                    sys.setRut("0-0");
-                    sys.setEmail("system@toolrent.com");
-                    sys.setPhone("000");
-                    sys.setStatus(CustomerStatus.ACTIVE);
-                    return customerRepository.save(sys);
+                    try {
+                        return requiresNew.execute(s -> {
+                            CustomerEntity sys = new CustomerEntity();
+                            sys.setName("Sistema");
+                            sys.setRut("0-0");
+                            sys.setEmail(SYSTEM_EMAIL);
+                            sys.setPhone("000");
+                            sys.setStatus(CustomerStatus.ACTIVE);
+                            return customerRepository.saveAndFlush(sys).getId();
+                        });
+                    } catch (DataIntegrityViolationException e) {
+                        // Otra instancia lo creó al mismo tiempo: el email único impide el duplicado
+                        return requiresNew.execute(s -> customerRepository.findByEmail(SYSTEM_EMAIL)
+                                .map(CustomerEntity::getId).orElseThrow(() -> e));
+                    }
                 });
     }
 }
\ No newline at end of file
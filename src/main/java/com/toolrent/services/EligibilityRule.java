@@ -0,0 +1,21 @@
+package com.toolrent.services;
+
+// Reglas de negocio que debe cumplir un cliente para pedir un préstamo
+public enum EligibilityRule {
+    RESTRICTED("El cliente está restringido"),
+    OVERDUE_LOANS("El cliente tiene préstamos vencidos sin devolver"),
+    UNPAID_FINES("El cliente tiene multas impagas"),
+    UNPAID_DAMAGE("El cliente tiene cargos por daño sin pagar"),
+    MAX_ACTIVE_LOANS("El cliente ya tiene 5 préstamos activos (máximo permitido)"),
+    SAME_TOOL("El cliente ya tiene una unidad de esta herramienta en préstamo");
+
+    private final String message;
+
+    EligibilityRule(String message) {
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
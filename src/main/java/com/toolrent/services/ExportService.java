@@ -0,0 +1,155 @@
+package com.toolrent.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.toolrent.dto.KardexExportRowDTO;
+import com.toolrent.dto.LoanExportRowDTO;
+import com.toolrent.repositories.KardexMovementRepository;
+import com.toolrent.repositories.LoanRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/* Exportación de kardex e historial de préstamos.
+   Las filas se leen con un cursor de solo avance y se escriben a la respuesta
+   a medida que llegan, sin armar listas en memoria. */
+@Service
+public class ExportService {
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType() { return contentType; }
+        public String extension() { return extension; }
+
+        public static Format parse(String value) {
+            if (value == null || value.isBlank()) return NDJSON;
+            try {
+                return valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException("Formato de exportación no soportado: " + value);
+            }
+        }
+    }
+
+    // Cada cuántas filas se empuja lo escrito al cliente
+    private static final int FLUSH_EVERY = 500;
+
+    private static final List<String> KARDEX_HEADER = List.of(
+            "id", "movementDate", "movementType", "toolUnitId", "toolGroupName",
+            "customerId", "customerName", "details");
+
+    private static final List<String> LOAN_HEADER = List.of(
+            "id", "customerId", "customerName", "toolUnitId", "toolGroupName",
+            "loanDate", "dueDate", "returnDate", "totalCost", "fineAmount", "damageCharge");
+
+    private final KardexMovementRepository kardexMovementRepository;
+    private final LoanRepository loanRepository;
+    private final ObjectMapper objectMapper;
+    private final long timeoutMs;
+
+    public ExportService(KardexMovementRepository kardexMovementRepository,
+                         LoanRepository loanRepository,
+                         ObjectMapper objectMapper,
+                         @Value("${toolrent.export.timeout-ms:600000}") long timeoutMs) {
+        this.kardexMovementRepository = kardexMovementRepository;
+        this.loanRepository = loanRepository;
+        this.objectMapper = objectMapper;
+        this.timeoutMs = timeoutMs;
+    }
+
+    // Plazo de la respuesta asíncrona de una exportación; el resto de la API mantiene el de Spring MVC
+    public long timeoutMs() {
+        return timeoutMs;
+    }
+
+    /* ---------- Kardex ---------- */
+
+    // Rango [from, to): la transacción mantiene abierto el cursor mientras dura la escritura
+    @Transactional(readOnly = true)
+    public long exportKardex(LocalDateTime from, LocalDateTime to, Format format, OutputStream out) throws IOException {
+        try (Stream<KardexExportRowDTO> rows = kardexMovementRepository.streamForExport(from, to)) {
+            return write(rows, format, out, KARDEX_HEADER, r -> Arrays.asList(
+                    r.id(), r.movementDate(), r.movementType(), r.toolUnitId(), r.toolGroupName(),
+                    r.customerId(), r.customerName(), r.details()));
+        }
+    }
+
+    /* ---------- Préstamos ---------- */
+
+    @Transactional(readOnly = true)
+    public long exportLoans(LocalDateTime from, LocalDateTime to, Format format, OutputStream out) throws IOException {
+        try (Stream<LoanExportRowDTO> rows = loanRepository.streamForExport(from, to)) {
+            return write(rows, format, out, LOAN_HEADER, r -> Arrays.asList(
+                    r.id(), r.customerId(), r.customerName(), r.toolUnitId(), r.toolGroupName(),
+                    r.loanDate(), r.dueDate(), r.returnDate(),
+                    r.totalCost(), r.fineAmount(), r.damageCharge()));
+        }
+    }
+
+    /* ---------- Escritura ---------- */
+
+    private <T> long write(Stream<T> rows, Format format, OutputStream out,
+                           List<String> header, Function<T, List<Object>> columns) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == Format.CSV) {
+            writeCsvLine(writer, header);
+        }
+
+        long count = 0;
+        Iterator<T> it = rows.iterator();
+        while (it.hasNext()) {
+            T row = it.next();
+            if (format == Format.CSV) {
+                writeCsvLine(writer, columns.apply(row));
+            } else {
+                writer.write(objectMapper.writeValueAsString(row));
+                writer.write('\n');
+            }
+            if (++count % FLUSH_EVERY == 0) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+        return count;
+    }
+
+    private void writeCsvLine(Writer writer, List<?> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) writer.write(',');
+            writer.write(csvField(values.get(i)));
+        }
+        writer.write("\r\n");
+    }
+
+    // RFC 4180: se encierra entre comillas si contiene separador, comillas o saltos de línea
+    static String csvField(Object value) {
+        if (value == null) return "";
+        String s = value.toString();
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) {
+            return s;
+        }
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,233 @@
+package com.toolrent.services;
+
+import com.toolrent.dto.AccruingFinesDTO;
+import com.toolrent.dto.FineAccrualRunDTO;
+import com.toolrent.dto.LoanAccrualRowDTO;
+import com.toolrent.dto.LoanIdRangeDTO;
+import com.toolrent.dto.ToolGroupFineRateDTO;
+import com.toolrent.entities.BatchCheckpointEntity;
+import com.toolrent.repositories.BatchCheckpointRepository;
+import com.toolrent.repositories.LoanRepository;
+import com.toolrent.repositories.TariffRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/* Multa en curso de los préstamos activos vencidos (loans.accrued_fine).
+   Proceso nocturno: los ids activos se reparten en particiones que se recorren en
+   paralelo por clave primaria, en tramos con su propia transacción. Cada tramo guarda
+   su avance en batch_checkpoints; si el proceso se corta, la siguiente ejecución del
+   mismo día retoma desde ahí con el mismo instante de cálculo.
+   Las tarifas se leen una vez por ejecución y la multa se calcula igual que al devolver;
+   los préstamos de un grupo sin tarifa se saltan (quedan con su multa anterior) y se avisa en el log. */
+@Service
+public class FineAccrualService {
+
+    private static final Logger log = LoggerFactory.getLogger(FineAccrualService.class);
+
+    static final String JOB = "fine-accrual";
+
+    private final LoanRepository loanRepository;
+    private final TariffRepository tariffRepository;
+    private final BatchCheckpointRepository batchCheckpointRepository;
+    private final LeaseService leaseService;
+    private final TransactionTemplate transactionTemplate;
+    private final int threads;
+    private final int chunkSize;
+    private final Duration leaseTtl;
+
+    public FineAccrualService(LoanRepository loanRepository,
+                              TariffRepository tariffRepository,
+                              BatchCheckpointRepository batchCheckpointRepository,
+                              LeaseService leaseService,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${toolrent.fines.threads:4}") int threads,
+                              @Value("${toolrent.fines.chunk-size:1000}") int chunkSize,
+                              @Value("${toolrent.fines.lease-ms:600000}") long leaseMs) {
+        this.loanRepository = loanRepository;
+        this.tariffRepository = tariffRepository;
+        this.batchCheckpointRepository = batchCheckpointRepository;
+        this.leaseService = leaseService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.threads = Math.max(1, threads);
+        this.chunkSize = chunkSize;
+        this.leaseTtl = Duration.ofMillis(leaseMs);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void registerLease() {
+        leaseService.register(JOB);
+    }
+
+    /* ---------- Lectura ---------- */
+
+    public AccruingFinesDTO getAccruingFines() {
+        AccruingFinesDTO totals = loanRepository.sumAccruingFines();
+        List<BatchCheckpointEntity> checkpoints = batchCheckpointRepository.findByJob(JOB);
+        boolean completed = !checkpoints.isEmpty() && checkpoints.stream().allMatch(BatchCheckpointEntity::getDone);
+        return new AccruingFinesDTO(totals.loans(), totals.accruedFines(),
+                completed ? checkpoints.get(0).getAsOf() : null);
+    }
+
+    /* ---------- Proceso ---------- */
+
+    @Scheduled(cron = "${toolrent.fines.accrual-cron:0 30 2 * * *}")
+    public void runNightly() {
+        run(false);
+    }
+
+    // restart descarta el avance del día y recalcula desde cero
+    public FineAccrualRunDTO run(boolean restart) {
+        if (!leaseService.tryAcquire(JOB, leaseTtl)) {
+            return new FineAccrualRunDTO(false, null, 0, 0, false);
+        }
+
+        List<BatchCheckpointEntity> partitions = transactionTemplate.execute(s -> prepare(restart));
+        List<BatchCheckpointEntity> pending = partitions.stream().filter(p -> !p.getDone()).toList();
+        LocalDateTime asOf = partitions.isEmpty() ? null : partitions.get(0).getAsOf();
+        if (pending.isEmpty()) {
+            return new FineAccrualRunDTO(true, asOf, partitions.size(), 0, true);
+        }
+
+        // Tarifas de todos los grupos en una sola consulta
+        Map<Long, Double> rates = tariffRepository.findAllFineRates().stream()
+                .collect(Collectors.toMap(ToolGroupFineRateDTO::toolGroupId, ToolGroupFineRateDTO::dailyFineRate));
+
+        Set<Long> missingRates = ConcurrentHashMap.newKeySet();
+        long started = System.currentTimeMillis();
+        AtomicBoolean lostLease = new AtomicBoolean(false);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, pending.size()), r -> {
+            Thread t = new Thread(r, "fine-accrual");
+            t.setDaemon(true);
+            return t;
+        });
+        long loans = 0;
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (BatchCheckpointEntity partition : pending) {
+                results.add(pool.submit(() -> processPartition(partition, rates, missingRates, lostLease)));
+            }
+            for (Future<Long> result : results) {
+                loans += result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Cálculo de multas interrumpido", e);
+        } catch (ExecutionException e) {
+            // El avance confirmado queda en los checkpoints: la próxima ejecución retoma
+            throw new RuntimeException("Error en el cálculo de multas: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        boolean completed = !lostLease.get() && pending.stream().allMatch(BatchCheckpointEntity::getDone);
+        log.info("Multas en curso al {}: {} préstamo(s) en {} partición(es), {} ms{}", asOf, loans,
+                pending.size(), System.currentTimeMillis() - started, completed ? "" : " (incompleto)");
+        if (!missingRates.isEmpty()) {
+            log.warn("Multas en curso: grupos sin tarifa omitidos {}", missingRates);
+        }
+        return new FineAccrualRunDTO(true, asOf, partitions.size(), loans, completed);
+    }
+
+    // Retoma las particiones del día si existen; si no, reparte el rango de ids activos
+    private List<BatchCheckpointEntity> prepare(boolean restart) {
+        LocalDate today = LocalDate.now();
+        List<BatchCheckpointEntity> existing = batchCheckpointRepository.findByJob(JOB);
+        if (!restart && !existing.isEmpty() && existing.stream().allMatch(c -> today.equals(c.getRunDate()))) {
+            return existing;
+        }
+        batchCheckpointRepository.deleteByJob(JOB);
+        batchCheckpointRepository.flush();
+
+        LoanIdRangeDTO range = loanRepository.findActiveIdRange();
+        LocalDateTime asOf = LocalDateTime.now();
+        if (range == null || range.minId() == null) {
+            return List.of();
+        }
+
+        long span = range.maxId() - range.minId() + 1;
+        int count = (int) Math.min(threads, span);
+        long size = (span + count - 1) / count;
+        List<BatchCheckpointEntity> partitions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            long lastId = range.minId() - 1 + i * size;
+            long endId = Math.min(range.maxId(), lastId + size);
+            partitions.add(new BatchCheckpointEntity(JOB + ":" + i, today, asOf, lastId, endId,
+                    0L, false, asOf));
+        }
+        return batchCheckpointRepository.saveAll(partitions);
+    }
+
+    // Recorre la partición tramo a tramo; entre tramos renueva la concesión
+    private long processPartition(BatchCheckpointEntity partition, Map<Long, Double> rates,
+                                  Set<Long> missingRates, AtomicBoolean lostLease) {
+        long processed = 0;
+        while (!partition.getDone()) {
+            if (lostLease.get()) break;
+            Integer rows = transactionTemplate.execute(s -> processChunk(partition, rates, missingRates));
+            processed += rows == null ? 0 : rows;
+            if (!partition.getDone() && !leaseService.tryAcquire(JOB, leaseTtl)) {
+                log.warn("Concesión {} perdida: se detiene el cálculo de multas", JOB);
+                lostLease.set(true);
+            }
+        }
+        return processed;
+    }
+
+    // Un tramo: lee, agrupa por monto y actualiza con un UPDATE por monto; el avance va en la misma transacción
+    private int processChunk(BatchCheckpointEntity partition, Map<Long, Double> rates, Set<Long> missingRates) {
+        List<LoanAccrualRowDTO> rows = loanRepository.findOverdueForAccrual(partition.getAsOf(),
+                partition.getLastId(), partition.getEndId(), PageRequest.of(0, chunkSize));
+
+        Map<Double, List<Long>> idsByFine = new HashMap<>();
+        for (LoanAccrualRowDTO row : rows) {
+            Double dailyFine = rates.get(row.toolGroupId());
+            if (dailyFine == null) {
+                // Un grupo mal configurado no detiene el cálculo del resto
+                if (missingRates.add(row.toolGroupId())) {
+                    log.warn("Tarifa no encontrada para el grupo ID: {}; se omiten sus préstamos", row.toolGroupId());
+                }
+                continue;
+            }
+            idsByFine.computeIfAbsent(fineOf(row.dueDate(), partition.getAsOf(), dailyFine),
+                    k -> new ArrayList<>()).add(row.id());
+        }
+        idsByFine.forEach((fine, ids) -> loanRepository.setAccruedFine(ids, fine));
+
+        if (rows.size() < chunkSize) {
+            partition.setLastId(partition.getEndId());
+            partition.setDone(true);
+        } else {
+            partition.setLastId(rows.get(rows.size() - 1).id());
+        }
+        partition.setProcessed(partition.getProcessed() + rows.size());
+        partition.setUpdatedAt(LocalDateTime.now());
+        batchCheckpointRepository.save(partition);
+        return rows.size();
+    }
+
+    // Igual que en la devolución: días completos de atraso por la multa diaria
+    static double fineOf(LocalDateTime dueDate, LocalDateTime asOf, double dailyFine) {
+        return ChronoUnit.DAYS.between(dueDate, asOf) * dailyFine;
+    }
+}
@@ -1,11 +1,13 @@
 package com.toolrent.services;
 
 import com.toolrent.config.SecurityConfig;
+import com.toolrent.dto.CursorPageDTO;
 import com.toolrent.entities.KardexMovementEntity;
 import com.toolrent.entities.MovementType;
 import com.toolrent.entities.ToolGroupEntity;
 import com.toolrent.repositories.KardexMovementRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -15,28 +17,55 @@ public class KardexMovementService {
 
     private final KardexMovementRepository kardexMovementRepository;
     private final CustomerService customerService;
+    private final KardexWriter kardexWriter;
 
     public KardexMovementService(KardexMovementRepository kardexMovementRepository,
-                                 CustomerService customerService) {
+                                 CustomerService customerService,
+                                 KardexWriter kardexWriter) {
         this.kardexMovementRepository = kardexMovementRepository;
         this.customerService = customerService;
+        this.kardexWriter = kardexWriter;
     }
 
     //Obtener Todos los movimientos
+    @Transactional(readOnly = true)
     public List<KardexMovementEntity> getAllMovements() {
         return kardexMovementRepository.findAllWithDetails();
     }
 
+    // Movimientos paginados por cursor, del más reciente al más antiguo
+    @Transactional(readOnly = true)
+    public CursorPageDTO<KardexMovementEntity> getMovementsPage(String cursor, Integer size) {
+        int pageSize = PageCursor.clampSize(size);
+        PageCursor after = PageCursor.descending(cursor);
+        List<KardexMovementEntity> rows = kardexMovementRepository.findPageWithDetails(
+                after.date(), after.id(), PageCursor.limit(pageSize));
+        return PageCursor.toPage(rows, pageSize, km -> PageCursor.encode(km.getMovementDate(), km.getId()));
+    }
+
     // Filtro por herramienta
+    @Transactional(readOnly = true)
     public List<KardexMovementEntity> findByToolGroupId(Long toolGroupId) {
         return kardexMovementRepository.findByToolGroupId(toolGroupId);
     }
 
     // Filtro por rango de fecha
+    @Transactional(readOnly = true)
     public List<KardexMovementEntity> findByDateRange(LocalDateTime from, LocalDateTime to) {
         return kardexMovementRepository.findByDateRange(from, to);
     }
 
+    // Rango de fecha paginado por cursor
+    @Transactional(readOnly = true)
+    public CursorPageDTO<KardexMovementEntity> findByDateRangePage(LocalDateTime from, LocalDateTime to,
+                                                                   String cursor, Integer size) {
+        int pageSize = PageCursor.clampSize(size);
+        PageCursor after = PageCursor.descending(cursor);
+        List<KardexMovementEntity> rows = kardexMovementRepository.findPageByDateRange(
+                from, to, after.date(), after.id(), PageCursor.limit(pageSize));
+        return PageCursor.toPage(rows, pageSize, km -> PageCursor.encode(km.getMovementDate(), km.getId()));
+    }
+
     //Kardex Registro
     public void saveRegistryKardex(ToolGroupEntity group, int stock) {
         if (stock == 0) return;
@@ -47,6 +76,6 @@ public class KardexMovementService {
         movement.setDetails("Creación de grupo: " + group.getName() +
                 " - Stock inicial: " + stock +
                 " - Usuario: " + SecurityConfig.getCurrentUsername());
-        kardexMovementRepository.save(movement);
+        kardexWriter.write(movement);
     }
 }
\ No newline at end of file
@@ -0,0 +1,444 @@
+package com.toolrent.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.toolrent.dto.KardexWriterStatsDTO;
+import com.toolrent.entities.KardexMovementEntity;
+import com.toolrent.entities.MovementType;
+import com.toolrent.repositories.CustomerRepository;
+import com.toolrent.repositories.KardexMovementRepository;
+import com.toolrent.repositories.ToolUnitRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/* Escritura de movimientos de kardex.
+   Por defecto inserta en la misma petición (síncrono). Con write-behind activo los
+   movimientos se encolan al confirmar la transacción y un hilo los inserta en lotes.
+   - Antes del commit cada movimiento se anota en un journal en disco y se fuerza con fsync:
+     si el nodo cae después del commit, el movimiento sigue en el journal.
+   - Si la transacción se revierte se anota el descarte; tras insertar un lote se anota como hecho.
+   - Al arrancar se reinsertan los anotados que no están hechos ni descartados (al-menos-una-vez;
+     una caída justo entre el fsync y el commit puede reinsertar un movimiento revertido).
+   - Un lote que falla toolrent.kardex.write-behind.max-attempts veces va a kardex-dead-letter.log
+     y deja de bloquear la cola. */
+@Service
+public class KardexWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(KardexWriter.class);
+
+    private static final String JOURNAL_FILE = "kardex-journal.log";
+    private static final String DEAD_LETTER_FILE = "kardex-dead-letter.log";
+
+    private final KardexMovementRepository kardexMovementRepository;
+    private final ToolUnitRepository toolUnitRepository;
+    private final CustomerRepository customerRepository;
+    private final BusinessMetrics businessMetrics;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper journalMapper = JsonMapper.builder().findAndAddModules().build();
+
+    private final boolean writeBehind;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final int maxAttempts;
+    private final Path journalDir;
+
+    private final BlockingQueue<PendingMovement> queue = new LinkedBlockingQueue<>();
+    // Cupos de la cola: se reservan antes del commit y se liberan al insertar o descartar
+    private final Semaphore slots;
+    // Lock explícito y no synchronized: la escritura del journal no fija el hilo portador con hilos virtuales
+    private final ReentrantLock journalLock = new ReentrantLock();
+    private final AtomicLong sequence = new AtomicLong();
+    private FileChannel journal;
+    private ScheduledExecutorService flusher;
+    // getStats() la lee desde los hilos de las peticiones
+    private volatile List<PendingMovement> retryBatch = List.of();
+    private int attempts;
+
+    /* ---------- Métricas ---------- */
+    private final AtomicLong flushedMovements = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicLong syncFallbacks = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private final AtomicLong lastFlushMillis = new AtomicLong();
+    private final AtomicLong maxFlushMillis = new AtomicLong();
+    private final AtomicLong totalFlushMillis = new AtomicLong();
+
+    public KardexWriter(KardexMovementRepository kardexMovementRepository,
+                        ToolUnitRepository toolUnitRepository,
+                        CustomerRepository customerRepository,
+                        BusinessMetrics businessMetrics,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${toolrent.kardex.write-behind.enabled:false}") boolean writeBehind,
+                        @Value("${toolrent.kardex.write-behind.capacity:10000}") int capacity,
+                        @Value("${toolrent.kardex.write-behind.batch-size:200}") int batchSize,
+                        @Value("${toolrent.kardex.write-behind.flush-interval-ms:500}") long flushIntervalMs,
+                        @Value("${toolrent.kardex.write-behind.max-attempts:5}") int maxAttempts,
+                        @Value("${toolrent.kardex.write-behind.journal-dir:kardex-journal}") String journalDir) {
+        this.kardexMovementRepository = kardexMovementRepository;
+        this.toolUnitRepository = toolUnitRepository;
+        this.customerRepository = customerRepository;
+        this.businessMetrics = businessMetrics;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.writeBehind = writeBehind;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxAttempts = maxAttempts;
+        this.journalDir = Paths.get(journalDir);
+        this.slots = new Semaphore(capacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!writeBehind) return;
+        try {
+            Files.createDirectories(journalDir);
+            replayJournal();
+            journal = FileChannel.open(journalDir.resolve(JOURNAL_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el journal del kardex", e);
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "kardex-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Al apagar se vacía la cola; si la BD no responde, el journal queda para el próximo arranque
+    @PreDestroy
+    public void stop() {
+        if (!writeBehind) return;
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        while (!retryBatch.isEmpty() || !queue.isEmpty()) {
+            if (!flushSafely()) break;
+        }
+        journalLock.lock();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            log.warn("Error cerrando journal del kardex", e);
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    /* ---------- API usada por los servicios ---------- */
+
+    public void write(KardexMovementEntity movement) {
+        writeAll(List.of(movement));
+    }
+
+    public void writeAll(List<KardexMovementEntity> movements) {
+        if (movements.isEmpty()) return;
+        if (!writeBehind) {
+            long start = System.nanoTime();
+            if (movements.size() == 1) {
+                kardexMovementRepository.save(movements.get(0));
+            } else {
+                kardexMovementRepository.saveAll(movements);
+            }
+            businessMetrics.kardexInserted(false, System.nanoTime() - start);
+            return;
+        }
+
+        List<PendingMovement> pending = movements.stream().map(PendingMovement::of).toList();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<PendingMovement> journaled = journal(pending);
+            saveOverflow(pending.subList(journaled.size(), pending.size()), true);
+            queue.addAll(journaled);
+            return;
+        }
+        // En el journal antes del commit; a la cola solo lo que efectivamente se confirmó
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private List<PendingMovement> journaled = List.of();
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                journaled = journal(pending);
+                saveOverflow(pending.subList(journaled.size(), pending.size()), false);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (journaled.isEmpty()) return;
+                if (status == STATUS_ROLLED_BACK) {
+                    discard(journaled);
+                } else {
+                    queue.addAll(journaled);
+                }
+            }
+        });
+    }
+
+    public KardexWriterStatsDTO getStats() {
+        long count = flushes.get();
+        return new KardexWriterStatsDTO(
+                writeBehind,
+                queue.size() + retryBatch.size(),
+                capacity,
+                flushedMovements.get(),
+                count,
+                failedFlushes.get(),
+                syncFallbacks.get(),
+                deadLettered.get(),
+                lastFlushMillis.get(),
+                maxFlushMillis.get(),
+                count == 0 ? 0.0 : (double) totalFlushMillis.get() / count);
+    }
+
+    /* ---------- Cola ---------- */
+
+    // Anota y fuerza a disco los que caben en la cola; retorna esos, numerados, en orden
+    private List<PendingMovement> journal(List<PendingMovement> pending) {
+        List<PendingMovement> journaled = new ArrayList<>(pending.size());
+        journalLock.lock();
+        try {
+            StringBuilder lines = new StringBuilder();
+            for (PendingMovement p : pending) {
+                if (!slots.tryAcquire()) break;
+                PendingMovement numbered = p.withSeq(sequence.incrementAndGet());
+                lines.append(journalMapper.writeValueAsString(numbered)).append('\n');
+                journaled.add(numbered);
+            }
+            appendToJournal(lines, true);
+        } catch (IOException e) {
+            // Sin journal no se confirma: la excepción revierte la transacción del movimiento
+            slots.release(journaled.size());
+            throw new UncheckedIOException("No se pudo escribir el journal del kardex", e);
+        } finally {
+            journalLock.unlock();
+        }
+        return journaled;
+    }
+
+    // Cola llena: se inserta en la petición (contrapresión, nunca se descarta)
+    private void saveOverflow(List<PendingMovement> overflow, boolean ownTransaction) {
+        if (overflow.isEmpty()) return;
+        syncFallbacks.addAndGet(overflow.size());
+        List<KardexMovementEntity> entities = overflow.stream().map(this::toEntity).toList();
+        if (ownTransaction) {
+            transactionTemplate.executeWithoutResult(s -> kardexMovementRepository.saveAll(entities));
+        } else {
+            kardexMovementRepository.saveAll(entities);
+        }
+    }
+
+    private void discard(List<PendingMovement> journaled) {
+        journalLock.lock();
+        try {
+            appendToJournal(marker(Marker.DISCARDED, journaled), true);
+        } catch (IOException e) {
+            // Sin la marca el próximo arranque lo reinsertaría: mejor avisar que callar
+            log.error("No se pudo anotar el descarte de {} movimientos de kardex revertidos", journaled.size(), e);
+        } finally {
+            journalLock.unlock();
+            slots.release(journaled.size());
+        }
+    }
+
+    // Inserta un lote; retorna false si la BD falló (el lote se reintenta o pasa a dead-letter)
+    boolean flushSafely() {
+        List<PendingMovement> batch = retryBatch;
+        if (batch.isEmpty()) {
+            List<PendingMovement> drained = new ArrayList<>(batchSize);
+            queue.drainTo(drained, batchSize);
+            batch = drained;
+        }
+        if (batch.isEmpty()) {
+            compactJournal();
+            return true;
+        }
+
+        long start = System.nanoTime();
+        try {
+            List<PendingMovement> toSave = batch;
+            transactionTemplate.executeWithoutResult(s -> kardexMovementRepository.saveAll(
+                    toSave.stream().map(this::toEntity).toList()));
+        } catch (RuntimeException e) {
+            failedFlushes.incrementAndGet();
+            if (++attempts >= maxAttempts) {
+                deadLetter(batch, e);
+            } else {
+                retryBatch = batch;
+                log.warn("No se pudo insertar lote de {} movimientos de kardex (intento {} de {}), se reintentará",
+                        batch.size(), attempts, maxAttempts, e);
+            }
+            return false;
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        businessMetrics.kardexInserted(true, elapsedNanos);
+
+        markDone(batch, Marker.FLUSHED);
+        flushes.incrementAndGet();
+        flushedMovements.addAndGet(batch.size());
+        lastFlushMillis.set(elapsed);
+        totalFlushMillis.addAndGet(elapsed);
+        maxFlushMillis.accumulateAndGet(elapsed, Math::max);
+        return true;
+    }
+
+    // El lote sale de la cola hacia un archivo aparte para revisarlo a mano; la cola sigue
+    private void deadLetter(List<PendingMovement> batch, RuntimeException cause) {
+        log.error("Lote de {} movimientos de kardex falló {} veces, se mueve a {}",
+                batch.size(), attempts, DEAD_LETTER_FILE, cause);
+        try (FileChannel deadLetters = FileChannel.open(journalDir.resolve(DEAD_LETTER_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            StringBuilder lines = new StringBuilder();
+            for (PendingMovement p : batch) {
+                lines.append(journalMapper.writeValueAsString(p)).append('\n');
+            }
+            deadLetters.write(ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8)));
+            deadLetters.force(false);
+        } catch (IOException e) {
+            // Sin dead-letter el lote sigue en el journal y se reinsertará al próximo arranque
+            log.error("No se pudo escribir {}, el lote queda en el journal", DEAD_LETTER_FILE, e);
+            retryBatch = List.of();
+            attempts = 0;
+            return;
+        }
+        deadLettered.addAndGet(batch.size());
+        markDone(batch, Marker.DEAD_LETTERED);
+    }
+
+    private void markDone(List<PendingMovement> batch, String marker) {
+        retryBatch = List.of();
+        attempts = 0;
+        journalLock.lock();
+        try {
+            // Sin fsync: si la marca se pierde, el lote se reinserta (al-menos-una-vez)
+            appendToJournal(marker(marker, batch), false);
+        } catch (IOException e) {
+            log.warn("No se pudo anotar en el journal un lote de kardex insertado", e);
+        } finally {
+            journalLock.unlock();
+            slots.release(batch.size());
+        }
+    }
+
+    private KardexMovementEntity toEntity(PendingMovement p) {
+        KardexMovementEntity movement = new KardexMovementEntity();
+        movement.setToolUnit(toolUnitRepository.getReferenceById(p.toolUnitId()));
+        movement.setCustomer(customerRepository.getReferenceById(p.customerId()));
+        movement.setMovementType(p.movementType());
+        movement.setMovementDate(p.movementDate());
+        movement.setDetails(p.details());
+        return movement;
+    }
+
+    /* ---------- Journal ---------- */
+
+    private void appendToJournal(CharSequence lines, boolean force) throws IOException {
+        if (lines.isEmpty()) return;
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            journal.write(buffer);
+        }
+        if (force) {
+            journal.force(false);
+        }
+    }
+
+    private String marker(String type, List<PendingMovement> movements) throws IOException {
+        return journalMapper.writeValueAsString(
+                new Marker(type, movements.stream().map(PendingMovement::seq).toList())) + '\n';
+    }
+
+    // Sin nada en cola ni reservado por transacciones en curso, el journal se puede truncar
+    private void compactJournal() {
+        journalLock.lock();
+        try {
+            if (!queue.isEmpty() || !retryBatch.isEmpty() || slots.availablePermits() < capacity) return;
+            if (journal.size() == 0) return;
+            journal.truncate(0);
+            journal.force(false);
+        } catch (IOException e) {
+            log.warn("No se pudo compactar el journal del kardex", e);
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    // Reinserta lo anotado que no quedó insertado, descartado ni en dead-letter
+    private void replayJournal() throws IOException {
+        Path file = journalDir.resolve(JOURNAL_FILE);
+        if (!Files.exists(file)) return;
+
+        Map<Long, PendingMovement> pending = new LinkedHashMap<>();
+        Set<Long> done = new HashSet<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.isBlank()) continue;
+            JsonNode node = journalMapper.readTree(line);
+            if (node.has("seqs")) {
+                done.addAll(journalMapper.treeToValue(node, Marker.class).seqs());
+                continue;
+            }
+            PendingMovement p = journalMapper.treeToValue(node, PendingMovement.class);
+            sequence.accumulateAndGet(p.seq(), Math::max);
+            pending.put(p.seq(), p);
+        }
+        pending.keySet().removeAll(done);
+        if (!pending.isEmpty()) {
+            log.info("Reinsertando {} movimientos de kardex pendientes del journal", pending.size());
+            List<PendingMovement> all = new ArrayList<>(pending.values());
+            for (int from = 0; from < all.size(); from += batchSize) {
+                List<PendingMovement> chunk = all.subList(from, Math.min(from + batchSize, all.size()));
+                transactionTemplate.executeWithoutResult(s -> kardexMovementRepository.saveAll(
+                        chunk.stream().map(this::toEntity).toList()));
+            }
+        }
+        Files.write(file, new byte[0]);
+    }
+
+    /* Marca del journal sobre movimientos ya anotados: insertados, revertidos o en dead-letter */
+    record Marker(String type, List<Long> seqs) {
+        static final String FLUSHED = "FLUSHED";
+        static final String DISCARDED = "DISCARDED";
+        static final String DEAD_LETTERED = "DEAD_LETTERED";
+    }
+
+    /* Movimiento pendiente: solo ids, sin entidades asociadas a la sesión de la petición */
+    record PendingMovement(long seq, Long toolUnitId, Long customerId, MovementType movementType,
+                           LocalDateTime movementDate, String details) {
+
+        static PendingMovement of(KardexMovementEntity m) {
+            return new PendingMovement(0, m.getToolUnit().getId(), m.getCustomer().getId(),
+                    m.getMovementType(), m.getMovementDate(), m.getDetails());
+        }
+
+        PendingMovement withSeq(long seq) {
+            return new PendingMovement(seq, toolUnitId, customerId, movementType, movementDate, details);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.toolrent.services;
+
+import com.toolrent.entities.SchedulerLeaseEntity;
+import com.toolrent.repositories.SchedulerLeaseRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/* Elección de líder por concesión en scheduler_leases. El nodo que la tiene la renueva
+   en cada ejecución; si deja de hacerlo (caída, pausa larga) otro la toma al vencer.
+   La duración debe superar con holgura el intervalo de renovación y el desfase de relojes. */
+@Service
+public class LeaseService {
+
+    private final SchedulerLeaseRepository schedulerLeaseRepository;
+
+    // Identidad de este nodo mientras dure el proceso
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public LeaseService(SchedulerLeaseRepository schedulerLeaseRepository) {
+        this.schedulerLeaseRepository = schedulerLeaseRepository;
+    }
+
+    // Crea la fila si no existe; se llama al arrancar, fuera de cualquier transacción de negocio
+    public void register(String name) {
+        if (schedulerLeaseRepository.existsById(name)) return;
+        try {
+            schedulerLeaseRepository.saveAndFlush(new SchedulerLeaseEntity(name, null, LocalDateTime.now()));
+        } catch (DataIntegrityViolationException e) {
+            // Otro nodo la creó al mismo tiempo
+        }
+    }
+
+    // Toma o renueva la concesión; false si otro nodo la tiene vigente
+    @Transactional
+    public boolean tryAcquire(String name, Duration ttl) {
+        LocalDateTime now = LocalDateTime.now();
+        return schedulerLeaseRepository.tryAcquire(name, nodeId, now, now.plus(ttl)) == 1;
+    }
+
+    // Libera la concesión para que otro nodo la tome sin esperar el vencimiento
+    @Transactional
+    public void release(String name) {
+        schedulerLeaseRepository.release(name, nodeId, LocalDateTime.now());
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+}
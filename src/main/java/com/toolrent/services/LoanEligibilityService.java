@@ -0,0 +1,91 @@
+package com.toolrent.services;
+
+import com.toolrent.dto.CustomerStandingDTO;
+import com.toolrent.dto.EligibilityViolationDTO;
+import com.toolrent.dto.LoanEligibilityDTO;
+import com.toolrent.entities.CustomerEntity;
+import com.toolrent.entities.CustomerStatus;
+import com.toolrent.repositories.CustomerRepository;
+import com.toolrent.repositories.LoanRepository;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Service
+public class LoanEligibilityService {
+
+    public static final long MAX_ACTIVE_LOANS = 5;
+
+    private final LoanRepository loanRepository;
+    private final CustomerBalanceService customerBalanceService;
+    private final CustomerRepository customerRepository;
+    private final BusinessMetrics businessMetrics;
+
+    public LoanEligibilityService(LoanRepository loanRepository,
+                                  CustomerBalanceService customerBalanceService,
+                                  CustomerRepository customerRepository,
+                                  BusinessMetrics businessMetrics) {
+        this.loanRepository = loanRepository;
+        this.customerBalanceService = customerBalanceService;
+        this.customerRepository = customerRepository;
+        this.businessMetrics = businessMetrics;
+    }
+
+    /* Evalúa todas las reglas de préstamo desde el saldo del cliente (lectura por clave);
+       si aún no tiene saldo se usa la consulta agregada sobre sus préstamos.
+       toolGroupIds son las herramientas que se quieren pedir (puede ir vacío). */
+    public LoanEligibilityDTO evaluate(Long customerId, Collection<Long> toolGroupIds) {
+        LocalDateTime now = LocalDateTime.now();
+        CustomerStandingDTO standing = customerBalanceService.findStanding(customerId, toolGroupIds, now)
+                .orElseGet(() -> loanRepository.findCustomerStanding(customerId, toolGroupIds, now));
+
+        List<EligibilityViolationDTO> violations = new ArrayList<>();
+
+        // Restricción manual o puesta por el barrido de vencidos (cliente desde la caché de segundo nivel)
+        if (customerRepository.findById(customerId).map(CustomerEntity::getStatus).orElse(null)
+                == CustomerStatus.RESTRICTED) {
+            violations.add(violation(EligibilityRule.RESTRICTED));
+        }
+        if (standing.overdueLoans() > 0) {
+            violations.add(violation(EligibilityRule.OVERDUE_LOANS));
+        }
+        if (standing.unpaidFineLoans() > 0) {
+            violations.add(violation(EligibilityRule.UNPAID_FINES));
+        }
+        if (standing.unpaidDamageLoans() > 0) {
+            violations.add(violation(EligibilityRule.UNPAID_DAMAGE));
+        }
+
+        // Sin herramientas indicadas se evalúa si cabe al menos un préstamo más
+        long requested = Math.max(1, toolGroupIds.size());
+        if (standing.activeLoans() + requested > MAX_ACTIVE_LOANS) {
+            violations.add(violation(EligibilityRule.MAX_ACTIVE_LOANS));
+        }
+        if (standing.activeSameToolLoans() > 0) {
+            violations.add(violation(EligibilityRule.SAME_TOOL));
+        }
+
+        return new LoanEligibilityDTO(customerId, violations.isEmpty(), violations);
+    }
+
+    /* Lanza excepción con TODAS las reglas incumplidas */
+    public void requireEligible(Long customerId, Collection<Long> toolGroupIds) {
+        LoanEligibilityDTO eligibility = evaluate(customerId, toolGroupIds);
+        if (!eligibility.eligible()) {
+            businessMetrics.eligibilityRejected(eligibility.violations().stream()
+                    .map(v -> EligibilityRule.valueOf(v.rule()))
+                    .toList());
+            throw new RuntimeException(eligibility.violations().stream()
+                    .map(EligibilityViolationDTO::message)
+                    .collect(Collectors.joining("; ")));
+        }
+    }
+
+    private EligibilityViolationDTO violation(EligibilityRule rule) {
+        return new EligibilityViolationDTO(rule.name(), rule.getMessage());
+    }
+}
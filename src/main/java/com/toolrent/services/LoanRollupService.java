@@ -0,0 +1,188 @@
+package com.toolrent.services;
+
+import com.toolrent.dto.ToolLoanCountDTO;
+import com.toolrent.entities.LoanDailyRollupEntity;
+import com.toolrent.entities.LoanRollupSealEntity;
+import com.toolrent.repositories.LoanDailyRollupRepository;
+import com.toolrent.repositories.LoanRollupSealRepository;
+import com.toolrent.repositories.LoanRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/* Ranking de herramientas desde loan_daily_rollups (préstamos por grupo y día).
+   Los préstamos no tocan esta tabla: el cierre diario recuenta desde loans cada día sin cerrar
+   hasta ayer (si un cierre no corrió, el siguiente lo recupera), en un solo nodo a la vez
+   (concesión en scheduler_leases, ver LeaseService); cada día cerrado queda en loan_rollup_seals.
+   El ranking de un rango suma los días cerrados desde los rollups y cuenta en vivo los tramos
+   parciales de los extremos (entre ellos, el día de hoy) y los días aún sin cerrar. */
+@Service
+public class LoanRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(LoanRollupService.class);
+
+    static final String LEASE = "loan-rollup-seal";
+
+    private final LoanDailyRollupRepository loanDailyRollupRepository;
+    private final LoanRollupSealRepository loanRollupSealRepository;
+    private final LoanRepository loanRepository;
+    private final LeaseService leaseService;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration leaseTtl;
+
+    public LoanRollupService(LoanDailyRollupRepository loanDailyRollupRepository,
+                             LoanRollupSealRepository loanRollupSealRepository,
+                             LoanRepository loanRepository,
+                             LeaseService leaseService,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${toolrent.rollup.lease-ms:600000}") long leaseMs) {
+        this.loanDailyRollupRepository = loanDailyRollupRepository;
+        this.loanRollupSealRepository = loanRollupSealRepository;
+        this.loanRepository = loanRepository;
+        this.leaseService = leaseService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.leaseTtl = Duration.ofMillis(leaseMs);
+    }
+
+    // Recupera al arrancar los cierres que no corrieron mientras el servicio estuvo abajo
+    @EventListener(ApplicationReadyEvent.class)
+    public void sealOnStartup() {
+        leaseService.register(LEASE);
+        sealPendingDays();
+    }
+
+    /* ---------- Lectura ---------- */
+
+    // Ranking del rango [from, to]; limit null o <= 0 → todos los grupos
+    public List<ToolLoanCountDTO> getTopTools(LocalDateTime from, LocalDateTime to, Integer limit) {
+        if (from.isAfter(to)) return List.of();
+
+        Map<Long, ToolLoanCountDTO> totals = new LinkedHashMap<>();
+        LocalDate fromDate = from.toLocalDate();
+        LocalDate toDate = to.toLocalDate();
+
+        if (fromDate.equals(toDate)) {
+            merge(totals, loanRepository.countByToolGroupBetween(from, to));
+        } else {
+            // Tramo inicial: si from no parte a medianoche su día se cuenta en vivo
+            LocalDate firstFull = fromDate;
+            if (!from.toLocalTime().equals(LocalTime.MIDNIGHT)) {
+                firstFull = fromDate.plusDays(1);
+                merge(totals, loanRepository.countByToolGroupBefore(from, firstFull.atStartOfDay()));
+            }
+            // Días completos: los cerrados desde los rollups, el resto en vivo
+            LocalDate lastFull = toDate.minusDays(1);
+            if (!firstFull.isAfter(lastFull)) {
+                mergeFullDays(totals, firstFull, lastFull);
+            }
+            // Tramo final (hoy, en el rango por defecto) en vivo
+            merge(totals, loanRepository.countByToolGroupBetween(toDate.atStartOfDay(), to));
+        }
+
+        return totals.values().stream()
+                .sorted(Comparator.comparing(ToolLoanCountDTO::total).reversed()
+                        .thenComparing(ToolLoanCountDTO::toolGroupId))
+                .limit(limit == null || limit <= 0 ? Long.MAX_VALUE : limit)
+                .toList();
+    }
+
+    // Recorre [firstFull, lastFull] en tramos consecutivos de días cerrados o sin cerrar:
+    // con todos cerrados es una sola suma de rollups
+    private void mergeFullDays(Map<Long, ToolLoanCountDTO> totals, LocalDate firstFull, LocalDate lastFull) {
+        Set<LocalDate> sealed = new HashSet<>(loanRollupSealRepository.findSealedBetween(firstFull, lastFull));
+        LocalDate start = firstFull;
+        while (!start.isAfter(lastFull)) {
+            boolean isSealed = sealed.contains(start);
+            LocalDate end = start;
+            while (end.isBefore(lastFull) && sealed.contains(end.plusDays(1)) == isSealed) {
+                end = end.plusDays(1);
+            }
+            merge(totals, isSealed
+                    ? loanDailyRollupRepository.sumByToolGroup(start, end)
+                    : loanRepository.countByToolGroupBefore(start.atStartOfDay(), end.plusDays(1).atStartOfDay()));
+            start = end.plusDays(1);
+        }
+    }
+
+    private void merge(Map<Long, ToolLoanCountDTO> totals, List<ToolLoanCountDTO> counts) {
+        for (ToolLoanCountDTO c : counts) {
+            totals.merge(c.toolGroupId(), c, (a, b) ->
+                    new ToolLoanCountDTO(a.toolGroupId(), a.toolGroupName(), a.total() + b.total()));
+        }
+    }
+
+    /* ---------- Recalculo ---------- */
+
+    // Cierra, recontando desde loans, cada día sin cerrar desde el último cerrado hasta ayer.
+    // La concesión no se libera al terminar: el resto de los nodos, que disparan el mismo cron,
+    // la encuentra vigente y no repite el cierre. Retorna la cantidad de días cerrados
+    @Scheduled(cron = "${toolrent.rollup.seal-cron:0 10 0 * * *}")
+    public int sealPendingDays() {
+        if (!leaseService.tryAcquire(LEASE, leaseTtl)) {
+            log.debug("Cierre de rollups en otro nodo");
+            return 0;
+        }
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        LocalDate first = firstUnsealedDay(yesterday);
+        int days = 0;
+        for (LocalDate day = first; !day.isAfter(yesterday); day = day.plusDays(1)) {
+            rebuildDay(day);
+            days++;
+        }
+        if (days > 1) {
+            log.info("Rollups de préstamos: {} días sin cerrar recuperados desde {}", days, first);
+        }
+        return days;
+    }
+
+    // El día siguiente al último cerrado; sin ninguno, el del primer préstamo
+    private LocalDate firstUnsealedDay(LocalDate yesterday) {
+        LocalDate lastSealed = loanRollupSealRepository.findLastSealed();
+        if (lastSealed != null) return lastSealed.plusDays(1);
+        LocalDateTime firstLoan = loanRepository.findFirstLoanDate();
+        return firstLoan != null && firstLoan.toLocalDate().isBefore(yesterday) ? firstLoan.toLocalDate() : yesterday;
+    }
+
+    // Recalcula el historial [fromDate, toDate]; hoy queda fuera porque se cuenta en vivo.
+    // Retorna la cantidad de días recalculados
+    public int backfill(LocalDate fromDate, LocalDate toDate) {
+        LocalDate lastDay = toDate.isBefore(LocalDate.now()) ? toDate : LocalDate.now().minusDays(1);
+        int days = 0;
+        for (LocalDate day = fromDate; !day.isAfter(lastDay); day = day.plusDays(1)) {
+            rebuildDay(day);
+            days++;
+        }
+        log.info("Rollups de préstamos recalculados: {} días desde {}", days, fromDate);
+        return days;
+    }
+
+    private void rebuildDay(LocalDate day) {
+        transactionTemplate.executeWithoutResult(s -> {
+            loanDailyRollupRepository.deleteByRollupDate(day);
+            List<LoanDailyRollupEntity> rows = loanRepository
+                    .countByToolGroupBefore(day.atStartOfDay(), day.plusDays(1).atStartOfDay())
+                    .stream()
+                    .map(c -> new LoanDailyRollupEntity(day, c.toolGroupId(), c.total()))
+                    .toList();
+            loanDailyRollupRepository.saveAll(rows);
+            loanRollupSealRepository.save(new LoanRollupSealEntity(day, LocalDateTime.now()));
+        });
+    }
+}
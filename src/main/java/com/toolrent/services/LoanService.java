@@ -1,38 +1,70 @@
 package com.toolrent.services;
 
+import com.toolrent.dto.CursorPageDTO;
 import com.toolrent.dto.LoanActiveDTO;
+import com.toolrent.dto.LoanReturnRequestDTO;
+import com.toolrent.dto.LoanReturnResultDTO;
 import com.toolrent.config.SecurityConfig;
 import com.toolrent.entities.*;
 import com.toolrent.repositories.*;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class LoanService {
 
+    private static final String ALREADY_RETURNED = "El préstamo ya fue devuelto";
+
     private final LoanRepository loanRepository;
     private final ToolGroupRepository toolGroupRepository;
     private final ToolUnitRepository toolUnitRepository;
-    private final KardexMovementRepository kardexMovementRepository;
+    private final KardexWriter kardexWriter;
     private final CustomerRepository customerRepository;
+    private final LoanEligibilityService loanEligibilityService;
+    private final ToolUnitService toolUnitService;
+    private final TariffCache tariffCache;
+    private final ToolStockService toolStockService;
+    private final CustomerBalanceService customerBalanceService;
+    private final OverdueSweeper overdueSweeper;
 
 
     public LoanService(LoanRepository loanRepository,
                        ToolGroupRepository toolGroupRepository,
                        ToolUnitRepository toolUnitRepository,
-                       KardexMovementRepository kardexMovementRepository,
-                       CustomerRepository customerRepository) {
+                       KardexWriter kardexWriter,
+                       CustomerRepository customerRepository,
+                       LoanEligibilityService loanEligibilityService,
+                       ToolUnitService toolUnitService,
+                       TariffCache tariffCache,
+                       ToolStockService toolStockService,
+                       CustomerBalanceService customerBalanceService,
+                       OverdueSweeper overdueSweeper) {
         this.loanRepository = loanRepository;
         this.toolGroupRepository = toolGroupRepository;
         this.toolUnitRepository = toolUnitRepository;
-        this.kardexMovementRepository = kardexMovementRepository;
+        this.kardexWriter = kardexWriter;
         this.customerRepository = customerRepository;
+        this.loanEligibilityService = loanEligibilityService;
+        this.toolUnitService = toolUnitService;
+        this.tariffCache = tariffCache;
+        this.toolStockService = toolStockService;
+        this.customerBalanceService = customerBalanceService;
+        this.overdueSweeper = overdueSweeper;
     }
 
     // REGISTRAR PRÉSTAMO
+    @Transactional
+    @Timed(value = "toolrent.loans.register", description = "Registro de un préstamo", histogram = true)
     public LoanEntity registerLoan(Long toolGroupId, Long customerId, LocalDateTime dueDate) {
         /* ---------- Validaciones de negocio ---------- */
         // Restricción fecha de devolución
@@ -40,82 +72,173 @@ public class LoanService {
             throw new RuntimeException("La fecha de devolución no puede ser anterior a la fecha actual");
         }
 
-        // Préstamos vencidos sin devolver
-        boolean hasOverdueLoans = loanRepository.existsByCustomerIdAndReturnDateIsNullAndDueDateBefore(customerId, LocalDateTime.now());
-        if (hasOverdueLoans) {
-            throw new RuntimeException("El cliente tiene préstamos vencidos sin devolver");
-        }
+        // Todas las reglas del cliente (vencidos, multas, daños, máximo 5, misma herramienta)
+        loanEligibilityService.requireEligible(customerId, List.of(toolGroupId));
+        // La lectura anterior no bloquea: el máximo de 5 lo asegura la suma condicional del saldo
+        customerBalanceService.loansOpened(customerId, 1, dueDate);
 
-        // Multas impagas
-        boolean hasUnpaidFines = loanRepository.existsByCustomerIdAndFineAmountGreaterThanAndReturnDateIsNotNull(customerId, 0.0);
-        if (hasUnpaidFines) {
-            throw new RuntimeException("El cliente tiene multas impagas");
-        }
+        // Reserva atómica: la unidad queda LOANED solo si nadie la tomó antes
+        ToolUnitEntity availableUnit = toolUnitService.claimAvailableUnit(toolGroupId)
+                .orElseThrow(() -> toolGroupRepository.existsById(toolGroupId)
+                        ? new RuntimeException("No hay unidades disponibles")
+                        : new RuntimeException("Grupo de herramientas no encontrado"));
+        ToolGroupEntity toolGroup = availableUnit.getToolGroup();
 
-        // Deudas por reposición (préstamos con daño sin pagar)
-        boolean hasUnpaidDamage = loanRepository.existsByCustomerIdAndDamageChargeGreaterThanAndReturnDateIsNotNull(customerId, 0.0);
-        if (hasUnpaidDamage) {
-            throw new RuntimeException("El cliente tiene cargos por daño sin pagar");
-        }
+        CustomerEntity customer = customerRepository.findById(customerId)
+                .orElseThrow(() -> new RuntimeException("Customer not found"));
 
-        /* ---------- LÍMITES DE PRÉSTAMO ---------- */
+        LoanEntity savedLoan = loanRepository.save(buildLoan(customer, availableUnit, toolGroup, dueDate));
+        kardexWriter.write(buildLoanMovement(customer, availableUnit));
+        overdueSweeper.track(dueDate);
 
-        // Máximo 5 préstamos activos por cliente
-        long activeLoans = loanRepository.countByCustomerIdAndReturnDateIsNull(customerId);
-        if (activeLoans >= 5) {
-            throw new RuntimeException("El cliente ya tiene 5 préstamos activos (máximo permitido)");
-        }
+        return savedLoan;
+    }
 
-        // No puede pedir la MISMA herramienta que ya tiene en préstamo
-        boolean alreadyHasSameTool = loanRepository.existsByCustomerIdAndToolUnitToolGroupIdAndReturnDateIsNull(customerId, toolGroupId);
-        if (alreadyHasSameTool) {
-            throw new RuntimeException("El cliente ya tiene una unidad de esta herramienta en préstamo");
+    // REGISTRAR VARIOS PRÉSTAMOS (carro) – todo o nada en una sola transacción
+    @Transactional
+    @Timed(value = "toolrent.loans.register.batch", description = "Registro de un carro de préstamos", histogram = true)
+    public List<LoanEntity> registerLoans(List<Long> toolGroupIds, Long customerId, LocalDateTime dueDate) {
+        if (toolGroupIds == null || toolGroupIds.isEmpty()) {
+            throw new RuntimeException("Debe indicar al menos una herramienta");
+        }
+        if (dueDate.isBefore(LocalDateTime.now())) {
+            throw new RuntimeException("La fecha de devolución no puede ser anterior a la fecha actual");
+        }
+        if (new HashSet<>(toolGroupIds).size() != toolGroupIds.size()) {
+            throw new RuntimeException("No se puede pedir más de una unidad de la misma herramienta");
         }
 
-        ToolGroupEntity toolGroup = toolGroupRepository.findById(toolGroupId)
-                .orElseThrow(() -> new RuntimeException("Grupo de herramientas no encontrado"));
-
-        ToolUnitEntity availableUnit = toolUnitRepository
-                .findFirstByToolGroupIdAndStatus(toolGroupId, ToolStatus.AVAILABLE)
-                .orElseThrow(() -> new RuntimeException("No hay unidades disponibles"));
+        // Se valida al cliente una sola vez; el máximo de 5 considera todo el carro
+        loanEligibilityService.requireEligible(customerId, toolGroupIds);
+        // Carros concurrentes del mismo cliente: solo pasa la suma que cabe bajo el máximo
+        customerBalanceService.loansOpened(customerId, toolGroupIds.size(), dueDate);
 
         CustomerEntity customer = customerRepository.findById(customerId)
                 .orElseThrow(() -> new RuntimeException("Customer not found"));
 
+        List<LoanEntity> loans = new ArrayList<>();
+        List<KardexMovementEntity> movements = new ArrayList<>();
+        for (Long toolGroupId : toolGroupIds) {
+            // Si alguna no se puede reservar, el rollback libera las ya reservadas
+            ToolUnitEntity unit = toolUnitService.claimAvailableUnit(toolGroupId)
+                    .orElseThrow(() -> toolGroupRepository.existsById(toolGroupId)
+                            ? new RuntimeException("No hay unidades disponibles (grupo ID: " + toolGroupId + ")")
+                            : new RuntimeException("Grupo de herramientas no encontrado (ID: " + toolGroupId + ")"));
+            loans.add(buildLoan(customer, unit, unit.getToolGroup(), dueDate));
+            movements.add(buildLoanMovement(customer, unit));
+        }
+
+        List<LoanEntity> savedLoans = loanRepository.saveAll(loans);
+        kardexWriter.writeAll(movements);
+        overdueSweeper.track(dueDate);
+
+        return savedLoans;
+    }
+
+    private LoanEntity buildLoan(CustomerEntity customer, ToolUnitEntity unit,
+                                 ToolGroupEntity toolGroup, LocalDateTime dueDate) {
         LoanEntity loan = new LoanEntity();
         loan.setCustomer(customer);
-        loan.setToolUnit(availableUnit);
+        loan.setToolUnit(unit);
         loan.setDueDate(dueDate);
         loan.setTotalCost(calculateTotalCost(toolGroup, dueDate));
+        return loan;
+    }
 
-        availableUnit.setStatus(ToolStatus.LOANED);
-        toolUnitRepository.save(availableUnit);
-
-        LoanEntity savedLoan = loanRepository.save(loan);
-
+    private KardexMovementEntity buildLoanMovement(CustomerEntity customer, ToolUnitEntity unit) {
         KardexMovementEntity movement = new KardexMovementEntity();
-        movement.setToolUnit(availableUnit);
+        movement.setToolUnit(unit);
         movement.setCustomer(customer);
         movement.setMovementType(MovementType.LOAN);
-        movement.setDetails("Préstamo a cliente ID: " + customerId + " - Usuario: " + SecurityConfig.getCurrentUsername());
-        kardexMovementRepository.save(movement);
-
-        return savedLoan;
+        movement.setDetails("Préstamo a cliente ID: " + customer.getId() + " - Usuario: " + SecurityConfig.getCurrentUsername());
+        return movement;
     }
 
     // REGISTRAR DEVOLUCIÓN
+    @Transactional
+    @Timed(value = "toolrent.loans.return", description = "Devolución de un préstamo", histogram = true)
     public void returnLoan(Long loanId, Double damageCharge, boolean irreparable) {
         LoanEntity loan = loanRepository.findById(loanId)
                 .orElseThrow(() -> new RuntimeException("Loan not found"));
+        if (isReturned(loan)) {
+            throw new RuntimeException(ALREADY_RETURNED);
+        }
+
+        KardexMovementEntity movement = applyReturn(loan, damageCharge, irreparable, LocalDateTime.now());
+
+        toolUnitRepository.save(loan.getToolUnit());
+        loanRepository.save(loan);
+        kardexWriter.write(movement);
+    }
+
+    // REGISTRAR DEVOLUCIÓN MASIVA (buzón, contratistas)
+    // Carga todos los préstamos con su tarifa en una consulta, calcula en memoria
+    // y deja que Hibernate envíe los UPDATE de unidades y préstamos y los INSERT del kardex en lotes JDBC.
+    @Transactional
+    @Timed(value = "toolrent.loans.return.batch", description = "Devolución masiva de préstamos", histogram = true)
+    public List<LoanReturnResultDTO> returnLoans(List<LoanReturnRequestDTO> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new RuntimeException("Debe indicar al menos un préstamo");
+        }
+
+        Map<Long, LoanEntity> loansById = loanRepository.findAllWithDetailsByIdIn(
+                        requests.stream().map(LoanReturnRequestDTO::loanId).toList())
+                .stream()
+                .collect(Collectors.toMap(LoanEntity::getId, Function.identity()));
+
+        LocalDateTime now = LocalDateTime.now();
+        List<LoanReturnResultDTO> results = new ArrayList<>();
+        List<ToolUnitEntity> units = new ArrayList<>();
+        List<LoanEntity> returned = new ArrayList<>();
+        List<KardexMovementEntity> movements = new ArrayList<>();
+
+        for (LoanReturnRequestDTO request : requests) {
+            LoanEntity loan = loansById.get(request.loanId());
+            if (loan == null) {
+                results.add(new LoanReturnResultDTO(request.loanId(), false, null, null, "Loan not found"));
+                continue;
+            }
+            if (isReturned(loan)) {
+                results.add(new LoanReturnResultDTO(request.loanId(), false, loan.getFineAmount(),
+                        loan.getDamageCharge(), ALREADY_RETURNED));
+                continue;
+            }
+
+            double damageCharge = request.damageCharge() == null ? 0.0 : request.damageCharge();
+            boolean irreparable = Boolean.TRUE.equals(request.irreparable());
+            movements.add(applyReturn(loan, damageCharge, irreparable, now));
+            units.add(loan.getToolUnit());
+            returned.add(loan);
+            results.add(new LoanReturnResultDTO(loan.getId(), true, loan.getFineAmount(),
+                    loan.getDamageCharge(), "Devolución registrada"));
+        }
+
+        toolUnitRepository.saveAll(units);
+        loanRepository.saveAll(returned);
+        kardexWriter.writeAll(movements);
+
+        return results;
+    }
 
+    // Una segunda devolución recalcularía la multa y movería de nuevo el stock de la unidad
+    private static boolean isReturned(LoanEntity loan) {
+        return loan.getReturnDate() != null;
+    }
+
+    // Aplica multa, daño y nuevo estado de la unidad; retorna el movimiento de kardex sin guardar
+    private KardexMovementEntity applyReturn(LoanEntity loan, Double damageCharge, boolean irreparable,
+                                             LocalDateTime returnDate) {
         ToolUnitEntity unit = loan.getToolUnit();
-        CustomerEntity customer = loan.getCustomer();
+        ToolStatus previousStatus = unit.getStatus();
+        CustomerBalanceService.LoanState before = CustomerBalanceService.LoanState.of(loan);
 
         /* ---------- Multa por atraso ---------- */
-        loan.setReturnDate(LocalDateTime.now());
+        loan.setReturnDate(returnDate);
+        loan.setOverdue(false); // la marca solo aplica a préstamos sin devolver
+        loan.setAccruedFine(0.0); // la multa en curso pasa a ser la multa definitiva
         if (loan.getReturnDate().isAfter(loan.getDueDate())) {
             long lateDays = ChronoUnit.DAYS.between(loan.getDueDate(), loan.getReturnDate());
-            double dailyFine = unit.getToolGroup().getTariff().getDailyFineRate();
+            double dailyFine = tariffCache.get(unit.getToolGroup().getId()).dailyFineRate();
             loan.setFineAmount(lateDays * dailyFine);
         }
 
@@ -123,14 +246,12 @@ public class LoanService {
         if (irreparable) {
             loan.setDamageCharge(unit.getToolGroup().getReplacementValue()); // valor fijo reposición
             unit.setStatus(ToolStatus.RETIRED); // damos de baja la unidad
-            toolUnitRepository.save(unit);
         } else {
             loan.setDamageCharge(damageCharge); // daño leve
             unit.setStatus(damageCharge > 0 ? ToolStatus.IN_REPAIR : ToolStatus.AVAILABLE);
         }
-
-        toolUnitRepository.save(unit);
-        loanRepository.save(loan);
+        toolStockService.applyTransition(unit.getToolGroup().getId(), previousStatus, unit.getStatus());
+        customerBalanceService.loanChanged(loan, before);
 
         /* ---------- Kardex ---------- */
         MovementType movementType;
@@ -144,21 +265,22 @@ public class LoanService {
 
         KardexMovementEntity movement = new KardexMovementEntity();
         movement.setToolUnit(unit);
-        movement.setCustomer(customer);
+        movement.setCustomer(loan.getCustomer());
         movement.setMovementType(movementType);
-        movement.setDetails("Devolución ID: " + loanId + " - Daño: " + damageCharge + " - Usuario: "
+        movement.setDetails("Devolución ID: " + loan.getId() + " - Daño: " + damageCharge + " - Usuario: "
                 + SecurityConfig.getCurrentUsername());
-        kardexMovementRepository.save(movement);
+        return movement;
     }
 
     // CÁLCULO DE COSTO
     private Double calculateTotalCost(ToolGroupEntity toolGroup, LocalDateTime dueDate) {
         long days = ChronoUnit.DAYS.between(LocalDateTime.now(), dueDate);
         days = Math.max(1, days);
-        return toolGroup.getTariff().getDailyRentalRate() * days;
+        return tariffCache.get(toolGroup.getId()).dailyRentalRate() * days;
     }
 
     // Aplicar cargo por daño
+    @Transactional
     public void applyDamage(Long loanId, Double amount, boolean irreparable) {
         LoanEntity loan = loanRepository.findById(loanId)
                 .orElseThrow(() -> new RuntimeException("Loan not found"));
@@ -166,19 +288,25 @@ public class LoanService {
         if (loan.getReturnDate() == null) {
             throw new RuntimeException("Solo se puede aplicar daño a préstamos devueltos");
         }
+        CustomerBalanceService.LoanState before = CustomerBalanceService.LoanState.of(loan);
 
         if (irreparable) {
-            loan.setDamageCharge(loan.getToolUnit().getToolGroup().getReplacementValue());
-            loan.getToolUnit().setStatus(ToolStatus.RETIRED);
-            toolUnitRepository.save(loan.getToolUnit());
+            ToolUnitEntity unit = loan.getToolUnit();
+            ToolStatus previousStatus = unit.getStatus();
+            loan.setDamageCharge(unit.getToolGroup().getReplacementValue());
+            unit.setStatus(ToolStatus.RETIRED);
+            toolUnitRepository.save(unit);
+            toolStockService.applyTransition(unit.getToolGroup().getId(), previousStatus, ToolStatus.RETIRED);
         } else {
             loan.setDamageCharge(amount);
         }
 
         loanRepository.save(loan);
+        customerBalanceService.loanChanged(loan, before);
     }
 
     // Pagar deudas
+    @Transactional
     public void payDebts(Long loanId) {
         LoanEntity loan = loanRepository.findById(loanId)
                 .orElseThrow(() -> new RuntimeException("Loan not found"));
@@ -186,13 +314,16 @@ public class LoanService {
         if (loan.getReturnDate() == null) {
             throw new RuntimeException("Solo se pueden pagar deudas de préstamos devueltos");
         }
+        CustomerBalanceService.LoanState before = CustomerBalanceService.LoanState.of(loan);
 
         loan.setFineAmount(0.0);
         loan.setDamageCharge(0.0);
         loanRepository.save(loan);
+        customerBalanceService.loanChanged(loan, before);
     }
 
     // Obtener préstamos activos
+    @Transactional(readOnly = true)
         public List<LoanActiveDTO> getActiveLoans() {
         return loanRepository.findActiveLoansInRange(
                 LocalDateTime.now().minusMonths(1),
@@ -200,12 +331,36 @@ public class LoanService {
         );
     }
 
+    // Préstamos activos paginados por cursor (orden por fecha de vencimiento)
+    @Transactional(readOnly = true)
+    public CursorPageDTO<LoanActiveDTO> getActiveLoansPage(String cursor, Integer size) {
+        int pageSize = PageCursor.clampSize(size);
+        PageCursor after = PageCursor.ascending(cursor);
+        List<LoanActiveDTO> rows = loanRepository.findActiveLoansPage(
+                LocalDateTime.now().minusMonths(1),
+                LocalDateTime.now().plusMonths(1),
+                after.date(), after.id(), PageCursor.limit(pageSize));
+        return PageCursor.toPage(rows, pageSize, l -> PageCursor.encode(l.dueDate(), l.id()));
+    }
+
     // Obtener préstamos con deudas
+    @Transactional(readOnly = true)
     public List<LoanActiveDTO> getReturnedWithDebts() {
         return loanRepository.findReturnedWithDebts();
     }
 
+    // Préstamos con deudas paginados por cursor (devolución más reciente primero)
+    @Transactional(readOnly = true)
+    public CursorPageDTO<LoanActiveDTO> getReturnedWithDebtsPage(String cursor, Integer size) {
+        int pageSize = PageCursor.clampSize(size);
+        PageCursor after = PageCursor.descending(cursor);
+        List<LoanActiveDTO> rows = loanRepository.findReturnedWithDebtsPage(
+                after.date(), after.id(), PageCursor.limit(pageSize));
+        return PageCursor.toPage(rows, pageSize, l -> PageCursor.encode(l.returnDate(), l.id()));
+    }
+
     // Obtener préstamos pendientes de pago
+    @Transactional(readOnly = true)
     public List<LoanActiveDTO> getPendingPayment() {
         return loanRepository.findPendingPayment();
     }
@@ -0,0 +1,214 @@
+package com.toolrent.services;
+
+import com.toolrent.dto.OverdueSweepDTO;
+import com.toolrent.repositories.CustomerRepository;
+import com.toolrent.repositories.LoanRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+
+/* Barrido de préstamos vencidos.
+   Solo el nodo con la concesión "overdue-sweeper" barre. Mantiene en memoria una cola
+   con los próximos vencimientos: mientras el primero no llegue no consulta loans.
+   Al vencer, marca los préstamos (loans.overdue) y restringe a sus clientes por tramos,
+   cada uno en su propia transacción corta. En cada pasada levanta la restricción
+   automática de quienes ya no tienen vencidos ni deudas impagas.
+   Los préstamos creados en otros nodos entran a la cola en la recarga periódica. */
+@Service
+public class OverdueSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(OverdueSweeper.class);
+
+    static final String LEASE = "overdue-sweeper";
+
+    // Cuántos vencimientos próximos se cargan en la cola
+    private static final int QUEUE_SIZE = 1000;
+
+    private final LoanRepository loanRepository;
+    private final CustomerRepository customerRepository;
+    private final LeaseService leaseService;
+    private final ReferenceDataCache referenceDataCache;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final Duration leaseTtl;
+    private final long refreshMs;
+
+    private final PriorityBlockingQueue<LocalDateTime> dueDates = new PriorityBlockingQueue<>();
+    private volatile boolean leader;
+    private volatile long nextRefreshMillis;
+
+    public OverdueSweeper(LoanRepository loanRepository,
+                          CustomerRepository customerRepository,
+                          LeaseService leaseService,
+                          ReferenceDataCache referenceDataCache,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${toolrent.overdue.chunk-size:500}") int chunkSize,
+                          @Value("${toolrent.overdue.lease-ms:60000}") long leaseMs,
+                          @Value("${toolrent.overdue.refresh-ms:300000}") long refreshMs) {
+        this.loanRepository = loanRepository;
+        this.customerRepository = customerRepository;
+        this.leaseService = leaseService;
+        this.referenceDataCache = referenceDataCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.leaseTtl = Duration.ofMillis(leaseMs);
+        this.refreshMs = refreshMs;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void registerLease() {
+        leaseService.register(LEASE);
+    }
+
+    @PreDestroy
+    public void releaseLease() {
+        if (leader) {
+            leaseService.release(LEASE);
+        }
+    }
+
+    /* ---------- Cola de vencimientos ---------- */
+
+    // Préstamos nuevos de este nodo: entran a la cola solo si la transacción se confirma
+    public void track(LocalDateTime dueDate) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(dueDate);
+                }
+            });
+        } else {
+            enqueue(dueDate);
+        }
+    }
+
+    private void enqueue(LocalDateTime dueDate) {
+        // Un nodo que no es líder no barre: su cola se arma al tomar la concesión
+        if (leader) {
+            dueDates.offer(dueDate);
+        }
+    }
+
+    /* ---------- Barrido ---------- */
+
+    @Scheduled(initialDelayString = "${toolrent.overdue.tick-ms:15000}",
+            fixedDelayString = "${toolrent.overdue.tick-ms:15000}")
+    public void tick() {
+        sweep(false);
+    }
+
+    // force recarga la cola y busca vencidos aunque el primero de la cola no haya llegado
+    public OverdueSweepDTO sweep(boolean force) {
+        if (!leaseService.tryAcquire(LEASE, leaseTtl)) {
+            if (leader) {
+                log.info("Concesión {} tomada por otro nodo: se deja de barrer", LEASE);
+                leader = false;
+                dueDates.clear();
+            }
+            return new OverdueSweepDTO(false, 0, 0, 0);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        boolean refresh = force || !leader || System.currentTimeMillis() >= nextRefreshMillis;
+        if (!leader) {
+            log.info("Nodo {} toma la concesión {}", leaseService.nodeId(), LEASE);
+            leader = true;
+        }
+
+        int[] marked = {0, 0};
+        LocalDateTime head = dueDates.peek();
+        if (refresh || (head != null && head.isBefore(now))) {
+            marked = markOverdue(now);
+            if (!leader) {
+                // Perdió la concesión entre tramos: el resto lo hace el nuevo líder
+                return new OverdueSweepDTO(false, marked[0], marked[1], 0);
+            }
+        }
+        if (refresh) {
+            reload(now);
+        } else {
+            // Lo ya vencido quedó marcado: sale de la cola
+            while (dueDates.peek() != null && dueDates.peek().isBefore(now)) {
+                dueDates.poll();
+            }
+        }
+        int lifted = liftRestrictions(now);
+
+        if (marked[0] > 0 || lifted > 0) {
+            log.info("Barrido de vencidos: {} préstamo(s), {} cliente(s) restringidos, {} liberados",
+                    marked[0], marked[1], lifted);
+        }
+        return new OverdueSweepDTO(true, marked[0], marked[1], lifted);
+    }
+
+    // Marca por tramos; entre tramos renueva la concesión y se detiene si la perdió
+    private int[] markOverdue(LocalDateTime now) {
+        int loans = 0;
+        int customers = 0;
+        while (true) {
+            int[] chunk = transactionTemplate.execute(s -> {
+                List<Long> ids = loanRepository.findNewlyOverdueIds(now, PageRequest.of(0, chunkSize));
+                if (ids.isEmpty()) return new int[]{0, 0, 0};
+                int restricted = customerRepository.restrictAutomatically(loanRepository.findCustomerIdsByIdIn(ids));
+                if (restricted > 0) referenceDataCache.customersChanged();
+                return new int[]{loanRepository.markOverdue(ids), restricted, ids.size()};
+            });
+            loans += chunk[0];
+            customers += chunk[1];
+            if (chunk[2] < chunkSize) break;
+            if (!leaseService.tryAcquire(LEASE, leaseTtl)) {
+                leader = false;
+                dueDates.clear();
+                break;
+            }
+        }
+        return new int[]{loans, customers};
+    }
+
+    // Levanta por tramos; el UPDATE vuelve a verificar el saldo por si cambió entre lectura y escritura
+    private int liftRestrictions(LocalDateTime now) {
+        int lifted = 0;
+        long lastId = 0L;
+        while (true) {
+            List<Long> ids = customerRepository.findLiftableIds(now, lastId, PageRequest.of(0, chunkSize));
+            if (ids.isEmpty()) break;
+            Integer updated = transactionTemplate.execute(s -> {
+                int rows = customerRepository.liftAutomaticRestriction(ids, now);
+                if (rows > 0) referenceDataCache.customersChanged();
+                return rows;
+            });
+            lifted += updated == null ? 0 : updated;
+            if (ids.size() < chunkSize) break;
+            lastId = ids.get(ids.size() - 1);
+        }
+        return lifted;
+    }
+
+    private void reload(LocalDateTime now) {
+        List<LocalDateTime> next = loanRepository.findNextDueDates(now, PageRequest.of(0, QUEUE_SIZE));
+        dueDates.clear();
+        dueDates.addAll(next);
+        nextRefreshMillis = System.currentTimeMillis() + refreshMs;
+    }
+
+    // Próximo vencimiento en la cola; null si está vacía o este nodo no es líder
+    public LocalDateTime nextDueDate() {
+        return dueDates.peek();
+    }
+}
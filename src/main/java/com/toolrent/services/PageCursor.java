@@ -0,0 +1,83 @@
+package com.toolrent.services;
+
+import com.toolrent.dto.CursorPageDTO;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/* Paginación por cursor (keyset): el cursor es opaco para el cliente y codifica
+   la clave de orden del último elemento entregado (fecha|id o solo id).
+   Sin cursor se usa un centinela que queda antes del primer elemento del orden. */
+public record PageCursor(LocalDateTime date, Long id) {
+
+    public static final int DEFAULT_SIZE = 50;
+    public static final int MAX_SIZE = 200;
+
+    // Centinelas de primera página
+    public static final LocalDateTime MIN_DATE = LocalDateTime.of(1900, 1, 1, 0, 0);
+    public static final LocalDateTime MAX_DATE = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
+    private static final String SEPARATOR = "|";
+
+    /* ---------- Lectura del cursor ---------- */
+
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf(SEPARATOR);
+            LocalDateTime date = sep == 0 ? null : LocalDateTime.parse(raw.substring(0, sep));
+            return new PageCursor(date, Long.parseLong(raw.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Cursor de paginación inválido");
+        }
+    }
+
+    // Orden descendente por (fecha, id): la primera página parte después del máximo
+    public static PageCursor descending(String cursor) {
+        PageCursor c = decode(cursor);
+        return c != null ? c : new PageCursor(MAX_DATE, Long.MAX_VALUE);
+    }
+
+    // Orden ascendente por (fecha, id) o solo por id
+    public static PageCursor ascending(String cursor) {
+        PageCursor c = decode(cursor);
+        return c != null ? c : new PageCursor(MIN_DATE, 0L);
+    }
+
+    /* ---------- Escritura del cursor ---------- */
+
+    public static String encode(LocalDateTime date, Long id) {
+        String raw = (date == null ? "" : date.toString()) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String encode(Long id) {
+        return encode(null, id);
+    }
+
+    /* ---------- Tamaño y armado de la página ---------- */
+
+    public static int clampSize(Integer size) {
+        if (size == null) return DEFAULT_SIZE;
+        return Math.max(1, Math.min(size, MAX_SIZE));
+    }
+
+    // Se pide un elemento extra solo para saber si hay página siguiente
+    public static Pageable limit(int size) {
+        return PageRequest.of(0, size + 1);
+    }
+
+    public static <T> CursorPageDTO<T> toPage(List<T> rows, int size, Function<T, String> cursorOf) {
+        if (rows.size() <= size) {
+            return new CursorPageDTO<>(rows, null, size);
+        }
+        List<T> items = rows.subList(0, size);
+        return new CursorPageDTO<>(List.copyOf(items), cursorOf.apply(items.get(size - 1)), size);
+    }
+}
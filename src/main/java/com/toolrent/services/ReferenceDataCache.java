@@ -0,0 +1,92 @@
+package com.toolrent.services;
+
+import com.toolrent.entities.CustomerEntity;
+import com.toolrent.entities.TariffEntity;
+import com.toolrent.entities.ToolGroupEntity;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/* Caché de segundo nivel de grupos, tarifas y clientes (regiones, tamaños y TTL en application.conf).
+   En el nodo que escribe, Hibernate la mantiene al día sola, también con los UPDATE masivos.
+   Los demás nodos se enteran por dos sellos de cache_versions y el sondeo vacía solo lo que cambió
+   (igual que TariffCache):
+   - "reference-entities" (changed()): grupos y tarifas; también entra en el ETag del catálogo.
+   - "reference-customers" (customersChanged()): clientes y sus consultas cacheadas. Los clientes
+     cambian mucho más seguido y no deben vaciar grupos ni tarifas. */
+@Service
+public class ReferenceDataCache {
+
+    static final String VERSION_KEY = "reference-entities";
+    static final String CUSTOMERS_VERSION_KEY = "reference-customers";
+
+    static final List<Class<?>> CATALOG_ENTITIES = List.of(ToolGroupEntity.class, TariffEntity.class);
+    static final List<String> CUSTOMER_QUERY_REGIONS = List.of("customers_by_email", "customers_by_status");
+
+    private final CacheVersionService cacheVersionService;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ResourceVersions resourceVersions;
+
+    private volatile long knownVersion;
+    private volatile long knownCustomersVersion;
+
+    public ReferenceDataCache(CacheVersionService cacheVersionService, EntityManagerFactory entityManagerFactory,
+                              ResourceVersions resourceVersions) {
+        this.cacheVersionService = cacheVersionService;
+        this.entityManagerFactory = entityManagerFactory;
+        this.resourceVersions = resourceVersions;
+    }
+
+    @PostConstruct
+    public void init() {
+        cacheVersionService.register(VERSION_KEY);
+        cacheVersionService.register(CUSTOMERS_VERSION_KEY);
+        knownVersion = cacheVersionService.current(VERSION_KEY);
+        knownCustomersVersion = cacheVersionService.current(CUSTOMERS_VERSION_KEY);
+    }
+
+    // Grupos o tarifas; se suma a la transacción del cambio: los demás nodos vacían esas regiones al confirmar
+    public void changed() {
+        cacheVersionService.bump(VERSION_KEY);
+        resourceVersions.changed();
+    }
+
+    // Clientes: no toca grupos, tarifas ni el ETag del catálogo
+    public void customersChanged() {
+        cacheVersionService.bump(CUSTOMERS_VERSION_KEY);
+    }
+
+    // Cambios hechos por otros nodos
+    @Scheduled(fixedDelayString = "${toolrent.cache.version-poll-ms:5000}")
+    public void pollVersion() {
+        long current = cacheVersionService.current(VERSION_KEY);
+        if (current != knownVersion) {
+            knownVersion = current;
+            evictCatalog();
+        }
+        long customers = cacheVersionService.current(CUSTOMERS_VERSION_KEY);
+        if (customers != knownCustomersVersion) {
+            knownCustomersVersion = customers;
+            evictCustomers();
+        }
+    }
+
+    void evictLocal() {
+        evictCatalog();
+        evictCustomers();
+    }
+
+    void evictCatalog() {
+        CATALOG_ENTITIES.forEach(entityManagerFactory.getCache()::evict);
+    }
+
+    void evictCustomers() {
+        entityManagerFactory.getCache().evict(CustomerEntity.class);
+        org.hibernate.Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        CUSTOMER_QUERY_REGIONS.forEach(cache::evictQueryRegion);
+    }
+}
@@ -2,44 +2,55 @@ package com.toolrent.services;
 
 import com.toolrent.dto.CustomerDebtDTO;
 import com.toolrent.dto.LoanActiveDTO;
+import com.toolrent.dto.ToolLoanCountDTO;
 import com.toolrent.entities.CustomerEntity;
 import com.toolrent.repositories.LoanRepository;
 import com.toolrent.repositories.CustomerRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
 
 @Service
 public class ReportService {
 
     private final LoanRepository loanRepository;
     private final CustomerRepository customerRepository;
+    private final LoanRollupService loanRollupService;
+    private final CustomerBalanceService customerBalanceService;
 
     public ReportService(LoanRepository loanRepository,
-                         CustomerRepository customerRepository) {
+                         CustomerRepository customerRepository,
+                         LoanRollupService loanRollupService,
+                         CustomerBalanceService customerBalanceService) {
         this.loanRepository = loanRepository;
         this.customerRepository = customerRepository;
+        this.loanRollupService = loanRollupService;
+        this.customerBalanceService = customerBalanceService;
     }
 
     /* Préstamos activos (sin devolver) en rango de loanDate */
+    @Transactional(readOnly = true)
     public List<LoanActiveDTO> getActiveLoans(LocalDateTime from, LocalDateTime to) {
         return loanRepository.findActiveLoansInRange(from, to);
     }
 
     /* Clientes con al menos un préstamo atrasado */
+    @Transactional(readOnly = true)
     public List<CustomerEntity> getOverdueCustomers() {
         return customerRepository.findCustomersWithOverdueLoans(LocalDateTime.now());
     }
 
-    /* Ranking de herramientas más prestadas en rango de loanDate */
-    public List<Map<String, Object>> getTopTools(LocalDateTime from, LocalDateTime to) {
-        return loanRepository.countLoansByToolGroupInRange(from, to);
+    /* Ranking de herramientas más prestadas en rango de loanDate (rollups diarios + tramos en vivo) */
+    @Transactional(readOnly = true)
+    public List<ToolLoanCountDTO> getTopTools(LocalDateTime from, LocalDateTime to, Integer limit) {
+        return loanRollupService.getTopTools(from, to, limit);
     }
 
-    /* Clientes con deudas */
+    /* Clientes con deudas, desde los saldos mantenidos */
+    @Transactional(readOnly = true)
     public List<CustomerDebtDTO> getCustomersWithDebt(LocalDateTime now) {
-        return customerRepository.findCustomersWithDebt(now);
+        return customerBalanceService.getCustomersWithDebt(now);
     }
 }
\ No newline at end of file
@@ -0,0 +1,100 @@
+package com.toolrent.services;
+
+import com.toolrent.config.ReplicaRouting;
+import com.toolrent.dto.CatalogVersionDTO;
+import com.toolrent.repositories.ToolGroupStockRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/* ETag por versión de las consultas que el front sondea (catálogo, disponibles y tarifas).
+   La versión sale de contadores que ya cambian con cada escritura: la revisión de cada fila de
+   tool_group_stock_stripes y los sellos "tariffs" / "reference-entities" de cache_versions. Como viene
+   de la base, todos los nodos calculan el mismo ETag para el mismo estado.
+   Se guarda en memoria: un If-None-Match vigente se responde con 304 sin ir a la base.
+   - Cambios de este nodo: changed() la marca vencida al confirmar; la próxima petición la relee.
+   - Cambios de otros nodos: se relee cada toolrent.cache.version-poll-ms (igual que TariffCache).
+   La versión se lee siempre del primario: desde una réplica atrasada se guardaría la versión previa
+   al commit y se responderían 304 con datos ya cambiados hasta el siguiente sondeo. */
+@Service
+public class ResourceVersions {
+
+    public enum Resource { TOOLS, AVAILABLE_TOOLS, TARIFFS }
+
+    // Cambia cuando cambia la forma del JSON, para que no valgan ETag emitidos por la versión anterior
+    static final String FORMAT = "2";
+
+    private final ToolGroupStockRepository toolGroupStockRepository;
+
+    private volatile boolean stale = true;
+    private volatile Map<Resource, String> tags = Map.of();
+
+    public ResourceVersions(ToolGroupStockRepository toolGroupStockRepository) {
+        this.toolGroupStockRepository = toolGroupStockRepository;
+    }
+
+    public String etag(Resource resource) {
+        if (stale) {
+            refreshIfStale();
+        }
+        return tags.get(resource);
+    }
+
+    // Se llama dentro de la transacción del cambio; antes del commit la versión nueva aún no se ve
+    public void changed() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    stale = true;
+                }
+            });
+        } else {
+            stale = true;
+        }
+    }
+
+    // Cambios hechos por otros nodos
+    @Scheduled(fixedDelayString = "${toolrent.cache.version-poll-ms:5000}")
+    public synchronized void pollVersion() {
+        load();
+    }
+
+    private synchronized void refreshIfStale() {
+        if (stale) {
+            load();
+        }
+    }
+
+    // Se baja la marca antes de leer: un cambio confirmado durante la lectura la vuelve a subir
+    private void load() {
+        stale = false;
+        CatalogVersionDTO v;
+        try (ReplicaRouting.Scope ignored = ReplicaRouting.forcePrimary()) {
+            v = toolGroupStockRepository.findCatalogVersion(TariffCache.VERSION_KEY, ReferenceDataCache.VERSION_KEY);
+        } catch (RuntimeException e) {
+            stale = true;
+            throw e;
+        }
+        String stock = v.groups() + "." + v.stockRevisions();
+
+        Map<Resource, String> next = new EnumMap<>(Resource.class);
+        next.put(Resource.TOOLS, tag("tools", stock, v.tariffsVersion(), v.referenceVersion()));
+        next.put(Resource.AVAILABLE_TOOLS, tag("available", stock, v.tariffsVersion(), v.referenceVersion()));
+        // Cada grupo nuevo trae su tarifa
+        next.put(Resource.TARIFFS, tag("tariffs", v.groups(), v.tariffsVersion()));
+        tags = next;
+    }
+
+    private static String tag(String resource, Object... parts) {
+        StringBuilder sb = new StringBuilder(resource).append('-').append(FORMAT);
+        for (Object part : parts) {
+            sb.append('-').append(part);
+        }
+        return sb.toString();
+    }
+}
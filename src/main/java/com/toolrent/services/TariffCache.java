@@ -0,0 +1,115 @@
+package com.toolrent.services;
+
+import com.toolrent.entities.TariffEntity;
+import com.toolrent.repositories.TariffRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Tarifas por grupo de herramientas en memoria.
+   Se invalidan en los caminos de escritura (TariffService / ToolGroupService) y, para
+   los otros nodos, con el sello "tariffs" de cache_versions que se revisa periódicamente.
+   Cada carga lee el sello antes que la tarifa, en la transacción de quien llama: si su foto es
+   anterior al último cambio confirmado que conoce el nodo, la tarifa se usa pero no se guarda. */
+@Service
+public class TariffCache {
+
+    static final String VERSION_KEY = "tariffs";
+
+    private final TariffRepository tariffRepository;
+    private final CacheVersionService cacheVersionService;
+    private final ResourceVersions resourceVersions;
+
+    private final Map<Long, TariffSnapshot> byToolGroup = new ConcurrentHashMap<>();
+    // Cambia en cada invalidación local; evita guardar una tarifa leída antes de invalidar
+    private final AtomicLong generation = new AtomicLong();
+    // Último sello confirmado que conoce el nodo: no se guardan tarifas leídas con uno anterior
+    private final AtomicLong knownVersion = new AtomicLong();
+
+    public TariffCache(TariffRepository tariffRepository, CacheVersionService cacheVersionService,
+                       ResourceVersions resourceVersions) {
+        this.tariffRepository = tariffRepository;
+        this.cacheVersionService = cacheVersionService;
+        this.resourceVersions = resourceVersions;
+    }
+
+    @PostConstruct
+    public void init() {
+        cacheVersionService.register(VERSION_KEY);
+        knownVersion.set(cacheVersionService.current(VERSION_KEY));
+    }
+
+    public TariffSnapshot get(Long toolGroupId) {
+        TariffSnapshot cached = byToolGroup.get(toolGroupId);
+        if (cached != null) return cached;
+
+        long gen = generation.get();
+        // Primero el sello: con READ COMMITTED la tarifa leída después es al menos igual de nueva
+        long version = cacheVersionService.current(VERSION_KEY);
+        TariffSnapshot loaded = tariffRepository.findByToolGroupId(toolGroupId)
+                .map(TariffSnapshot::of)
+                .orElseThrow(() -> new RuntimeException("Tarifa no encontrada para el grupo ID: " + toolGroupId));
+        if (version < knownVersion.get()) {
+            // Transacción (REPEATABLE READ) que empezó antes del último cambio: su foto es vieja
+            return loaded;
+        }
+        byToolGroup.putIfAbsent(toolGroupId, loaded);
+        if (generation.get() != gen) {
+            byToolGroup.remove(toolGroupId, loaded);
+        }
+        return loaded;
+    }
+
+    // toolGroupId null → invalida todas las tarifas
+    public void invalidate(Long toolGroupId) {
+        long version = cacheVersionService.bump(VERSION_KEY);
+        resourceVersions.changed();
+        evictLocal(toolGroupId);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            knownVersion.accumulateAndGet(version, Math::max);
+            return;
+        }
+        // Una lectura concurrente pudo volver a cargar el valor anterior antes del commit; con el sello
+        // confirmado, las transacciones que aún leen la foto anterior ya no lo pueden volver a guardar
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    knownVersion.accumulateAndGet(version, Math::max);
+                }
+                evictLocal(toolGroupId);
+            }
+        });
+    }
+
+    // Cambios hechos por otros nodos
+    @Scheduled(fixedDelayString = "${toolrent.cache.version-poll-ms:5000}")
+    public void pollVersion() {
+        long current = cacheVersionService.current(VERSION_KEY);
+        if (current != knownVersion.get()) {
+            knownVersion.set(current);
+            evictLocal(null);
+        }
+    }
+
+    private void evictLocal(Long toolGroupId) {
+        generation.incrementAndGet();
+        if (toolGroupId == null) {
+            byToolGroup.clear();
+        } else {
+            byToolGroup.remove(toolGroupId);
+        }
+    }
+
+    public record TariffSnapshot(Long tariffId, Double dailyRentalRate, Double dailyFineRate) {
+        static TariffSnapshot of(TariffEntity tariff) {
+            return new TariffSnapshot(tariff.getId(), tariff.getDailyRentalRate(), tariff.getDailyFineRate());
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.toolrent.services;
 import com.toolrent.entities.TariffEntity;
 import com.toolrent.repositories.TariffRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -10,18 +11,28 @@ import java.util.List;
 public class TariffService {
 
     private final TariffRepository tariffRepository;
+    private final TariffCache tariffCache;
+    private final ReferenceDataCache referenceDataCache;
 
-    public TariffService(TariffRepository tariffRepository) {
+    public TariffService(TariffRepository tariffRepository, TariffCache tariffCache,
+                         ReferenceDataCache referenceDataCache) {
         this.tariffRepository = tariffRepository;
+        this.tariffCache = tariffCache;
+        this.referenceDataCache = referenceDataCache;
     }
 
+    @Transactional
     public TariffEntity updateTariff(Double dailyRentalRate, Double dailyFineRate) {
         TariffEntity tariff = tariffRepository.findById(1L).orElse(new TariffEntity());
         tariff.setDailyRentalRate(dailyRentalRate);
         tariff.setDailyFineRate(dailyFineRate);
-        return tariffRepository.save(tariff);
+        TariffEntity saved = tariffRepository.save(tariff);
+        tariffCache.invalidate(null); // no se sabe a qué grupo pertenece
+        referenceDataCache.changed();
+        return saved;
     }
 
+    @Transactional(readOnly = true)
     public List<TariffEntity> getAllTariffs() {          // devuelve TODAS
         return tariffRepository.findAll();
     }
@@ -1,8 +1,12 @@
 package com.toolrent.services;
 
+import com.toolrent.dto.CursorPageDTO;
+import com.toolrent.dto.ToolGroupAvailabilityDTO;
+import com.toolrent.dto.ToolGroupSummaryDTO;
 import com.toolrent.entities.*;
 import com.toolrent.repositories.*;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -12,16 +16,26 @@ public class ToolGroupService {
     private final ToolGroupRepository toolGroupRepository;
     private final KardexMovementService kardexMovementService;
     private final ToolUnitRepository toolUnitRepository;
+    private final TariffCache tariffCache;
+    private final ToolStockService toolStockService;
+    private final ReferenceDataCache referenceDataCache;
 
     public ToolGroupService(ToolGroupRepository toolGroupRepository,
                             KardexMovementService kardexMovementService,
-                            ToolUnitRepository toolUnitRepository) {
+                            ToolUnitRepository toolUnitRepository,
+                            TariffCache tariffCache,
+                            ToolStockService toolStockService,
+                            ReferenceDataCache referenceDataCache) {
         this.toolGroupRepository = toolGroupRepository;
         this.kardexMovementService = kardexMovementService;
         this.toolUnitRepository = toolUnitRepository;
+        this.tariffCache = tariffCache;
+        this.toolStockService = toolStockService;
+        this.referenceDataCache = referenceDataCache;
     }
 
-    /* Crear grupo + unidades */
+    /* Crear grupo + unidades (las unidades se insertan en lotes, ver hibernate.jdbc.batch_size) */
+    @Transactional
     public ToolGroupEntity registerToolGroup(String name, String category, Double replacementValue,
                                              Double pricePerDay, int stock) {
 
@@ -53,20 +67,30 @@ public class ToolGroupService {
         }
 
         ToolGroupEntity saved = toolGroupRepository.save(group);
+        toolStockService.initialize(saved.getId(), stock);
         kardexMovementService.saveRegistryKardex(saved,stock);
 
         return saved;
     }
 
+    @Transactional(readOnly = true)
     public Iterable<ToolGroupEntity> getAllToolGroups() {
         return toolGroupRepository.findAll();
     }
 
-    public List<ToolGroupEntity> getToolGroupsWithAvailableUnits() {
-        return toolGroupRepository.findAll().stream()
-                .filter(g -> g.getUnits().stream().anyMatch(u -> u.getStatus() ==
-                        ToolStatus.AVAILABLE))
-                .toList();
+    // Grupos paginados por cursor (orden por id)
+    @Transactional(readOnly = true)
+    public CursorPageDTO<ToolGroupSummaryDTO> getToolGroupsPage(String cursor, Integer size) {
+        int pageSize = PageCursor.clampSize(size);
+        PageCursor after = PageCursor.ascending(cursor);
+        List<ToolGroupSummaryDTO> rows =
+                toolGroupRepository.findSummaryPageAfter(after.id(), PageCursor.limit(pageSize));
+        return PageCursor.toPage(rows, pageSize, g -> PageCursor.encode(g.id()));
+    }
+
+    @Transactional(readOnly = true)
+    public List<ToolGroupAvailabilityDTO> getToolGroupsWithAvailableUnits() {
+        return toolGroupRepository.findWithAvailableUnits();
     }
 
     public ToolGroupEntity findById(Long id) {
@@ -75,6 +99,20 @@ public class ToolGroupService {
     }
 
     public ToolGroupEntity save(ToolGroupEntity group) {
-        return toolGroupRepository.save(group);
+        ToolGroupEntity saved = toolGroupRepository.save(group);
+        referenceDataCache.changed();
+        return saved;
+    }
+
+    /* Editar tarifa de un grupo */
+    @Transactional
+    public ToolGroupEntity updateTariff(Long id, Double dailyRentalRate, Double dailyFineRate) {
+        ToolGroupEntity group = findById(id);
+        group.getTariff().setDailyRentalRate(dailyRentalRate);
+        group.getTariff().setDailyFineRate(dailyFineRate);
+        ToolGroupEntity saved = toolGroupRepository.save(group);
+        tariffCache.invalidate(id);
+        referenceDataCache.changed();
+        return saved;
     }
 }
\ No newline at end of file
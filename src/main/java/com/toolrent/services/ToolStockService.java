@@ -0,0 +1,239 @@
+package com.toolrent.services;
+
+import com.toolrent.dto.ToolGroupStockDTO;
+import com.toolrent.dto.ToolStatusCountDTO;
+import com.toolrent.entities.ToolGroupStockEntity;
+import com.toolrent.entities.ToolStatus;
+import com.toolrent.repositories.ToolGroupRepository;
+import com.toolrent.repositories.ToolGroupStockRepository;
+import com.toolrent.repositories.ToolUnitRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/* Stock por grupo desde tool_group_stock_stripes (STRIPES filas por grupo, un contador por estado).
+   Cada cambio de estado de una unidad suma su delta en una franja al azar, en la misma transacción:
+   los préstamos concurrentes de un grupo se reparten entre filas en vez de esperar por una sola.
+   La reconciliación periódica compara contra tool_units y corrige cualquier desvío; la corre un solo
+   nodo, el que tiene la concesión tool-stock-reconcile. */
+@Service
+public class ToolStockService {
+
+    private static final Logger log = LoggerFactory.getLogger(ToolStockService.class);
+
+    static final int STRIPES = 8;
+    static final String LEASE = "tool-stock-reconcile";
+
+    private final ToolGroupStockRepository toolGroupStockRepository;
+    private final ToolUnitRepository toolUnitRepository;
+    private final ToolGroupRepository toolGroupRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ResourceVersions resourceVersions;
+    private final LeaseService leaseService;
+    private final Duration leaseTtl;
+
+    public ToolStockService(ToolGroupStockRepository toolGroupStockRepository,
+                            ToolUnitRepository toolUnitRepository,
+                            ToolGroupRepository toolGroupRepository,
+                            PlatformTransactionManager transactionManager,
+                            ResourceVersions resourceVersions,
+                            LeaseService leaseService,
+                            @Value("${toolrent.stock.lease-ms:750000}") long leaseMs) {
+        this.toolGroupStockRepository = toolGroupStockRepository;
+        this.toolUnitRepository = toolUnitRepository;
+        this.toolGroupRepository = toolGroupRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.resourceVersions = resourceVersions;
+        this.leaseService = leaseService;
+        this.leaseTtl = Duration.ofMillis(leaseMs);
+    }
+
+    /* ---------- Escritura (dentro de la transacción del cambio) ---------- */
+
+    // Franjas iniciales de un grupo recién creado; todo el stock parte en la franja 0
+    @Transactional
+    public void initialize(Long toolGroupId, long available) {
+        toolGroupStockRepository.saveAll(newStripes(toolGroupId, available, 0L, 0L, 0L));
+        resourceVersions.changed();
+    }
+
+    // Una unidad del grupo pasa de un estado a otro
+    @Transactional
+    public void applyTransition(Long toolGroupId, ToolStatus from, ToolStatus to) {
+        if (from == to) return;
+        Map<ToolStatus, Long> delta = new EnumMap<>(ToolStatus.class);
+        delta.merge(from, -1L, Long::sum);
+        delta.merge(to, 1L, Long::sum);
+
+        int stripe = ThreadLocalRandom.current().nextInt(STRIPES);
+        int updated = addDeltas(toolGroupId, stripe, delta);
+        if (updated == 0 && stripe != 0) {
+            // Franja faltante (grupo reparado a medias o STRIPES mayor que antes): la 0 siempre existe
+            updated = addDeltas(toolGroupId, 0, delta);
+        }
+        if (updated == 0) {
+            // Grupo anterior a la tabla de stock: lo crea la próxima reconciliación
+            log.debug("Grupo {} sin filas en tool_group_stock_stripes", toolGroupId);
+        }
+        resourceVersions.changed();
+    }
+
+    private int addDeltas(Long toolGroupId, int stripe, Map<ToolStatus, Long> delta) {
+        return toolGroupStockRepository.addDeltas(toolGroupId, stripe,
+                delta.getOrDefault(ToolStatus.AVAILABLE, 0L),
+                delta.getOrDefault(ToolStatus.LOANED, 0L),
+                delta.getOrDefault(ToolStatus.IN_REPAIR, 0L),
+                delta.getOrDefault(ToolStatus.RETIRED, 0L));
+    }
+
+    /* ---------- Lectura ---------- */
+
+    public long getAvailable(Long toolGroupId) {
+        Long available = toolGroupStockRepository.sumAvailable(toolGroupId);
+        return available != null ? available
+                : toolUnitRepository.countByToolGroupIdAndStatus(toolGroupId, ToolStatus.AVAILABLE);
+    }
+
+    public List<ToolGroupStockDTO> getAllStock() {
+        return toolGroupStockRepository.findAllStock();
+    }
+
+    /* ---------- Reconciliación ---------- */
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        leaseService.register(LEASE);
+        reconcileScheduled();
+    }
+
+    // Solo el nodo con la concesión; los demás no leen nada
+    @Scheduled(initialDelayString = "${toolrent.stock.reconcile-ms:600000}",
+            fixedDelayString = "${toolrent.stock.reconcile-ms:600000}")
+    public void reconcileScheduled() {
+        if (!leaseService.tryAcquire(LEASE, leaseTtl)) {
+            log.debug("Concesión {} de otro nodo: no se reconcilia stock", LEASE);
+            return;
+        }
+        reconcile();
+    }
+
+    // Retorna la cantidad de grupos corregidos
+    public int reconcile() {
+        Map<Long, ToolGroupStockDTO> actual = new HashMap<>();
+        for (Long id : toolGroupRepository.findAllIds()) {
+            actual.put(id, countsOf(id, List.of()));
+        }
+        Map<Long, List<ToolStatusCountDTO>> byGroup = new HashMap<>();
+        for (ToolStatusCountDTO c : toolUnitRepository.countGroupedByToolGroupAndStatus()) {
+            byGroup.computeIfAbsent(c.toolGroupId(), k -> new ArrayList<>()).add(c);
+        }
+        byGroup.forEach((id, counts) -> actual.put(id, countsOf(id, counts)));
+
+        Map<Long, ToolGroupStockDTO> stored = new HashMap<>();
+        toolGroupStockRepository.findAllStock().forEach(s -> stored.put(s.toolGroupId(), s));
+
+        // Primera pasada sin bloqueos; solo los grupos con diferencias se recalculan con la fila bloqueada
+        int repaired = 0;
+        for (Long toolGroupId : actual.keySet()) {
+            if (Objects.equals(actual.get(toolGroupId), stored.get(toolGroupId))) continue;
+            createMissingStripes(toolGroupId);
+            if (Boolean.TRUE.equals(transactionTemplate.execute(s -> repair(toolGroupId)))) {
+                repaired++;
+            }
+        }
+        if (repaired > 0) {
+            log.warn("Stock reconciliado: {} grupo(s) con desvío corregidos", repaired);
+        }
+        return repaired;
+    }
+
+    // Franjas en cero que le falten al grupo, cada una en su propia transacción: no cambian la suma,
+    // y así repair siempre encuentra las STRIPES filas que bloquear. Si otro nodo o hilo inserta
+    // la misma franja antes, el INSERT falla por clave duplicada y la franja ya existe.
+    private void createMissingStripes(Long toolGroupId) {
+        Set<Integer> existing = Set.copyOf(toolGroupStockRepository.findStripes(toolGroupId));
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            if (existing.contains(stripe)) continue;
+            int missing = stripe;
+            try {
+                transactionTemplate.executeWithoutResult(s ->
+                        toolGroupStockRepository.insertEmptyStripe(toolGroupId, missing));
+            } catch (DataIntegrityViolationException e) {
+                // Creada al mismo tiempo por otro
+            }
+        }
+    }
+
+    // Con todas las franjas bloqueadas ningún cambio de estado del grupo puede sumar su delta a medias.
+    // El recuento queda en la franja 0 y las demás vuelven a cero.
+    private boolean repair(Long toolGroupId) {
+        List<ToolGroupStockEntity> locked = toolGroupStockRepository.findForUpdate(toolGroupId);
+        ToolGroupStockDTO counted = countsOf(toolGroupId, toolUnitRepository.countByStatusForToolGroup(toolGroupId));
+        ToolGroupStockDTO current = sumOf(toolGroupId, locked);
+        if (locked.size() == STRIPES && counted.equals(current)) {
+            return false;
+        }
+        log.info("Corrigiendo stock del grupo {}: {} → {}", toolGroupId, current, counted);
+        Map<Integer, ToolGroupStockEntity> byStripe = new HashMap<>();
+        locked.forEach(row -> byStripe.put(row.getStripe(), row));
+        for (ToolGroupStockEntity fresh : newStripes(toolGroupId,
+                counted.available(), counted.loaned(), counted.inRepair(), counted.retired())) {
+            ToolGroupStockEntity row = byStripe.getOrDefault(fresh.getStripe(), fresh);
+            row.setAvailable(fresh.getAvailable());
+            row.setLoaned(fresh.getLoaned());
+            row.setInRepair(fresh.getInRepair());
+            row.setRetired(fresh.getRetired());
+            row.setRevision(row.getRevision() + 1);
+            byStripe.put(row.getStripe(), row);
+        }
+        toolGroupStockRepository.saveAll(byStripe.values());
+        resourceVersions.changed();
+        return true;
+    }
+
+    private static List<ToolGroupStockEntity> newStripes(Long toolGroupId, long available, long loaned,
+                                                         long inRepair, long retired) {
+        List<ToolGroupStockEntity> stripes = new ArrayList<>(STRIPES);
+        stripes.add(new ToolGroupStockEntity(toolGroupId, 0, available, loaned, inRepair, retired, 0L));
+        for (int stripe = 1; stripe < STRIPES; stripe++) {
+            stripes.add(new ToolGroupStockEntity(toolGroupId, stripe, 0L, 0L, 0L, 0L, 0L));
+        }
+        return stripes;
+    }
+
+    private static ToolGroupStockDTO sumOf(Long toolGroupId, List<ToolGroupStockEntity> rows) {
+        return new ToolGroupStockDTO(toolGroupId,
+                rows.stream().mapToLong(ToolGroupStockEntity::getAvailable).sum(),
+                rows.stream().mapToLong(ToolGroupStockEntity::getLoaned).sum(),
+                rows.stream().mapToLong(ToolGroupStockEntity::getInRepair).sum(),
+                rows.stream().mapToLong(ToolGroupStockEntity::getRetired).sum());
+    }
+
+    private static ToolGroupStockDTO countsOf(Long toolGroupId, List<ToolStatusCountDTO> counts) {
+        Map<ToolStatus, Long> byStatus = new EnumMap<>(ToolStatus.class);
+        counts.forEach(c -> byStatus.put(c.status(), c.units()));
+        return new ToolGroupStockDTO(toolGroupId,
+                byStatus.getOrDefault(ToolStatus.AVAILABLE, 0L),
+                byStatus.getOrDefault(ToolStatus.LOANED, 0L),
+                byStatus.getOrDefault(ToolStatus.IN_REPAIR, 0L),
+                byStatus.getOrDefault(ToolStatus.RETIRED, 0L));
+    }
+}
@@ -1,32 +1,48 @@
 package com.toolrent.services;
 
+import com.toolrent.dto.CursorPageDTO;
+import com.toolrent.dto.ToolUnitSummaryDTO;
 import com.toolrent.entities.*;
 import com.toolrent.repositories.LoanRepository;
 import com.toolrent.repositories.ToolUnitRepository;
-import com.toolrent.repositories.KardexMovementRepository;
 import com.toolrent.config.SecurityConfig;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
 
 
 @Service
 public class ToolUnitService {
 
+    private static final int CLAIM_WINDOW = 32;
+    private static final int MAX_CLAIM_ATTEMPTS = 4;
+
     private final ToolUnitRepository toolUnitRepository;
-    private final KardexMovementRepository kardexMovementRepository;
+    private final KardexWriter kardexWriter;
     private final CustomerService customerService;
     private final LoanRepository loanRepository;
+    private final ToolStockService toolStockService;
+    private final CustomerBalanceService customerBalanceService;
+    private final BusinessMetrics businessMetrics;
 
     public ToolUnitService(ToolUnitRepository toolUnitRepository,
-                           KardexMovementRepository kardexMovementRepository,
+                           KardexWriter kardexWriter,
                            CustomerService customerService,
-                           LoanRepository loanRepository) {
+                           LoanRepository loanRepository,
+                           ToolStockService toolStockService,
+                           CustomerBalanceService customerBalanceService,
+                           BusinessMetrics businessMetrics) {
         this.toolUnitRepository = toolUnitRepository;
-        this.kardexMovementRepository = kardexMovementRepository;
+        this.kardexWriter = kardexWriter;
         this.customerService = customerService;
         this.loanRepository = loanRepository;
+        this.toolStockService = toolStockService;
+        this.customerBalanceService = customerBalanceService;
+        this.businessMetrics = businessMetrics;
     }
 
     @Transactional
@@ -42,6 +58,13 @@ public class ToolUnitService {
             throw new RuntimeException("La unidad ya fue retirada anteriormente");
         }
 
+        // Cambio condicional, igual que en claimAvailableUnit: si un préstamo u otro
+        // cambio de estado tomó la unidad después de leerla, no se pisa su estado.
+        ToolStatus previous = unit.getStatus();
+        if (toolUnitRepository.compareAndSetStatus(unitId, previous, newStatus) != 1) {
+            throw new RuntimeException("La unidad cambió de estado mientras se procesaba, intente nuevamente");
+        }
+
         /* ---------- Kardex ---------- */
         MovementType movementType = mapStatusToMovementType(newStatus);
         if (movementType != null) {
@@ -49,13 +72,14 @@ public class ToolUnitService {
             movement.setCustomer(customerService.getSystemCustomer());
             movement.setToolUnit(unit);
             movement.setMovementType(movementType);
-            movement.setDetails("Cambio de estado: " + unit.getStatus() + " → " + newStatus +
+            movement.setDetails("Cambio de estado: " + previous + " → " + newStatus +
                     " - Usuario: " + SecurityConfig.getCurrentUsername());
-            kardexMovementRepository.save(movement);
+            kardexWriter.write(movement);
         }
 
-        unit.setStatus(newStatus);
-        return toolUnitRepository.save(unit);
+        unit.setStatus(newStatus); // la entidad ya está en el contexto con el estado anterior
+        toolStockService.applyTransition(unit.getToolGroup().getId(), previous, newStatus);
+        return unit;
     }
 
     // Movimientos posibles del kárdex para herramientas
@@ -75,6 +99,43 @@ public class ToolUnitService {
                 .orElseThrow(() -> new RuntimeException("No hay unidades disponibles"));
     }
 
+    // Reserva atómicamente una unidad disponible del grupo (AVAILABLE → LOANED).
+    // Cada llamada parte de una candidata al azar, así los préstamos concurrentes
+    // del mismo grupo se reparten entre unidades en vez de competir por la misma fila.
+    @Transactional
+    public Optional<ToolUnitEntity> claimAvailableUnit(Long toolGroupId) {
+        int window = CLAIM_WINDOW;
+        for (int attempt = 0; attempt < MAX_CLAIM_ATTEMPTS; attempt++) {
+            List<Long> candidates = toolUnitRepository.findIdsByToolGroupIdAndStatus(
+                    toolGroupId, ToolStatus.AVAILABLE, PageRequest.of(0, window));
+            if (candidates.isEmpty()) {
+                break;
+            }
+
+            int offset = ThreadLocalRandom.current().nextInt(candidates.size());
+            for (int i = 0; i < candidates.size(); i++) {
+                Long unitId = candidates.get((offset + i) % candidates.size());
+                if (toolUnitRepository.compareAndSetStatus(unitId, ToolStatus.AVAILABLE, ToolStatus.LOANED) == 1) {
+                    toolStockService.applyTransition(toolGroupId, ToolStatus.AVAILABLE, ToolStatus.LOANED);
+                    ToolUnitEntity unit = toolUnitRepository.findByIdWithCachedGroup(unitId)
+                            .orElseThrow(() -> new RuntimeException("Unidad no encontrada"));
+                    unit.setStatus(ToolStatus.LOANED); // por si ya estaba en el contexto con el estado anterior
+                    return Optional.of(unit);
+                }
+                businessMetrics.unitClaimConflict();
+            }
+
+            // Todas las candidatas las tomaron otros: si no había más, no queda stock
+            if (candidates.size() < window) {
+                break;
+            }
+            businessMetrics.unitClaimRetry();
+            window *= 2;
+        }
+        businessMetrics.unitClaimExhausted();
+        return Optional.empty();
+    }
+
     // Retira una unidad que está en reparación y carga el valor de reposición
     // como deuda al último préstamo devuelto de esa unidad.
     @Transactional
@@ -90,8 +151,10 @@ public class ToolUnitService {
                 .orElseThrow(() -> new RuntimeException("No se encontró préstamo devuelto para esta unidad"));
 
         // Cargar valor de reposición como deuda
+        CustomerBalanceService.LoanState before = CustomerBalanceService.LoanState.of(loan);
         loan.setDamageCharge(unit.getToolGroup().getReplacementValue());
         loanRepository.save(loan);
+        customerBalanceService.loanChanged(loan, before);
 
         // Cambiar estado
         changeStatus(unitId, ToolStatus.RETIRED);
@@ -107,11 +170,19 @@ public class ToolUnitService {
         return toolUnitRepository.findAllWithToolGroup();
     }
 
+    // Unidades paginadas por cursor (orden por id), con su grupo
+    public CursorPageDTO<ToolUnitSummaryDTO> findUnitsPage(String cursor, Integer size) {
+        int pageSize = PageCursor.clampSize(size);
+        PageCursor after = PageCursor.ascending(cursor);
+        List<ToolUnitSummaryDTO> rows = toolUnitRepository.findSummaryPage(after.id(), PageCursor.limit(pageSize));
+        return PageCursor.toPage(rows, pageSize, u -> PageCursor.encode(u.id()));
+    }
+
     public ToolUnitEntity save(ToolUnitEntity unit) {
         return toolUnitRepository.save(unit);
     }
 
     public long getRealStock(Long toolGroupId) {
-        return toolUnitRepository.countByToolGroupIdAndStatus(toolGroupId, ToolStatus.AVAILABLE);
+        return toolStockService.getAvailable(toolGroupId);
     }
 }
@@ -0,0 +1,86 @@
+package com.toolrent.config;
+
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/* Reservas de bloques de ids sobre id_generators con el pool propio del asignador. */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import({IdBlockConfig.class, IdGeneratorMigration.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdBlockAllocatorTest {
+
+    private static final String SEQUENCE = "test_block_ids";
+
+    @Autowired private IdBlockAllocator allocator;
+    @Autowired private IdGeneratorMigration migration;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanup() {
+        jdbcTemplate.update("DELETE FROM id_generators WHERE sequence_name = ?", SEQUENCE);
+    }
+
+    @Test @DisplayName("reserve – sin fila la crea y entrega bloques consecutivos")
+    void reserve_createsMissingRow() {
+        assertThat(allocator.reserve(SEQUENCE, 10)).isEqualTo(1L);
+        assertThat(allocator.reserve(SEQUENCE, 10)).isEqualTo(11L);
+        assertThat(jdbcTemplate.queryForObject("SELECT next_val FROM id_generators WHERE sequence_name = ?",
+                Long.class, SEQUENCE)).isEqualTo(21L);
+    }
+
+    @Test @DisplayName("reserve – continúa sobre el contador que adelantó la migración")
+    void reserve_afterMigration() {
+        migration.synchronizeAll();
+        jdbcTemplate.update("UPDATE id_generators SET next_val = 5000 WHERE sequence_name = 'loans'");
+
+        assertThat(allocator.reserve("loans", 500)).isEqualTo(5000L);
+        assertThat(allocator.reserve("loans", 500)).isEqualTo(5500L);
+    }
+
+    @Test @DisplayName("reserve concurrente – ningún id en dos bloques")
+    void reserve_parallel_disjointBlocks() throws Exception {
+        int threads = 8;
+        int perThread = 50;
+        int size = 10;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Long>>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                List<Long> firsts = new ArrayList<>();
+                for (int i = 0; i < perThread; i++) {
+                    firsts.add(allocator.reserve(SEQUENCE, size));
+                }
+                return firsts;
+            }));
+        }
+        start.countDown();
+
+        Set<Long> ids = new HashSet<>();
+        for (Future<List<Long>> f : results) {
+            for (long first : f.get(60, TimeUnit.SECONDS)) {
+                for (long id = first; id < first + size; id++) {
+                    assertThat(ids.add(id)).as("id %d entregado dos veces", id).isTrue();
+                }
+            }
+        }
+        pool.shutdown();
+
+        assertThat(ids).hasSize(threads * perThread * size);
+    }
+}
@@ -0,0 +1,66 @@
+package com.toolrent.config;
+
+import com.toolrent.entities.TariffEntity;
+import com.toolrent.repositories.TariffRepository;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.*;
+
+/* Filas heredadas de IDENTITY: los nuevos ids deben quedar por sobre el máximo existente.
+   Sin transacción de test: el generador de ids usa su propia transacción sobre id_generators. */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import(IdGeneratorMigration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdGeneratorMigrationTest {
+
+    @Autowired private IdGeneratorMigration migration;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private TariffRepository tariffRepository;
+
+    @AfterEach
+    void cleanup() {
+        tariffRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM id_generators");
+    }
+
+    private long nextVal(String table) {
+        return jdbcTemplate.queryForObject(
+                "SELECT next_val FROM id_generators WHERE sequence_name = ?", Long.class, table);
+    }
+
+    @Test @DisplayName("synchronizeAll – crea contadores faltantes sobre el máximo id")
+    void synchronize_insertsMissingRows() {
+        jdbcTemplate.update("DELETE FROM id_generators");
+        jdbcTemplate.update("INSERT INTO tariffs (id, daily_rental_rate, daily_fine_rate) VALUES (1000, 1.0, 1.0)");
+
+        migration.synchronizeAll();
+
+        assertThat(nextVal("tariffs")).isEqualTo(1001L);
+        assertThat(nextVal("tool_units")).isEqualTo(1L);
+
+        TariffEntity tariff = new TariffEntity();
+        tariff.setDailyRentalRate(2000.0);
+        tariff.setDailyFineRate(500.0);
+        assertThat(tariffRepository.save(tariff).getId()).isGreaterThan(1000L);
+    }
+
+    @Test @DisplayName("synchronizeAll – nunca retrocede un contador")
+    void synchronize_neverLowers() {
+        migration.synchronizeAll();
+        jdbcTemplate.update("UPDATE id_generators SET next_val = 5000 WHERE sequence_name = 'tariffs'");
+
+        migration.synchronizeAll();
+
+        assertThat(nextVal("tariffs")).isEqualTo(5000L);
+    }
+}
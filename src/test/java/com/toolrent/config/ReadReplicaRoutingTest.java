@@ -0,0 +1,178 @@
+package com.toolrent.config;
+
+import com.toolrent.support.OfflineSecurityConfig;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.*;
+
+/* Dos H2 en memoria como primario y réplica. No hay replicación entre ellas: cada una tiene
+   una tabla routing_marker con su nombre para saber de dónde leyó la transacción, y las pruebas
+   escriben a mano el latido que "llegó" a la réplica. */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "toolrent.replica.enabled=true",
+        "toolrent.replica.datasource.jdbc-url=jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1",
+        "toolrent.replica.datasource.driver-class-name=org.h2.Driver",
+        "toolrent.replica.datasource.username=sa",
+        "toolrent.replica.datasource.password=",
+        "toolrent.replica.datasource.read-only=false",
+        "toolrent.replica.max-lag-ms=2000",
+        "toolrent.replica.lag-check-ms=86400000"})
+@ActiveProfiles("test")
+@Import(OfflineSecurityConfig.class)
+class ReadReplicaRoutingTest {
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private ReplicaLagMonitor monitor;
+    @Autowired private ReplicaRouting routing;
+    @Autowired @Qualifier("primaryPool") private DataSource primaryPool;
+    @Autowired @Qualifier("replicaPool") private DataSource replicaPool;
+    @Autowired @Qualifier("readYourWritesFilter") private OncePerRequestFilter readYourWritesFilter;
+
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+
+    @BeforeEach
+    void setUp() {
+        primary = new JdbcTemplate(primaryPool);
+        replica = new JdbcTemplate(replicaPool);
+        for (JdbcTemplate db : new JdbcTemplate[]{primary, replica}) {
+            db.execute("CREATE TABLE IF NOT EXISTS routing_marker (name VARCHAR(16))");
+            db.update("DELETE FROM routing_marker");
+        }
+        primary.update("INSERT INTO routing_marker VALUES ('primary')");
+        replica.update("INSERT INTO routing_marker VALUES ('replica')");
+        replica.execute("CREATE TABLE IF NOT EXISTS replica_heartbeat "
+                + "(name VARCHAR(64) PRIMARY KEY, beat_millis BIGINT NOT NULL)");
+    }
+
+    /* ======================================================================
+              1. Ruteo por tipo de transacción
+       ====================================================================== */
+
+    @Test @DisplayName("readOnly con la réplica al día → lee de la réplica")
+    void readOnly_replicaInSync() {
+        replicated(System.currentTimeMillis());
+
+        assertThat(readFrom(true)).isEqualTo("replica");
+    }
+
+    @Test @DisplayName("transacción de escritura → primario aunque la réplica esté al día")
+    void readWrite_primary() {
+        replicated(System.currentTimeMillis());
+
+        assertThat(readFrom(false)).isEqualTo("primary");
+    }
+
+    @Test @DisplayName("forcePrimary – lecturas propias tras escribir van al primario")
+    void forcePrimary() {
+        replicated(System.currentTimeMillis());
+
+        try (ReplicaRouting.Scope ignored = ReplicaRouting.forcePrimary()) {
+            assertThat(readFrom(true)).isEqualTo("primary");
+        }
+        assertThat(readFrom(true)).isEqualTo("replica");
+    }
+
+    /* ======================================================================
+              2. Atraso de la réplica
+       ====================================================================== */
+
+    @Test @DisplayName("réplica atrasada más de max-lag → vuelve al primario")
+    void lagging_fallsBackToPrimary() {
+        replicated(System.currentTimeMillis() - 60_000);
+
+        assertThat(routing.isLagging()).isTrue();
+        assertThat(monitor.lagMs()).isGreaterThanOrEqualTo(60_000);
+        assertThat(readFrom(true)).isEqualTo("primary");
+    }
+
+    @Test @DisplayName("réplica sin latido (caída o sin replicar) → primario")
+    void noHeartbeat_fallsBackToPrimary() {
+        replica.update("DELETE FROM replica_heartbeat");
+        monitor.check();
+
+        assertThat(routing.isLagging()).isTrue();
+        assertThat(monitor.lagMs()).isEqualTo(-1);
+        assertThat(readFrom(true)).isEqualTo("primary");
+    }
+
+    @Test @DisplayName("check – escribe el latido en el primario")
+    void check_writesHeartbeat() {
+        long before = System.currentTimeMillis();
+        monitor.check();
+
+        Long beat = primary.queryForObject("SELECT beat_millis FROM replica_heartbeat WHERE name = ?",
+                Long.class, ReplicaLagMonitor.HEARTBEAT);
+        assertThat(beat).isGreaterThanOrEqualTo(before);
+    }
+
+    /* ======================================================================
+              3. Lecturas propias por petición
+       ====================================================================== */
+
+    @Test @DisplayName("escritura → primario durante la petición y deja la cookie")
+    void filter_writeSetsCookie() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThat(primaryDuring(new MockHttpServletRequest("POST", "/loans"), response)).isTrue();
+        assertThat(response.getCookie(ReadReplicaConfig.PRIMARY_UNTIL_COOKIE)).isNotNull();
+    }
+
+    @Test @DisplayName("lectura con cookie vigente → primario; sin cookie o vencida → réplica")
+    void filter_readHonorsCookie() throws Exception {
+        MockHttpServletRequest fresh = new MockHttpServletRequest("GET", "/loans/active");
+        fresh.setCookies(new Cookie(ReadReplicaConfig.PRIMARY_UNTIL_COOKIE,
+                Long.toString(System.currentTimeMillis() + 5_000)));
+        MockHttpServletRequest expired = new MockHttpServletRequest("GET", "/loans/active");
+        expired.setCookies(new Cookie(ReadReplicaConfig.PRIMARY_UNTIL_COOKIE,
+                Long.toString(System.currentTimeMillis() - 1)));
+
+        assertThat(primaryDuring(fresh, new MockHttpServletResponse())).isTrue();
+        assertThat(primaryDuring(expired, new MockHttpServletResponse())).isFalse();
+        assertThat(primaryDuring(new MockHttpServletRequest("GET", "/loans/active"),
+                new MockHttpServletResponse())).isFalse();
+        assertThat(ReplicaRouting.primaryRequested()).isFalse();
+    }
+
+    /* ======================================================================
+                                  Helpers
+       ====================================================================== */
+
+    // Latido que "llegó" a la réplica y medición inmediata
+    private void replicated(long beatMillis) {
+        replica.update("DELETE FROM replica_heartbeat");
+        replica.update("INSERT INTO replica_heartbeat (name, beat_millis) VALUES (?, ?)",
+                ReplicaLagMonitor.HEARTBEAT, beatMillis);
+        monitor.check();
+    }
+
+    private String readFrom(boolean readOnly) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(readOnly);
+        return tx.execute(s -> jdbcTemplate.queryForObject("SELECT name FROM routing_marker", String.class));
+    }
+
+    private boolean primaryDuring(MockHttpServletRequest request, MockHttpServletResponse response) throws Exception {
+        AtomicBoolean primaryRequested = new AtomicBoolean();
+        readYourWritesFilter.doFilter(request, response,
+                (req, res) -> primaryRequested.set(ReplicaRouting.primaryRequested()));
+        return primaryRequested.get();
+    }
+}
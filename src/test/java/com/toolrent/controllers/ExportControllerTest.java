@@ -0,0 +1,189 @@
+package com.toolrent.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.toolrent.entities.*;
+import com.toolrent.repositories.CustomerRepository;
+import com.toolrent.repositories.KardexMovementRepository;
+import com.toolrent.repositories.LoanRepository;
+import com.toolrent.services.ToolGroupService;
+import com.toolrent.support.OfflineSecurityConfig;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/* Exportaciones de punta a punta contra H2: consulta con cursor, escritura por tramos
+   y la respuesta asíncrona completa, con más filas que un tramo de lectura o de escritura. */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:export;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(OfflineSecurityConfig.class)
+class ExportControllerTest {
+
+    private static final RequestPostProcessor ADMIN = jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN"));
+
+    // Más de un tramo de lectura (fetch size 1000 de streamForExport) y de escritura (flush cada 500)
+    private static final int ROWS = 1250;
+    private static final LocalDate FROM = LocalDate.of(2025, 3, 1);
+    private static final LocalDate TO = LocalDate.of(2025, 3, 31);
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private ToolGroupService toolGroupService;
+    @Autowired private CustomerRepository customerRepository;
+    @Autowired private KardexMovementRepository kardexMovementRepository;
+    @Autowired private LoanRepository loanRepository;
+
+    private static Long customerId;
+
+    // Filas dentro del rango y una antes y otra después, que no deben exportarse
+    @BeforeEach
+    void seed() {
+        if (customerId != null) return;
+        ToolUnitEntity unit = toolGroupService.registerToolGroup("Rotomartillo", "Exportación", 15000.0, 1000.0, 1)
+                .getUnits().get(0);
+        CustomerEntity customer = new CustomerEntity();
+        customer.setName("Cliente, \"Exportación\"");
+        customer.setRut("rut-export");
+        customer.setPhone("900000000");
+        customer.setEmail("export@toolrent.com");
+        customer = customerRepository.save(customer);
+
+        List<KardexMovementEntity> movements = new ArrayList<>();
+        List<LoanEntity> loans = new ArrayList<>();
+        List<LocalDateTime> dates = new ArrayList<>();
+        dates.add(FROM.minusDays(1).atTime(23, 59));
+        for (int i = 0; i < ROWS; i++) {
+            dates.add(FROM.atStartOfDay().plusMinutes(30L * i));
+        }
+        dates.add(TO.plusDays(1).atStartOfDay());
+        for (LocalDateTime date : dates) {
+            KardexMovementEntity movement = new KardexMovementEntity();
+            movement.setToolUnit(unit);
+            movement.setCustomer(customer);
+            movement.setMovementType(MovementType.LOAN);
+            movement.setMovementDate(date);
+            movement.setDetails("Préstamo\nlínea 2");
+            movements.add(movement);
+
+            LoanEntity loan = new LoanEntity();
+            loan.setCustomer(customer);
+            loan.setToolUnit(unit);
+            loan.setLoanDate(date);
+            loan.setDueDate(date.plusDays(3));
+            loan.setReturnDate(date.plusDays(2));
+            loan.setTotalCost(2000.0);
+            loans.add(loan);
+        }
+        kardexMovementRepository.saveAll(movements);
+        loanRepository.saveAll(loans);
+        customerId = customer.getId();
+    }
+
+    /* ======================================================================
+              1. GET /kardex/export
+       ====================================================================== */
+
+    @Test @DisplayName("GET /kardex/export – ndjson con todas las filas del rango, en orden")
+    void kardex_ndjson() throws Exception {
+        MockHttpServletResponse response = export("/kardex/export", null);
+
+        assertThat(response.getContentType()).startsWith("application/x-ndjson");
+        assertThat(response.getHeader(HttpHeaders.CONTENT_DISPOSITION))
+                .isEqualTo("attachment; filename=\"kardex_" + FROM + "_" + TO + ".ndjson\"");
+        List<JsonNode> rows = ndjson(response);
+        assertThat(rows).hasSize(ROWS);
+        assertThat(rows.get(0).get("movementDate").asText()).startsWith(FROM.toString());
+        assertThat(rows.get(0).get("customerName").asText()).isEqualTo("Cliente, \"Exportación\"");
+        assertThat(rows.get(0).get("toolGroupName").asText()).isEqualTo("Rotomartillo");
+        assertThat(rows).extracting(r -> r.get("id").asLong()).isSorted();
+    }
+
+    @Test @DisplayName("GET /kardex/export?format=csv – encabezado + una línea por fila, campos escapados")
+    void kardex_csv() throws Exception {
+        MockHttpServletResponse response = export("/kardex/export", "csv");
+
+        assertThat(response.getContentType()).startsWith("text/csv");
+        List<String> lines = csvRecords(response);
+        assertThat(lines).hasSize(ROWS + 1);
+        assertThat(lines.get(0)).isEqualTo(
+                "id,movementDate,movementType,toolUnitId,toolGroupName,customerId,customerName,details");
+        assertThat(lines.get(1)).contains(",LOAN,").endsWith(
+                ",Rotomartillo," + customerId
+                        + ",\"Cliente, \"\"Exportación\"\"\",\"Préstamo\nlínea 2\"");
+    }
+
+    /* ======================================================================
+              2. GET /loans/export
+       ====================================================================== */
+
+    @Test @DisplayName("GET /loans/export – ndjson con todas las filas del rango")
+    void loans_ndjson() throws Exception {
+        MockHttpServletResponse response = export("/loans/export", "ndjson");
+
+        assertThat(response.getContentType()).startsWith("application/x-ndjson");
+        List<JsonNode> rows = ndjson(response);
+        assertThat(rows).hasSize(ROWS);
+        assertThat(rows.get(ROWS - 1).get("loanDate").asText())
+                .startsWith(FROM.atStartOfDay().plusMinutes(30L * (ROWS - 1)).toLocalDate().toString());
+        assertThat(rows).allMatch(r -> r.get("totalCost").asDouble() == 2000.0 && !r.get("returnDate").isNull());
+    }
+
+    @Test @DisplayName("GET /loans/export?format=csv – encabezado + una línea por fila")
+    void loans_csv() throws Exception {
+        MockHttpServletResponse response = export("/loans/export", "csv");
+
+        assertThat(response.getContentType()).startsWith("text/csv");
+        assertThat(response.getHeader(HttpHeaders.CONTENT_DISPOSITION)).endsWith(".csv\"");
+        List<String> lines = csvRecords(response);
+        assertThat(lines).hasSize(ROWS + 1);
+        assertThat(lines.get(0)).startsWith("id,customerId,customerName,toolUnitId,toolGroupName,loanDate");
+    }
+
+    /* ======================================================================
+                                  Helpers
+       ====================================================================== */
+
+    // La respuesta en streaming es asíncrona: se espera el cuerpo completo con asyncDispatch
+    private MockHttpServletResponse export(String uri, String format) throws Exception {
+        var builder = get(uri).param("from", FROM.toString()).param("to", TO.toString()).with(ADMIN);
+        if (format != null) builder.param("format", format);
+        MvcResult started = mockMvc.perform(builder).andExpect(request().asyncStarted()).andReturn();
+        return mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk()).andReturn().getResponse();
+    }
+
+    private List<JsonNode> ndjson(MockHttpServletResponse response) throws Exception {
+        List<JsonNode> rows = new ArrayList<>();
+        for (String line : response.getContentAsString(StandardCharsets.UTF_8).split("\n")) {
+            rows.add(objectMapper.readTree(line));
+        }
+        return rows;
+    }
+
+    // Registros separados por CRLF; los saltos de línea dentro de un campo entre comillas son solo \n
+    private static List<String> csvRecords(MockHttpServletResponse response) throws Exception {
+        return List.of(response.getContentAsString(StandardCharsets.UTF_8).split("\r\n"));
+    }
+}
@@ -0,0 +1,154 @@
+package com.toolrent.controllers;
+
+import com.toolrent.entities.ToolGroupEntity;
+import com.toolrent.entities.ToolStatus;
+import com.toolrent.services.ToolGroupService;
+import com.toolrent.services.ToolUnitService;
+import com.toolrent.support.OfflineSecurityConfig;
+import com.toolrent.support.SqlBudget;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/* Presupuestos de SQL por petición, incluida la serialización JSON (open-in-view):
+   una relación perezosa recorrida al serializar aparece aquí como una consulta por fila.
+   Los listados con ETag releen su versión (una consulta) en la primera petición tras un cambio;
+   el sondeo periódico queda fuera para que no la adelante. */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:budget;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "toolrent.cache.version-poll-ms=86400000"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(OfflineSecurityConfig.class)
+class ToolGroupControllerQueryBudgetTest {
+
+    private static final RequestPostProcessor ADMIN = jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN"));
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private ToolGroupService toolGroupService;
+    @Autowired private ToolUnitService toolUnitService;
+
+    private static int sequence;
+
+    /* ======================================================================
+              1. GET /tools
+       ====================================================================== */
+
+    @Test @DisplayName("GET /tools – versión + una consulta con stock por estado, con 3 o con 30 grupos")
+    void listToolGroups() throws Exception {
+        seedGroups(3);
+        SqlBudget.assertExactly(2, () -> mockMvc.perform(get("/tools").with(ADMIN)).andExpect(status().isOk()));
+
+        seedGroups(27);
+        SqlBudget.assertExactly(2, () -> mockMvc.perform(get("/tools").with(ADMIN)).andExpect(status().isOk()));
+        // Sin cambios la versión ya está en memoria
+        SqlBudget.assertExactly(1, () -> mockMvc.perform(get("/tools").with(ADMIN)).andExpect(status().isOk()));
+    }
+
+    @Test @DisplayName("GET /tools – solo los campos del listado, sin unidades")
+    void listToolGroups_payload() throws Exception {
+        seedGroups(1);
+        mockMvc.perform(get("/tools").with(ADMIN))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].available").isNumber())
+                .andExpect(jsonPath("$.items[0].dailyRentalRate").isNumber())
+                .andExpect(jsonPath("$.items[*].units").doesNotExist())
+                .andExpect(jsonPath("$.items[*].tariff").doesNotExist());
+    }
+
+    /* ======================================================================
+              2. GET /tools/units y /tools/available
+       ====================================================================== */
+
+    @Test @DisplayName("GET /tools/units – una consulta con el nombre del grupo de cada unidad")
+    void listUnits() throws Exception {
+        seedGroups(5);
+        SqlBudget.assertExactly(1, () -> mockMvc.perform(get("/tools/units").with(ADMIN)).andExpect(status().isOk()));
+        mockMvc.perform(get("/tools/units").with(ADMIN))
+                .andExpect(jsonPath("$.items[0].toolGroup.name").isNotEmpty())
+                .andExpect(jsonPath("$.items[0].status").isNotEmpty())
+                .andExpect(jsonPath("$.items[*].toolGroup.category").doesNotExist());
+    }
+
+    @Test @DisplayName("GET /tools/available – versión + una consulta desde los contadores de stock")
+    void listAvailable() throws Exception {
+        seedGroups(5);
+        SqlBudget.assertExactly(2, () -> mockMvc.perform(get("/tools/available").with(ADMIN)).andExpect(status().isOk()));
+        SqlBudget.assertExactly(1, () -> mockMvc.perform(get("/tools/available").with(ADMIN)).andExpect(status().isOk()));
+    }
+
+    /* ======================================================================
+              3. GET condicional (ETag / If-None-Match)
+       ====================================================================== */
+
+    @Test @DisplayName("If-None-Match vigente → 304 sin ninguna sentencia SQL")
+    void notModified_noSql() throws Exception {
+        seedGroups(3);
+        for (String uri : new String[]{"/tools", "/tools/available", "/tariffs"}) {
+            String etag = etagOf(uri);
+            assertThat(etag).isNotBlank();
+
+            SqlBudget.assertExactly(0, () -> mockMvc.perform(
+                            get(uri).with(ADMIN).header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string(HttpHeaders.ETAG, etag)));
+        }
+    }
+
+    @Test @DisplayName("cambio de estado de una unidad → nuevo ETag en /tools y /tools/available, no en /tariffs")
+    void unitChange_newEtag() throws Exception {
+        ToolGroupEntity group = seedGroups(1);
+        String tools = etagOf("/tools");
+        String available = etagOf("/tools/available");
+        String tariffs = etagOf("/tariffs");
+
+        toolUnitService.changeStatus(group.getUnits().get(0).getId(), ToolStatus.IN_REPAIR);
+
+        mockMvc.perform(get("/tools").with(ADMIN).header(HttpHeaders.IF_NONE_MATCH, tools))
+                .andExpect(status().isOk());
+        assertThat(etagOf("/tools/available")).isNotEqualTo(available);
+        assertThat(etagOf("/tariffs")).isEqualTo(tariffs);
+    }
+
+    @Test @DisplayName("cambio de tarifa → nuevo ETag en /tariffs")
+    void tariffChange_newEtag() throws Exception {
+        ToolGroupEntity group = seedGroups(1);
+        String tariffs = etagOf("/tariffs");
+
+        toolGroupService.updateTariff(group.getId(), 1800.0, 900.0);
+
+        mockMvc.perform(get("/tariffs").with(ADMIN).header(HttpHeaders.IF_NONE_MATCH, tariffs))
+                .andExpect(status().isOk());
+    }
+
+    /* ======================================================================
+                                  Helpers
+       ====================================================================== */
+
+    private String etagOf(String uri) throws Exception {
+        return mockMvc.perform(get(uri).with(ADMIN)).andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    private ToolGroupEntity seedGroups(int count) {
+        ToolGroupEntity last = null;
+        for (int i = 0; i < count; i++) {
+            last = toolGroupService.registerToolGroup("Herramienta " + sequence++, "Presupuesto", 15000.0, 1000.0, 4);
+        }
+        return last;
+    }
+}
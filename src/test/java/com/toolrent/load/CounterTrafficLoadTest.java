@@ -0,0 +1,45 @@
+package com.toolrent.load;
+
+import com.toolrent.support.OfflineSecurityConfig;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.*;
+
+/* Tráfico de mesón contra la API completa (Tomcat + seguridad + H2), fuera del build normal:
+   ./mvnw -P load test -Dload.rps=200 -Dload.duration-s=60
+   Deja el informe de latencias por endpoint en target/load-report.txt (load.report).
+   Con -P load,virtual-threads corre sobre hilos virtuales (Java 21). */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles({"test", "load"})
+@Import(OfflineSecurityConfig.class)
+class CounterTrafficLoadTest {
+
+    @LocalServerPort private int port;
+
+    @Autowired private ApplicationContext context;
+
+    @Test @DisplayName("carga – mezcla de préstamos, devoluciones, disponibilidad y reportes bajo el umbral de error")
+    void counterTraffic() throws Exception {
+        LoadProfile profile = LoadProfile.from(context.getEnvironment());
+
+        LoadGenerator.Result result;
+        try (LoadGenerator generator = new LoadGenerator(URI.create("http://localhost:" + port), profile,
+                LoadFixture.seed(context, profile))) {
+            result = generator.run();
+        }
+        result.write(profile);
+        System.out.println(result.format(profile));
+
+        assertThat(result.requests()).isPositive();
+        assertThat(result.errorRate()).isLessThanOrEqualTo(profile.maxErrorRate());
+    }
+}
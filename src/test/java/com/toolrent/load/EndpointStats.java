@@ -0,0 +1,37 @@
+package com.toolrent.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Latencias (µs, desde el instante programado del envío) y errores de un endpoint. */
+class EndpointStats {
+
+    private static final long MAX_LATENCY_US = TimeUnit.MINUTES.toMicros(1);
+
+    private final Histogram latencies = new ConcurrentHistogram(MAX_LATENCY_US, 3);
+    private final LongAdder errors = new LongAdder();
+
+    void record(long latencyUs, boolean ok) {
+        latencies.recordValue(Math.min(latencyUs, MAX_LATENCY_US));
+        if (!ok) errors.increment();
+    }
+
+    long requests() { return latencies.getTotalCount(); }
+    long errors() { return errors.sum(); }
+
+    double errorRate() {
+        long requests = requests();
+        return requests == 0 ? 0.0 : (double) errors() / requests;
+    }
+
+    double percentileMs(double percentile) {
+        return latencies.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    double maxMs() {
+        return latencies.getMaxValue() / 1000.0;
+    }
+}
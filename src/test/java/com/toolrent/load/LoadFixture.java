@@ -0,0 +1,38 @@
+package com.toolrent.load;
+
+import com.toolrent.entities.ToolGroupEntity;
+import com.toolrent.services.CustomerService;
+import com.toolrent.services.ToolGroupService;
+import org.springframework.context.ApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/* Datos de la prueba de carga: grupos y clientes por los servicios; cada cliente recibe
+   carriles en grupos distintos para que la elegibilidad no rechace el tráfico generado. */
+final class LoadFixture {
+
+    private LoadFixture() {}
+
+    static List<LoadGenerator.Lane> seed(ApplicationContext context, LoadProfile profile) {
+        ToolGroupService toolGroupService = context.getBean(ToolGroupService.class);
+        CustomerService customerService = context.getBean(CustomerService.class);
+
+        List<Long> groupIds = new ArrayList<>();
+        for (int g = 0; g < profile.toolGroups(); g++) {
+            ToolGroupEntity group = toolGroupService.registerToolGroup("Herramienta carga " + g, "Carga",
+                    20000.0, 1000.0, profile.unitsPerGroup());
+            groupIds.add(group.getId());
+        }
+
+        List<LoadGenerator.Lane> lanes = new ArrayList<>();
+        for (int c = 0; c < profile.customers(); c++) {
+            Long customerId = customerService.registerCustomer("Cliente carga " + c, "load-" + c,
+                    "9" + c, "load" + c + "@toolrent.com").getId();
+            for (int l = 0; l < LoadProfile.LANES_PER_CUSTOMER; l++) {
+                lanes.add(new LoadGenerator.Lane(customerId, groupIds.get((c + l) % groupIds.size())));
+            }
+        }
+        return lanes;
+    }
+}
@@ -0,0 +1,259 @@
+package com.toolrent.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.toolrent.load.LoadProfile.Operation;
+import com.toolrent.support.OfflineSecurityConfig;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/* Generador de carga de lazo abierto: envía a la tasa objetivo sin esperar respuestas, y mide
+   cada latencia desde el instante en que la petición debía salir (sin omisión coordinada).
+   Simula el mesón: préstamos y devoluciones sobre "carriles" cliente+grupo, consultas de
+   disponibilidad y refresco de reportes. */
+class LoadGenerator implements AutoCloseable {
+
+    record Lane(Long customerId, Long toolGroupId) {}
+
+    private record ActiveLoan(Lane lane, Long loanId) {}
+
+    private static final String[] REPORTS = {
+            "/reports/active-loans", "/reports/top-tools", "/reports/customers-with-debt", "/reports/overdue-customers"};
+
+    private final URI baseUri;
+    private final LoadProfile profile;
+    private final ExecutorService executor = Executors.newFixedThreadPool(16);
+    private final HttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    private final Queue<Lane> freeLanes = new ConcurrentLinkedQueue<>();
+    private final Queue<ActiveLoan> activeLoans = new ConcurrentLinkedQueue<>();
+    private final Semaphore inFlight;
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong reportCursor = new AtomicLong();
+
+    LoadGenerator(URI baseUri, LoadProfile profile, List<Lane> lanes) {
+        this.baseUri = baseUri;
+        this.profile = profile;
+        this.inFlight = new Semaphore(profile.maxInFlight());
+        this.client = HttpClient.newBuilder()
+                .executor(executor)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        List<Lane> shuffled = new ArrayList<>(lanes);
+        Collections.shuffle(shuffled, new Random(42));
+        freeLanes.addAll(shuffled);
+
+        operations = profile.mix().keySet().toArray(Operation[]::new);
+        cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += profile.mix().get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    /* ---------- Ejecución ---------- */
+
+    // Calentamiento (descartado) y luego medición; devuelve las estadísticas por endpoint
+    Result run() throws InterruptedException {
+        warmUp();
+
+        Map<String, EndpointStats> stats = new ConcurrentSkipListMap<>();
+        EndpointStats sendLag = new EndpointStats();
+        long cpuStarted = processCpuNanos();
+        long started = System.nanoTime();
+        phase(profile.duration(), stats, sendLag);
+        long elapsed = System.nanoTime() - started;
+        double cpuLoad = (processCpuNanos() - cpuStarted) / (double) elapsed
+                / Runtime.getRuntime().availableProcessors();
+        return new Result(stats, skipped.get(), Duration.ofNanos(elapsed), sendLag, cpuLoad);
+    }
+
+    // Solo la fase de calentamiento: JIT, cachés y pools de la aplicación y del cliente
+    void warmUp() throws InterruptedException {
+        phase(profile.warmup(), new ConcurrentHashMap<>(), new EndpointStats());
+        skipped.set(0);
+    }
+
+    // Tiempo de CPU de todo el proceso: cliente y servidor corren en la misma JVM
+    private static long processCpuNanos() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                .getProcessCpuTime();
+    }
+
+    // sendLag: atraso de cada envío respecto de su instante programado. Si crece, el que no da abasto
+    // es el generador (CPU o tope de peticiones en vuelo) y las latencias no miden al servidor
+    private void phase(Duration length, Map<String, EndpointStats> stats, EndpointStats sendLag)
+            throws InterruptedException {
+        long interval = TimeUnit.SECONDS.toNanos(1) / profile.rps();
+        long start = System.nanoTime();
+        long end = start + length.toNanos();
+        for (long i = 0; ; i++) {
+            long intended = start + i * interval;
+            if (intended >= end) break;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            inFlight.acquire();
+            sendLag.record((System.nanoTime() - intended) / 1000, true);
+            fire(pick(), intended, stats);
+        }
+        // Espera a que terminen las peticiones en vuelo antes de cerrar la fase
+        if (!inFlight.tryAcquire(profile.maxInFlight(), 60, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Peticiones sin respuesta tras 60 s");
+        }
+        inFlight.release(profile.maxInFlight());
+    }
+
+    private Operation pick() {
+        int roll = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < operations.length; i++) {
+            if (roll < cumulativeWeights[i]) return operations[i];
+        }
+        return operations[operations.length - 1];
+    }
+
+    /* ---------- Operaciones ---------- */
+
+    private void fire(Operation operation, long intended, Map<String, EndpointStats> stats) {
+        switch (operation) {
+            case CHECKOUT -> {
+                Lane lane = freeLanes.poll();
+                if (lane == null) { skip(); return; }
+                String query = "toolGroupId=" + lane.toolGroupId() + "&customerId=" + lane.customerId() +
+                        "&dueDate=" + LocalDateTime.now().plusDays(7).withNano(0);
+                send("POST /loans", post("/loans?" + query), intended, stats, (ok, body) -> {
+                    if (ok) activeLoans.add(new ActiveLoan(lane, loanId(body)));
+                    else freeLanes.add(lane);
+                });
+            }
+            case RETURN -> {
+                ActiveLoan loan = activeLoans.poll();
+                if (loan == null) { skip(); return; }
+                send("PUT /loans/{id}/return", put("/loans/" + loan.loanId() + "/return"), intended, stats, (ok, body) -> {
+                    if (ok) freeLanes.add(loan.lane());
+                });
+            }
+            case AVAILABILITY -> send("GET /tools/available", get("/tools/available"), intended, stats, null);
+            case REPORTS -> {
+                String path = REPORTS[(int) (reportCursor.getAndIncrement() % REPORTS.length)];
+                send("GET " + path, get(path), intended, stats, null);
+            }
+        }
+    }
+
+    // Sin carril libre o sin préstamo que devolver: el intervalo se pierde (se informa aparte)
+    private void skip() {
+        skipped.incrementAndGet();
+        inFlight.release();
+    }
+
+    private void send(String endpoint, HttpRequest request, long intended, Map<String, EndpointStats> stats,
+                      ResponseHandler handler) {
+        EndpointStats endpointStats = stats.computeIfAbsent(endpoint, k -> new EndpointStats());
+        client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+            try {
+                boolean ok = error == null && response.statusCode() / 100 == 2;
+                endpointStats.record((System.nanoTime() - intended) / 1000, ok);
+                if (handler != null) handler.handle(ok, ok ? response.body() : null);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface ResponseHandler {
+        void handle(boolean ok, String body);
+    }
+
+    private Long loanId(String body) {
+        try {
+            return objectMapper.readTree(body).path("id").asLong();
+        } catch (IOException e) {
+            throw new IllegalStateException("Respuesta de préstamo inválida: " + body, e);
+        }
+    }
+
+    private HttpRequest get(String path) {
+        return request(path).GET().build();
+    }
+
+    private HttpRequest post(String path) {
+        return request(path).POST(HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    private HttpRequest put(String path) {
+        return request(path).PUT(HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Authorization", "Bearer " + OfflineSecurityConfig.EMPLOYEE_TOKEN);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /* ---------- Resultado ---------- */
+
+    record Result(Map<String, EndpointStats> stats, long skipped, Duration elapsed,
+                  EndpointStats sendLag, double cpuLoad) {
+
+        long requests() {
+            return stats.values().stream().mapToLong(EndpointStats::requests).sum();
+        }
+
+        // Peticiones respondidas por segundo medido
+        double throughput() {
+            return requests() / Math.max(0.001, elapsed.toMillis() / 1000.0);
+        }
+
+        double errorRate() {
+            long requests = requests();
+            long errors = stats.values().stream().mapToLong(EndpointStats::errors).sum();
+            return requests == 0 ? 0.0 : (double) errors / requests;
+        }
+
+        String format(LoadProfile profile) {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("Carga: %d req/s objetivo, %d s medidos (+%d s calentamiento), mezcla %s, hilos %s%n",
+                    profile.rps(), profile.duration().toSeconds(), profile.warmup().toSeconds(), profile.mix(),
+                    profile.virtualThreads() ? "virtuales" : "de plataforma"));
+            out.append(String.format("Enviadas: %d (%.1f req/s), omitidas: %d, error: %.2f%%%n",
+                    requests(), throughput(), skipped, errorRate() * 100));
+            out.append(String.format("Atraso de envío del generador: p99 %.2f ms, max %.2f ms; CPU del proceso %.0f%% de %d%n%n",
+                    sendLag.percentileMs(99), sendLag.maxMs(), cpuLoad * 100, Runtime.getRuntime().availableProcessors()));
+            out.append(String.format("%-36s %9s %9s %9s %9s %9s %9s%n",
+                    "endpoint", "n", "error %", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+            stats.forEach((endpoint, s) -> out.append(String.format("%-36s %9d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    endpoint, s.requests(), s.errorRate() * 100, s.percentileMs(50), s.percentileMs(99),
+                    s.percentileMs(99.9), s.maxMs())));
+            return out.toString();
+        }
+
+        void write(LoadProfile profile) throws IOException {
+            if (profile.report().getParent() != null) {
+                Files.createDirectories(profile.report().getParent());
+            }
+            Files.writeString(profile.report(), format(profile));
+        }
+    }
+}
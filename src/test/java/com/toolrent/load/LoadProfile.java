@@ -0,0 +1,62 @@
+package com.toolrent.load;
+
+import org.springframework.core.env.Environment;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/* Parámetros de la prueba de carga, desde propiedades del sistema (-Dload.rps=200 ...).
+   load.mix reparte las operaciones en pesos: checkout=40,return=35,availability=15,reports=10 */
+record LoadProfile(int rps,
+                   Duration warmup,
+                   Duration duration,
+                   Map<LoadProfile.Operation, Integer> mix,
+                   int customers,
+                   int toolGroups,
+                   int unitsPerGroup,
+                   int maxInFlight,
+                   double maxErrorRate,
+                   boolean virtualThreads,
+                   Path report) {
+
+    // Préstamos simultáneos por cliente, cada uno de un grupo distinto (bajo el máximo de la regla de elegibilidad)
+    static final int LANES_PER_CUSTOMER = 3;
+
+    enum Operation { CHECKOUT, RETURN, AVAILABILITY, REPORTS }
+
+    static LoadProfile from(Environment env) {
+        int customers = env.getProperty("load.customers", Integer.class, 200);
+        int toolGroups = env.getProperty("load.tool-groups", Integer.class, 20);
+        // Suficientes unidades para que todos los carriles puedan tener un préstamo activo a la vez
+        int minUnits = customers * LANES_PER_CUSTOMER / toolGroups + 10;
+        return new LoadProfile(
+                env.getProperty("load.rps", Integer.class, 50),
+                Duration.ofSeconds(env.getProperty("load.warmup-s", Long.class, 5L)),
+                Duration.ofSeconds(env.getProperty("load.duration-s", Long.class, 30L)),
+                parseMix(env.getProperty("load.mix", "checkout=40,return=35,availability=15,reports=10")),
+                customers,
+                toolGroups,
+                Math.max(minUnits, env.getProperty("load.units-per-group", Integer.class, 0)),
+                env.getProperty("load.max-in-flight", Integer.class, 256),
+                env.getProperty("load.max-error-rate", Double.class, 0.01),
+                env.getProperty("spring.threads.virtual.enabled", Boolean.class, false),
+                Path.of(env.getProperty("load.report", "target/load-report.txt")));
+    }
+
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split("=");
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("load.mix inválido: " + mix);
+            }
+            weights.put(Operation.valueOf(kv[0].trim().toUpperCase()), Integer.parseInt(kv[1].trim()));
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("load.mix sin pesos: " + mix);
+        }
+        return weights;
+    }
+}
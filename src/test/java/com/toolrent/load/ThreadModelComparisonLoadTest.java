@@ -0,0 +1,170 @@
+package com.toolrent.load;
+
+import com.toolrent.ToolrentApplication;
+import com.toolrent.support.OfflineSecurityConfig;
+import org.junit.jupiter.api.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/* Misma carga sobre hilos de plataforma y sobre hilos virtuales, con el mismo pool de conexiones
+   (spring.datasource.hikari.maximum-pool-size del perfil load), y compara rendimiento y p99 por endpoint:
+   ./mvnw -P load,virtual-threads test -Dtest=ThreadModelComparisonLoadTest -Dload.rps=400
+   La tasa debe superar lo que soportan los hilos de plataforma para que la diferencia se vea.
+   Cliente y servidor comparten la JVM: primero se levanta cada modelo una vez sin medir (JIT de lo común),
+   luego se corren load.rounds rondas alternando cuál va primero. El informe solo declara válida la
+   comparación si el generador envió a tiempo, la CPU no estaba saturada y el signo de la diferencia
+   no cambia con el orden. */
+@Tag("load")
+class ThreadModelComparisonLoadTest {
+
+    @Test @DisplayName("carga – hilos de plataforma vs virtuales con el mismo pool de conexiones")
+    void platformVsVirtual() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21, "Los hilos virtuales requieren Java 21 (perfil virtual-threads)");
+        int rounds = Integer.getInteger("load.rounds", 2);
+
+        run(false, false);
+        run(true, false);
+        List<Round> results = new ArrayList<>();
+        for (int r = 0; r < rounds; r++) {
+            boolean virtualFirst = r % 2 == 1;
+            Run first = run(virtualFirst, true);
+            Run second = run(!virtualFirst, true);
+            results.add(virtualFirst ? new Round(second, first, true) : new Round(first, second, false));
+        }
+
+        String report = report(results);
+        Path file = Path.of(System.getProperty("load.comparison-report", "target/load-threads-comparison.txt"));
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        Files.writeString(file, report);
+        System.out.println(report);
+
+        for (Round round : results) {
+            assertThat(round.platform().result().requests()).isPositive();
+            assertThat(round.virtual().result().requests()).isPositive();
+            assertThat(round.virtual().poolSize()).isEqualTo(round.platform().poolSize());
+        }
+    }
+
+    /* ======================================================================
+                                  Helpers
+       ====================================================================== */
+
+    private record Run(LoadProfile profile, int poolSize, LoadGenerator.Result result) {}
+
+    private record Round(Run platform, Run virtual, boolean virtualFirst) {}
+
+    // Argumentos de línea de comandos: ganan a las propiedades del sistema del perfil Maven.
+    // Sin medir solo corre el calentamiento y devuelve null
+    private Run run(boolean virtualThreads, boolean measure) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(
+                ToolrentApplication.class, OfflineSecurityConfig.class)
+                .profiles("test", "load")
+                .run("--server.port=0", "--spring.threads.virtual.enabled=" + virtualThreads)) {
+            LoadProfile profile = LoadProfile.from(context.getEnvironment());
+            int poolSize = context.getEnvironment()
+                    .getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10);
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            try (LoadGenerator generator = new LoadGenerator(URI.create("http://localhost:" + port), profile,
+                    LoadFixture.seed(context, profile))) {
+                if (!measure) {
+                    generator.warmUp();
+                    return null;
+                }
+                return new Run(profile, poolSize, generator.run());
+            }
+        }
+    }
+
+    private String report(List<Round> rounds) {
+        StringBuilder out = new StringBuilder();
+        for (int r = 0; r < rounds.size(); r++) {
+            Round round = rounds.get(r);
+            out.append(String.format("=== Ronda %d (%s primero) ===%n", r + 1, round.virtualFirst() ? "virtuales" : "plataforma"));
+            out.append(compare(round.platform(), round.virtual()));
+            out.append(String.format("%n"));
+        }
+        List<String> problems = problems(rounds);
+        out.append(String.format("=== Veredicto ===%n"));
+        if (problems.isEmpty()) {
+            out.append(String.format("Comparación válida: generador a tiempo, CPU sin saturar y mismo signo en %d rondas%n",
+                    rounds.size()));
+        } else {
+            out.append(String.format("Sin comparación válida:%n"));
+            problems.forEach(p -> out.append("- ").append(p).append(String.format("%n")));
+        }
+        return out.toString();
+    }
+
+    // Condiciones para atribuir la diferencia al modelo de hilos y no al arnés
+    private List<String> problems(List<Round> rounds) {
+        double maxSendLagMs = Double.parseDouble(System.getProperty("load.max-send-lag-ms", "50"));
+        double maxCpu = Double.parseDouble(System.getProperty("load.max-cpu", "0.85"));
+        List<String> problems = new ArrayList<>();
+        if (rounds.size() < 2) {
+            problems.add("una sola ronda: sin alternar el orden no se separa el modelo de hilos del calentamiento");
+        }
+        for (int r = 0; r < rounds.size(); r++) {
+            Round round = rounds.get(r);
+            for (Run run : List.of(round.platform(), round.virtual())) {
+                String name = String.format("ronda %d, %s", r + 1, run.profile().virtualThreads() ? "virtuales" : "plataforma");
+                LoadGenerator.Result result = run.result();
+                if (result.sendLag().percentileMs(99) > maxSendLagMs) {
+                    problems.add(String.format("%s: el generador envió con p99 %.0f ms de atraso (máximo %.0f ms); "
+                                    + "la tasa real no fue la objetivo", name, result.sendLag().percentileMs(99), maxSendLagMs));
+                }
+                if (result.cpuLoad() > maxCpu) {
+                    problems.add(String.format("%s: CPU del proceso al %.0f%% de %d; cliente y servidor compiten por ella",
+                            name, result.cpuLoad() * 100, Runtime.getRuntime().availableProcessors()));
+                }
+            }
+        }
+        long virtualAhead = rounds.stream()
+                .filter(round -> round.virtual().result().throughput() > round.platform().result().throughput())
+                .count();
+        if (virtualAhead != 0 && virtualAhead != rounds.size()) {
+            problems.add("el modelo con más rendimiento cambia según cuál corre primero");
+        }
+        return problems;
+    }
+
+    private String compare(Run platform, Run virtual) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("Hilos de plataforma vs virtuales: %d req/s objetivo, %d s, pool de %d conexiones%n%n",
+                platform.profile().rps(), platform.profile().duration().toSeconds(), platform.poolSize()));
+        out.append(String.format("%-36s %12s %12s%n", "", "plataforma", "virtuales"));
+        out.append(String.format("%-36s %12.1f %12.1f%n", "rendimiento (req/s)",
+                platform.result().throughput(), virtual.result().throughput()));
+        out.append(String.format("%-36s %12.2f %12.2f%n", "error %",
+                platform.result().errorRate() * 100, virtual.result().errorRate() * 100));
+        out.append(String.format("%-36s %12.2f %12.2f%n", "atraso de envío p99 (ms)",
+                platform.result().sendLag().percentileMs(99), virtual.result().sendLag().percentileMs(99)));
+        out.append(String.format("%-36s %12.0f %12.0f%n%n", "CPU del proceso %",
+                platform.result().cpuLoad() * 100, virtual.result().cpuLoad() * 100));
+
+        out.append(String.format("%-36s %12s %12s %9s%n", "p99 ms por endpoint", "plataforma", "virtuales", "Δ %"));
+        Map<String, EndpointStats> p = platform.result().stats();
+        Map<String, EndpointStats> v = virtual.result().stats();
+        for (String endpoint : new TreeSet<>(p.keySet())) {
+            if (!v.containsKey(endpoint)) continue;
+            double before = p.get(endpoint).percentileMs(99);
+            double after = v.get(endpoint).percentileMs(99);
+            out.append(String.format("%-36s %12.2f %12.2f %+9.1f%n", endpoint, before, after,
+                    before == 0 ? 0.0 : (after - before) / before * 100));
+        }
+        out.append(String.format("%n--- Plataforma ---%n%s%n--- Virtuales ---%n%s",
+                platform.result().format(platform.profile()), virtual.result().format(virtual.profile())));
+        return out.toString();
+    }
+}
@@ -0,0 +1,263 @@
+package com.toolrent.services;
+
+import com.toolrent.dto.CustomerBalanceDTO;
+import com.toolrent.dto.CustomerStandingDTO;
+import com.toolrent.entities.CustomerBalanceEntity;
+import com.toolrent.entities.CustomerEntity;
+import com.toolrent.entities.LoanEntity;
+import com.toolrent.repositories.CustomerBalanceRepository;
+import com.toolrent.repositories.CustomerRepository;
+import com.toolrent.repositories.LoanRepository;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.*;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerBalanceServiceTest {
+
+    @Mock private CustomerBalanceRepository customerBalanceRepository;
+    @Mock private LoanRepository loanRepository;
+    @Mock private CustomerRepository customerRepository;
+    @Mock private LeaseService leaseService;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private CustomerBalanceService customerBalanceService;
+
+    @BeforeEach
+    void setUp() {
+        // Tramos de 2 clientes
+        customerBalanceService = new CustomerBalanceService(customerBalanceRepository, loanRepository,
+                customerRepository, leaseService, transactionManager, 2, 60000);
+    }
+
+    private final LocalDateTime now = LocalDateTime.of(2025, 3, 10, 12, 0);
+
+    /* ======================================================================
+              0. loansOpened – suma acotada al máximo de activos
+       ====================================================================== */
+
+    @Test @DisplayName("loansOpened – bajo el máximo → suma en un solo UPDATE")
+    void loansOpened_withinLimit(){
+        when(customerBalanceRepository.addActiveLoans(7L, 2L, LoanEligibilityService.MAX_ACTIVE_LOANS, now))
+                .thenReturn(1);
+
+        customerBalanceService.loansOpened(7L, 2, now);
+
+        verify(customerBalanceRepository, never()).existsById(any());
+    }
+
+    @Test @DisplayName("loansOpened – pasaría el máximo → excepción")
+    void loansOpened_overLimit(){
+        when(customerBalanceRepository.addActiveLoans(7L, 2L, LoanEligibilityService.MAX_ACTIVE_LOANS, now))
+                .thenReturn(0);
+        when(customerBalanceRepository.existsById(7L)).thenReturn(true);
+
+        assertThatThrownBy(() -> customerBalanceService.loansOpened(7L, 2, now))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage(EligibilityRule.MAX_ACTIVE_LOANS.getMessage());
+    }
+
+    @Test @DisplayName("loansOpened – cliente sin fila → no falla (lo corrige la reconciliación)")
+    void loansOpened_missingRow(){
+        when(customerBalanceRepository.addActiveLoans(7L, 1L, LoanEligibilityService.MAX_ACTIVE_LOANS, now))
+                .thenReturn(0);
+        when(customerBalanceRepository.existsById(7L)).thenReturn(false);
+
+        assertThatCode(() -> customerBalanceService.loansOpened(7L, 1, now)).doesNotThrowAnyException();
+    }
+
+    /* ======================================================================
+              1. loanChanged – deltas del préstamo
+       ====================================================================== */
+
+    @Test @DisplayName("loanChanged – devolución con multa: suma deuda y recalcula vencimiento")
+    void loanChanged_returnWithFine(){
+        LoanEntity loan = buildLoan(7L, null, 0.0, 0.0);
+        CustomerBalanceService.LoanState before = CustomerBalanceService.LoanState.of(loan);
+        loan.setReturnDate(now);
+        loan.setFineAmount(1500.0);
+        when(customerBalanceRepository.addDeltas(7L, 1500.0, 0.0, 1L, 0L, -1L)).thenReturn(1);
+        when(loanRepository.findOldestActiveDueDate(7L)).thenReturn(now.plusDays(2));
+
+        customerBalanceService.loanChanged(loan, before);
+
+        verify(customerBalanceRepository).setOldestDueDate(7L, now.plusDays(2));
+    }
+
+    @Test @DisplayName("loanChanged – pago de deudas: resta sin tocar el vencimiento")
+    void loanChanged_payment(){
+        LoanEntity loan = buildLoan(7L, now, 1500.0, 3000.0);
+        CustomerBalanceService.LoanState before = CustomerBalanceService.LoanState.of(loan);
+        loan.setFineAmount(0.0);
+        loan.setDamageCharge(0.0);
+        when(customerBalanceRepository.addDeltas(7L, -1500.0, -3000.0, -1L, -1L, 0L)).thenReturn(1);
+
+        customerBalanceService.loanChanged(loan, before);
+
+        verify(customerBalanceRepository, never()).setOldestDueDate(any(), any());
+        verifyNoInteractions(loanRepository);
+    }
+
+    @Test @DisplayName("loanChanged – sin cambios que afecten el saldo → no escribe")
+    void loanChanged_noDelta(){
+        LoanEntity loan = buildLoan(7L, null, 0.0, 0.0);
+
+        customerBalanceService.loanChanged(loan, CustomerBalanceService.LoanState.of(loan));
+
+        verifyNoInteractions(customerBalanceRepository);
+    }
+
+    @Test @DisplayName("loanChanged – cliente sin fila → no falla (lo corrige la reconciliación)")
+    void loanChanged_missingRow(){
+        LoanEntity loan = buildLoan(7L, null, 0.0, 0.0);
+        CustomerBalanceService.LoanState before = CustomerBalanceService.LoanState.of(loan);
+        loan.setReturnDate(now);
+        when(customerBalanceRepository.addDeltas(anyLong(), anyDouble(), anyDouble(), anyLong(), anyLong(), anyLong()))
+                .thenReturn(0);
+
+        assertThatCode(() -> customerBalanceService.loanChanged(loan, before)).doesNotThrowAnyException();
+        verify(customerBalanceRepository, never()).setOldestDueDate(any(), any());
+    }
+
+    /* ======================================================================
+              2. findStanding
+       ====================================================================== */
+
+    @Test @DisplayName("findStanding – vencimiento más antiguo pasado → un vencido")
+    void findStanding_overdue(){
+        CustomerBalanceEntity row = new CustomerBalanceEntity(7L);
+        row.setActiveLoans(2L);
+        row.setUnpaidFineLoans(1L);
+        row.setOldestDueDate(now.minusHours(1));
+        when(customerBalanceRepository.findById(7L)).thenReturn(Optional.of(row));
+        when(loanRepository.countActiveInToolGroups(7L, List.of(3L))).thenReturn(1L);
+
+        Optional<CustomerStandingDTO> res = customerBalanceService.findStanding(7L, List.of(3L), now);
+
+        assertThat(res).contains(new CustomerStandingDTO(1L, 1L, 0L, 2L, 1L));
+    }
+
+    @Test @DisplayName("findStanding – sin préstamos activos no consulta la regla de misma herramienta")
+    void findStanding_noActive(){
+        when(customerBalanceRepository.findById(7L)).thenReturn(Optional.of(new CustomerBalanceEntity(7L)));
+
+        Optional<CustomerStandingDTO> res = customerBalanceService.findStanding(7L, List.of(3L), now);
+
+        assertThat(res).contains(new CustomerStandingDTO(0L, 0L, 0L, 0L, 0L));
+        verifyNoInteractions(loanRepository);
+    }
+
+    @Test @DisplayName("findStanding – cliente sin fila → vacío")
+    void findStanding_missingRow(){
+        when(customerBalanceRepository.findById(7L)).thenReturn(Optional.empty());
+
+        assertThat(customerBalanceService.findStanding(7L, List.of(), now)).isEmpty();
+    }
+
+    /* ======================================================================
+              3. reconcile
+       ====================================================================== */
+
+    @Test @DisplayName("reconcile – saldos al día → no bloquea ni corrige")
+    void reconcile_inSync(){
+        CustomerBalanceDTO balance = new CustomerBalanceDTO(7L, 1500.0, 0.0, 1L, 0L, 1L, now);
+        when(customerRepository.findIdsAfter(eq(0L), any())).thenReturn(List.of(7L, 8L));
+        when(customerRepository.findIdsAfter(eq(8L), any())).thenReturn(List.of());
+        when(loanRepository.computeBalances(7L, 8L)).thenReturn(List.of(balance));
+        when(customerBalanceRepository.findBalances(7L, 8L)).thenReturn(List.of(balance,
+                new CustomerBalanceDTO(8L, 0.0, 0.0, 0L, 0L, 0L, null)));
+
+        assertThat(customerBalanceService.reconcile()).isZero();
+        verify(customerBalanceRepository, never()).findForUpdate(any());
+    }
+
+    @Test @DisplayName("reconcile – desvío → recalcula con la fila bloqueada y la corrige")
+    void reconcile_repairsDrift(){
+        CustomerBalanceDTO counted = new CustomerBalanceDTO(7L, 1500.0, 2000.0, 1L, 1L, 0L, null);
+        CustomerBalanceEntity stale = new CustomerBalanceEntity(7L);
+        when(customerRepository.findIdsAfter(eq(0L), any())).thenReturn(List.of(7L));
+        when(loanRepository.computeBalances(7L, 7L)).thenReturn(List.of(counted));
+        when(customerBalanceRepository.findBalances(7L, 7L))
+                .thenReturn(List.of(new CustomerBalanceDTO(7L, 0.0, 0.0, 0L, 0L, 0L, null)));
+        when(customerBalanceRepository.findForUpdate(7L)).thenReturn(Optional.of(stale));
+        when(loanRepository.computeBalance(7L)).thenReturn(Optional.of(counted));
+
+        int repaired = customerBalanceService.reconcile();
+
+        assertThat(repaired).isEqualTo(1);
+        assertThat(stale.getTotalDebt()).isEqualTo(3500.0);
+        assertThat(stale.getUnpaidDamageLoans()).isEqualTo(1L);
+        verify(customerBalanceRepository).save(stale);
+    }
+
+    @Test @DisplayName("reconcile – cliente sin fila → la crea")
+    void reconcile_createsMissingRow(){
+        when(customerRepository.findIdsAfter(eq(0L), any())).thenReturn(List.of(9L));
+        when(loanRepository.computeBalances(9L, 9L)).thenReturn(List.of());
+        when(customerBalanceRepository.findBalances(9L, 9L)).thenReturn(List.of());
+
+        assertThat(customerBalanceService.reconcile()).isEqualTo(1);
+        verify(customerBalanceRepository).save(new CustomerBalanceEntity(9L));
+    }
+
+    @Test @DisplayName("reconcile – recorre los clientes por tramos, sin cargarlos todos")
+    void reconcile_chunks(){
+        when(customerRepository.findIdsAfter(eq(0L), any())).thenReturn(List.of(1L, 2L));
+        when(customerRepository.findIdsAfter(eq(2L), any())).thenReturn(List.of(5L));
+        when(customerBalanceRepository.findBalances(1L, 2L)).thenReturn(List.of(
+                new CustomerBalanceDTO(1L, 0.0, 0.0, 0L, 0L, 0L, null), new CustomerBalanceDTO(2L, 0.0, 0.0, 0L, 0L, 0L, null)));
+        when(customerBalanceRepository.findBalances(5L, 5L)).thenReturn(List.of(
+                new CustomerBalanceDTO(5L, 0.0, 0.0, 0L, 0L, 0L, null)));
+
+        assertThat(customerBalanceService.reconcile()).isZero();
+        verify(loanRepository).computeBalances(1L, 2L);
+        verify(loanRepository).computeBalances(5L, 5L);
+        // Tramo corto: no hay una consulta más
+        verify(customerRepository, times(2)).findIdsAfter(any(), any());
+        verify(customerBalanceRepository, never()).findForUpdate(any());
+    }
+
+    @Test @DisplayName("reconcileScheduled – concesión de otro nodo → no lee clientes ni préstamos")
+    void reconcileScheduled_withoutLease(){
+        when(leaseService.tryAcquire(eq(CustomerBalanceService.LEASE), any())).thenReturn(false);
+
+        customerBalanceService.reconcileScheduled();
+
+        verifyNoInteractions(customerRepository, loanRepository, customerBalanceRepository);
+    }
+
+    @Test @DisplayName("reconcileScheduled – con la concesión reconcilia")
+    void reconcileScheduled_withLease(){
+        when(leaseService.tryAcquire(eq(CustomerBalanceService.LEASE), any())).thenReturn(true);
+        when(customerRepository.findIdsAfter(eq(0L), any())).thenReturn(List.of());
+
+        customerBalanceService.reconcileScheduled();
+
+        verify(customerRepository).findIdsAfter(eq(0L), any());
+    }
+
+    /* ======================================================================
+                                  Helpers
+       ====================================================================== */
+
+    private LoanEntity buildLoan(Long customerId, LocalDateTime returnDate, Double fine, Double damage) {
+        CustomerEntity customer = new CustomerEntity();
+        customer.setId(customerId);
+        LoanEntity loan = new LoanEntity();
+        loan.setCustomer(customer);
+        loan.setDueDate(now.minusDays(1));
+        loan.setReturnDate(returnDate);
+        loan.setFineAmount(fine);
+        loan.setDamageCharge(damage);
+        return loan;
+    }
+}
@@ -1,5 +1,6 @@
 package com.toolrent.services;
 
+import com.toolrent.dto.CursorPageDTO;
 import com.toolrent.entities.CustomerEntity;
 import com.toolrent.entities.CustomerStatus;
 import com.toolrent.repositories.CustomerRepository;
@@ -11,6 +12,9 @@ import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 
 import java.util.List;
 import java.util.Optional;
@@ -23,6 +27,9 @@ import static org.mockito.Mockito.*;
 class CustomerServiceTest {
 
     @Mock private CustomerRepository customerRepository;
+    @Mock private CustomerBalanceService customerBalanceService;
+    @Mock private ReferenceDataCache referenceDataCache;
+    @Mock private PlatformTransactionManager transactionManager;
     @InjectMocks private CustomerService customerService;
 
     /* ======================================================================
@@ -38,6 +45,9 @@ class CustomerServiceTest {
 
         assertThat(got).isEqualTo(expected);
         verify(customerRepository).save(any());
+        verify(customerBalanceService).initialize(1L);
+        verify(referenceDataCache).customersChanged();
+        verify(referenceDataCache, never()).changed();
     }
 
     /* ---- cada campo null ---- */
@@ -107,6 +117,19 @@ class CustomerServiceTest {
 
         assertThat(c.getStatus()).isEqualTo(RESTRICTED);
         verify(customerRepository).save(c);
+        verify(referenceDataCache).customersChanged();
+    }
+
+    @Test @DisplayName("changeStatus – cambio manual quita la marca de restricción automática")
+    void changeStatus_clearsAutomatic(){
+        CustomerEntity c = buildCustomer(5L,"X","1","2","x@x.com", RESTRICTED);
+        c.setRestrictedBySystem(true);
+        when(customerRepository.findById(5L)).thenReturn(Optional.of(c));
+
+        customerService.changeStatus(5L, ACTIVE);
+
+        assertThat(c.getStatus()).isEqualTo(ACTIVE);
+        assertThat(c.getRestrictedBySystem()).isFalse();
     }
 
     @Test @DisplayName("changeStatus – cliente NO existe → excepción")
@@ -127,23 +150,69 @@ class CustomerServiceTest {
     void getSystem_exists(){
         CustomerEntity existing = buildCustomer(10L,"Sistema","0-0","000","system@toolrent.com", ACTIVE);
         when(customerRepository.findByEmail("system@toolrent.com")).thenReturn(Optional.of(existing));
+        when(customerRepository.getReferenceById(10L)).thenReturn(existing);
 
         CustomerEntity got = customerService.getSystemCustomer();
 
         assertThat(got).isSameAs(existing);
         verify(customerRepository, never()).save(any());
+        verifyNoInteractions(transactionManager);
     }
 
     @Test @DisplayName("getSystemCustomer – no existe → crea y guarda")
     void getSystem_notExists(){
         when(customerRepository.findByEmail("system@toolrent.com")).thenReturn(Optional.empty());
         CustomerEntity toSave = buildCustomer(20L,"Sistema","0-0","000","system@toolrent.com", ACTIVE);
-        when(customerRepository.save(any(CustomerEntity.class))).thenReturn(toSave);
+        when(customerRepository.saveAndFlush(any(CustomerEntity.class))).thenReturn(toSave);
+        when(customerRepository.getReferenceById(20L)).thenReturn(toSave);
 
         CustomerEntity got = customerService.getSystemCustomer();
 
         assertThat(got.getName()).isEqualTo("Sistema");
-        verify(customerRepository).save(any());
+        verify(customerRepository).saveAndFlush(argThat(c -> "Sistema".equals(c.getName())));
+        // La creación va en su propia transacción, no en la del llamador
+        verify(transactionManager).getTransaction(argThat(d ->
+                d.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+    }
+
+    @Test @DisplayName("getSystemCustomer – segunda llamada no consulta la BD")
+    void getSystem_memoized(){
+        CustomerEntity existing = buildCustomer(10L,"Sistema","0-0","000","system@toolrent.com", ACTIVE);
+        when(customerRepository.findByEmail("system@toolrent.com")).thenReturn(Optional.of(existing));
+        when(customerRepository.getReferenceById(10L)).thenReturn(existing);
+
+        customerService.resolveSystemCustomer();
+        CustomerEntity got = customerService.getSystemCustomer();
+
+        assertThat(got).isSameAs(existing);
+        verify(customerRepository, times(1)).findByEmail("system@toolrent.com");
+    }
+
+    @Test @DisplayName("getSystemCustomer – guarda solo el id: cada llamada pide una referencia de la sesión actual")
+    void getSystem_freshReference(){
+        CustomerEntity first = buildCustomer(10L,"Sistema","0-0","000","system@toolrent.com", ACTIVE);
+        CustomerEntity second = buildCustomer(10L,"Sistema","0-0","000","system@toolrent.com", RESTRICTED);
+        when(customerRepository.findByEmail("system@toolrent.com")).thenReturn(Optional.of(first));
+        when(customerRepository.getReferenceById(10L)).thenReturn(first, second);
+
+        assertThat(customerService.getSystemCustomer()).isSameAs(first);
+        assertThat(customerService.getSystemCustomer()).isSameAs(second);
+        verify(customerRepository, times(1)).findByEmail("system@toolrent.com");
+    }
+
+    @Test @DisplayName("getSystemCustomer – otra instancia lo creó primero → relee por email")
+    void getSystem_concurrentInsert(){
+        CustomerEntity other = buildCustomer(30L,"Sistema","0-0","000","system@toolrent.com", ACTIVE);
+        when(customerRepository.findByEmail("system@toolrent.com"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(other));
+        when(customerRepository.saveAndFlush(any(CustomerEntity.class)))
+                .thenThrow(new DataIntegrityViolationException("Duplicate entry 'system@toolrent.com'"));
+        when(customerRepository.getReferenceById(30L)).thenReturn(other);
+
+        CustomerEntity got = customerService.getSystemCustomer();
+
+        assertThat(got).isSameAs(other);
     }
 
     /* ======================================================================
@@ -171,6 +240,29 @@ class CustomerServiceTest {
         assertThat(res).isEmpty();
     }
 
+    @Test @DisplayName("getCustomersPage – primera página parte desde id 0 y entrega nextCursor")
+    void page_firstPage(){
+        CustomerEntity a = buildCustomer(1L,"A","1","2","a@a.com", ACTIVE);
+        CustomerEntity b = buildCustomer(2L,"B","2","3","b@b.com", ACTIVE);
+        when(customerRepository.findPageAfter(eq(0L), any())).thenReturn(List.of(a, b));
+
+        CursorPageDTO<CustomerEntity> page = customerService.getCustomersPage(null, 1);
+
+        assertThat(page.items()).containsExactly(a);
+        assertThat(PageCursor.decode(page.nextCursor()).id()).isEqualTo(1L);
+    }
+
+    @Test @DisplayName("getCustomersPage – con cursor continúa después del último id")
+    void page_nextPage(){
+        CustomerEntity b = buildCustomer(2L,"B","2","3","b@b.com", ACTIVE);
+        when(customerRepository.findPageAfter(eq(1L), any())).thenReturn(List.of(b));
+
+        CursorPageDTO<CustomerEntity> page = customerService.getCustomersPage(PageCursor.encode(1L), 1);
+
+        assertThat(page.items()).containsExactly(b);
+        assertThat(page.nextCursor()).isNull();
+    }
+
     @Test @DisplayName("getCustomersByStatus – con datos")
     void byStatus_withData(){
         List<CustomerEntity> list = List.of(
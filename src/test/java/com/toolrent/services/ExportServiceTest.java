@@ -0,0 +1,136 @@
+package com.toolrent.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.toolrent.dto.KardexExportRowDTO;
+import com.toolrent.dto.LoanExportRowDTO;
+import com.toolrent.entities.MovementType;
+import com.toolrent.repositories.KardexMovementRepository;
+import com.toolrent.repositories.LoanRepository;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExportServiceTest {
+
+    @Mock private KardexMovementRepository kardexMovementRepository;
+    @Mock private LoanRepository loanRepository;
+
+    private ExportService exportService;
+
+    private final LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+    private final LocalDateTime to   = LocalDateTime.of(2025, 2, 1, 0, 0);
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper mapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        exportService = new ExportService(kardexMovementRepository, loanRepository, mapper, 600_000);
+    }
+
+    /* ======================================================================
+            1. exportKardex – NDJSON / CSV / cierre del stream
+       ====================================================================== */
+
+    @Test @DisplayName("exportKardex – NDJSON: una línea JSON por movimiento")
+    void kardex_ndjson() throws Exception {
+        when(kardexMovementRepository.streamForExport(from, to)).thenReturn(Stream.of(
+                kardexRow(1L, "Préstamo"), kardexRow(2L, null)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long count = exportService.exportKardex(from, to, ExportService.Format.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(count).isEqualTo(2);
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).startsWith("{\"id\":1,")
+                .contains("\"movementDate\":\"2025-01-10T10:00")
+                .contains("\"details\":\"Préstamo\"");
+        assertThat(lines[1]).contains("\"details\":null");
+    }
+
+    @Test @DisplayName("exportKardex – CSV: encabezado y campos escapados")
+    void kardex_csv() throws Exception {
+        when(kardexMovementRepository.streamForExport(from, to)).thenReturn(Stream.of(
+                kardexRow(1L, "Daño, \"grave\""), kardexRow(2L, null)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.exportKardex(from, to, ExportService.Format.CSV, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertThat(lines[0]).isEqualTo(
+                "id,movementDate,movementType,toolUnitId,toolGroupName,customerId,customerName,details");
+        assertThat(lines[1]).isEqualTo("1,2025-01-10T10:00,LOAN,5,Taladro,7,Ana,\"Daño, \"\"grave\"\"\"");
+        assertThat(lines[2]).endsWith(",Ana,");
+    }
+
+    @Test @DisplayName("exportKardex – cierra el stream del repositorio al terminar")
+    void kardex_closesStream() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean(false);
+        when(kardexMovementRepository.streamForExport(from, to))
+                .thenReturn(Stream.<KardexExportRowDTO>empty().onClose(() -> closed.set(true)));
+
+        long count = exportService.exportKardex(from, to, ExportService.Format.NDJSON, new ByteArrayOutputStream());
+
+        assertThat(count).isZero();
+        assertThat(closed).isTrue();
+    }
+
+    /* ======================================================================
+            2. exportLoans
+       ====================================================================== */
+
+    @Test @DisplayName("exportLoans – CSV con préstamo sin devolver")
+    void loans_csv() throws Exception {
+        LoanExportRowDTO row = new LoanExportRowDTO(3L, 7L, "Ana", 5L, "Taladro",
+                LocalDateTime.of(2025, 1, 5, 9, 0), LocalDateTime.of(2025, 1, 8, 9, 0), null,
+                null, 0.0, 0.0);
+        when(loanRepository.streamForExport(from, to)).thenReturn(Stream.of(row));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.exportLoans(from, to, ExportService.Format.CSV, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[1]).isEqualTo("3,7,Ana,5,Taladro,2025-01-05T09:00,2025-01-08T09:00,,,0.0,0.0");
+    }
+
+    /* ======================================================================
+            3. Format.parse
+       ====================================================================== */
+
+    @Test @DisplayName("Format.parse – null → NDJSON, csv sin importar mayúsculas")
+    void format_parse() {
+        assertThat(ExportService.Format.parse(null)).isEqualTo(ExportService.Format.NDJSON);
+        assertThat(ExportService.Format.parse("Csv")).isEqualTo(ExportService.Format.CSV);
+    }
+
+    @Test @DisplayName("Format.parse – formato desconocido → excepción")
+    void format_invalid() {
+        assertThatThrownBy(() -> ExportService.Format.parse("xml"))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("xml");
+    }
+
+    /* ======================================================================
+                                  Helpers
+       ====================================================================== */
+
+    private KardexExportRowDTO kardexRow(Long id, String details) {
+        return new KardexExportRowDTO(id, LocalDateTime.of(2025, 1, 10, 10, 0), MovementType.LOAN,
+                5L, "Taladro", 7L, "Ana", details);
+    }
+}
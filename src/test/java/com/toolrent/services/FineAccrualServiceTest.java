@@ -0,0 +1,180 @@
+package com.toolrent.services;
+
+import com.toolrent.dto.AccruingFinesDTO;
+import com.toolrent.dto.FineAccrualRunDTO;
+import com.toolrent.dto.LoanAccrualRowDTO;
+import com.toolrent.dto.LoanIdRangeDTO;
+import com.toolrent.dto.ToolGroupFineRateDTO;
+import com.toolrent.entities.BatchCheckpointEntity;
+import com.toolrent.repositories.BatchCheckpointRepository;
+import com.toolrent.repositories.LoanRepository;
+import com.toolrent.repositories.TariffRepository;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FineAccrualServiceTest {
+
+    @Mock private LoanRepository loanRepository;
+    @Mock private TariffRepository tariffRepository;
+    @Mock private BatchCheckpointRepository batchCheckpointRepository;
+    @Mock private LeaseService leaseService;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private FineAccrualService fineAccrualService;
+
+    @BeforeEach
+    void setUp() {
+        // 2 particiones y tramos de 2 préstamos
+        fineAccrualService = new FineAccrualService(loanRepository, tariffRepository, batchCheckpointRepository,
+                leaseService, transactionManager, 2, 2, 60000);
+    }
+
+    /* ======================================================================
+              1. run – ejecución nueva
+       ====================================================================== */
+
+    @Test @DisplayName("run – reparte ids activos en particiones y agrupa el UPDATE por monto")
+    void run_fresh(){
+        LocalDateTime threeDaysLate = LocalDateTime.now().minusDays(3).minusHours(1);
+        when(leaseService.tryAcquire(eq(FineAccrualService.JOB), any())).thenReturn(true);
+        when(batchCheckpointRepository.findByJob(FineAccrualService.JOB)).thenReturn(List.of());
+        when(loanRepository.findActiveIdRange()).thenReturn(new LoanIdRangeDTO(1L, 4L));
+        when(batchCheckpointRepository.saveAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+        when(tariffRepository.findAllFineRates()).thenReturn(List.of(new ToolGroupFineRateDTO(10L, 500.0)));
+        when(loanRepository.findOverdueForAccrual(any(), eq(0L), eq(2L), any())).thenReturn(List.of(
+                new LoanAccrualRowDTO(1L, threeDaysLate, 10L), new LoanAccrualRowDTO(2L, threeDaysLate, 10L)));
+        when(loanRepository.findOverdueForAccrual(any(), eq(2L), eq(2L), any())).thenReturn(List.of());
+        when(loanRepository.findOverdueForAccrual(any(), eq(2L), eq(4L), any())).thenReturn(List.of(
+                new LoanAccrualRowDTO(4L, LocalDateTime.now().minusDays(1).minusHours(1), 10L)));
+
+        FineAccrualRunDTO res = fineAccrualService.run(false);
+
+        assertThat(res.partitions()).isEqualTo(2);
+        assertThat(res.loans()).isEqualTo(3);
+        assertThat(res.completed()).isTrue();
+        verify(loanRepository).setAccruedFine(List.of(1L, 2L), 1500.0);
+        verify(loanRepository).setAccruedFine(List.of(4L), 500.0);
+        verify(tariffRepository, times(1)).findAllFineRates();
+    }
+
+    @Test @DisplayName("run – grupo sin tarifa → se omiten sus préstamos y sigue con el resto")
+    void run_missingRate(){
+        LocalDateTime threeDaysLate = LocalDateTime.now().minusDays(3).minusHours(1);
+        when(leaseService.tryAcquire(eq(FineAccrualService.JOB), any())).thenReturn(true);
+        when(batchCheckpointRepository.findByJob(FineAccrualService.JOB)).thenReturn(List.of());
+        when(loanRepository.findActiveIdRange()).thenReturn(new LoanIdRangeDTO(1L, 4L));
+        when(batchCheckpointRepository.saveAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+        when(tariffRepository.findAllFineRates()).thenReturn(List.of(new ToolGroupFineRateDTO(10L, 500.0)));
+        when(loanRepository.findOverdueForAccrual(any(), eq(0L), eq(2L), any())).thenReturn(List.of(
+                new LoanAccrualRowDTO(1L, threeDaysLate, 99L)));
+        when(loanRepository.findOverdueForAccrual(any(), eq(2L), eq(4L), any())).thenReturn(List.of(
+                new LoanAccrualRowDTO(3L, threeDaysLate, 99L), new LoanAccrualRowDTO(4L, threeDaysLate, 10L)));
+        when(loanRepository.findOverdueForAccrual(any(), eq(4L), eq(4L), any())).thenReturn(List.of());
+
+        FineAccrualRunDTO res = fineAccrualService.run(false);
+
+        assertThat(res.completed()).isTrue();
+        verify(loanRepository).setAccruedFine(List.of(4L), 1500.0);
+        verify(loanRepository, times(1)).setAccruedFine(any(), any());
+    }
+
+    @Test @DisplayName("run – sin préstamos activos → nada que calcular")
+    void run_noActiveLoans(){
+        when(leaseService.tryAcquire(eq(FineAccrualService.JOB), any())).thenReturn(true);
+        when(batchCheckpointRepository.findByJob(FineAccrualService.JOB)).thenReturn(List.of());
+        when(loanRepository.findActiveIdRange()).thenReturn(new LoanIdRangeDTO(null, null));
+
+        FineAccrualRunDTO res = fineAccrualService.run(false);
+
+        assertThat(res.completed()).isTrue();
+        assertThat(res.loans()).isZero();
+        verifyNoInteractions(tariffRepository);
+    }
+
+    /* ======================================================================
+              2. run – retomar / reiniciar
+       ====================================================================== */
+
+    @Test @DisplayName("run – retoma desde el checkpoint del día con el mismo instante de cálculo")
+    void run_resumes(){
+        LocalDateTime asOf = LocalDateTime.now().minusHours(2);
+        BatchCheckpointEntity done = checkpoint(0, asOf, 4L, 4L, true);
+        BatchCheckpointEntity pending = checkpoint(1, asOf, 7L, 9L, false);
+        when(leaseService.tryAcquire(eq(FineAccrualService.JOB), any())).thenReturn(true);
+        when(batchCheckpointRepository.findByJob(FineAccrualService.JOB)).thenReturn(List.of(done, pending));
+        when(tariffRepository.findAllFineRates()).thenReturn(List.of(new ToolGroupFineRateDTO(10L, 100.0)));
+        when(loanRepository.findOverdueForAccrual(eq(asOf), eq(7L), eq(9L), any())).thenReturn(List.of(
+                new LoanAccrualRowDTO(9L, asOf.minusDays(2), 10L)));
+
+        FineAccrualRunDTO res = fineAccrualService.run(false);
+
+        assertThat(res.asOf()).isEqualTo(asOf);
+        assertThat(res.loans()).isEqualTo(1);
+        assertThat(pending.getDone()).isTrue();
+        verify(loanRepository).setAccruedFine(List.of(9L), 200.0);
+        verify(loanRepository, never()).findActiveIdRange();
+        verify(batchCheckpointRepository, never()).deleteByJob(any());
+    }
+
+    @Test @DisplayName("run – restart descarta el avance del día")
+    void run_restart(){
+        when(leaseService.tryAcquire(eq(FineAccrualService.JOB), any())).thenReturn(true);
+        when(batchCheckpointRepository.findByJob(FineAccrualService.JOB))
+                .thenReturn(List.of(checkpoint(0, LocalDateTime.now(), 1L, 5L, false)));
+        when(loanRepository.findActiveIdRange()).thenReturn(new LoanIdRangeDTO(null, null));
+
+        fineAccrualService.run(true);
+
+        verify(batchCheckpointRepository).deleteByJob(FineAccrualService.JOB);
+    }
+
+    @Test @DisplayName("run – otro nodo tiene la concesión → no calcula")
+    void run_notLeader(){
+        when(leaseService.tryAcquire(eq(FineAccrualService.JOB), any())).thenReturn(false);
+
+        assertThat(fineAccrualService.run(false).leader()).isFalse();
+        verifyNoInteractions(loanRepository, batchCheckpointRepository, tariffRepository);
+    }
+
+    /* ======================================================================
+              3. Lectura y cálculo
+       ====================================================================== */
+
+    @Test @DisplayName("getAccruingFines – informa el instante solo si el cálculo terminó")
+    void getAccruingFines(){
+        LocalDateTime asOf = LocalDateTime.now().minusHours(5);
+        when(loanRepository.sumAccruingFines()).thenReturn(new AccruingFinesDTO(3L, 1500.0));
+        when(batchCheckpointRepository.findByJob(FineAccrualService.JOB))
+                .thenReturn(List.of(checkpoint(0, asOf, 4L, 4L, true), checkpoint(1, asOf, 9L, 9L, true)));
+
+        assertThat(fineAccrualService.getAccruingFines()).isEqualTo(new AccruingFinesDTO(3L, 1500.0, asOf));
+    }
+
+    @Test @DisplayName("fineOf – menos de un día de atraso no genera multa")
+    void fineOf_partialDay(){
+        LocalDateTime due = LocalDateTime.of(2025, 1, 1, 10, 0);
+
+        assertThat(FineAccrualService.fineOf(due, due.plusHours(23), 500.0)).isZero();
+        assertThat(FineAccrualService.fineOf(due, due.plusDays(2), 500.0)).isEqualTo(1000.0);
+    }
+
+    /* ======================================================================
+                                  Helpers
+       ====================================================================== */
+
+    private BatchCheckpointEntity checkpoint(int partition, LocalDateTime asOf, Long lastId, Long endId, boolean done) {
+        return new BatchCheckpointEntity(FineAccrualService.JOB + ":" + partition, LocalDate.now(), asOf,
+                lastId, endId, 0L, done, asOf);
+    }
+}
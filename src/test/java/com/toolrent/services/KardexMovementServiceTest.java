@@ -1,12 +1,14 @@
 package com.toolrent.services;
 
 import com.toolrent.config.SecurityConfig;
+import com.toolrent.dto.CursorPageDTO;
 import com.toolrent.entities.*;
 import com.toolrent.repositories.KardexMovementRepository;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -18,6 +20,7 @@ import static org.mockito.Mockito.*;
 class KardexMovementServiceTest {
 
     @Mock private KardexMovementRepository kardexMovementRepository;
+    @Mock private KardexWriter kardexWriter;
     @Mock private CustomerService customerService;
     @InjectMocks private KardexMovementService kardexService;
 
@@ -108,7 +111,7 @@ class KardexMovementServiceTest {
 
         kardexService.saveRegistryKardex(group, 0);
 
-        verifyNoInteractions(kardexMovementRepository);
+        verifyNoInteractions(kardexWriter);
     }
 
     @Test @DisplayName("saveRegistryKardex – stock >0 → guarda movimiento")
@@ -121,15 +124,11 @@ class KardexMovementServiceTest {
             systemCustomer.setName("Sistema");
             when(customerService.getSystemCustomer()).thenReturn(systemCustomer);
 
-            KardexMovementEntity saved = new KardexMovementEntity();
-            saved.setId(100L);
-            when(kardexMovementRepository.save(any(KardexMovementEntity.class))).thenReturn(saved);
-
             kardexService.saveRegistryKardex(group, 5);
 
             ArgumentCaptor<KardexMovementEntity> captor =
                     ArgumentCaptor.forClass(KardexMovementEntity.class);
-            verify(kardexMovementRepository).save(captor.capture());
+            verify(kardexWriter).write(captor.capture());
 
             KardexMovementEntity captured = captor.getValue();
             assertThat(captured.getMovementType()).isEqualTo(MovementType.REGISTRY);
@@ -140,6 +139,74 @@ class KardexMovementServiceTest {
         }
     }
 
+    /* ======================================================================
+              5. getMovementsPage / findByDateRangePage – cursor
+       ====================================================================== */
+
+    @Test @DisplayName("getMovementsPage – hay más filas → nextCursor apunta al último entregado")
+    void page_firstPage_hasNext(){
+        LocalDateTime t = LocalDateTime.of(2025,3,10,12,0);
+        KardexMovementEntity m1 = buildMovement(9L, MovementType.LOAN, t);
+        KardexMovementEntity m2 = buildMovement(8L, MovementType.LOAN, t);
+        KardexMovementEntity m3 = buildMovement(7L, MovementType.RETURN, t.minusHours(1));
+        when(kardexMovementRepository.findPageWithDetails(
+                eq(PageCursor.MAX_DATE), eq(Long.MAX_VALUE), any())).thenReturn(List.of(m1, m2, m3));
+
+        CursorPageDTO<KardexMovementEntity> page = kardexService.getMovementsPage(null, 2);
+
+        assertThat(page.items()).containsExactly(m1, m2);
+        assertThat(page.nextCursor()).isEqualTo(PageCursor.encode(t, 8L));
+        assertThat(PageCursor.decode(page.nextCursor())).isEqualTo(new PageCursor(t, 8L));
+    }
+
+    @Test @DisplayName("getMovementsPage – con cursor y sin más filas → nextCursor null")
+    void page_lastPage(){
+        LocalDateTime t = LocalDateTime.of(2025,3,10,12,0);
+        KardexMovementEntity m = buildMovement(7L, MovementType.RETURN, t.minusHours(1));
+        when(kardexMovementRepository.findPageWithDetails(eq(t), eq(8L), any())).thenReturn(List.of(m));
+
+        CursorPageDTO<KardexMovementEntity> page =
+                kardexService.getMovementsPage(PageCursor.encode(t, 8L), 2);
+
+        assertThat(page.items()).containsExactly(m);
+        assertThat(page.nextCursor()).isNull();
+    }
+
+    @Test @DisplayName("getMovementsPage – tamaño excesivo se limita al máximo")
+    void page_sizeClamped(){
+        when(kardexMovementRepository.findPageWithDetails(any(), any(), any())).thenReturn(List.of());
+
+        CursorPageDTO<KardexMovementEntity> page = kardexService.getMovementsPage(null, 100_000);
+
+        ArgumentCaptor<Pageable> captor = ArgumentCaptor.forClass(Pageable.class);
+        verify(kardexMovementRepository).findPageWithDetails(any(), any(), captor.capture());
+        assertThat(page.size()).isEqualTo(PageCursor.MAX_SIZE);
+        assertThat(captor.getValue().getPageSize()).isEqualTo(PageCursor.MAX_SIZE + 1);
+    }
+
+    @Test @DisplayName("getMovementsPage – cursor inválido → excepción")
+    void page_invalidCursor(){
+        assertThatThrownBy(() -> kardexService.getMovementsPage("%%no-es-cursor%%", 10))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("Cursor");
+        verifyNoInteractions(kardexMovementRepository);
+    }
+
+    @Test @DisplayName("findByDateRangePage – respeta el rango y el cursor")
+    void rangePage_ok(){
+        LocalDateTime from = LocalDateTime.of(2025,1,1,0,0);
+        LocalDateTime to   = LocalDateTime.of(2025,2,1,0,0);
+        KardexMovementEntity m = buildMovement(4L, MovementType.RETIRE, from.plusDays(3));
+        when(kardexMovementRepository.findPageByDateRange(
+                eq(from), eq(to), eq(PageCursor.MAX_DATE), eq(Long.MAX_VALUE), any())).thenReturn(List.of(m));
+
+        CursorPageDTO<KardexMovementEntity> page = kardexService.findByDateRangePage(from, to, null, null);
+
+        assertThat(page.items()).containsExactly(m);
+        assertThat(page.size()).isEqualTo(PageCursor.DEFAULT_SIZE);
+        assertThat(page.nextCursor()).isNull();
+    }
+
     /* ======================================================================
                                   Helpers                                                               /
        ====================================================================== */
@@ -151,6 +218,12 @@ class KardexMovementServiceTest {
         return m;
     }
 
+    private KardexMovementEntity buildMovement(Long id, MovementType type, LocalDateTime date){
+        KardexMovementEntity m = buildMovement(id, type);
+        m.setMovementDate(date);
+        return m;
+    }
+
     private ToolGroupEntity mockGroupWithUnits(){
         ToolGroupEntity g = mock(ToolGroupEntity.class);
         List<ToolUnitEntity> list = List.of(mock(ToolUnitEntity.class));
@@ -0,0 +1,216 @@
+package com.toolrent.services;
+
+import com.toolrent.entities.*;
+import com.toolrent.repositories.CustomerRepository;
+import com.toolrent.repositories.KardexMovementRepository;
+import com.toolrent.repositories.ToolUnitRepository;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.*;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class KardexWriterTest {
+
+    @Mock private KardexMovementRepository kardexMovementRepository;
+    @Mock private ToolUnitRepository toolUnitRepository;
+    @Mock private CustomerRepository customerRepository;
+    @Mock private BusinessMetrics businessMetrics;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    @TempDir Path journalDir;
+
+    private KardexWriter syncWriter() {
+        return new KardexWriter(kardexMovementRepository, toolUnitRepository, customerRepository,
+                businessMetrics, transactionManager, false, 10, 5, 60_000, 3, journalDir.toString());
+    }
+
+    // Intervalo largo: en los tests el flush se dispara a mano
+    private KardexWriter bufferedWriter(int capacity) {
+        KardexWriter writer = new KardexWriter(kardexMovementRepository, toolUnitRepository, customerRepository,
+                businessMetrics, transactionManager, true, capacity, 5, 60_000, 3, journalDir.toString());
+        writer.start();
+        return writer;
+    }
+
+    private static KardexMovementEntity movement(MovementType type) {
+        ToolUnitEntity unit = new ToolUnitEntity();
+        unit.setId(10L);
+        CustomerEntity customer = new CustomerEntity();
+        customer.setId(1L);
+        KardexMovementEntity m = new KardexMovementEntity();
+        m.setToolUnit(unit);
+        m.setCustomer(customer);
+        m.setMovementType(type);
+        m.setDetails("detalle");
+        return m;
+    }
+
+    /* ======================================================================
+              1. Modo síncrono
+       ====================================================================== */
+
+    @Test @DisplayName("write – síncrono → save inmediato")
+    void sync_write() {
+        KardexMovementEntity m = movement(MovementType.LOAN);
+
+        syncWriter().write(m);
+
+        verify(kardexMovementRepository).save(m);
+    }
+
+    @Test @DisplayName("writeAll – síncrono → saveAll inmediato")
+    void sync_writeAll() {
+        List<KardexMovementEntity> list = List.of(movement(MovementType.LOAN), movement(MovementType.RETURN));
+
+        syncWriter().writeAll(list);
+
+        verify(kardexMovementRepository).saveAll(list);
+    }
+
+    /* ======================================================================
+              2. Write-behind
+       ====================================================================== */
+
+    @Test @DisplayName("write-behind – encola y luego inserta en lote")
+    void buffered_flush() {
+        KardexWriter writer = bufferedWriter(10);
+
+        writer.writeAll(List.of(movement(MovementType.LOAN), movement(MovementType.RETURN)));
+        verifyNoInteractions(kardexMovementRepository);
+        assertThat(writer.getStats().pending()).isEqualTo(2);
+
+        assertThat(writer.flushSafely()).isTrue();
+
+        ArgumentCaptor<List<KardexMovementEntity>> captor = ArgumentCaptor.forClass(List.class);
+        verify(kardexMovementRepository).saveAll(captor.capture());
+        assertThat(captor.getValue()).extracting(KardexMovementEntity::getMovementType)
+                .containsExactly(MovementType.LOAN, MovementType.RETURN);
+        assertThat(writer.getStats().pending()).isZero();
+        assertThat(writer.getStats().flushedMovements()).isEqualTo(2);
+    }
+
+    @Test @DisplayName("write-behind – cola llena → inserta en la petición")
+    void buffered_queueFull() {
+        KardexWriter writer = bufferedWriter(1);
+
+        writer.writeAll(List.of(movement(MovementType.LOAN), movement(MovementType.RETURN)));
+
+        verify(kardexMovementRepository).saveAll(argThat(l -> ((List<?>) l).size() == 1));
+        assertThat(writer.getStats().pending()).isEqualTo(1);
+        assertThat(writer.getStats().syncFallbacks()).isEqualTo(1);
+    }
+
+    @Test @DisplayName("write-behind – error de BD → el lote se reintenta")
+    void buffered_retry() {
+        KardexWriter writer = bufferedWriter(10);
+        when(kardexMovementRepository.saveAll(anyList()))
+                .thenThrow(new RuntimeException("BD caída"))
+                .thenReturn(List.of());
+
+        writer.write(movement(MovementType.LOAN));
+
+        assertThat(writer.flushSafely()).isFalse();
+        assertThat(writer.getStats().pending()).isEqualTo(1);
+        assertThat(writer.flushSafely()).isTrue();
+
+        verify(kardexMovementRepository, times(2)).saveAll(anyList());
+        assertThat(writer.getStats().failedFlushes()).isEqualTo(1);
+        assertThat(writer.getStats().pending()).isZero();
+    }
+
+    @Test @DisplayName("write-behind – al reiniciar reinserta lo pendiente del journal")
+    void buffered_replay() {
+        KardexWriter crashed = bufferedWriter(10);
+        crashed.write(movement(MovementType.REPAIR));
+        verifyNoInteractions(kardexMovementRepository);
+
+        bufferedWriter(10);
+
+        verify(kardexMovementRepository).saveAll(argThat(l -> ((List<KardexMovementEntity>) l).size() == 1
+                && ((List<KardexMovementEntity>) l).get(0).getMovementType() == MovementType.REPAIR));
+    }
+
+    /* ======================================================================
+              3. Durabilidad
+       ====================================================================== */
+
+    @Test @DisplayName("write-behind – en el journal antes del commit, en la cola solo al confirmar")
+    void buffered_journalBeforeCommit() throws Exception {
+        KardexWriter writer = bufferedWriter(10);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            writer.write(movement(MovementType.LOAN));
+            TransactionSynchronization sync = TransactionSynchronizationManager.getSynchronizations().get(0);
+
+            sync.beforeCommit(false);
+            assertThat(Files.readString(journalDir.resolve("kardex-journal.log"))).contains("\"LOAN\"");
+            assertThat(writer.getStats().pending()).isZero();
+
+            sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+            assertThat(writer.getStats().pending()).isEqualTo(1);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // Caída después del commit: el siguiente arranque lo reinserta
+        bufferedWriter(10);
+        verify(kardexMovementRepository).saveAll(argThat(l -> ((List<?>) l).size() == 1));
+    }
+
+    @Test @DisplayName("write-behind – transacción revertida → no se encola ni se reinserta")
+    void buffered_rollback() {
+        KardexWriter writer = bufferedWriter(10);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            writer.write(movement(MovementType.LOAN));
+            TransactionSynchronization sync = TransactionSynchronizationManager.getSynchronizations().get(0);
+            sync.beforeCommit(false);
+            sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(writer.getStats().pending()).isZero();
+        bufferedWriter(10);
+        verifyNoInteractions(kardexMovementRepository);
+    }
+
+    @Test @DisplayName("write-behind – lote que siempre falla → dead-letter y la cola sigue")
+    void buffered_deadLetter() throws Exception {
+        KardexWriter writer = bufferedWriter(10);
+        when(kardexMovementRepository.saveAll(anyList())).thenThrow(new RuntimeException("FK inválida"));
+        writer.write(movement(MovementType.LOAN));
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(writer.flushSafely()).isFalse();
+        }
+
+        assertThat(writer.getStats().pending()).isZero();
+        assertThat(writer.getStats().deadLettered()).isEqualTo(1);
+        assertThat(Files.readAllLines(journalDir.resolve("kardex-dead-letter.log")))
+                .singleElement().asString().contains("\"LOAN\"");
+
+        reset(kardexMovementRepository);
+        writer.write(movement(MovementType.RETURN));
+        assertThat(writer.flushSafely()).isTrue();
+        verify(kardexMovementRepository).saveAll(argThat(l -> ((List<KardexMovementEntity>) l).get(0)
+                .getMovementType() == MovementType.RETURN));
+
+        // Lo que está en dead-letter no se reinserta al arrancar
+        reset(kardexMovementRepository);
+        bufferedWriter(10);
+        verifyNoInteractions(kardexMovementRepository);
+    }
+}
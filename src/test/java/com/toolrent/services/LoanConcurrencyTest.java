@@ -0,0 +1,251 @@
+package com.toolrent.services;
+
+import com.toolrent.config.IdBlockConfig;
+import com.toolrent.dto.ToolLoanCountDTO;
+import com.toolrent.entities.*;
+import com.toolrent.repositories.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/* Préstamos concurrentes sobre un mismo grupo contra H2 real:
+   ninguna unidad puede quedar asignada a dos préstamos, los carros de un mismo
+   cliente no pasan juntos el máximo de préstamos activos, y dos reconciliaciones
+   simultáneas de stock no chocan al recrear las franjas de un grupo. */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import({LoanService.class, LoanEligibilityService.class, ToolUnitService.class, CustomerService.class,
+        KardexWriter.class, TariffCache.class, CacheVersionService.class, ToolStockService.class,
+        LoanRollupService.class, CustomerBalanceService.class, OverdueSweeper.class, LeaseService.class,
+        BusinessMetrics.class, SimpleMeterRegistry.class, ReferenceDataCache.class,
+        ResourceVersions.class, IdBlockConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LoanConcurrencyTest {
+
+    private static final Logger log = LoggerFactory.getLogger(LoanConcurrencyTest.class);
+
+    private static final int UNITS = 200;
+    private static final int REQUESTS = 300;
+    private static final int THREADS = 32;
+    private static final int CARTS = 6;
+    private static final int CART_SIZE = 2;
+
+    @Autowired private LoanService loanService;
+    @Autowired private ToolGroupRepository toolGroupRepository;
+    @Autowired private ToolUnitRepository toolUnitRepository;
+    @Autowired private CustomerRepository customerRepository;
+    @Autowired private LoanRepository loanRepository;
+    @Autowired private KardexMovementRepository kardexMovementRepository;
+    @Autowired private ToolGroupStockRepository toolGroupStockRepository;
+    @Autowired private ToolStockService toolStockService;
+    @Autowired private LoanRollupService loanRollupService;
+    @Autowired private LoanDailyRollupRepository loanDailyRollupRepository;
+    @Autowired private CustomerBalanceService customerBalanceService;
+    @Autowired private CustomerBalanceRepository customerBalanceRepository;
+
+    private Long groupId;
+    private List<Long> customerIds;
+
+    @BeforeEach
+    void seed(){
+        TariffEntity tariff = new TariffEntity();
+        tariff.setDailyRentalRate(1000.0);
+        tariff.setDailyFineRate(500.0);
+
+        ToolGroupEntity group = new ToolGroupEntity();
+        group.setName("Taladro");
+        group.setCategory("Electricidad");
+        group.setReplacementValue(15000.0);
+        group.setTariff(tariff);
+        for (int i = 0; i < UNITS; i++) {
+            ToolUnitEntity unit = new ToolUnitEntity();
+            unit.setToolGroup(group);
+            unit.setStatus(ToolStatus.AVAILABLE);
+            group.getUnits().add(unit);
+        }
+        groupId = toolGroupRepository.save(group).getId();
+        toolStockService.initialize(groupId, UNITS);
+
+        List<CustomerEntity> customers = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            CustomerEntity c = new CustomerEntity();
+            c.setName("Cliente " + i);
+            c.setRut("rut-" + i);
+            c.setPhone("9" + i);
+            c.setEmail("c" + i + "@toolrent.com");
+            customers.add(c);
+        }
+        customerIds = customerRepository.saveAll(customers).stream().map(CustomerEntity::getId).toList();
+        customerIds.forEach(customerBalanceService::initialize);
+    }
+
+    @AfterEach
+    void cleanUp(){
+        kardexMovementRepository.deleteAll();
+        toolGroupStockRepository.deleteAll();
+        loanDailyRollupRepository.deleteAll();
+        customerBalanceRepository.deleteAll();
+        loanRepository.deleteAll();
+        toolGroupRepository.deleteAll();
+        customerRepository.deleteAll();
+    }
+
+    @Test @DisplayName("registerLoan concurrente – sin doble asignación de unidades")
+    void registerLoan_parallel_noDoubleAllocation() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> results = new ArrayList<>();
+        LocalDateTime due = LocalDateTime.now().plusDays(3);
+
+        for (Long customerId : customerIds) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return loanService.registerLoan(groupId, customerId, due).getToolUnit().getId();
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+
+        List<Long> claimedUnits = new ArrayList<>();
+        List<String> failures = new ArrayList<>();
+        for (Future<Long> f : results) {
+            try {
+                claimedUnits.add(f.get(60, TimeUnit.SECONDS));
+            } catch (ExecutionException e) {
+                failures.add(e.getCause().getMessage());
+            }
+        }
+        double seconds = (System.nanoTime() - begin) / 1_000_000_000.0;
+        pool.shutdown();
+
+        log.info("registerLoan concurrente: {} solicitudes, {} hilos, {} s, {} préstamos/s",
+                REQUESTS, THREADS, String.format("%.2f", seconds), String.format("%.1f", REQUESTS / seconds));
+
+        assertThat(claimedUnits).hasSize(UNITS);
+        assertThat(new HashSet<>(claimedUnits)).hasSize(UNITS);
+        assertThat(failures).hasSize(REQUESTS - UNITS)
+                .allMatch(m -> m.contains("No hay unidades disponibles"));
+        assertThat(toolUnitRepository.countByToolGroupIdAndStatus(groupId, ToolStatus.LOANED)).isEqualTo(UNITS);
+        assertThat(loanRepository.count()).isEqualTo(UNITS);
+        // Los contadores se movieron junto con cada reserva: nada que reconciliar
+        assertThat(toolStockService.getAvailable(groupId)).isZero();
+        assertThat(toolStockService.reconcile()).isZero();
+        // El ranking del día se cuenta en vivo desde loans, sin filas de rollup en el camino del préstamo
+        assertThat(loanDailyRollupRepository.count()).isZero();
+        assertThat(loanRollupService.getTopTools(LocalDate.now().atStartOfDay(), LocalDateTime.now(), null))
+                .singleElement().extracting(ToolLoanCountDTO::total).isEqualTo((long) UNITS);
+        // Los saldos de clientes también coinciden con los préstamos creados
+        assertThat(customerBalanceService.reconcile()).isZero();
+    }
+
+    @Test @DisplayName("registerLoans concurrente – un cliente no pasa el máximo de préstamos activos")
+    void registerLoans_parallelCarts_respectMaxActiveLoans() throws Exception {
+        // Carros sin herramientas en común: la única regla que los puede frenar es el máximo de 5
+        List<List<Long>> carts = new ArrayList<>();
+        for (int c = 0; c < CARTS; c++) {
+            List<Long> cart = new ArrayList<>();
+            for (int i = 0; i < CART_SIZE; i++) {
+                cart.add(seedGroup("Carro " + c + "-" + i));
+            }
+            carts.add(cart);
+        }
+        Long customerId = customerIds.get(0);
+        ExecutorService pool = Executors.newFixedThreadPool(CARTS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        LocalDateTime due = LocalDateTime.now().plusDays(3);
+
+        for (List<Long> cart : carts) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return loanService.registerLoans(cart, customerId, due).size();
+            }));
+        }
+        start.countDown();
+
+        int opened = 0;
+        List<String> failures = new ArrayList<>();
+        for (Future<Integer> f : results) {
+            try {
+                opened += f.get(60, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                failures.add(e.getCause().getMessage());
+            }
+        }
+        pool.shutdown();
+
+        long maxCarts = LoanEligibilityService.MAX_ACTIVE_LOANS / CART_SIZE;
+        assertThat(opened).isEqualTo(maxCarts * CART_SIZE);
+        assertThat(failures).hasSize(CARTS - (int) maxCarts)
+                .allMatch(m -> m.contains(EligibilityRule.MAX_ACTIVE_LOANS.getMessage()));
+        assertThat(loanRepository.count()).isEqualTo(opened);
+        assertThat(customerBalanceRepository.findById(customerId).orElseThrow().getActiveLoans())
+                .isEqualTo((long) opened);
+        // Las unidades de los carros rechazados volvieron a quedar disponibles
+        assertThat(toolStockService.reconcile()).isZero();
+        assertThat(customerBalanceService.reconcile()).isZero();
+    }
+
+    @Test @DisplayName("reconcile concurrente – grupo sin franjas: se crean una sola vez")
+    void reconcile_parallel_missingStripes() throws Exception {
+        toolGroupStockRepository.deleteAll();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return toolStockService.reconcile();
+            }));
+        }
+        start.countDown();
+
+        int repaired = 0;
+        for (Future<Integer> f : results) {
+            repaired += f.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        // Cada hilo que tomó el bloqueo después del primero ya encontró el grupo corregido
+        assertThat(repaired).isEqualTo(1);
+        assertThat(toolGroupStockRepository.findStripes(groupId)).hasSize(ToolStockService.STRIPES);
+        assertThat(toolStockService.getAvailable(groupId)).isEqualTo(UNITS);
+        assertThat(toolStockService.reconcile()).isZero();
+    }
+
+    private Long seedGroup(String name) {
+        TariffEntity tariff = new TariffEntity();
+        tariff.setDailyRentalRate(1000.0);
+        tariff.setDailyFineRate(500.0);
+
+        ToolGroupEntity group = new ToolGroupEntity();
+        group.setName(name);
+        group.setCategory("Carro");
+        group.setReplacementValue(15000.0);
+        group.setTariff(tariff);
+        ToolUnitEntity unit = new ToolUnitEntity();
+        unit.setToolGroup(group);
+        unit.setStatus(ToolStatus.AVAILABLE);
+        group.getUnits().add(unit);
+        Long id = toolGroupRepository.save(group).getId();
+        toolStockService.initialize(id, 1);
+        return id;
+    }
+}
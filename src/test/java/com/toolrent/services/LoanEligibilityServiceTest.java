@@ -0,0 +1,143 @@
+package com.toolrent.services;
+
+import com.toolrent.dto.CustomerStandingDTO;
+import com.toolrent.dto.EligibilityViolationDTO;
+import com.toolrent.dto.LoanEligibilityDTO;
+import com.toolrent.entities.CustomerEntity;
+import com.toolrent.entities.CustomerStatus;
+import com.toolrent.repositories.CustomerRepository;
+import com.toolrent.repositories.LoanRepository;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LoanEligibilityServiceTest {
+
+    @Mock private LoanRepository loanRepository;
+    @Mock private CustomerBalanceService customerBalanceService;
+    @Mock private CustomerRepository customerRepository;
+    @Mock private BusinessMetrics businessMetrics;
+
+    @InjectMocks private LoanEligibilityService loanEligibilityService;
+
+    /* ======================================================================
+              1. evaluate
+       ====================================================================== */
+
+    @Test @DisplayName("evaluate – cliente sin deudas → elegible")
+    void evaluate_eligible(){
+        when(loanRepository.findCustomerStanding(eq(1L), eq(List.of(2L)), any()))
+                .thenReturn(standing(0, 0, 0, 0, 0));
+
+        LoanEligibilityDTO res = loanEligibilityService.evaluate(1L, List.of(2L));
+
+        assertThat(res.eligible()).isTrue();
+        assertThat(res.violations()).isEmpty();
+        verify(loanRepository, times(1)).findCustomerStanding(any(), any(), any());
+    }
+
+    @Test @DisplayName("evaluate – cliente RESTRICTED → no elegible aunque no tenga deudas")
+    void evaluate_restricted(){
+        CustomerEntity restricted = new CustomerEntity();
+        restricted.setStatus(CustomerStatus.RESTRICTED);
+        when(customerRepository.findById(1L)).thenReturn(Optional.of(restricted));
+        when(loanRepository.findCustomerStanding(eq(1L), eq(List.of(2L)), any()))
+                .thenReturn(standing(0, 0, 0, 0, 0));
+
+        LoanEligibilityDTO res = loanEligibilityService.evaluate(1L, List.of(2L));
+
+        assertThat(res.eligible()).isFalse();
+        assertThat(res.violations()).extracting(EligibilityViolationDTO::rule).containsExactly("RESTRICTED");
+    }
+
+    @Test @DisplayName("evaluate – con fila de saldo no recalcula desde loans")
+    void evaluate_fromBalance(){
+        when(customerBalanceService.findStanding(eq(1L), eq(List.of(2L)), any()))
+                .thenReturn(Optional.of(standing(0, 1, 0, 2, 0)));
+
+        LoanEligibilityDTO res = loanEligibilityService.evaluate(1L, List.of(2L));
+
+        assertThat(res.violations()).extracting(EligibilityViolationDTO::rule)
+                .containsExactly("UNPAID_FINES");
+        verify(loanRepository, never()).findCustomerStanding(any(), any(), any());
+    }
+
+    @Test @DisplayName("evaluate – retorna TODAS las reglas incumplidas")
+    void evaluate_allViolations(){
+        when(loanRepository.findCustomerStanding(eq(1L), eq(List.of(2L)), any()))
+                .thenReturn(standing(1, 2, 1, 5, 1));
+
+        LoanEligibilityDTO res = loanEligibilityService.evaluate(1L, List.of(2L));
+
+        assertThat(res.eligible()).isFalse();
+        assertThat(res.violations()).extracting(EligibilityViolationDTO::rule)
+                .containsExactly("OVERDUE_LOANS", "UNPAID_FINES", "UNPAID_DAMAGE",
+                        "MAX_ACTIVE_LOANS", "SAME_TOOL");
+    }
+
+    @Test @DisplayName("evaluate – 4 activos permite uno más")
+    void evaluate_fourActive(){
+        when(loanRepository.findCustomerStanding(eq(1L), eq(List.of(2L)), any()))
+                .thenReturn(standing(0, 0, 0, 4, 0));
+
+        LoanEligibilityDTO res = loanEligibilityService.evaluate(1L, List.of(2L));
+
+        assertThat(res.eligible()).isTrue();
+    }
+
+    @Test @DisplayName("evaluate – sin herramientas evalúa si cabe un préstamo más")
+    void evaluate_noToolGroups(){
+        when(loanRepository.findCustomerStanding(eq(1L), eq(List.of()), any()))
+                .thenReturn(standing(0, 0, 0, 5, 0));
+
+        LoanEligibilityDTO res = loanEligibilityService.evaluate(1L, List.of());
+
+        assertThat(res.violations()).extracting(EligibilityViolationDTO::rule)
+                .containsExactly("MAX_ACTIVE_LOANS");
+    }
+
+    /* ======================================================================
+              2. requireEligible
+       ====================================================================== */
+
+    @Test @DisplayName("requireEligible – mensaje con todas las reglas")
+    void requireEligible_throws(){
+        when(loanRepository.findCustomerStanding(eq(1L), eq(List.of(2L)), any()))
+                .thenReturn(standing(1, 1, 0, 0, 0));
+
+        assertThatThrownBy(() -> loanEligibilityService.requireEligible(1L, List.of(2L)))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("vencidos sin devolver")
+                .hasMessageContaining("multas impagas");
+        verify(businessMetrics).eligibilityRejected(List.of(EligibilityRule.OVERDUE_LOANS, EligibilityRule.UNPAID_FINES));
+    }
+
+    @Test @DisplayName("requireEligible – elegible → no lanza")
+    void requireEligible_ok(){
+        when(loanRepository.findCustomerStanding(eq(1L), eq(List.of(2L)), any()))
+                .thenReturn(standing(0, 0, 0, 0, 0));
+
+        assertThatCode(() -> loanEligibilityService.requireEligible(1L, List.of(2L)))
+                .doesNotThrowAnyException();
+        verifyNoInteractions(businessMetrics);
+    }
+
+    /* ======================================================================
+                                      Helpers
+       ====================================================================== */
+
+    private CustomerStandingDTO standing(long overdue, long fines, long damage, long active, long sameTool){
+        return new CustomerStandingDTO(overdue, fines, damage, active, sameTool);
+    }
+}
@@ -0,0 +1,236 @@
+package com.toolrent.services;
+
+import com.toolrent.dto.ToolLoanCountDTO;
+import com.toolrent.entities.LoanDailyRollupEntity;
+import com.toolrent.entities.LoanRollupSealEntity;
+import com.toolrent.repositories.LoanDailyRollupRepository;
+import com.toolrent.repositories.LoanRollupSealRepository;
+import com.toolrent.repositories.LoanRepository;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.*;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LoanRollupServiceTest {
+
+    @Mock private LoanDailyRollupRepository loanDailyRollupRepository;
+    @Mock private LoanRollupSealRepository loanRollupSealRepository;
+    @Mock private LoanRepository loanRepository;
+    @Mock private LeaseService leaseService;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private LoanRollupService loanRollupService;
+
+    @BeforeEach
+    void setUp() {
+        loanRollupService = new LoanRollupService(loanDailyRollupRepository, loanRollupSealRepository,
+                loanRepository, leaseService, transactionManager, 60000);
+    }
+
+    // Días cerrados [from, to]
+    private static List<LocalDate> days(LocalDate from, LocalDate to) {
+        return from.datesUntil(to.plusDays(1)).toList();
+    }
+
+    /* ======================================================================
+              1. getTopTools – tramos en vivo + días completos
+       ====================================================================== */
+
+    @Test @DisplayName("getTopTools – extremos parciales en vivo y días intermedios desde rollups")
+    void topTools_splitsRange(){
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 10, 0);
+        LocalDateTime to   = LocalDateTime.of(2025, 1, 5, 15, 0);
+        when(loanRollupSealRepository.findSealedBetween(LocalDate.of(2025, 1, 2), LocalDate.of(2025, 1, 4)))
+                .thenReturn(days(LocalDate.of(2025, 1, 2), LocalDate.of(2025, 1, 4)));
+        when(loanRepository.countByToolGroupBefore(from, LocalDate.of(2025, 1, 2).atStartOfDay()))
+                .thenReturn(List.of(new ToolLoanCountDTO(1L, "Taladro", 2L)));
+        when(loanDailyRollupRepository.sumByToolGroup(LocalDate.of(2025, 1, 2), LocalDate.of(2025, 1, 4)))
+                .thenReturn(List.of(new ToolLoanCountDTO(1L, "Taladro", 10L),
+                        new ToolLoanCountDTO(2L, "Lijadora", 11L)));
+        when(loanRepository.countByToolGroupBetween(LocalDate.of(2025, 1, 5).atStartOfDay(), to))
+                .thenReturn(List.of(new ToolLoanCountDTO(2L, "Lijadora", 3L),
+                        new ToolLoanCountDTO(3L, "Sierra", 1L)));
+
+        List<ToolLoanCountDTO> res = loanRollupService.getTopTools(from, to, null);
+
+        assertThat(res).containsExactly(
+                new ToolLoanCountDTO(2L, "Lijadora", 14L),
+                new ToolLoanCountDTO(1L, "Taladro", 12L),
+                new ToolLoanCountDTO(3L, "Sierra", 1L));
+    }
+
+    @Test @DisplayName("getTopTools – from a medianoche no consulta tramo inicial; limit corta el top")
+    void topTools_midnightAndLimit(){
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime to   = LocalDateTime.of(2025, 1, 3, 8, 0);
+        when(loanRollupSealRepository.findSealedBetween(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 2)))
+                .thenReturn(days(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 2)));
+        when(loanDailyRollupRepository.sumByToolGroup(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 2)))
+                .thenReturn(List.of(new ToolLoanCountDTO(1L, "Taladro", 4L),
+                        new ToolLoanCountDTO(2L, "Lijadora", 4L)));
+        when(loanRepository.countByToolGroupBetween(LocalDate.of(2025, 1, 3).atStartOfDay(), to))
+                .thenReturn(List.of());
+
+        List<ToolLoanCountDTO> res = loanRollupService.getTopTools(from, to, 1);
+
+        // Empate: desempata por id
+        assertThat(res).containsExactly(new ToolLoanCountDTO(1L, "Taladro", 4L));
+        verify(loanRepository, never()).countByToolGroupBefore(any(), any());
+    }
+
+    @Test @DisplayName("getTopTools – día sin cerrar entre días cerrados → ese día en vivo")
+    void topTools_unsealedDayCountedLive(){
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime to   = LocalDateTime.of(2025, 1, 6, 8, 0);
+        when(loanRollupSealRepository.findSealedBetween(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 5)))
+                .thenReturn(List.of(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 2), LocalDate.of(2025, 1, 5)));
+        when(loanDailyRollupRepository.sumByToolGroup(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 2)))
+                .thenReturn(List.of(new ToolLoanCountDTO(1L, "Taladro", 4L)));
+        when(loanRepository.countByToolGroupBefore(LocalDate.of(2025, 1, 3).atStartOfDay(),
+                LocalDate.of(2025, 1, 5).atStartOfDay()))
+                .thenReturn(List.of(new ToolLoanCountDTO(1L, "Taladro", 6L)));
+        when(loanDailyRollupRepository.sumByToolGroup(LocalDate.of(2025, 1, 5), LocalDate.of(2025, 1, 5)))
+                .thenReturn(List.of(new ToolLoanCountDTO(2L, "Lijadora", 1L)));
+        when(loanRepository.countByToolGroupBetween(LocalDate.of(2025, 1, 6).atStartOfDay(), to))
+                .thenReturn(List.of());
+
+        assertThat(loanRollupService.getTopTools(from, to, null)).containsExactly(
+                new ToolLoanCountDTO(1L, "Taladro", 10L),
+                new ToolLoanCountDTO(2L, "Lijadora", 1L));
+        // Los rollups de los días sin cerrar no se suman aunque existan
+        verify(loanDailyRollupRepository, never()).sumByToolGroup(eq(LocalDate.of(2025, 1, 3)), any());
+    }
+
+    @Test @DisplayName("getTopTools – mismo día → una sola consulta en vivo")
+    void topTools_sameDay(){
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 8, 0);
+        LocalDateTime to   = LocalDateTime.of(2025, 1, 1, 18, 0);
+        when(loanRepository.countByToolGroupBetween(from, to))
+                .thenReturn(List.of(new ToolLoanCountDTO(1L, "Taladro", 3L)));
+
+        assertThat(loanRollupService.getTopTools(from, to, null)).hasSize(1);
+        verifyNoInteractions(loanDailyRollupRepository);
+    }
+
+    @Test @DisplayName("getTopTools – rango invertido → vacío")
+    void topTools_inverted(){
+        LocalDateTime from = LocalDateTime.of(2025, 2, 1, 0, 0);
+
+        assertThat(loanRollupService.getTopTools(from, from.minusDays(1), null)).isEmpty();
+        verifyNoInteractions(loanRepository, loanDailyRollupRepository);
+    }
+
+    /* ======================================================================
+              2. backfill
+       ====================================================================== */
+
+    @Test @DisplayName("backfill – recalcula cada día desde loans")
+    void backfill_rebuildsDays(){
+        LocalDate from = LocalDate.of(2025, 1, 1);
+        when(loanRepository.countByToolGroupBefore(from.atStartOfDay(), from.plusDays(1).atStartOfDay()))
+                .thenReturn(List.of(new ToolLoanCountDTO(1L, "Taladro", 5L)));
+        when(loanRepository.countByToolGroupBefore(from.plusDays(1).atStartOfDay(), from.plusDays(2).atStartOfDay()))
+                .thenReturn(List.of());
+
+        int days = loanRollupService.backfill(from, from.plusDays(1));
+
+        assertThat(days).isEqualTo(2);
+        verify(loanDailyRollupRepository).deleteByRollupDate(from);
+        verify(loanDailyRollupRepository).deleteByRollupDate(from.plusDays(1));
+        verify(loanDailyRollupRepository).saveAll(List.of(new LoanDailyRollupEntity(from, 1L, 5L)));
+        verify(loanRollupSealRepository, times(2)).save(any(LoanRollupSealEntity.class));
+    }
+
+    @Test @DisplayName("backfill – no recalcula hoy (se cuenta en vivo)")
+    void backfill_excludesToday(){
+        LocalDate today = LocalDate.now();
+
+        int days = loanRollupService.backfill(today, today.plusDays(3));
+
+        assertThat(days).isZero();
+        verifyNoInteractions(loanDailyRollupRepository);
+    }
+
+    /* ======================================================================
+              3. sealPendingDays – un solo nodo por cierre, sin días salteados
+       ====================================================================== */
+
+    @Test @DisplayName("sealPendingDays – con la concesión y anteayer cerrado → recalcula ayer")
+    void seal_withLease(){
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        when(leaseService.tryAcquire(eq(LoanRollupService.LEASE), any())).thenReturn(true);
+        when(loanRollupSealRepository.findLastSealed()).thenReturn(yesterday.minusDays(1));
+        when(loanRepository.countByToolGroupBefore(yesterday.atStartOfDay(), yesterday.plusDays(1).atStartOfDay()))
+                .thenReturn(List.of(new ToolLoanCountDTO(1L, "Taladro", 7L)));
+
+        assertThat(loanRollupService.sealPendingDays()).isEqualTo(1);
+
+        verify(loanDailyRollupRepository).deleteByRollupDate(yesterday);
+        verify(loanDailyRollupRepository).saveAll(List.of(new LoanDailyRollupEntity(yesterday, 1L, 7L)));
+        verify(loanRollupSealRepository).save(argThat(seal -> seal.getRollupDate().equals(yesterday)));
+    }
+
+    @Test @DisplayName("sealPendingDays – cierre salteado → recupera cada día desde el último cerrado")
+    void seal_catchesUpSkippedDays(){
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        LocalDate skipped = yesterday.minusDays(1);
+        when(leaseService.tryAcquire(eq(LoanRollupService.LEASE), any())).thenReturn(true);
+        when(loanRollupSealRepository.findLastSealed()).thenReturn(skipped.minusDays(1));
+        when(loanRepository.countByToolGroupBefore(skipped.atStartOfDay(), skipped.plusDays(1).atStartOfDay()))
+                .thenReturn(List.of(new ToolLoanCountDTO(1L, "Taladro", 3L)));
+        when(loanRepository.countByToolGroupBefore(yesterday.atStartOfDay(), yesterday.plusDays(1).atStartOfDay()))
+                .thenReturn(List.of());
+
+        assertThat(loanRollupService.sealPendingDays()).isEqualTo(2);
+
+        verify(loanDailyRollupRepository).saveAll(List.of(new LoanDailyRollupEntity(skipped, 1L, 3L)));
+        verify(loanDailyRollupRepository).deleteByRollupDate(yesterday);
+        // Ayer no tuvo préstamos, pero queda cerrado: el próximo cierre no lo repite
+        ArgumentCaptor<LoanRollupSealEntity> seals = ArgumentCaptor.forClass(LoanRollupSealEntity.class);
+        verify(loanRollupSealRepository, times(2)).save(seals.capture());
+        assertThat(seals.getAllValues()).extracting(LoanRollupSealEntity::getRollupDate)
+                .containsExactly(skipped, yesterday);
+    }
+
+    @Test @DisplayName("sealPendingDays – ya cerrado hasta ayer → no recalcula")
+    void seal_upToDate(){
+        when(leaseService.tryAcquire(eq(LoanRollupService.LEASE), any())).thenReturn(true);
+        when(loanRollupSealRepository.findLastSealed()).thenReturn(LocalDate.now().minusDays(1));
+
+        assertThat(loanRollupService.sealPendingDays()).isZero();
+
+        verifyNoInteractions(loanDailyRollupRepository, loanRepository);
+    }
+
+    @Test @DisplayName("sealPendingDays – sin cierres previos → desde el día del primer préstamo")
+    void seal_firstRun(){
+        LocalDate firstDay = LocalDate.now().minusDays(3);
+        when(leaseService.tryAcquire(eq(LoanRollupService.LEASE), any())).thenReturn(true);
+        when(loanRollupSealRepository.findLastSealed()).thenReturn(null);
+        when(loanRepository.findFirstLoanDate()).thenReturn(firstDay.atTime(9, 30));
+        when(loanRepository.countByToolGroupBefore(any(), any())).thenReturn(List.of());
+
+        assertThat(loanRollupService.sealPendingDays()).isEqualTo(3);
+
+        verify(loanDailyRollupRepository).deleteByRollupDate(firstDay);
+        verify(loanDailyRollupRepository, never()).deleteByRollupDate(LocalDate.now());
+    }
+
+    @Test @DisplayName("sealPendingDays – concesión de otro nodo → no toca los rollups")
+    void seal_withoutLease(){
+        when(leaseService.tryAcquire(eq(LoanRollupService.LEASE), any())).thenReturn(false);
+
+        assertThat(loanRollupService.sealPendingDays()).isZero();
+
+        verifyNoInteractions(loanDailyRollupRepository, loanRollupSealRepository, loanRepository);
+    }
+}
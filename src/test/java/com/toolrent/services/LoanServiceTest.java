@@ -2,6 +2,8 @@ package com.toolrent.services;
 
 import com.toolrent.config.SecurityConfig;
 import com.toolrent.dto.LoanActiveDTO;
+import com.toolrent.dto.LoanReturnRequestDTO;
+import com.toolrent.dto.LoanReturnResultDTO;
 import com.toolrent.entities.*;
 import com.toolrent.repositories.*;
 import org.junit.jupiter.api.*;
@@ -25,11 +27,24 @@ class LoanServiceTest {
     @Mock private LoanRepository loanRepository;
     @Mock private ToolGroupRepository toolGroupRepository;
     @Mock private ToolUnitRepository toolUnitRepository;
-    @Mock private KardexMovementRepository kardexMovementRepository;
+    @Mock private KardexWriter kardexWriter;
     @Mock private CustomerRepository customerRepository;
+    @Mock private LoanEligibilityService loanEligibilityService;
+    @Mock private ToolUnitService toolUnitService;
+    @Mock private TariffCache tariffCache;
+    @Mock private ToolStockService toolStockService;
+    @Mock private CustomerBalanceService customerBalanceService;
+    @Mock private OverdueSweeper overdueSweeper;
 
     @InjectMocks private LoanService loanService;
 
+    @BeforeEach
+    void tariffs(){
+        // Misma tarifa que buildToolGroup; no todos los tests llegan a cobrar
+        lenient().when(tariffCache.get(anyLong()))
+                .thenReturn(new TariffCache.TariffSnapshot(1L, 1000.0, 500.0));
+    }
+
     /* ======================================================================
               1. registerLoan
        ====================================================================== */
@@ -55,26 +70,20 @@ class LoanServiceTest {
 
             CustomerEntity customer = buildCustomer(customerId);
             ToolGroupEntity group = buildToolGroup(1L, 15000.0);
-            ToolUnitEntity unit   = buildUnit(5L, group, ToolStatus.AVAILABLE);
-
-            when(loanRepository.existsByCustomerIdAndReturnDateIsNullAndDueDateBefore(eq(customerId), any())).thenReturn(false);
-            when(loanRepository.existsByCustomerIdAndFineAmountGreaterThanAndReturnDateIsNotNull(eq(customerId), eq(0.0))).thenReturn(false);
-            when(loanRepository.existsByCustomerIdAndDamageChargeGreaterThanAndReturnDateIsNotNull(eq(customerId), eq(0.0))).thenReturn(false);
-            when(loanRepository.countByCustomerIdAndReturnDateIsNull(customerId)).thenReturn(0L);
-            when(loanRepository.existsByCustomerIdAndToolUnitToolGroupIdAndReturnDateIsNull(customerId, groupId)).thenReturn(false);
-            when(toolGroupRepository.findById(groupId)).thenReturn(Optional.of(group));
-            when(toolUnitRepository.findFirstByToolGroupIdAndStatus(groupId, ToolStatus.AVAILABLE)).thenReturn(Optional.of(unit));
+            ToolUnitEntity unit   = buildUnit(5L, group, ToolStatus.LOANED);
+
+            when(toolUnitService.claimAvailableUnit(groupId)).thenReturn(Optional.of(unit));
             when(customerRepository.findById(customerId)).thenReturn(Optional.of(customer));
             when(loanRepository.save(any(LoanEntity.class))).thenAnswer(i -> i.getArgument(0));
 
             LoanEntity res = loanService.registerLoan(groupId, customerId, due);
 
             assertThat(res).isNotNull();
-            verify(kardexMovementRepository).save(any(KardexMovementEntity.class));
+            verify(loanEligibilityService).requireEligible(customerId, List.of(groupId));
+            verify(kardexWriter).write(any(KardexMovementEntity.class));
         }
     }
 
-    /* -------------- resto de restricciones -------------- */
     @Test @DisplayName("registerLoan – camino feliz")
     void registerLoan_ok(){
         try (MockedStatic<SecurityConfig> mocked = mockStatic(SecurityConfig.class)){
@@ -85,17 +94,9 @@ class LoanServiceTest {
 
             CustomerEntity customer = buildCustomer(customerId);
             ToolGroupEntity group = buildToolGroup(1L, 15000.0);
-            ToolUnitEntity unit = buildUnit(5L, group, ToolStatus.AVAILABLE);
-
-            /* --- mocks de validaciones (todas false) --- */
-            when(loanRepository.existsByCustomerIdAndReturnDateIsNullAndDueDateBefore(eq(customerId), any())).thenReturn(false);
-            when(loanRepository.existsByCustomerIdAndFineAmountGreaterThanAndReturnDateIsNotNull(eq(customerId), eq(0.0))).thenReturn(false);
-            when(loanRepository.existsByCustomerIdAndDamageChargeGreaterThanAndReturnDateIsNotNull(eq(customerId), eq(0.0))).thenReturn(false);
-            when(loanRepository.countByCustomerIdAndReturnDateIsNull(customerId)).thenReturn(0L);
-            when(loanRepository.existsByCustomerIdAndToolUnitToolGroupIdAndReturnDateIsNull(customerId, groupId)).thenReturn(false);
+            ToolUnitEntity unit = buildUnit(5L, group, ToolStatus.LOANED); // ya reservada
 
-            when(toolGroupRepository.findById(groupId)).thenReturn(Optional.of(group));
-            when(toolUnitRepository.findFirstByToolGroupIdAndStatus(groupId, ToolStatus.AVAILABLE)).thenReturn(Optional.of(unit));
+            when(toolUnitService.claimAvailableUnit(groupId)).thenReturn(Optional.of(unit));
             when(customerRepository.findById(customerId)).thenReturn(Optional.of(customer));
 
             LoanEntity saved = new LoanEntity();
@@ -105,102 +106,105 @@ class LoanServiceTest {
             LoanEntity res = loanService.registerLoan(groupId, customerId, due);
 
             assertThat(res.getId()).isEqualTo(100L);
-            assertThat(unit.getStatus()).isEqualTo(ToolStatus.LOANED);
-            verify(toolUnitRepository).save(unit);
-            verify(kardexMovementRepository).save(any(KardexMovementEntity.class));
+            verify(toolUnitService).claimAvailableUnit(groupId);
+            verify(toolUnitRepository, never()).save(any());
+            verify(kardexWriter).write(any(KardexMovementEntity.class));
+            verify(toolGroupRepository, never()).findById(any());
         }
     }
 
-    @Test @DisplayName("registerLoan – cliente con préstamos vencidos")
-    void registerLoan_overdue(){
-        Long customerId = 1L;
-        when(loanRepository.existsByCustomerIdAndReturnDateIsNullAndDueDateBefore(eq(customerId), any())).thenReturn(true);
+    /* -------------- restricciones del cliente -------------- */
+    @Test @DisplayName("registerLoan – cliente no elegible → excepción con todas las reglas")
+    void registerLoan_notEligible(){
+        Long customerId = 1L, groupId = 1L;
+        doThrow(new RuntimeException("El cliente tiene préstamos vencidos sin devolver; El cliente tiene multas impagas"))
+                .when(loanEligibilityService).requireEligible(customerId, List.of(groupId));
 
-        assertThatThrownBy(() -> loanService.registerLoan(1L, customerId, LocalDateTime.now().plusDays(1)))
+        assertThatThrownBy(() -> loanService.registerLoan(groupId, customerId, LocalDateTime.now().plusDays(1)))
                 .isInstanceOf(RuntimeException.class)
-                .hasMessageContaining("vencidos sin devolver");
+                .hasMessageContaining("vencidos sin devolver")
+                .hasMessageContaining("multas impagas");
+        verifyNoInteractions(toolUnitService, kardexWriter);
     }
 
-    @Test @DisplayName("registerLoan – multas impagas")
-    void registerLoan_unpaidFine(){
-        Long customerId = 1L;
-        when(loanRepository.existsByCustomerIdAndReturnDateIsNullAndDueDateBefore(eq(customerId), any())).thenReturn(false);
-        when(loanRepository.existsByCustomerIdAndFineAmountGreaterThanAndReturnDateIsNotNull(eq(customerId), eq(0.0))).thenReturn(true);
+    @Test @DisplayName("registerLoan – grupo no existe")
+    void registerLoan_groupNotFound(){
+        Long groupId = 99L, customerId = 1L;
+        when(toolUnitService.claimAvailableUnit(groupId)).thenReturn(Optional.empty());
+        when(toolGroupRepository.existsById(groupId)).thenReturn(false);
 
-        assertThatThrownBy(() -> loanService.registerLoan(1L, customerId, LocalDateTime.now().plusDays(1)))
+        assertThatThrownBy(() -> loanService.registerLoan(groupId, customerId, LocalDateTime.now().plusDays(1)))
                 .isInstanceOf(RuntimeException.class)
-                .hasMessageContaining("multas impagas");
+                .hasMessageContaining("Grupo de herramientas no encontrado");
     }
 
-    @Test @DisplayName("registerLoan – daños sin pagar")
-    void registerLoan_unpaidDamage(){
-        Long customerId = 1L;
-        when(loanRepository.existsByCustomerIdAndReturnDateIsNullAndDueDateBefore(eq(customerId), any())).thenReturn(false);
-        when(loanRepository.existsByCustomerIdAndFineAmountGreaterThanAndReturnDateIsNotNull(eq(customerId), eq(0.0))).thenReturn(false);
-        when(loanRepository.existsByCustomerIdAndDamageChargeGreaterThanAndReturnDateIsNotNull(eq(customerId), eq(0.0))).thenReturn(true);
+    @Test @DisplayName("registerLoan – sin unidades disponibles")
+    void registerLoan_noAvailableUnit(){
+        Long groupId = 1L, customerId = 1L;
+        when(toolUnitService.claimAvailableUnit(groupId)).thenReturn(Optional.empty());
+        when(toolGroupRepository.existsById(groupId)).thenReturn(true);
 
-        assertThatThrownBy(() -> loanService.registerLoan(1L, customerId, LocalDateTime.now().plusDays(1)))
+        assertThatThrownBy(() -> loanService.registerLoan(groupId, customerId, LocalDateTime.now().plusDays(1)))
                 .isInstanceOf(RuntimeException.class)
-                .hasMessageContaining("daño sin pagar");
+                .hasMessageContaining("No hay unidades disponibles");
     }
 
-    @Test @DisplayName("registerLoan – máximo 5 préstamos")
-    void registerLoan_maxActive(){
-        Long customerId = 1L;
-        when(loanRepository.existsByCustomerIdAndReturnDateIsNullAndDueDateBefore(eq(customerId), any())).thenReturn(false);
-        when(loanRepository.existsByCustomerIdAndFineAmountGreaterThanAndReturnDateIsNotNull(eq(customerId), eq(0.0))).thenReturn(false);
-        when(loanRepository.existsByCustomerIdAndDamageChargeGreaterThanAndReturnDateIsNotNull(eq(customerId), eq(0.0))).thenReturn(false);
-        when(loanRepository.countByCustomerIdAndReturnDateIsNull(customerId)).thenReturn(5L);
+    /* ======================================================================
+          1b. registerLoans (carro)
+       ====================================================================== */
 
-        assertThatThrownBy(() -> loanService.registerLoan(1L, customerId, LocalDateTime.now().plusDays(1)))
-                .isInstanceOf(RuntimeException.class)
-                .hasMessageContaining("5 préstamos activos");
-    }
+    @Test @DisplayName("registerLoans – camino feliz, una sola validación y guardado en lote")
+    void registerLoans_ok(){
+        try (MockedStatic<SecurityConfig> mocked = mockStatic(SecurityConfig.class)){
+            mocked.when(SecurityConfig::getCurrentUsername).thenReturn("emp1");
+            Long customerId = 10L;
+            CustomerEntity customer = buildCustomer(customerId);
+            ToolUnitEntity unit1 = buildUnit(5L, buildToolGroup(1L, 15000.0), ToolStatus.LOANED);
+            ToolUnitEntity unit2 = buildUnit(6L, buildToolGroup(2L, 9000.0), ToolStatus.LOANED);
 
-    @Test @DisplayName("registerLoan – ya tiene la misma herramienta")
-    void registerLoan_sameTool(){
-        Long customerId = 1L, groupId = 1L;
-        when(loanRepository.existsByCustomerIdAndReturnDateIsNullAndDueDateBefore(eq(customerId), any())).thenReturn(false);
-        when(loanRepository.existsByCustomerIdAndFineAmountGreaterThanAndReturnDateIsNotNull(eq(customerId), eq(0.0))).thenReturn(false);
-        when(loanRepository.existsByCustomerIdAndDamageChargeGreaterThanAndReturnDateIsNotNull(eq(customerId), eq(0.0))).thenReturn(false);
-        when(loanRepository.countByCustomerIdAndReturnDateIsNull(customerId)).thenReturn(1L);
-        when(loanRepository.existsByCustomerIdAndToolUnitToolGroupIdAndReturnDateIsNull(customerId, groupId)).thenReturn(true);
+            when(customerRepository.findById(customerId)).thenReturn(Optional.of(customer));
+            when(toolUnitService.claimAvailableUnit(1L)).thenReturn(Optional.of(unit1));
+            when(toolUnitService.claimAvailableUnit(2L)).thenReturn(Optional.of(unit2));
+            when(loanRepository.saveAll(anyList())).thenAnswer(i -> i.getArgument(0));
 
-        assertThatThrownBy(() -> loanService.registerLoan(groupId, customerId, LocalDateTime.now().plusDays(1)))
-                .isInstanceOf(RuntimeException.class)
-                .hasMessageContaining("ya tiene una unidad de esta herramienta");
+            List<LoanEntity> res = loanService.registerLoans(List.of(1L, 2L), customerId, LocalDateTime.now().plusDays(2));
+
+            assertThat(res).hasSize(2);
+            assertThat(res).extracting(LoanEntity::getToolUnit).containsExactly(unit1, unit2);
+            verify(loanEligibilityService, times(1)).requireEligible(customerId, List.of(1L, 2L));
+            verify(kardexWriter).writeAll(argThat(m -> ((List<?>) m).size() == 2));
+        }
     }
 
-    @Test @DisplayName("registerLoan – grupo no existe")
-    void registerLoan_groupNotFound(){
-        Long groupId = 99L, customerId = 1L;
-        when(loanRepository.existsByCustomerIdAndReturnDateIsNullAndDueDateBefore(eq(customerId), any())).thenReturn(false);
-        when(loanRepository.existsByCustomerIdAndFineAmountGreaterThanAndReturnDateIsNotNull(eq(customerId), eq(0.0))).thenReturn(false);
-        when(loanRepository.existsByCustomerIdAndDamageChargeGreaterThanAndReturnDateIsNotNull(eq(customerId), eq(0.0))).thenReturn(false);
-        when(loanRepository.countByCustomerIdAndReturnDateIsNull(customerId)).thenReturn(0L);
-        when(loanRepository.existsByCustomerIdAndToolUnitToolGroupIdAndReturnDateIsNull(customerId, groupId)).thenReturn(false);
-        when(toolGroupRepository.findById(groupId)).thenReturn(Optional.empty());
+    @Test @DisplayName("registerLoans – herramienta repetida en el carro")
+    void registerLoans_duplicateGroup(){
+        assertThatThrownBy(() -> loanService.registerLoans(List.of(1L, 1L), 10L, LocalDateTime.now().plusDays(1)))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("misma herramienta");
+        verifyNoInteractions(loanEligibilityService, toolUnitService);
+    }
 
-        assertThatThrownBy(() -> loanService.registerLoan(groupId, customerId, LocalDateTime.now().plusDays(1)))
+    @Test @DisplayName("registerLoans – carro vacío")
+    void registerLoans_empty(){
+        assertThatThrownBy(() -> loanService.registerLoans(List.of(), 10L, LocalDateTime.now().plusDays(1)))
                 .isInstanceOf(RuntimeException.class)
-                .hasMessageContaining("Grupo de herramientas no encontrado");
+                .hasMessageContaining("al menos una herramienta");
     }
 
-    @Test @DisplayName("registerLoan – sin unidades disponibles")
-    void registerLoan_noAvailableUnit(){
-        Long groupId = 1L, customerId = 1L;
-        ToolGroupEntity group = buildToolGroup(groupId, 15000.0);
-        when(loanRepository.existsByCustomerIdAndReturnDateIsNullAndDueDateBefore(eq(customerId), any())).thenReturn(false);
-        when(loanRepository.existsByCustomerIdAndFineAmountGreaterThanAndReturnDateIsNotNull(eq(customerId), eq(0.0))).thenReturn(false);
-        when(loanRepository.existsByCustomerIdAndDamageChargeGreaterThanAndReturnDateIsNotNull(eq(customerId), eq(0.0))).thenReturn(false);
-        when(loanRepository.countByCustomerIdAndReturnDateIsNull(customerId)).thenReturn(0L);
-        when(loanRepository.existsByCustomerIdAndToolUnitToolGroupIdAndReturnDateIsNull(customerId, groupId)).thenReturn(false);
-        when(toolGroupRepository.findById(groupId)).thenReturn(Optional.of(group));
-        when(toolUnitRepository.findFirstByToolGroupIdAndStatus(groupId, ToolStatus.AVAILABLE)).thenReturn(Optional.empty());
+    @Test @DisplayName("registerLoans – una herramienta sin stock → no guarda nada")
+    void registerLoans_oneWithoutStock(){
+        Long customerId = 10L;
+        ToolUnitEntity unit1 = buildUnit(5L, buildToolGroup(1L, 15000.0), ToolStatus.LOANED);
+        when(customerRepository.findById(customerId)).thenReturn(Optional.of(buildCustomer(customerId)));
+        when(toolUnitService.claimAvailableUnit(1L)).thenReturn(Optional.of(unit1));
+        when(toolUnitService.claimAvailableUnit(2L)).thenReturn(Optional.empty());
+        when(toolGroupRepository.existsById(2L)).thenReturn(true);
 
-        assertThatThrownBy(() -> loanService.registerLoan(groupId, customerId, LocalDateTime.now().plusDays(1)))
+        assertThatThrownBy(() -> loanService.registerLoans(List.of(1L, 2L), customerId, LocalDateTime.now().plusDays(1)))
                 .isInstanceOf(RuntimeException.class)
                 .hasMessageContaining("No hay unidades disponibles");
+        verify(loanRepository, never()).saveAll(any());
+        verifyNoInteractions(kardexWriter);
     }
 
     /* ======================================================================
@@ -226,7 +230,8 @@ class LoanServiceTest {
 
             assertThat(loan.getFineAmount()).isZero();
             assertThat(unit.getStatus()).isEqualTo(ToolStatus.AVAILABLE);
-            verify(kardexMovementRepository).save(argThat(m -> m.getMovementType() == MovementType.RETURN));
+            verify(kardexWriter).write(argThat(m -> m.getMovementType() == MovementType.RETURN));
+            verify(toolStockService).applyTransition(1L, ToolStatus.LOANED, ToolStatus.AVAILABLE);
         }
     }
 
@@ -266,7 +271,7 @@ class LoanServiceTest {
 
         assertThat(loan.getDamageCharge()).isEqualTo(amount);
         assertThat(unit.getStatus()).isEqualTo(ToolStatus.IN_REPAIR);
-        verify(kardexMovementRepository).save(argThat(m -> m.getMovementType() == MovementType.REPAIR));
+        verify(kardexWriter).write(argThat(m -> m.getMovementType() == MovementType.REPAIR));
     }
 
     @Test @DisplayName("returnLoan – daño irreparable")
@@ -287,7 +292,7 @@ class LoanServiceTest {
 
             assertThat(loan.getDamageCharge()).isEqualTo(15000.0);
             assertThat(unit.getStatus()).isEqualTo(ToolStatus.RETIRED);
-            verify(kardexMovementRepository).save(argThat(m -> m.getMovementType() == MovementType.RETIRE));
+            verify(kardexWriter).write(argThat(m -> m.getMovementType() == MovementType.RETIRE));
         }
     }
 
@@ -300,6 +305,63 @@ class LoanServiceTest {
                 .hasMessageContaining("Loan not found");
     }
 
+    @Test @DisplayName("returnLoan – ya devuelto → no recalcula multa ni mueve stock")
+    void returnLoan_alreadyReturned(){
+        LocalDateTime now = LocalDateTime.now();
+        ToolGroupEntity group = buildToolGroup(1L, 15000.0);
+        ToolUnitEntity unit = buildUnit(10L, group, ToolStatus.AVAILABLE);
+        LoanEntity loan = buildLoan(50L, buildCustomer(1L), unit, now.minusDays(5), now.minusDays(4));
+
+        when(loanRepository.findById(50L)).thenReturn(Optional.of(loan));
+
+        assertThatThrownBy(() -> loanService.returnLoan(50L, 0.0, false))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("ya fue devuelto");
+        assertThat(unit.getStatus()).isEqualTo(ToolStatus.AVAILABLE);
+        verify(loanRepository, never()).save(any());
+        verifyNoInteractions(kardexWriter, toolStockService);
+    }
+
+    /* ======================================================================
+          2b. returnLoans (devolución masiva)
+       ====================================================================== */
+
+    @Test @DisplayName("returnLoans – resultado por préstamo y guardado en lote")
+    void returnLoans_mixed(){
+        LocalDateTime now = LocalDateTime.now();
+        CustomerEntity customer = buildCustomer(1L);
+        ToolGroupEntity group = buildToolGroup(1L, 15000.0);
+        LoanEntity late = buildLoan(50L, customer, buildUnit(10L, group, ToolStatus.LOANED), now.minusDays(2), null);
+        LoanEntity damaged = buildLoan(51L, customer, buildUnit(11L, group, ToolStatus.LOANED), now.plusDays(1), null);
+        LoanEntity already = buildLoan(52L, customer, buildUnit(12L, group, ToolStatus.AVAILABLE), now.minusDays(5), now.minusDays(4));
+
+        when(loanRepository.findAllWithDetailsByIdIn(List.of(50L, 51L, 52L, 99L)))
+                .thenReturn(List.of(late, damaged, already));
+
+        List<LoanReturnResultDTO> res = loanService.returnLoans(List.of(
+                new LoanReturnRequestDTO(50L, null, null),
+                new LoanReturnRequestDTO(51L, 300.0, false),
+                new LoanReturnRequestDTO(52L, null, null),
+                new LoanReturnRequestDTO(99L, null, null)));
+
+        assertThat(res).extracting(LoanReturnResultDTO::returned).containsExactly(true, true, false, false);
+        assertThat(res.get(0).fineAmount()).isEqualTo(2 * 500.0);
+        assertThat(res.get(1).damageCharge()).isEqualTo(300.0);
+        assertThat(res.get(2).message()).contains("ya fue devuelto");
+        assertThat(res.get(3).message()).contains("Loan not found");
+        assertThat(damaged.getToolUnit().getStatus()).isEqualTo(ToolStatus.IN_REPAIR);
+        verify(loanRepository).saveAll(List.of(late, damaged));
+        verify(kardexWriter).writeAll(argThat(m -> ((List<?>) m).size() == 2));
+        verify(loanRepository, never()).findById(any());
+    }
+
+    @Test @DisplayName("returnLoans – lista vacía")
+    void returnLoans_empty(){
+        assertThatThrownBy(() -> loanService.returnLoans(List.of()))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("al menos un préstamo");
+    }
+
     /* ======================================================================
           3. applyDamage
        ====================================================================== */
@@ -331,6 +393,7 @@ class LoanServiceTest {
         assertThat(loan.getDamageCharge()).isEqualTo(12000.0);
         assertThat(unit.getStatus()).isEqualTo(ToolStatus.RETIRED);
         verify(toolUnitRepository).save(unit);
+        verify(toolStockService).applyTransition(1L, ToolStatus.AVAILABLE, ToolStatus.RETIRED);
     }
 
     @Test @DisplayName("applyDamage – préstamo no devuelto")
@@ -0,0 +1,151 @@
+package com.toolrent.services;
+
+import com.toolrent.dto.OverdueSweepDTO;
+import com.toolrent.repositories.CustomerRepository;
+import com.toolrent.repositories.LoanRepository;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OverdueSweeperTest {
+
+    @Mock private LoanRepository loanRepository;
+    @Mock private CustomerRepository customerRepository;
+    @Mock private LeaseService leaseService;
+    @Mock private ReferenceDataCache referenceDataCache;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private OverdueSweeper overdueSweeper;
+
+    @BeforeEach
+    void setUp() {
+        // Tramos de 2 para probar el corte; recarga de la cola solo al tomar la concesión
+        overdueSweeper = new OverdueSweeper(loanRepository, customerRepository, leaseService,
+                referenceDataCache, transactionManager, 2, 60000, 3600000);
+    }
+
+    /* ======================================================================
+              1. Concesión
+       ====================================================================== */
+
+    @Test @DisplayName("sweep – otro nodo tiene la concesión → no barre")
+    void sweep_notLeader(){
+        when(leaseService.tryAcquire(eq(OverdueSweeper.LEASE), any())).thenReturn(false);
+
+        OverdueSweepDTO res = overdueSweeper.sweep(false);
+
+        assertThat(res.leader()).isFalse();
+        verifyNoInteractions(loanRepository, customerRepository);
+    }
+
+    @Test @DisplayName("sweep – pierde la concesión entre tramos → se detiene y vacía la cola")
+    void sweep_losesLeaseBetweenChunks(){
+        when(leaseService.tryAcquire(eq(OverdueSweeper.LEASE), any())).thenReturn(true, false);
+        when(loanRepository.findNewlyOverdueIds(any(), any())).thenReturn(List.of(1L, 2L));
+        when(loanRepository.findCustomerIdsByIdIn(List.of(1L, 2L))).thenReturn(List.of(7L));
+        when(loanRepository.markOverdue(List.of(1L, 2L))).thenReturn(2);
+
+        OverdueSweepDTO res = overdueSweeper.sweep(false);
+
+        assertThat(res.leader()).isFalse();
+        assertThat(res.overdueLoans()).isEqualTo(2);
+        verify(loanRepository, times(1)).findNewlyOverdueIds(any(), any());
+        verify(loanRepository, never()).findNextDueDates(any(), any());
+        verify(customerRepository, never()).findLiftableIds(any(), anyLong(), any());
+    }
+
+    /* ======================================================================
+              2. Marca de vencidos y restricción
+       ====================================================================== */
+
+    @Test @DisplayName("sweep – primera pasada como líder: marca, restringe y carga la cola")
+    void sweep_firstTick(){
+        LocalDateTime next = LocalDateTime.now().plusHours(3);
+        when(leaseService.tryAcquire(eq(OverdueSweeper.LEASE), any())).thenReturn(true);
+        when(loanRepository.findNewlyOverdueIds(any(), any())).thenReturn(List.of(1L));
+        when(loanRepository.findCustomerIdsByIdIn(List.of(1L))).thenReturn(List.of(7L));
+        when(customerRepository.restrictAutomatically(List.of(7L))).thenReturn(1);
+        when(loanRepository.markOverdue(List.of(1L))).thenReturn(1);
+        when(loanRepository.findNextDueDates(any(), any())).thenReturn(List.of(next));
+
+        OverdueSweepDTO res = overdueSweeper.sweep(false);
+
+        assertThat(res).isEqualTo(new OverdueSweepDTO(true, 1, 1, 0));
+        assertThat(overdueSweeper.nextDueDate()).isEqualTo(next);
+        verify(referenceDataCache).customersChanged();
+    }
+
+    @Test @DisplayName("sweep – recorre todos los tramos hasta uno incompleto")
+    void sweep_chunks(){
+        when(leaseService.tryAcquire(eq(OverdueSweeper.LEASE), any())).thenReturn(true);
+        when(loanRepository.findNewlyOverdueIds(any(), any())).thenReturn(List.of(1L, 2L), List.of(3L));
+        when(loanRepository.findCustomerIdsByIdIn(any())).thenReturn(List.of(7L));
+        when(customerRepository.restrictAutomatically(any())).thenReturn(1, 0);
+        when(loanRepository.markOverdue(any())).thenReturn(2, 1);
+
+        OverdueSweepDTO res = overdueSweeper.sweep(false);
+
+        assertThat(res.overdueLoans()).isEqualTo(3);
+        assertThat(res.restrictedCustomers()).isEqualTo(1);
+        verify(leaseService, times(2)).tryAcquire(eq(OverdueSweeper.LEASE), any());
+    }
+
+    @Test @DisplayName("sweep – próximo vencimiento aún no llega → no consulta vencidos")
+    void sweep_waitsForHead(){
+        when(leaseService.tryAcquire(eq(OverdueSweeper.LEASE), any())).thenReturn(true);
+        when(loanRepository.findNextDueDates(any(), any())).thenReturn(List.of(LocalDateTime.now().plusDays(2)));
+
+        overdueSweeper.sweep(false);
+        overdueSweeper.sweep(false);
+
+        // Solo la primera pasada (al tomar la concesión) busca vencidos
+        verify(loanRepository, times(1)).findNewlyOverdueIds(any(), any());
+    }
+
+    @Test @DisplayName("sweep – vencimiento de la cola ya pasó → barre y lo saca de la cola")
+    void sweep_headDue(){
+        when(leaseService.tryAcquire(eq(OverdueSweeper.LEASE), any())).thenReturn(true);
+        when(loanRepository.findNextDueDates(any(), any())).thenReturn(List.of());
+        overdueSweeper.sweep(false);
+
+        overdueSweeper.track(LocalDateTime.now().minusMinutes(1));
+        overdueSweeper.sweep(false);
+
+        verify(loanRepository, times(2)).findNewlyOverdueIds(any(), any());
+        assertThat(overdueSweeper.nextDueDate()).isNull();
+    }
+
+    @Test @DisplayName("track – nodo que no es líder no arma cola")
+    void track_notLeader(){
+        overdueSweeper.track(LocalDateTime.now().plusDays(1));
+
+        assertThat(overdueSweeper.nextDueDate()).isNull();
+    }
+
+    /* ======================================================================
+              3. Levantar restricciones
+       ====================================================================== */
+
+    @Test @DisplayName("sweep – levanta restricciones por tramos avanzando el cursor")
+    void sweep_liftsRestrictions(){
+        when(leaseService.tryAcquire(eq(OverdueSweeper.LEASE), any())).thenReturn(true);
+        when(customerRepository.findLiftableIds(any(), eq(0L), any())).thenReturn(List.of(4L, 5L));
+        when(customerRepository.findLiftableIds(any(), eq(5L), any())).thenReturn(List.of(6L));
+        when(customerRepository.liftAutomaticRestriction(eq(List.of(4L, 5L)), any())).thenReturn(2);
+        when(customerRepository.liftAutomaticRestriction(eq(List.of(6L)), any())).thenReturn(1);
+
+        OverdueSweepDTO res = overdueSweeper.sweep(false);
+
+        assertThat(res.liftedCustomers()).isEqualTo(3);
+        verify(referenceDataCache, times(2)).customersChanged();
+    }
+}
@@ -0,0 +1,212 @@
+package com.toolrent.services;
+
+import com.toolrent.config.IdBlockConfig;
+import com.toolrent.entities.*;
+import com.toolrent.repositories.*;
+import com.toolrent.support.SqlBudget;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/* Presupuestos de SQL de los servicios contra H2 real: las lecturas tienen un número fijo
+   de sentencias y las escrituras no crecen con el volumen de datos (sin N+1). */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import({LoanService.class, LoanEligibilityService.class, ToolUnitService.class, CustomerService.class,
+        KardexWriter.class, TariffCache.class, CacheVersionService.class, ToolStockService.class,
+        LoanRollupService.class, CustomerBalanceService.class, OverdueSweeper.class, LeaseService.class,
+        BusinessMetrics.class, SimpleMeterRegistry.class, ReportService.class, ToolGroupService.class,
+        KardexMovementService.class, ReferenceDataCache.class, ResourceVersions.class, IdBlockConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class QueryBudgetTest {
+
+    // Sentencias exactas de un préstamo y de una devolución. Un préstamo de un cliente con préstamos
+    // activos suma una: el recuento de la regla de misma herramienta, que no depende del volumen
+    private static final long REGISTER_STATEMENTS = 8;
+    private static final long RETURN_STATEMENTS = 8;
+
+    // Volumen que recorren las cadenas perezosas: unidades del grupo, préstamos de cada unidad,
+    // préstamos y kardex del cliente
+    private static final int HISTORY_UNITS = 50;
+    private static final int HISTORY_LOANS = 30;
+    private static final int ACTIVE_ELSEWHERE = 3;
+
+    @Autowired private LoanService loanService;
+    @Autowired private ReportService reportService;
+    @Autowired private ToolGroupService toolGroupService;
+    @Autowired private ToolGroupRepository toolGroupRepository;
+    @Autowired private CustomerRepository customerRepository;
+    @Autowired private LoanRepository loanRepository;
+    @Autowired private KardexMovementRepository kardexMovementRepository;
+    @Autowired private ToolGroupStockRepository toolGroupStockRepository;
+    @Autowired private ToolStockService toolStockService;
+    @Autowired private LoanRollupService loanRollupService;
+    @Autowired private LoanDailyRollupRepository loanDailyRollupRepository;
+    @Autowired private LoanRollupSealRepository loanRollupSealRepository;
+    @Autowired private CustomerBalanceService customerBalanceService;
+    @Autowired private CustomerBalanceRepository customerBalanceRepository;
+
+    private int sequence;
+
+    @AfterEach
+    void cleanUp(){
+        kardexMovementRepository.deleteAll();
+        toolGroupStockRepository.deleteAll();
+        loanDailyRollupRepository.deleteAll();
+        loanRollupSealRepository.deleteAll();
+        customerBalanceRepository.deleteAll();
+        loanRepository.deleteAll();
+        toolGroupRepository.deleteAll();
+        customerRepository.deleteAll();
+    }
+
+    /* ======================================================================
+              1. Lecturas – número fijo de sentencias
+       ====================================================================== */
+
+    @Test @DisplayName("getToolGroupsWithAvailableUnits – una consulta con 2 o con 30 grupos")
+    void availableToolGroups() throws Exception {
+        seedGroups(2, 3);
+        SqlBudget.assertExactly(1, () -> toolGroupService.getToolGroupsWithAvailableUnits());
+
+        seedGroups(28, 3);
+        SqlBudget.assertExactly(1, () -> toolGroupService.getToolGroupsWithAvailableUnits());
+    }
+
+    @Test @DisplayName("reportes – una consulta cada uno, sin importar cuántos préstamos haya")
+    void reports() throws Exception {
+        Long groupId = seedGroups(1, 20).get(0);
+        LocalDateTime from = LocalDateTime.now().minusMonths(1);
+        for (int i = 0; i < 10; i++) {
+            loanService.registerLoan(groupId, seedCustomer(), LocalDateTime.now().plusDays(2));
+        }
+
+        SqlBudget.assertExactly(1, () -> reportService.getActiveLoans(from, LocalDateTime.now()));
+        SqlBudget.assertExactly(1, () -> reportService.getOverdueCustomers());
+        SqlBudget.assertExactly(1, () -> reportService.getCustomersWithDebt(LocalDateTime.now()));
+        // Con todos los días completos cerrados: tramo inicial en vivo, días cerrados del rango,
+        // suma de sus rollups y el día de hoy en vivo
+        loanRollupService.backfill(from.toLocalDate(), LocalDate.now().minusDays(1));
+        SqlBudget.assertExactly(4, () -> reportService.getTopTools(from, LocalDateTime.now(), 10));
+    }
+
+    /* ======================================================================
+              2. Escrituras – mismo costo con más volumen
+       ====================================================================== */
+
+    @Test @DisplayName("registerLoan – mismas sentencias sin historial o con historial del cliente, grupo y unidad")
+    void registerLoan_constant() throws Exception {
+        Long small = seedGroups(1, 2).get(0);
+        warmUp(small);
+        Long fresh = seedCustomer();
+        long none = SqlBudget.count(() -> loanService.registerLoan(small, fresh, due()));
+
+        Long active = customerWithHistory(small, 0);
+        long before = SqlBudget.count(() -> loanService.registerLoan(small, active, due()));
+
+        Long large = seedGroups(1, HISTORY_UNITS).get(0);
+        Long busy = customerWithHistory(large, HISTORY_LOANS);
+        long after = SqlBudget.count(() -> loanService.registerLoan(large, busy, due()));
+
+        assertThat(none).as("registerLoan sin préstamos").isEqualTo(REGISTER_STATEMENTS);
+        assertThat(before).as("registerLoan con activos, sin historial").isEqualTo(REGISTER_STATEMENTS + 1);
+        assertThat(after).as("registerLoan con activos e historial").isEqualTo(REGISTER_STATEMENTS + 1);
+    }
+
+    @Test @DisplayName("returnLoan – mismas sentencias sin historial o con historial del cliente, grupo y unidad")
+    void returnLoan_constant() throws Exception {
+        Long small = seedGroups(1, 2).get(0);
+        warmUp(small);
+        Long first = loanService.registerLoan(small, seedCustomer(), due()).getId();
+        long before = SqlBudget.count(() -> loanService.returnLoan(first, 0.0, false));
+
+        Long large = seedGroups(1, HISTORY_UNITS).get(0);
+        Long busy = customerWithHistory(large, HISTORY_LOANS);
+        Long second = loanService.registerLoan(large, busy, due()).getId();
+        long after = SqlBudget.count(() -> loanService.returnLoan(second, 0.0, false));
+
+        assertThat(before).as("returnLoan sin historial").isEqualTo(RETURN_STATEMENTS);
+        assertThat(after).as("returnLoan con historial").isEqualTo(RETURN_STATEMENTS);
+    }
+
+    /* ======================================================================
+                                  Helpers
+       ====================================================================== */
+
+    private static LocalDateTime due() {
+        return LocalDateTime.now().plusDays(2);
+    }
+
+    // Un préstamo y su devolución sin medir: deja cargados los cachés (tarifas, datos de referencia,
+    // versiones) y un bloque de ids de loans y kardex_movements, para que la medición no los incluya
+    private void warmUp(Long groupId) {
+        Long loanId = loanService.registerLoan(groupId, seedCustomer(), due()).getId();
+        loanService.returnLoan(loanId, 0.0, false);
+    }
+
+    // Cliente con lo que recorren el préstamo y la devolución: historyLoans préstamos devueltos en el grupo
+    // (que dejan préstamos y movimientos de kardex en sus unidades y en el cliente) y ACTIVE_ELSEWHERE
+    // préstamos activos en otros grupos (cuentan para el máximo de 5)
+    private Long customerWithHistory(Long groupId, int historyLoans) {
+        Long customerId = seedCustomer();
+        for (int i = 0; i < historyLoans; i++) {
+            Long loanId = loanService.registerLoan(groupId, customerId, due()).getId();
+            loanService.returnLoan(loanId, 0.0, false);
+        }
+        for (Long other : seedGroups(ACTIVE_ELSEWHERE, 1)) {
+            loanService.registerLoan(other, customerId, due());
+        }
+        return customerId;
+    }
+
+    private List<Long> seedGroups(int count, int units) {
+        List<Long> ids = new ArrayList<>();
+        for (int g = 0; g < count; g++) {
+            TariffEntity tariff = new TariffEntity();
+            tariff.setDailyRentalRate(1000.0);
+            tariff.setDailyFineRate(500.0);
+
+            ToolGroupEntity group = new ToolGroupEntity();
+            group.setName("Herramienta " + sequence++);
+            group.setCategory("Presupuesto");
+            group.setReplacementValue(15000.0);
+            group.setTariff(tariff);
+            for (int i = 0; i < units; i++) {
+                ToolUnitEntity unit = new ToolUnitEntity();
+                unit.setToolGroup(group);
+                unit.setStatus(ToolStatus.AVAILABLE);
+                group.getUnits().add(unit);
+            }
+            Long id = toolGroupRepository.save(group).getId();
+            toolStockService.initialize(id, units);
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private Long seedCustomer() {
+        int n = sequence++;
+        CustomerEntity c = new CustomerEntity();
+        c.setName("Cliente " + n);
+        c.setRut("rut-" + n);
+        c.setPhone("9" + n);
+        c.setEmail("c" + n + "@toolrent.com");
+        Long id = customerRepository.save(c).getId();
+        customerBalanceService.initialize(id);
+        return id;
+    }
+}
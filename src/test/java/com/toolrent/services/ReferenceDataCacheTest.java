@@ -0,0 +1,188 @@
+package com.toolrent.services;
+
+import com.toolrent.config.IdBlockConfig;
+import com.toolrent.entities.*;
+import com.toolrent.repositories.*;
+import com.toolrent.support.SqlBudget;
+import com.toolrent.support.SqlRecorder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.*;
+
+/* Caché de segundo nivel contra H2 real: con la caché caliente, un préstamo no vuelve a leer
+   clientes, grupos ni tarifas, y las consultas cacheadas de clientes no tocan la base. */
+@DataJpaTest(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.toolrent.support.SqlRecorder")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import({LoanService.class, LoanEligibilityService.class, ToolUnitService.class, CustomerService.class,
+        KardexWriter.class, TariffCache.class, CacheVersionService.class, ToolStockService.class,
+        LoanRollupService.class, CustomerBalanceService.class, OverdueSweeper.class, LeaseService.class,
+        BusinessMetrics.class, SimpleMeterRegistry.class, ReferenceDataCache.class,
+        ResourceVersions.class, IdBlockConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReferenceDataCacheTest {
+
+    // SELECT que lee alguna tabla de datos de referencia (customer_balances o tool_group_stock_stripes no cuentan)
+    private static final Pattern REFERENCE_SELECT =
+            Pattern.compile("(?is)^\\s*select\\b.*\\b(customers|tool_groups|tariffs)\\b.*");
+
+    @Autowired private LoanService loanService;
+    @Autowired private ReferenceDataCache referenceDataCache;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private ToolGroupRepository toolGroupRepository;
+    @Autowired private ToolUnitRepository toolUnitRepository;
+    @Autowired private CustomerRepository customerRepository;
+    @Autowired private LoanRepository loanRepository;
+    @Autowired private KardexMovementRepository kardexMovementRepository;
+    @Autowired private ToolGroupStockRepository toolGroupStockRepository;
+    @Autowired private ToolStockService toolStockService;
+    @Autowired private LoanRollupService loanRollupService;
+    @Autowired private LoanDailyRollupRepository loanDailyRollupRepository;
+    @Autowired private CustomerBalanceService customerBalanceService;
+    @Autowired private CustomerBalanceRepository customerBalanceRepository;
+
+    private int sequence;
+
+    @AfterEach
+    void cleanUp(){
+        kardexMovementRepository.deleteAll();
+        toolGroupStockRepository.deleteAll();
+        loanDailyRollupRepository.deleteAll();
+        customerBalanceRepository.deleteAll();
+        loanRepository.deleteAll();
+        toolGroupRepository.deleteAll();
+        customerRepository.deleteAll();
+    }
+
+    /* ======================================================================
+              1. Préstamo con la caché caliente
+       ====================================================================== */
+
+    @Test @DisplayName("registerLoan – sin SELECT a clientes, grupos ni tarifas una vez caliente")
+    void registerLoan_noReferenceSelects() throws Exception {
+        Long groupId = seedGroup(5);
+        Long first = seedCustomer();
+        Long second = seedCustomer();
+        referenceDataCache.evictLocal();
+
+        // Calienta grupo, tarifa y el segundo cliente
+        loanService.registerLoan(groupId, first, LocalDateTime.now().plusDays(2));
+        customerRepository.findById(second);
+
+        List<String> statements = SqlRecorder.record(() ->
+                loanService.registerLoan(groupId, second, LocalDateTime.now().plusDays(2)));
+
+        assertThat(statements).isNotEmpty();
+        assertThat(statements).noneMatch(sql -> REFERENCE_SELECT.matcher(sql).matches());
+    }
+
+    @Test @DisplayName("registerLoan – con la caché vacía sí lee los datos de referencia")
+    void registerLoan_coldReadsReference() throws Exception {
+        Long groupId = seedGroup(5);
+        Long customerId = seedCustomer();
+        referenceDataCache.evictLocal();
+
+        List<String> statements = SqlRecorder.record(() ->
+                loanService.registerLoan(groupId, customerId, LocalDateTime.now().plusDays(2)));
+
+        assertThat(statements).anyMatch(sql -> REFERENCE_SELECT.matcher(sql).matches());
+    }
+
+    /* ======================================================================
+              2. Consultas cacheadas e invalidación
+       ====================================================================== */
+
+    @Test @DisplayName("findByEmail – la segunda búsqueda no ejecuta sentencias")
+    void findByEmail_cached() throws Exception {
+        Long customerId = seedCustomer();
+        String email = customerRepository.findById(customerId).orElseThrow().getEmail();
+        customerRepository.findByEmail(email);
+
+        SqlBudget.assertExactly(0, () -> customerRepository.findByEmail(email));
+    }
+
+    @Test @DisplayName("evictLocal – vacía las regiones de entidades")
+    void evictLocal_clearsRegions() {
+        Long groupId = seedGroup(1);
+        toolGroupRepository.findById(groupId);
+        assertThat(entityManagerFactory.getCache().contains(ToolGroupEntity.class, groupId)).isTrue();
+
+        referenceDataCache.evictLocal();
+
+        assertThat(entityManagerFactory.getCache().contains(ToolGroupEntity.class, groupId)).isFalse();
+    }
+
+    @Test @DisplayName("evictCustomers – un cambio de clientes no vacía grupos ni tarifas")
+    void evictCustomers_keepsCatalog() {
+        Long groupId = seedGroup(1);
+        Long customerId = seedCustomer();
+        toolGroupRepository.findById(groupId);
+        customerRepository.findById(customerId);
+
+        referenceDataCache.evictCustomers();
+
+        assertThat(entityManagerFactory.getCache().contains(CustomerEntity.class, customerId)).isFalse();
+        assertThat(entityManagerFactory.getCache().contains(ToolGroupEntity.class, groupId)).isTrue();
+    }
+
+    @Test @DisplayName("findById de unidad con la caché fría – grupo y tarifa en la misma sentencia")
+    void unitFindById_coldJoinsGroup() throws Exception {
+        Long groupId = seedGroup(1);
+        Long unitId = toolUnitRepository.findAllWithToolGroup().stream()
+                .filter(u -> u.getToolGroup().getId().equals(groupId)).findFirst().orElseThrow().getId();
+        referenceDataCache.evictLocal();
+
+        SqlBudget.assertExactly(1, () -> toolUnitRepository.findById(unitId));
+    }
+
+    /* ======================================================================
+                                  Helpers
+       ====================================================================== */
+
+    private Long seedGroup(int units) {
+        TariffEntity tariff = new TariffEntity();
+        tariff.setDailyRentalRate(1000.0);
+        tariff.setDailyFineRate(500.0);
+
+        ToolGroupEntity group = new ToolGroupEntity();
+        group.setName("Herramienta " + sequence++);
+        group.setCategory("Caché");
+        group.setReplacementValue(15000.0);
+        group.setTariff(tariff);
+        for (int i = 0; i < units; i++) {
+            ToolUnitEntity unit = new ToolUnitEntity();
+            unit.setToolGroup(group);
+            unit.setStatus(ToolStatus.AVAILABLE);
+            group.getUnits().add(unit);
+        }
+        Long id = toolGroupRepository.save(group).getId();
+        toolStockService.initialize(id, units);
+        return id;
+    }
+
+    private Long seedCustomer() {
+        int n = sequence++;
+        CustomerEntity c = new CustomerEntity();
+        c.setName("Cliente " + n);
+        c.setRut("rut-" + n);
+        c.setPhone("9" + n);
+        c.setEmail("c" + n + "@toolrent.com");
+        Long id = customerRepository.save(c).getId();
+        customerBalanceService.initialize(id);
+        return id;
+    }
+}
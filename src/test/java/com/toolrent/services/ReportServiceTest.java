@@ -2,6 +2,7 @@ package com.toolrent.services;
 
 import com.toolrent.dto.CustomerDebtDTO;
 import com.toolrent.dto.LoanActiveDTO;
+import com.toolrent.dto.ToolLoanCountDTO;
 import com.toolrent.entities.CustomerEntity;
 import com.toolrent.repositories.CustomerRepository;
 import com.toolrent.repositories.LoanRepository;
@@ -13,7 +14,6 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -23,6 +23,8 @@ class ReportServiceTest {
 
     @Mock private LoanRepository loanRepository;
     @Mock private CustomerRepository customerRepository;
+    @Mock private LoanRollupService loanRollupService;
+    @Mock private CustomerBalanceService customerBalanceService;
 
     @InjectMocks private ReportService reportService;
 
@@ -83,34 +85,35 @@ class ReportServiceTest {
     }
 
     /* ======================================================================
-              3. getTopTools – (vacía / con datos / top 0 / top > size)
+              3. getTopTools – delega en los rollups (vacía / con datos / limit)
        ====================================================================== */
 
     @Test @DisplayName("getTopTools – con datos")
     void getTopTools_withData(){
         LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
         LocalDateTime to   = LocalDateTime.of(2025, 1, 31, 23, 59);
-        List<Map<String, Object>> data = List.of(
-                Map.of("toolGroupId", 1L, "toolName", "Taladro", "loanCount", 15L),
-                Map.of("toolGroupId", 2L, "toolName", "Lijadora", "loanCount", 8L)
+        List<ToolLoanCountDTO> data = List.of(
+                new ToolLoanCountDTO(1L, "Taladro", 15L),
+                new ToolLoanCountDTO(2L, "Lijadora", 8L)
         );
-        when(loanRepository.countLoansByToolGroupInRange(from, to)).thenReturn(data);
+        when(loanRollupService.getTopTools(from, to, null)).thenReturn(data);
 
-        List<Map<String, Object>> res = reportService.getTopTools(from, to);
+        List<ToolLoanCountDTO> res = reportService.getTopTools(from, to, null);
 
         assertThat(res).hasSize(2);
-        assertThat(res.get(0).get("loanCount")).isEqualTo(15L);
+        assertThat(res.get(0).total()).isEqualTo(15L);
     }
 
     @Test @DisplayName("getTopTools – vacía")
     void getTopTools_empty(){
         LocalDateTime from = LocalDateTime.of(2025, 2, 1, 0, 0);
         LocalDateTime to   = LocalDateTime.of(2025, 2, 1, 0, 0);
-        when(loanRepository.countLoansByToolGroupInRange(from, to)).thenReturn(List.of());
+        when(loanRollupService.getTopTools(from, to, 5)).thenReturn(List.of());
 
-        List<Map<String, Object>> res = reportService.getTopTools(from, to);
+        List<ToolLoanCountDTO> res = reportService.getTopTools(from, to, 5);
 
         assertThat(res).isEmpty();
+        verify(loanRollupService).getTopTools(from, to, 5);
     }
 
     /* ======================================================================
@@ -121,18 +124,18 @@ class ReportServiceTest {
     void getCustomersWithDebt_withData(){
         LocalDateTime now = LocalDateTime.of(2025, 3, 15, 0, 0);
         List<CustomerDebtDTO> data = List.of(mock(CustomerDebtDTO.class));
-        when(customerRepository.findCustomersWithDebt(now)).thenReturn(data);
+        when(customerBalanceService.getCustomersWithDebt(now)).thenReturn(data);
 
         List<CustomerDebtDTO> res = reportService.getCustomersWithDebt(now);
 
         assertThat(res).hasSize(1);
-        verify(customerRepository).findCustomersWithDebt(now);
+        verify(customerBalanceService).getCustomersWithDebt(now);
     }
 
     @Test @DisplayName("getCustomersWithDebt – vacía")
     void getCustomersWithDebt_empty(){
         LocalDateTime now = LocalDateTime.of(2025, 3, 15, 0, 0);
-        when(customerRepository.findCustomersWithDebt(now)).thenReturn(List.of());
+        when(customerBalanceService.getCustomersWithDebt(now)).thenReturn(List.of());
 
         List<CustomerDebtDTO> res = reportService.getCustomersWithDebt(now);
 
@@ -0,0 +1,124 @@
+package com.toolrent.services;
+
+import com.toolrent.config.ReplicaRouting;
+import com.toolrent.dto.CatalogVersionDTO;
+import com.toolrent.repositories.ToolGroupStockRepository;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.*;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static com.toolrent.services.ResourceVersions.Resource.*;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ResourceVersionsTest {
+
+    @Mock private ToolGroupStockRepository toolGroupStockRepository;
+
+    @InjectMocks private ResourceVersions resourceVersions;
+
+    private void version(long groups, long revisions, long tariffs, long reference) {
+        when(toolGroupStockRepository.findCatalogVersion(TariffCache.VERSION_KEY, ReferenceDataCache.VERSION_KEY))
+                .thenReturn(new CatalogVersionDTO(groups, revisions, tariffs, reference));
+    }
+
+    /* ======================================================================
+              1. etag
+       ====================================================================== */
+
+    @Test @DisplayName("etag – primera lectura consulta la BD, las siguientes no")
+    void etag_cached(){
+        version(3L, 10L, 1L, 2L);
+
+        String first = resourceVersions.etag(TOOLS);
+        resourceVersions.etag(AVAILABLE_TOOLS);
+        resourceVersions.etag(TARIFFS);
+
+        assertThat(resourceVersions.etag(TOOLS)).isEqualTo(first);
+        verify(toolGroupStockRepository, times(1)).findCatalogVersion(anyString(), anyString());
+    }
+
+    @Test @DisplayName("etag – distinto por recurso y el mismo para el mismo estado (todos los nodos)")
+    void etag_deterministic(){
+        version(3L, 10L, 1L, 2L);
+        ResourceVersions otherNode = new ResourceVersions(toolGroupStockRepository);
+
+        assertThat(resourceVersions.etag(TOOLS)).isEqualTo(otherNode.etag(TOOLS))
+                .isNotEqualTo(resourceVersions.etag(AVAILABLE_TOOLS));
+        assertThat(resourceVersions.etag(TARIFFS)).isEqualTo(otherNode.etag(TARIFFS));
+    }
+
+    @Test @DisplayName("etag – la versión se lee del primario aunque haya réplica")
+    void etag_readsPrimary(){
+        when(toolGroupStockRepository.findCatalogVersion(anyString(), anyString()))
+                .thenAnswer(inv -> {
+                    assertThat(ReplicaRouting.primaryRequested()).isTrue();
+                    return new CatalogVersionDTO(1L, 0L, 0L, 0L);
+                });
+
+        assertThat(resourceVersions.etag(TOOLS)).isNotBlank();
+        assertThat(ReplicaRouting.primaryRequested()).isFalse();
+    }
+
+    @Test @DisplayName("etag – la BD no responde → lanza y reintenta en la próxima petición")
+    void etag_loadFails(){
+        when(toolGroupStockRepository.findCatalogVersion(anyString(), anyString()))
+                .thenThrow(new RuntimeException("sin conexión"))
+                .thenReturn(new CatalogVersionDTO(1L, 0L, 0L, 0L));
+
+        assertThatThrownBy(() -> resourceVersions.etag(TOOLS)).hasMessageContaining("sin conexión");
+        assertThat(resourceVersions.etag(TOOLS)).isNotBlank();
+    }
+
+    /* ======================================================================
+              2. changed / pollVersion
+       ====================================================================== */
+
+    @Test @DisplayName("changed – movimiento de stock → nuevo ETag de herramientas, mismo de tarifas")
+    void changed_stock(){
+        when(toolGroupStockRepository.findCatalogVersion(anyString(), anyString()))
+                .thenReturn(new CatalogVersionDTO(3L, 10L, 1L, 2L))
+                .thenReturn(new CatalogVersionDTO(3L, 11L, 1L, 2L));
+        String tools = resourceVersions.etag(TOOLS);
+        String available = resourceVersions.etag(AVAILABLE_TOOLS);
+        String tariffs = resourceVersions.etag(TARIFFS);
+
+        resourceVersions.changed();
+
+        assertThat(resourceVersions.etag(TOOLS)).isNotEqualTo(tools);
+        assertThat(resourceVersions.etag(AVAILABLE_TOOLS)).isNotEqualTo(available);
+        assertThat(resourceVersions.etag(TARIFFS)).isEqualTo(tariffs);
+        verify(toolGroupStockRepository, times(2)).findCatalogVersion(anyString(), anyString());
+    }
+
+    @Test @DisplayName("changed – cambio de tarifa → nuevo ETag en los tres recursos")
+    void changed_tariff(){
+        when(toolGroupStockRepository.findCatalogVersion(anyString(), anyString()))
+                .thenReturn(new CatalogVersionDTO(3L, 10L, 1L, 2L))
+                .thenReturn(new CatalogVersionDTO(3L, 10L, 2L, 2L));
+        String tools = resourceVersions.etag(TOOLS);
+        String available = resourceVersions.etag(AVAILABLE_TOOLS);
+        String tariffs = resourceVersions.etag(TARIFFS);
+
+        resourceVersions.changed();
+
+        assertThat(resourceVersions.etag(TOOLS)).isNotEqualTo(tools);
+        assertThat(resourceVersions.etag(AVAILABLE_TOOLS)).isNotEqualTo(available);
+        assertThat(resourceVersions.etag(TARIFFS)).isNotEqualTo(tariffs);
+    }
+
+    @Test @DisplayName("pollVersion – cambios de otros nodos → relee sin esperar a changed")
+    void poll_otherNode(){
+        when(toolGroupStockRepository.findCatalogVersion(anyString(), anyString()))
+                .thenReturn(new CatalogVersionDTO(3L, 10L, 1L, 2L))
+                .thenReturn(new CatalogVersionDTO(4L, 10L, 1L, 2L));
+        String tools = resourceVersions.etag(TOOLS);
+
+        resourceVersions.pollVersion();
+
+        assertThat(resourceVersions.etag(TOOLS)).isNotEqualTo(tools);
+        verify(toolGroupStockRepository, times(2)).findCatalogVersion(anyString(), anyString());
+    }
+}
@@ -0,0 +1,157 @@
+package com.toolrent.services;
+
+import com.toolrent.entities.TariffEntity;
+import com.toolrent.repositories.TariffRepository;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.*;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TariffCacheTest {
+
+    @Mock private TariffRepository tariffRepository;
+    @Mock private CacheVersionService cacheVersionService;
+    @Mock private ResourceVersions resourceVersions;
+
+    @InjectMocks private TariffCache tariffCache;
+
+    private static TariffEntity tariff(Long id, double rental, double fine) {
+        TariffEntity t = new TariffEntity();
+        t.setId(id);
+        t.setDailyRentalRate(rental);
+        t.setDailyFineRate(fine);
+        return t;
+    }
+
+    /* ======================================================================
+              1. get
+       ====================================================================== */
+
+    @Test @DisplayName("get – segunda lectura no consulta la BD")
+    void get_cached(){
+        when(tariffRepository.findByToolGroupId(1L)).thenReturn(Optional.of(tariff(7L, 1000.0, 500.0)));
+
+        TariffCache.TariffSnapshot first = tariffCache.get(1L);
+        TariffCache.TariffSnapshot second = tariffCache.get(1L);
+
+        assertThat(second).isSameAs(first);
+        assertThat(first.dailyRentalRate()).isEqualTo(1000.0);
+        assertThat(first.dailyFineRate()).isEqualTo(500.0);
+        verify(tariffRepository, times(1)).findByToolGroupId(1L);
+    }
+
+    @Test @DisplayName("get – grupo sin tarifa → excepción")
+    void get_notFound(){
+        when(tariffRepository.findByToolGroupId(99L)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> tariffCache.get(99L))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("Tarifa no encontrada");
+    }
+
+    /* ======================================================================
+              2. invalidate
+       ====================================================================== */
+
+    @Test @DisplayName("invalidate – sube el sello y vuelve a leer solo el grupo invalidado")
+    void invalidate_oneGroup(){
+        when(tariffRepository.findByToolGroupId(1L))
+                .thenReturn(Optional.of(tariff(7L, 1000.0, 500.0)))
+                .thenReturn(Optional.of(tariff(7L, 1500.0, 700.0)));
+        when(tariffRepository.findByToolGroupId(2L)).thenReturn(Optional.of(tariff(8L, 2000.0, 800.0)));
+        tariffCache.get(1L);
+        tariffCache.get(2L);
+
+        tariffCache.invalidate(1L);
+
+        assertThat(tariffCache.get(1L).dailyRentalRate()).isEqualTo(1500.0);
+        assertThat(tariffCache.get(2L).dailyRentalRate()).isEqualTo(2000.0);
+        verify(cacheVersionService).bump(TariffCache.VERSION_KEY);
+        verify(resourceVersions).changed();
+        verify(tariffRepository, times(1)).findByToolGroupId(2L);
+    }
+
+    @Test @DisplayName("invalidate confirmado – una lectura con el sello anterior no vuelve a la caché")
+    void invalidate_staleSnapshotNotCached(){
+        when(cacheVersionService.bump(TariffCache.VERSION_KEY)).thenReturn(5L);
+        // Transacción que empezó antes del cambio: ve el sello 4 y la tarifa anterior
+        when(cacheVersionService.current(TariffCache.VERSION_KEY)).thenReturn(4L, 4L, 5L);
+        when(tariffRepository.findByToolGroupId(1L))
+                .thenReturn(Optional.of(tariff(7L, 1000.0, 500.0)))
+                .thenReturn(Optional.of(tariff(7L, 1000.0, 500.0)))
+                .thenReturn(Optional.of(tariff(7L, 1500.0, 700.0)));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            tariffCache.invalidate(1L);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(tariffCache.get(1L).dailyRentalRate()).isEqualTo(1000.0);
+        assertThat(tariffCache.get(1L).dailyRentalRate()).isEqualTo(1000.0);
+        assertThat(tariffCache.get(1L).dailyRentalRate()).isEqualTo(1500.0);
+        assertThat(tariffCache.get(1L).dailyRentalRate()).isEqualTo(1500.0);
+        verify(tariffRepository, times(3)).findByToolGroupId(1L);
+    }
+
+    @Test @DisplayName("invalidate revertido – vacía lo cargado pero no sube el sello conocido")
+    void invalidate_rolledBack(){
+        when(cacheVersionService.bump(TariffCache.VERSION_KEY)).thenReturn(5L);
+        when(tariffRepository.findByToolGroupId(1L)).thenReturn(Optional.of(tariff(7L, 1000.0, 500.0)));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            tariffCache.invalidate(1L);
+            tariffCache.get(1L); // la propia transacción lee su cambio sin confirmar
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        tariffCache.get(1L);
+        tariffCache.get(1L);
+        verify(tariffRepository, times(2)).findByToolGroupId(1L);
+    }
+
+    /* ======================================================================
+              3. pollVersion (otros nodos)
+       ====================================================================== */
+
+    @Test @DisplayName("pollVersion – sello cambiado → vacía la caché")
+    void poll_versionChanged(){
+        when(cacheVersionService.current(TariffCache.VERSION_KEY)).thenReturn(3L, 4L);
+        when(tariffRepository.findByToolGroupId(1L)).thenReturn(Optional.of(tariff(7L, 1000.0, 500.0)));
+        tariffCache.init();
+        tariffCache.get(1L);
+
+        tariffCache.pollVersion();
+        tariffCache.get(1L);
+
+        verify(tariffRepository, times(2)).findByToolGroupId(1L);
+    }
+
+    @Test @DisplayName("pollVersion – mismo sello → conserva la caché")
+    void poll_versionUnchanged(){
+        when(cacheVersionService.current(TariffCache.VERSION_KEY)).thenReturn(3L, 3L);
+        when(tariffRepository.findByToolGroupId(1L)).thenReturn(Optional.of(tariff(7L, 1000.0, 500.0)));
+        tariffCache.init();
+        tariffCache.get(1L);
+
+        tariffCache.pollVersion();
+        tariffCache.get(1L);
+
+        verify(tariffRepository, times(1)).findByToolGroupId(1L);
+    }
+}
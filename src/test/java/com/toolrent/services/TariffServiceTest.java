@@ -17,6 +17,8 @@ import static org.mockito.Mockito.*;
 class TariffServiceTest {
 
     @Mock private TariffRepository tariffRepository;
+    @Mock private TariffCache tariffCache;
+    @Mock private ReferenceDataCache referenceDataCache;
 
     @InjectMocks private TariffService tariffService;
 
@@ -39,6 +41,8 @@ class TariffServiceTest {
         assertThat(res.getDailyRentalRate()).isEqualTo(1500.0);
         assertThat(res.getDailyFineRate()).isEqualTo(750.0);
         verify(tariffRepository).save(current);
+        verify(tariffCache).invalidate(null);
+        verify(referenceDataCache).changed();
     }
 
     @Test @DisplayName("updateTariff – no existe → crea nueva con ID 1")
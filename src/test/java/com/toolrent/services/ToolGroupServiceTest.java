@@ -1,5 +1,8 @@
 package com.toolrent.services;
 
+import com.toolrent.dto.CursorPageDTO;
+import com.toolrent.dto.ToolGroupAvailabilityDTO;
+import com.toolrent.dto.ToolGroupSummaryDTO;
 import com.toolrent.entities.*;
 import com.toolrent.repositories.ToolGroupRepository;
 import com.toolrent.repositories.ToolUnitRepository;
@@ -25,6 +28,9 @@ class ToolGroupServiceTest {
     @Mock private ToolGroupRepository toolGroupRepository;
     @Mock private KardexMovementService kardexMovementService;
     @Mock private ToolUnitRepository toolUnitRepository;
+    @Mock private TariffCache tariffCache;
+    @Mock private ToolStockService toolStockService;
+    @Mock private ReferenceDataCache referenceDataCache;
 
     @InjectMocks private ToolGroupService toolGroupService;
 
@@ -44,6 +50,7 @@ class ToolGroupServiceTest {
         assertThat(res.getUnits()).hasSize(3);
         assertThat(res.getUnits()).allMatch(u -> u.getStatus() == ToolStatus.AVAILABLE);
         verify(kardexMovementService).saveRegistryKardex(res, 3);
+        verify(toolStockService).initialize(res.getId(), 3);
     }
 
 
@@ -153,30 +160,44 @@ class ToolGroupServiceTest {
         assertThat(res).isEmpty();
     }
 
+    @Test @DisplayName("getToolGroupsPage – filas del listado y nextCursor con el último id")
+    void page_summaries(){
+        ToolGroupSummaryDTO a = new ToolGroupSummaryDTO(1L, "Taladro", "Eléctricas", 50000.0,
+                1000.0, 500.0, 3L, 1L, 0L, 0L);
+        ToolGroupSummaryDTO b = new ToolGroupSummaryDTO(2L, "Sierra", "Eléctricas", 80000.0,
+                1500.0, 700.0, 0L, 2L, 1L, 0L);
+        when(toolGroupRepository.findSummaryPageAfter(eq(0L), any())).thenReturn(List.of(a, b));
+
+        CursorPageDTO<ToolGroupSummaryDTO> page = toolGroupService.getToolGroupsPage(null, 1);
+
+        assertThat(page.items()).containsExactly(a);
+        assertThat(PageCursor.decode(page.nextCursor()).id()).isEqualTo(1L);
+        verify(toolGroupRepository, never()).findAll();
+    }
+
     /* ======================================================================
           3. getToolGroupsWithAvailableUnits
        ====================================================================== */
 
-    @Test @DisplayName("getToolGroupsWithAvailableUnits – filtra solo con disponibles")
+    @Test @DisplayName("getToolGroupsWithAvailableUnits – una consulta agregada, sin recorrer unidades")
     void getToolGroupsWithAvailableUnits_filter(){
-        ToolGroupEntity g1 = buildGroupWithUnits(1L, ToolStatus.AVAILABLE, ToolStatus.LOANED);
-        ToolGroupEntity g2 = buildGroupWithUnits(2L, ToolStatus.LOANED, ToolStatus.LOANED);
-        List<ToolGroupEntity> all = List.of(g1, g2);
-        when(toolGroupRepository.findAll()).thenReturn(all);
+        ToolGroupAvailabilityDTO g1 = new ToolGroupAvailabilityDTO(1L, "Taladro", "Electricidad",
+                15000.0, 1000.0, 500.0, 1L);
+        when(toolGroupRepository.findWithAvailableUnits()).thenReturn(List.of(g1));
 
-        List<ToolGroupEntity> res = toolGroupService.getToolGroupsWithAvailableUnits();
+        List<ToolGroupAvailabilityDTO> res = toolGroupService.getToolGroupsWithAvailableUnits();
 
         assertThat(res).hasSize(1);
-        assertThat(res.get(0).getId()).isEqualTo(1L);
+        assertThat(res.get(0).id()).isEqualTo(1L);
+        assertThat(res.get(0).availableUnits()).isEqualTo(1L);
+        verify(toolGroupRepository, never()).findAll();
     }
 
     @Test @DisplayName("getToolGroupsWithAvailableUnits – ninguna disponible → vacía")
     void getToolGroupsWithAvailableUnits_none(){
-        ToolGroupEntity g1 = buildGroupWithUnits(1L, ToolStatus.LOANED, ToolStatus.IN_REPAIR);
-        List<ToolGroupEntity> all = List.of(g1);
-        when(toolGroupRepository.findAll()).thenReturn(all);
+        when(toolGroupRepository.findWithAvailableUnits()).thenReturn(List.of());
 
-        List<ToolGroupEntity> res = toolGroupService.getToolGroupsWithAvailableUnits();
+        List<ToolGroupAvailabilityDTO> res = toolGroupService.getToolGroupsWithAvailableUnits();
 
         assertThat(res).isEmpty();
     }
@@ -221,18 +242,35 @@ class ToolGroupServiceTest {
     }
 
     /* ======================================================================
-                                      Helpers
+              6. updateTariff
        ====================================================================== */
 
-    private ToolGroupEntity buildGroupWithUnits(Long id, ToolStatus... statuses){
-        ToolGroupEntity g = new ToolGroupEntity();
-        g.setId(id);
-        for (ToolStatus s : statuses) {
-            ToolUnitEntity u = new ToolUnitEntity();
-            u.setStatus(s);
-            u.setToolGroup(g);
-            g.getUnits().add(u);
-        }
-        return g;
-    }
-}
\ No newline at end of file
+    @Test @DisplayName("updateTariff – actualiza e invalida la caché del grupo")
+    void updateTariff_ok(){
+        ToolGroupEntity group = new ToolGroupEntity();
+        group.setId(20L);
+        TariffEntity tariff = new TariffEntity();
+        tariff.setDailyRentalRate(1000.0);
+        tariff.setDailyFineRate(500.0);
+        group.setTariff(tariff);
+        when(toolGroupRepository.findById(20L)).thenReturn(Optional.of(group));
+        when(toolGroupRepository.save(group)).thenReturn(group);
+
+        ToolGroupEntity res = toolGroupService.updateTariff(20L, 1800.0, 900.0);
+
+        assertThat(res.getTariff().getDailyRentalRate()).isEqualTo(1800.0);
+        assertThat(res.getTariff().getDailyFineRate()).isEqualTo(900.0);
+        verify(tariffCache).invalidate(20L);
+        verify(referenceDataCache).changed();
+    }
+
+    @Test @DisplayName("updateTariff – grupo no existe → no invalida")
+    void updateTariff_notFound(){
+        when(toolGroupRepository.findById(99L)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> toolGroupService.updateTariff(99L, 1800.0, 900.0))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("ToolGroup not found");
+        verifyNoInteractions(tariffCache, referenceDataCache);
+    }
+}
@@ -0,0 +1,251 @@
+package com.toolrent.services;
+
+import com.toolrent.dto.ToolGroupStockDTO;
+import com.toolrent.dto.ToolStatusCountDTO;
+import com.toolrent.entities.ToolGroupStockEntity;
+import com.toolrent.entities.ToolStatus;
+import com.toolrent.repositories.ToolGroupRepository;
+import com.toolrent.repositories.ToolGroupStockRepository;
+import com.toolrent.repositories.ToolUnitRepository;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.*;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ToolStockServiceTest {
+
+    @Mock private ToolGroupStockRepository toolGroupStockRepository;
+    @Mock private ToolUnitRepository toolUnitRepository;
+    @Mock private ToolGroupRepository toolGroupRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private ResourceVersions resourceVersions;
+    @Mock private LeaseService leaseService;
+
+    private ToolStockService toolStockService;
+
+    @BeforeEach
+    void setUp() {
+        toolStockService = new ToolStockService(toolGroupStockRepository, toolUnitRepository, toolGroupRepository,
+                transactionManager, resourceVersions, leaseService, 60000);
+    }
+
+    // Franjas completas de un grupo con los contadores dados en la franja 0
+    private static List<ToolGroupStockEntity> stripes(Long toolGroupId, long available, long loaned) {
+        List<ToolGroupStockEntity> rows = new ArrayList<>();
+        rows.add(new ToolGroupStockEntity(toolGroupId, 0, available, loaned, 0L, 0L, 0L));
+        for (int i = 1; i < ToolStockService.STRIPES; i++) {
+            rows.add(new ToolGroupStockEntity(toolGroupId, i, 0L, 0L, 0L, 0L, 0L));
+        }
+        return rows;
+    }
+
+    /* ======================================================================
+              1. applyTransition / initialize
+       ====================================================================== */
+
+    @Test @DisplayName("applyTransition – AVAILABLE → LOANED mueve un contador a otro en una sola franja")
+    void applyTransition_loan(){
+        when(toolGroupStockRepository.addDeltas(eq(1L), anyInt(), eq(-1L), eq(1L), eq(0L), eq(0L))).thenReturn(1);
+
+        toolStockService.applyTransition(1L, ToolStatus.AVAILABLE, ToolStatus.LOANED);
+
+        verify(toolGroupStockRepository).addDeltas(eq(1L), intThat(i -> i >= 0 && i < ToolStockService.STRIPES),
+                eq(-1L), eq(1L), eq(0L), eq(0L));
+        verify(resourceVersions).changed();
+    }
+
+    @Test @DisplayName("applyTransition – IN_REPAIR → RETIRED")
+    void applyTransition_retire(){
+        when(toolGroupStockRepository.addDeltas(eq(2L), anyInt(), anyLong(), anyLong(), anyLong(), anyLong()))
+                .thenReturn(1);
+
+        toolStockService.applyTransition(2L, ToolStatus.IN_REPAIR, ToolStatus.RETIRED);
+
+        verify(toolGroupStockRepository).addDeltas(eq(2L), anyInt(), eq(0L), eq(0L), eq(-1L), eq(1L));
+    }
+
+    @Test @DisplayName("applyTransition – franja sin fila → suma en la franja 0")
+    void applyTransition_missingStripe(){
+        when(toolGroupStockRepository.addDeltas(eq(1L), intThat(i -> i != 0), anyLong(), anyLong(), anyLong(), anyLong()))
+                .thenReturn(0);
+        when(toolGroupStockRepository.addDeltas(eq(1L), eq(0), anyLong(), anyLong(), anyLong(), anyLong()))
+                .thenReturn(1);
+
+        for (int i = 0; i < 4 * ToolStockService.STRIPES; i++) {
+            toolStockService.applyTransition(1L, ToolStatus.AVAILABLE, ToolStatus.LOANED);
+        }
+
+        verify(toolGroupStockRepository, times(4 * ToolStockService.STRIPES))
+                .addDeltas(eq(1L), eq(0), eq(-1L), eq(1L), eq(0L), eq(0L));
+    }
+
+    @Test @DisplayName("applyTransition – mismo estado → no hace nada")
+    void applyTransition_same(){
+        toolStockService.applyTransition(1L, ToolStatus.LOANED, ToolStatus.LOANED);
+
+        verifyNoInteractions(toolGroupStockRepository, resourceVersions);
+    }
+
+    @Test @DisplayName("initialize – todas las franjas, con el stock disponible en la franja 0")
+    void initialize_ok(){
+        toolStockService.initialize(3L, 40);
+
+        verify(toolGroupStockRepository).saveAll(argThat((List<ToolGroupStockEntity> rows) ->
+                rows.size() == ToolStockService.STRIPES
+                        && rows.stream().allMatch(s -> s.getToolGroupId() == 3L && s.getLoaned() == 0L)
+                        && rows.stream().mapToLong(ToolGroupStockEntity::getAvailable).sum() == 40L));
+    }
+
+    /* ======================================================================
+              2. getAvailable
+       ====================================================================== */
+
+    @Test @DisplayName("getAvailable – suma las franjas, sin COUNT")
+    void getAvailable_fromRow(){
+        when(toolGroupStockRepository.sumAvailable(1L)).thenReturn(7L);
+
+        assertThat(toolStockService.getAvailable(1L)).isEqualTo(7L);
+        verifyNoInteractions(toolUnitRepository);
+    }
+
+    @Test @DisplayName("getAvailable – grupo sin fila → cuenta unidades")
+    void getAvailable_fallback(){
+        when(toolGroupStockRepository.sumAvailable(1L)).thenReturn(null);
+        when(toolUnitRepository.countByToolGroupIdAndStatus(1L, ToolStatus.AVAILABLE)).thenReturn(4L);
+
+        assertThat(toolStockService.getAvailable(1L)).isEqualTo(4L);
+    }
+
+    /* ======================================================================
+              3. reconcile
+       ====================================================================== */
+
+    @Test @DisplayName("reconcile – corrige solo los grupos con desvío")
+    void reconcile_repairsDrift(){
+        when(toolGroupRepository.findAllIds()).thenReturn(List.of(1L, 2L));
+        when(toolUnitRepository.countGroupedByToolGroupAndStatus()).thenReturn(List.of(
+                new ToolStatusCountDTO(1L, ToolStatus.AVAILABLE, 5L),
+                new ToolStatusCountDTO(2L, ToolStatus.AVAILABLE, 3L),
+                new ToolStatusCountDTO(2L, ToolStatus.LOANED, 1L)));
+        when(toolGroupStockRepository.findAllStock()).thenReturn(List.of(
+                new ToolGroupStockDTO(1L, 5L, 0L, 0L, 0L),
+                new ToolGroupStockDTO(2L, 4L, 0L, 0L, 0L)));
+        List<ToolGroupStockEntity> drifted = stripes(2L, 1L, 0L);
+        drifted.get(3).setAvailable(3L);
+        when(toolGroupStockRepository.findForUpdate(2L)).thenReturn(drifted);
+        when(toolUnitRepository.countByStatusForToolGroup(2L)).thenReturn(List.of(
+                new ToolStatusCountDTO(2L, ToolStatus.AVAILABLE, 3L),
+                new ToolStatusCountDTO(2L, ToolStatus.LOANED, 1L)));
+
+        int repaired = toolStockService.reconcile();
+
+        assertThat(repaired).isEqualTo(1);
+        assertThat(drifted.get(0).getAvailable()).isEqualTo(3L);
+        assertThat(drifted.get(0).getLoaned()).isEqualTo(1L);
+        assertThat(drifted.get(0).getRevision()).isEqualTo(1L);
+        assertThat(drifted.get(3).getAvailable()).isZero();
+        verify(toolGroupStockRepository).saveAll(argThat((Iterable<ToolGroupStockEntity> rows) ->
+                rows.spliterator().getExactSizeIfKnown() == ToolStockService.STRIPES));
+        verify(resourceVersions).changed();
+        verify(toolGroupStockRepository, never()).findForUpdate(1L);
+    }
+
+    @Test @DisplayName("reconcile – grupo sin filas → inserta las franjas antes de bloquearlas")
+    void reconcile_missingRow(){
+        when(toolGroupRepository.findAllIds()).thenReturn(List.of(9L));
+        when(toolUnitRepository.countGroupedByToolGroupAndStatus()).thenReturn(List.of(
+                new ToolStatusCountDTO(9L, ToolStatus.AVAILABLE, 2L)));
+        when(toolGroupStockRepository.findAllStock()).thenReturn(List.of());
+        when(toolGroupStockRepository.findStripes(9L)).thenReturn(List.of());
+        when(toolGroupStockRepository.findForUpdate(9L)).thenReturn(stripes(9L, 0L, 0L));
+        when(toolUnitRepository.countByStatusForToolGroup(9L)).thenReturn(List.of(
+                new ToolStatusCountDTO(9L, ToolStatus.AVAILABLE, 2L)));
+
+        assertThat(toolStockService.reconcile()).isEqualTo(1);
+        InOrder order = inOrder(toolGroupStockRepository);
+        for (int stripe = 0; stripe < ToolStockService.STRIPES; stripe++) {
+            order.verify(toolGroupStockRepository).insertEmptyStripe(9L, stripe);
+        }
+        order.verify(toolGroupStockRepository).findForUpdate(9L);
+        verify(toolGroupStockRepository).saveAll(argThat((Iterable<ToolGroupStockEntity> rows) -> {
+            List<ToolGroupStockEntity> list = new ArrayList<>();
+            rows.forEach(list::add);
+            return list.size() == ToolStockService.STRIPES
+                    && list.stream().allMatch(s -> s.getToolGroupId() == 9L)
+                    && list.stream().mapToLong(ToolGroupStockEntity::getAvailable).sum() == 2L;
+        }));
+    }
+
+    @Test @DisplayName("reconcile – franja creada a la vez por otro nodo → sigue con la reparación")
+    void reconcile_stripeInsertedConcurrently(){
+        when(toolGroupRepository.findAllIds()).thenReturn(List.of(9L));
+        when(toolUnitRepository.countGroupedByToolGroupAndStatus()).thenReturn(List.of(
+                new ToolStatusCountDTO(9L, ToolStatus.AVAILABLE, 2L)));
+        when(toolGroupStockRepository.findAllStock()).thenReturn(List.of());
+        when(toolGroupStockRepository.findStripes(9L)).thenReturn(List.of(1, 2, 3, 4, 5, 6, 7));
+        when(toolGroupStockRepository.insertEmptyStripe(9L, 0))
+                .thenThrow(new DataIntegrityViolationException("PK duplicada"));
+        when(toolGroupStockRepository.findForUpdate(9L)).thenReturn(stripes(9L, 0L, 0L));
+        when(toolUnitRepository.countByStatusForToolGroup(9L)).thenReturn(List.of(
+                new ToolStatusCountDTO(9L, ToolStatus.AVAILABLE, 2L)));
+
+        assertThat(toolStockService.reconcile()).isEqualTo(1);
+        verify(toolGroupStockRepository, never()).insertEmptyStripe(eq(9L), intThat(i -> i != 0));
+    }
+
+    @Test @DisplayName("reconcileScheduled – concesión de otro nodo → no lee grupos ni stock")
+    void reconcileScheduled_withoutLease(){
+        when(leaseService.tryAcquire(eq(ToolStockService.LEASE), any())).thenReturn(false);
+
+        toolStockService.reconcileScheduled();
+
+        verifyNoInteractions(toolGroupRepository, toolUnitRepository, toolGroupStockRepository);
+    }
+
+    @Test @DisplayName("reconcileScheduled – con la concesión reconcilia")
+    void reconcileScheduled_withLease(){
+        when(leaseService.tryAcquire(eq(ToolStockService.LEASE), any())).thenReturn(true);
+        when(toolGroupRepository.findAllIds()).thenReturn(List.of());
+
+        toolStockService.reconcileScheduled();
+
+        verify(toolGroupRepository).findAllIds();
+    }
+
+    @Test @DisplayName("reconcileOnStartup – registra la concesión antes de intentar tomarla")
+    void reconcileOnStartup_registersLease(){
+        when(leaseService.tryAcquire(eq(ToolStockService.LEASE), any())).thenReturn(false);
+
+        toolStockService.reconcileOnStartup();
+
+        InOrder order = inOrder(leaseService);
+        order.verify(leaseService).register(ToolStockService.LEASE);
+        order.verify(leaseService).tryAcquire(eq(ToolStockService.LEASE), any());
+    }
+
+    @Test @DisplayName("reconcile – desvío desaparece al recontar con bloqueo → no guarda")
+    void reconcile_driftResolvedUnderLock(){
+        when(toolGroupRepository.findAllIds()).thenReturn(List.of(1L));
+        when(toolUnitRepository.countGroupedByToolGroupAndStatus()).thenReturn(List.of(
+                new ToolStatusCountDTO(1L, ToolStatus.AVAILABLE, 5L)));
+        when(toolGroupStockRepository.findAllStock()).thenReturn(List.of(
+                new ToolGroupStockDTO(1L, 4L, 1L, 0L, 0L)));
+        when(toolGroupStockRepository.findForUpdate(1L)).thenReturn(stripes(1L, 4L, 1L));
+        when(toolUnitRepository.countByStatusForToolGroup(1L)).thenReturn(List.of(
+                new ToolStatusCountDTO(1L, ToolStatus.AVAILABLE, 4L),
+                new ToolStatusCountDTO(1L, ToolStatus.LOANED, 1L)));
+
+        assertThat(toolStockService.reconcile()).isZero();
+        verify(toolGroupStockRepository, never()).saveAll(any());
+        verifyNoInteractions(resourceVersions);
+    }
+}
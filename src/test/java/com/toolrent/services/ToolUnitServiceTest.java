@@ -1,10 +1,11 @@
 package com.toolrent.services;
 
 import com.toolrent.config.SecurityConfig;
+import com.toolrent.dto.CursorPageDTO;
+import com.toolrent.dto.ToolUnitSummaryDTO;
 import com.toolrent.entities.*;
 import com.toolrent.repositories.LoanRepository;
 import com.toolrent.repositories.ToolUnitRepository;
-import com.toolrent.repositories.KardexMovementRepository;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -23,9 +24,12 @@ import static org.mockito.Mockito.*;
 class ToolUnitServiceTest {
 
     @Mock private ToolUnitRepository toolUnitRepository;
-    @Mock private KardexMovementRepository kardexMovementRepository;
+    @Mock private KardexWriter kardexWriter;
     @Mock private CustomerService customerService;
     @Mock private LoanRepository loanRepository;
+    @Mock private ToolStockService toolStockService;
+    @Mock private CustomerBalanceService customerBalanceService;
+    @Mock private BusinessMetrics businessMetrics;
 
     @InjectMocks private ToolUnitService toolUnitService;
 
@@ -49,13 +53,14 @@ class ToolUnitServiceTest {
             system.setId(0L);
             when(customerService.getSystemCustomer()).thenReturn(system);
             when(toolUnitRepository.findById(10L)).thenReturn(Optional.of(unit));
-            when(toolUnitRepository.save(unit)).thenReturn(unit);
+            when(toolUnitRepository.compareAndSetStatus(10L, ToolStatus.AVAILABLE, ToolStatus.IN_REPAIR)).thenReturn(1);
 
             ToolUnitEntity res = toolUnitService.changeStatus(10L, ToolStatus.IN_REPAIR);
 
             assertThat(res.getStatus()).isEqualTo(ToolStatus.IN_REPAIR);
-            verify(kardexMovementRepository).save(argThat(m ->
+            verify(kardexWriter).write(argThat(m ->
                     m.getMovementType() == MovementType.REPAIR));
+            verify(toolStockService).applyTransition(1L, ToolStatus.AVAILABLE, ToolStatus.IN_REPAIR);
         }
     }
 
@@ -67,17 +72,18 @@ class ToolUnitServiceTest {
             ToolUnitEntity unit = new ToolUnitEntity();
             unit.setId(15L);
             unit.setStatus(ToolStatus.IN_REPAIR);
+            unit.setToolGroup(buildGroup(1L));
 
             CustomerEntity system = new CustomerEntity();
             system.setId(0L);
             when(customerService.getSystemCustomer()).thenReturn(system);
             when(toolUnitRepository.findById(15L)).thenReturn(Optional.of(unit));
-            when(toolUnitRepository.save(unit)).thenReturn(unit);
+            when(toolUnitRepository.compareAndSetStatus(15L, ToolStatus.IN_REPAIR, ToolStatus.AVAILABLE)).thenReturn(1);
 
             ToolUnitEntity res = toolUnitService.changeStatus(15L, ToolStatus.AVAILABLE);
 
             assertThat(res.getStatus()).isEqualTo(ToolStatus.AVAILABLE);
-            verify(kardexMovementRepository).save(argThat(m ->
+            verify(kardexWriter).write(argThat(m ->
                     m.getMovementType() == MovementType.RE_ENTRY));
         }
     }
@@ -92,6 +98,7 @@ class ToolUnitServiceTest {
         assertThatThrownBy(() -> toolUnitService.changeStatus(10L, ToolStatus.AVAILABLE))
                 .isInstanceOf(RuntimeException.class)
                 .hasMessageContaining("ya está en estado");
+        verifyNoInteractions(toolStockService);
     }
 
     @Test @DisplayName("changeStatus – unidad retirada → excepción")
@@ -113,14 +120,15 @@ class ToolUnitServiceTest {
         ToolUnitEntity unit = new ToolUnitEntity();
         unit.setId(10L);
         unit.setStatus(ToolStatus.AVAILABLE);
+        unit.setToolGroup(buildGroup(1L));
         when(toolUnitRepository.findById(10L)).thenReturn(Optional.of(unit));
-        when(toolUnitRepository.save(unit)).thenReturn(unit);
+        when(toolUnitRepository.compareAndSetStatus(10L, ToolStatus.AVAILABLE, target)).thenReturn(1);
 
         ToolUnitEntity res = toolUnitService.changeStatus(10L, target);
 
         assertThat(res.getStatus()).isEqualTo(target);
         if (target == ToolStatus.LOANED) {
-            verifyNoInteractions(kardexMovementRepository);
+            verifyNoInteractions(kardexWriter);
         }
     }
 
@@ -129,14 +137,30 @@ class ToolUnitServiceTest {
         ToolUnitEntity unit = new ToolUnitEntity();
         unit.setId(10L);
         unit.setStatus(ToolStatus.AVAILABLE);
+        unit.setToolGroup(buildGroup(1L));
         when(toolUnitRepository.findById(10L)).thenReturn(Optional.of(unit));
-        when(toolUnitRepository.save(unit)).thenReturn(unit);
+        when(toolUnitRepository.compareAndSetStatus(10L, ToolStatus.AVAILABLE, ToolStatus.LOANED)).thenReturn(1);
 
         ToolUnitEntity res = toolUnitService.changeStatus(10L, ToolStatus.LOANED);
 
         assertThat(res.getStatus()).isEqualTo(ToolStatus.LOANED);
         // verificamos que NO se intentó guardar movimiento
-        verifyNoInteractions(kardexMovementRepository);
+        verifyNoInteractions(kardexWriter);
+    }
+
+    @Test @DisplayName("changeStatus – otra transacción cambió la unidad → excepción, sin tocar stock ni kardex")
+    void changeStatus_lostRace(){
+        ToolUnitEntity unit = new ToolUnitEntity();
+        unit.setId(10L);
+        unit.setStatus(ToolStatus.AVAILABLE);
+        unit.setToolGroup(buildGroup(1L));
+        when(toolUnitRepository.findById(10L)).thenReturn(Optional.of(unit));
+        when(toolUnitRepository.compareAndSetStatus(10L, ToolStatus.AVAILABLE, ToolStatus.IN_REPAIR)).thenReturn(0);
+
+        assertThatThrownBy(() -> toolUnitService.changeStatus(10L, ToolStatus.IN_REPAIR))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("cambió de estado");
+        verifyNoInteractions(toolStockService, kardexWriter);
     }
 
     @Test @DisplayName("changeStatus – unidad no existe")
@@ -178,6 +202,65 @@ class ToolUnitServiceTest {
                 .hasMessageContaining("No hay unidades disponibles");
     }
 
+    /* ======================================================================
+              2b. claimAvailableUnit
+       ====================================================================== */
+
+    @Test @DisplayName("claimAvailableUnit – reserva una candidata libre")
+    void claimAvailableUnit_ok(){
+        ToolUnitEntity unit = new ToolUnitEntity();
+        unit.setId(21L);
+        unit.setStatus(ToolStatus.AVAILABLE);
+        when(toolUnitRepository.findIdsByToolGroupIdAndStatus(eq(1L), eq(ToolStatus.AVAILABLE), any()))
+                .thenReturn(List.of(21L));
+        when(toolUnitRepository.compareAndSetStatus(21L, ToolStatus.AVAILABLE, ToolStatus.LOANED)).thenReturn(1);
+        when(toolUnitRepository.findByIdWithCachedGroup(21L)).thenReturn(Optional.of(unit));
+
+        Optional<ToolUnitEntity> res = toolUnitService.claimAvailableUnit(1L);
+
+        assertThat(res).contains(unit);
+        assertThat(unit.getStatus()).isEqualTo(ToolStatus.LOANED);
+        verify(toolStockService).applyTransition(1L, ToolStatus.AVAILABLE, ToolStatus.LOANED);
+    }
+
+    @Test @DisplayName("claimAvailableUnit – candidata tomada por otro → prueba la siguiente")
+    void claimAvailableUnit_conflict(){
+        ToolUnitEntity unit = new ToolUnitEntity();
+        unit.setId(22L);
+        when(toolUnitRepository.findIdsByToolGroupIdAndStatus(eq(1L), eq(ToolStatus.AVAILABLE), any()))
+                .thenReturn(List.of(21L, 22L));
+        when(toolUnitRepository.compareAndSetStatus(anyLong(), eq(ToolStatus.AVAILABLE), eq(ToolStatus.LOANED)))
+                .thenAnswer(i -> i.getArgument(0, Long.class) == 22L ? 1 : 0);
+        when(toolUnitRepository.findByIdWithCachedGroup(22L)).thenReturn(Optional.of(unit));
+
+        Optional<ToolUnitEntity> res = toolUnitService.claimAvailableUnit(1L);
+
+        assertThat(res).contains(unit);
+    }
+
+    @Test @DisplayName("claimAvailableUnit – todas tomadas → vacío")
+    void claimAvailableUnit_allTaken(){
+        when(toolUnitRepository.findIdsByToolGroupIdAndStatus(eq(1L), eq(ToolStatus.AVAILABLE), any()))
+                .thenReturn(List.of(21L, 22L));
+        when(toolUnitRepository.compareAndSetStatus(anyLong(), eq(ToolStatus.AVAILABLE), eq(ToolStatus.LOANED)))
+                .thenReturn(0);
+
+        assertThat(toolUnitService.claimAvailableUnit(1L)).isEmpty();
+        verify(toolUnitRepository, never()).findByIdWithCachedGroup(anyLong());
+        verifyNoInteractions(toolStockService);
+        verify(businessMetrics, times(2)).unitClaimConflict();
+        verify(businessMetrics).unitClaimExhausted();
+    }
+
+    @Test @DisplayName("claimAvailableUnit – sin candidatas → vacío")
+    void claimAvailableUnit_none(){
+        when(toolUnitRepository.findIdsByToolGroupIdAndStatus(eq(1L), eq(ToolStatus.AVAILABLE), any()))
+                .thenReturn(List.of());
+
+        assertThat(toolUnitService.claimAvailableUnit(1L)).isEmpty();
+        verify(toolUnitRepository, never()).compareAndSetStatus(anyLong(), any(), any());
+    }
+
     /* ======================================================================
               3. retireFromRepair
        ====================================================================== */
@@ -203,13 +286,14 @@ class ToolUnitServiceTest {
             when(toolUnitRepository.findById(30L)).thenReturn(Optional.of(unit));
             when(loanRepository.findTopByToolUnitIdAndReturnDateIsNotNullOrderByReturnDateDesc(30L))
                     .thenReturn(Optional.of(loan));
-            when(toolUnitRepository.save(unit)).thenReturn(unit);
+            when(toolUnitRepository.compareAndSetStatus(30L, ToolStatus.IN_REPAIR, ToolStatus.RETIRED)).thenReturn(1);
 
             toolUnitService.retireFromRepair(30L);
 
             assertThat(loan.getDamageCharge()).isEqualTo(12000.0);
             assertThat(unit.getStatus()).isEqualTo(ToolStatus.RETIRED);
             verify(loanRepository).save(loan);
+            verify(toolStockService).applyTransition(1L, ToolStatus.IN_REPAIR, ToolStatus.RETIRED);
         }
     }
 
@@ -286,6 +370,17 @@ class ToolUnitServiceTest {
         assertThat(res).isEmpty();
     }
 
+    @Test @DisplayName("findUnitsPage – con cursor continúa después del último id")
+    void findUnitsPage_nextPage(){
+        ToolUnitSummaryDTO unit = new ToolUnitSummaryDTO(8L, ToolStatus.LOANED, 1L, "Taladro");
+        when(toolUnitRepository.findSummaryPage(eq(7L), any())).thenReturn(List.of(unit));
+
+        CursorPageDTO<ToolUnitSummaryDTO> page = toolUnitService.findUnitsPage(PageCursor.encode(7L), 10);
+
+        assertThat(page.items()).containsExactly(unit);
+        assertThat(page.nextCursor()).isNull();
+    }
+
     /* ======================================================================
                   6. save
        ====================================================================== */
@@ -305,9 +400,9 @@ class ToolUnitServiceTest {
                   7. getRealStock
        ====================================================================== */
 
-    @Test @DisplayName("getRealStock – con unidades")
+    @Test @DisplayName("getRealStock – con unidades (desde tool_group_stock_stripes)")
     void getRealStock_withData(){
-        when(toolUnitRepository.countByToolGroupIdAndStatus(1L, ToolStatus.AVAILABLE)).thenReturn(7L);
+        when(toolStockService.getAvailable(1L)).thenReturn(7L);
 
         long stock = toolUnitService.getRealStock(1L);
 
@@ -316,10 +411,21 @@ class ToolUnitServiceTest {
 
     @Test @DisplayName("getRealStock – sin unidades")
     void getRealStock_zero(){
-        when(toolUnitRepository.countByToolGroupIdAndStatus(1L, ToolStatus.AVAILABLE)).thenReturn(0L);
+        when(toolStockService.getAvailable(1L)).thenReturn(0L);
 
         long stock = toolUnitService.getRealStock(1L);
 
         assertThat(stock).isZero();
+        verify(toolUnitRepository, never()).countByToolGroupIdAndStatus(anyLong(), any());
+    }
+
+    /* ======================================================================
+                                      Helpers
+       ====================================================================== */
+
+    private ToolGroupEntity buildGroup(Long id){
+        ToolGroupEntity g = new ToolGroupEntity();
+        g.setId(id);
+        return g;
     }
 }
\ No newline at end of file
@@ -0,0 +1,53 @@
+package com.toolrent.support;
+
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/* Seguridad sin Keycloak para pruebas con el contexto web completo (carga, presupuestos de SQL):
+   reemplaza el descubrimiento OIDC y la validación de tokens. El token es el usuario
+   ("Bearer load-employee"); si empieza con "load-admin" lleva el rol ADMIN, si no EMPLOYEE.
+   Los filtros y @PreAuthorize siguen activos. */
+@TestConfiguration
+public class OfflineSecurityConfig {
+
+    public static final String EMPLOYEE_TOKEN = "load-employee";
+    public static final String ADMIN_TOKEN = "load-admin";
+
+    @Bean
+    JwtDecoder jwtDecoder() {
+        return token -> {
+            Instant now = Instant.now();
+            String role = token.startsWith(ADMIN_TOKEN) ? "ADMIN" : "EMPLOYEE";
+            return Jwt.withTokenValue(token)
+                    .header("alg", "none")
+                    .subject(token)
+                    .claim("preferred_username", token)
+                    .claim("realm_access", Map.of("roles", List.of(role)))
+                    .issuedAt(now)
+                    .expiresAt(now.plusSeconds(3600))
+                    .build();
+        };
+    }
+
+    // Registro fijo: evita la consulta al issuer al levantar el contexto
+    @Bean
+    ClientRegistrationRepository clientRegistrationRepository() {
+        return new InMemoryClientRegistrationRepository(ClientRegistration.withRegistrationId("keycloak")
+                .clientId("toolrent-backend")
+                .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .redirectUri("{baseUrl}/login/oauth2/code/{registrationId}")
+                .authorizationUri("http://localhost/realms/load/protocol/openid-connect/auth")
+                .tokenUri("http://localhost/realms/load/protocol/openid-connect/token")
+                .build());
+    }
+}
@@ -0,0 +1,35 @@
+package com.toolrent.support;
+
+import com.toolrent.config.SqlStatementCounter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/* Presupuesto de sentencias SQL para detectar N+1 en pruebas.
+   Cuenta lo que Hibernate prepara en el hilo actual (SqlStatementCounter, activo en el perfil test);
+   sirve para llamadas a servicios y para peticiones MockMvc, que corren en el mismo hilo.
+   Los ids de loans y kardex_movements los reserva IdBlockAllocator en su propio pool y no se cuentan;
+   el resto (clientes, unidades, grupos) sale de id_generators en bloques de 50, y las cargas de los
+   cachés suman sentencias: las pruebas calientan unos y otros antes de medir, y los conteos son exactos. */
+public final class SqlBudget {
+
+    @FunctionalInterface
+    public interface Action {
+        void run() throws Exception;
+    }
+
+    private SqlBudget() {}
+
+    public static long count(Action action) throws Exception {
+        SqlStatementCounter.reset();
+        action.run();
+        return SqlStatementCounter.count();
+    }
+
+    public static void assertExactly(long expected, Action action) throws Exception {
+        assertThat(count(action)).as("sentencias SQL").isEqualTo(expected);
+    }
+
+    public static void assertAtMost(long budget, Action action) throws Exception {
+        assertThat(count(action)).as("sentencias SQL (presupuesto %d)", budget).isLessThanOrEqualTo(budget);
+    }
+}
@@ -0,0 +1,28 @@
+package com.toolrent.support;
+
+import com.toolrent.config.SqlStatementCounter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/* SqlStatementCounter que además guarda el texto de cada sentencia del hilo actual,
+   para las pruebas que miran qué tablas se leyeron y no solo cuántas sentencias hubo.
+   Se activa con spring.jpa.properties.hibernate.session_factory.statement_inspector. */
+public class SqlRecorder extends SqlStatementCounter {
+
+    private static final ThreadLocal<List<String>> STATEMENTS = ThreadLocal.withInitial(ArrayList::new);
+
+    @Override
+    public String inspect(String sql) {
+        STATEMENTS.get().add(sql);
+        return super.inspect(sql);
+    }
+
+    public static List<String> record(SqlBudget.Action action) throws Exception {
+        STATEMENTS.get().clear();
+        action.run();
+        List<String> recorded = List.copyOf(STATEMENTS.get());
+        STATEMENTS.get().clear();
+        return recorded;
+    }
+}